@@ -293,6 +293,8 @@ public final class InternalChannelz {
     public final long callsStarted;
     public final long callsSucceeded;
     public final long callsFailed;
+    /** The number of calls failed because their deadline expired before they were started. */
+    public final long callsExpired;
     public final long lastCallStartedNanos;
     public final List<InternalInstrumented<SocketStats>> listenSockets;
 
@@ -303,11 +305,13 @@ public final class InternalChannelz {
         long callsStarted,
         long callsSucceeded,
         long callsFailed,
+        long callsExpired,
         long lastCallStartedNanos,
         List<InternalInstrumented<SocketStats>> listenSockets) {
       this.callsStarted = callsStarted;
       this.callsSucceeded = callsSucceeded;
       this.callsFailed = callsFailed;
+      this.callsExpired = callsExpired;
       this.lastCallStartedNanos = lastCallStartedNanos;
       this.listenSockets = checkNotNull(listenSockets);
     }
@@ -316,6 +320,7 @@ public final class InternalChannelz {
       private long callsStarted;
       private long callsSucceeded;
       private long callsFailed;
+      private long callsExpired;
       private long lastCallStartedNanos;
       public List<InternalInstrumented<SocketStats>> listenSockets = new ArrayList<>();
 
@@ -334,6 +339,11 @@ public final class InternalChannelz {
         return this;
       }
 
+      public Builder setCallsExpired(long callsExpired) {
+        this.callsExpired = callsExpired;
+        return this;
+      }
+
       public Builder setLastCallStartedNanos(long lastCallStartedNanos) {
         this.lastCallStartedNanos = lastCallStartedNanos;
         return this;
@@ -356,6 +366,7 @@ public final class InternalChannelz {
             callsStarted,
             callsSucceeded,
             callsFailed,
+            callsExpired,
             lastCallStartedNanos,
             listenSockets);
       }
@@ -373,6 +384,8 @@ public final class InternalChannelz {
     public final long callsStarted;
     public final long callsSucceeded;
     public final long callsFailed;
+    /** The number of calls failed because their deadline expired before they were sent. */
+    public final long callsExpired;
     public final long lastCallStartedNanos;
     public final List<InternalWithLogId> subchannels;
     public final List<InternalWithLogId> sockets;
@@ -387,6 +400,7 @@ public final class InternalChannelz {
         long callsStarted,
         long callsSucceeded,
         long callsFailed,
+        long callsExpired,
         long lastCallStartedNanos,
         List<InternalWithLogId> subchannels,
         List<InternalWithLogId> sockets) {
@@ -400,6 +414,7 @@ public final class InternalChannelz {
       this.callsStarted = callsStarted;
       this.callsSucceeded = callsSucceeded;
       this.callsFailed = callsFailed;
+      this.callsExpired = callsExpired;
       this.lastCallStartedNanos = lastCallStartedNanos;
       this.subchannels = checkNotNull(subchannels);
       this.sockets = checkNotNull(sockets);
@@ -412,6 +427,7 @@ public final class InternalChannelz {
       private long callsStarted;
       private long callsSucceeded;
       private long callsFailed;
+      private long callsExpired;
       private long lastCallStartedNanos;
       private List<InternalWithLogId> subchannels = Collections.emptyList();
       private List<InternalWithLogId> sockets = Collections.emptyList();
@@ -446,6 +462,11 @@ public final class InternalChannelz {
         return this;
       }
 
+      public Builder setCallsExpired(long callsExpired) {
+        this.callsExpired = callsExpired;
+        return this;
+      }
+
       public Builder setLastCallStartedNanos(long lastCallStartedNanos) {
         this.lastCallStartedNanos = lastCallStartedNanos;
         return this;
@@ -476,6 +497,7 @@ public final class InternalChannelz {
             callsStarted,
             callsSucceeded,
             callsFailed,
+            callsExpired,
             lastCallStartedNanos,
             subchannels,
             sockets);
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.census;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import io.opencensus.tags.Tags;
+import io.opencensus.trace.Tracing;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark for the per-call work of {@link CensusStatsModule} and {@link CensusTracingModule}.
+ * Run with {@code -prof gc} to see the allocations per call.
+ */
+@State(Scope.Benchmark)
+public class CensusModulesBenchmark {
+  private static final Supplier<Stopwatch> STOPWATCH_SUPPLIER = new Supplier<Stopwatch>() {
+    @Override
+    public Stopwatch get() {
+      return Stopwatch.createUnstarted();
+    }
+  };
+
+  private final MethodDescriptor<InputStream, InputStream> method =
+      MethodDescriptor.<InputStream, InputStream>newBuilder()
+          .setType(MethodDescriptor.MethodType.UNARY)
+          .setFullMethodName(MethodDescriptor.generateFullMethodName("service", "method"))
+          .setRequestMarshaller(new PassThroughMarshaller())
+          .setResponseMarshaller(new PassThroughMarshaller())
+          .build();
+  private final ClientStreamTracer.StreamInfo streamInfo =
+      ClientStreamTracer.StreamInfo.newBuilder().build();
+
+  private final CensusStatsModule censusStats =
+      new CensusStatsModule(STOPWATCH_SUPPLIER, true, true, true, false);
+  private final CensusTracingModule censusTracing =
+      new CensusTracingModule(
+          Tracing.getTracer(), Tracing.getPropagationComponent().getBinaryFormat());
+  private final ServerStreamTracer.Factory statsServerFactory =
+      censusStats.getServerTracerFactory();
+  private final ServerStreamTracer.Factory tracingServerFactory =
+      censusTracing.getServerTracerFactory();
+
+  /**
+   * A unary client call with stats, without tags in the current context.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public CensusStatsModule.ClientCallTracer clientStatsCall() {
+    CensusStatsModule.ClientCallTracer callTracer =
+        censusStats.newClientCallTracer(
+            Tags.getTagger().empty(), method.getFullMethodName());
+    ClientStreamTracer streamTracer = callTracer.newClientStreamTracer(streamInfo, new Metadata());
+    simulateClientMessages(streamTracer);
+    callTracer.callEnded(Status.OK);
+    return callTracer;
+  }
+
+  /**
+   * A unary server call with stats, without tags in the headers.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public ServerStreamTracer serverStatsCall() {
+    ServerStreamTracer tracer =
+        statsServerFactory.newServerStreamTracer(method.getFullMethodName(), new Metadata());
+    simulateServerMessages(tracer);
+    tracer.streamClosed(Status.OK);
+    return tracer;
+  }
+
+  /**
+   * A unary client call with tracing, using the default sampler.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public CensusTracingModule.ClientCallTracer clientTracingCall() {
+    CensusTracingModule.ClientCallTracer callTracer =
+        censusTracing.newClientCallTracer(null, method);
+    ClientStreamTracer streamTracer = callTracer.newClientStreamTracer(streamInfo, new Metadata());
+    simulateClientMessages(streamTracer);
+    callTracer.callEnded(Status.OK);
+    return callTracer;
+  }
+
+  /**
+   * A unary server call with tracing, using the default sampler.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public ServerStreamTracer serverTracingCall() {
+    ServerStreamTracer tracer =
+        tracingServerFactory.newServerStreamTracer(method.getFullMethodName(), new Metadata());
+    simulateServerMessages(tracer);
+    tracer.streamClosed(Status.OK);
+    return tracer;
+  }
+
+  private static void simulateClientMessages(ClientStreamTracer tracer) {
+    tracer.outboundMessage(0);
+    tracer.outboundWireSize(100);
+    tracer.outboundUncompressedSize(100);
+    tracer.outboundMessageSent(0, 100, 100);
+    tracer.inboundMessage(0);
+    tracer.inboundWireSize(200);
+    tracer.inboundUncompressedSize(200);
+    tracer.inboundMessageRead(0, 200, 200);
+    tracer.streamClosed(Status.OK);
+  }
+
+  private static void simulateServerMessages(ServerStreamTracer tracer) {
+    tracer.inboundMessage(0);
+    tracer.inboundWireSize(100);
+    tracer.inboundUncompressedSize(100);
+    tracer.inboundMessageRead(0, 100, 100);
+    tracer.outboundMessage(0);
+    tracer.outboundWireSize(200);
+    tracer.outboundUncompressedSize(200);
+    tracer.outboundMessageSent(0, 200, 200);
+  }
+
+  private static final class PassThroughMarshaller
+      implements MethodDescriptor.Marshaller<InputStream> {
+    @Override
+    public InputStream stream(InputStream value) {
+      return value;
+    }
+
+    @Override
+    public InputStream parse(InputStream stream) {
+      return stream;
+    }
+  }
+}
@@ -43,15 +43,19 @@ import io.opencensus.stats.MeasureMap;
 import io.opencensus.stats.Stats;
 import io.opencensus.stats.StatsRecorder;
 import io.opencensus.tags.TagContext;
+import io.opencensus.tags.TagKey;
 import io.opencensus.tags.TagValue;
 import io.opencensus.tags.Tagger;
 import io.opencensus.tags.Tags;
 import io.opencensus.tags.propagation.TagContextBinarySerializer;
 import io.opencensus.tags.propagation.TagContextSerializationException;
 import io.opencensus.tags.unsafe.ContextUtils;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -67,12 +71,19 @@ import javax.annotation.Nullable;
  * <p>On the server-side, there is only one ServerStream per each ServerCall, and ServerStream
  * starts earlier than the ServerCall.  Therefore, only one tracer is created per stream/call and
  * it's the tracer that reports the summary to Census.
+ *
+ * <p>Most calls do not carry tags of their own, so their tag contexts only depend on the method and
+ * the status. Those are built once per method and reused, instead of being rebuilt for every call.
  */
 final class CensusStatsModule {
   private static final Logger logger = Logger.getLogger(CensusStatsModule.class.getName());
   private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+  // On the server the method name comes from the client, so the cache needs a bound.
+  private static final int MAX_CACHED_METHODS = 1000;
+  private static final TagValue[] STATUS_TAG_VALUES = createStatusTagValues();
 
   private final Tagger tagger;
+  private final TagContext emptyTagContext;
   private final StatsRecorder statsRecorder;
   private final Supplier<Stopwatch> stopwatchSupplier;
   @VisibleForTesting
@@ -81,6 +92,8 @@ final class CensusStatsModule {
   private final boolean recordStartedRpcs;
   private final boolean recordFinishedRpcs;
   private final boolean recordRealTimeMetrics;
+  private final MethodTagContextCache clientTagContexts;
+  private final MethodTagContextCache serverTagContexts;
 
   /**
    * Creates a {@link CensusStatsModule} with the default OpenCensus implementation.
@@ -113,6 +126,11 @@ final class CensusStatsModule {
     this.recordStartedRpcs = recordStartedRpcs;
     this.recordFinishedRpcs = recordFinishedRpcs;
     this.recordRealTimeMetrics = recordRealTimeMetrics;
+    this.emptyTagContext = tagger.empty();
+    this.clientTagContexts = new MethodTagContextCache(
+        RpcMeasureConstants.GRPC_CLIENT_METHOD, RpcMeasureConstants.GRPC_CLIENT_STATUS);
+    this.serverTagContexts = new MethodTagContextCache(
+        RpcMeasureConstants.GRPC_SERVER_METHOD, RpcMeasureConstants.GRPC_SERVER_STATUS);
     this.statsHeader =
         Metadata.Key.of("grpc-tags-bin", new Metadata.BinaryMarshaller<TagContext>() {
             @Override
@@ -161,6 +179,82 @@ final class CensusStatsModule {
     return new StatsClientInterceptor();
   }
 
+  private static TagValue[] createStatusTagValues() {
+    Status.Code[] codes = Status.Code.values();
+    TagValue[] values = new TagValue[codes.length];
+    for (int i = 0; i < codes.length; i++) {
+      values[i] = TagValue.create(codes[i].toString());
+    }
+    return values;
+  }
+
+  @SuppressWarnings("ReferenceEquality") // The identity check is only a shortcut
+  private boolean isEmpty(TagContext ctx) {
+    return ctx == emptyTagContext || emptyTagContext.equals(ctx);
+  }
+
+  private TagContext withStatus(TagContext ctx, TagKey statusKey, Status.Code code) {
+    return tagger.toBuilder(ctx).putLocal(statusKey, STATUS_TAG_VALUES[code.ordinal()]).build();
+  }
+
+  /**
+   * Tag contexts for calls of a method that have no parent tags.
+   */
+  private final class MethodTagContexts {
+    final TagContext startCtx;
+    private final TagKey statusKey;
+    private final AtomicReferenceArray<TagContext> endCtxs =
+        new AtomicReferenceArray<>(STATUS_TAG_VALUES.length);
+
+    MethodTagContexts(TagContext startCtx, TagKey statusKey) {
+      this.startCtx = startCtx;
+      this.statusKey = statusKey;
+    }
+
+    TagContext endCtx(Status.Code code) {
+      TagContext ctx = endCtxs.get(code.ordinal());
+      if (ctx == null) {
+        // Racing threads build equal contexts, so it does not matter which one is kept.
+        ctx = withStatus(startCtx, statusKey, code);
+        endCtxs.set(code.ordinal(), ctx);
+      }
+      return ctx;
+    }
+  }
+
+  private final class MethodTagContextCache {
+    private final TagKey methodKey;
+    private final TagKey statusKey;
+    private final ConcurrentMap<String, MethodTagContexts> cache = new ConcurrentHashMap<>();
+
+    MethodTagContextCache(TagKey methodKey, TagKey statusKey) {
+      this.methodKey = methodKey;
+      this.statusKey = statusKey;
+    }
+
+    /**
+     * Returns the contexts of {@code fullMethodName}, or {@code null} if the cache is full and the
+     * contexts need to be built by the caller.
+     */
+    @Nullable
+    MethodTagContexts get(String fullMethodName) {
+      MethodTagContexts contexts = cache.get(fullMethodName);
+      if (contexts != null) {
+        return contexts;
+      }
+      if (cache.size() >= MAX_CACHED_METHODS) {
+        return null;
+      }
+      contexts = new MethodTagContexts(
+          tagger.toBuilder(emptyTagContext)
+              .putLocal(methodKey, TagValue.create(fullMethodName))
+              .build(),
+          statusKey);
+      MethodTagContexts existing = cache.putIfAbsent(fullMethodName, contexts);
+      return existing != null ? existing : contexts;
+    }
+  }
+
   private void recordRealTimeMetric(TagContext ctx, MeasureDouble measure, double value) {
     if (recordRealTimeMetrics) {
       MeasureMap measureMap = statsRecorder.newMeasureMap().put(measure, value);
@@ -351,14 +445,22 @@ final class CensusStatsModule {
     private volatile int callEnded;
     private final TagContext parentCtx;
     private final TagContext startCtx;
+    @Nullable
+    private final MethodTagContexts methodTagContexts;
 
     ClientCallTracer(CensusStatsModule module, TagContext parentCtx, String fullMethodName) {
       this.module = checkNotNull(module);
       this.parentCtx = checkNotNull(parentCtx);
-      TagValue methodTag = TagValue.create(fullMethodName);
-      this.startCtx = module.tagger.toBuilder(parentCtx)
-          .putLocal(RpcMeasureConstants.GRPC_CLIENT_METHOD, methodTag)
-          .build();
+      this.methodTagContexts =
+          module.isEmpty(parentCtx) ? module.clientTagContexts.get(fullMethodName) : null;
+      if (methodTagContexts != null) {
+        this.startCtx = methodTagContexts.startCtx;
+      } else {
+        TagValue methodTag = TagValue.create(fullMethodName);
+        this.startCtx = module.tagger.toBuilder(parentCtx)
+            .putLocal(RpcMeasureConstants.GRPC_CLIENT_METHOD, methodTag)
+            .build();
+      }
       this.stopwatch = module.stopwatchSupplier.get().start();
       if (module.recordStartedRpcs) {
         module.statsRecorder.newMeasureMap()
@@ -385,7 +487,7 @@ final class CensusStatsModule {
       }
       if (module.propagateTags) {
         headers.discardAll(module.statsHeader);
-        if (!module.tagger.empty().equals(parentCtx)) {
+        if (!module.isEmpty(parentCtx)) {
           headers.put(module.statsHeader, parentCtx);
         }
       }
@@ -438,13 +540,14 @@ final class CensusStatsModule {
       if (!status.isOk()) {
         measureMap.put(DeprecatedCensusConstants.RPC_CLIENT_ERROR_COUNT, 1);
       }
-      TagValue statusTag = TagValue.create(status.getCode().toString());
-      measureMap.record(
-          module
-              .tagger
-              .toBuilder(startCtx)
-              .putLocal(RpcMeasureConstants.GRPC_CLIENT_STATUS, statusTag)
-              .build());
+      TagContext endCtx;
+      if (methodTagContexts != null) {
+        endCtx = methodTagContexts.endCtx(status.getCode());
+      } else {
+        endCtx = module.withStatus(
+            startCtx, RpcMeasureConstants.GRPC_CLIENT_STATUS, status.getCode());
+      }
+      measureMap.record(endCtx);
     }
   }
 
@@ -510,6 +613,8 @@ final class CensusStatsModule {
 
     private final CensusStatsModule module;
     private final TagContext parentCtx;
+    @Nullable
+    private final MethodTagContexts methodTagContexts;
     private volatile int streamClosed;
     private final Stopwatch stopwatch;
     private volatile long outboundMessageCount;
@@ -521,9 +626,11 @@ final class CensusStatsModule {
 
     ServerTracer(
         CensusStatsModule module,
-        TagContext parentCtx) {
+        TagContext parentCtx,
+        @Nullable MethodTagContexts methodTagContexts) {
       this.module = checkNotNull(module, "module");
       this.parentCtx = checkNotNull(parentCtx, "parentCtx");
+      this.methodTagContexts = methodTagContexts;
       this.stopwatch = module.stopwatchSupplier.get().start();
       if (module.recordStartedRpcs) {
         module.statsRecorder.newMeasureMap()
@@ -643,18 +750,19 @@ final class CensusStatsModule {
       if (!status.isOk()) {
         measureMap.put(DeprecatedCensusConstants.RPC_SERVER_ERROR_COUNT, 1);
       }
-      TagValue statusTag = TagValue.create(status.getCode().toString());
-      measureMap.record(
-          module
-              .tagger
-              .toBuilder(parentCtx)
-              .putLocal(RpcMeasureConstants.GRPC_SERVER_STATUS, statusTag)
-              .build());
+      TagContext endCtx;
+      if (methodTagContexts != null) {
+        endCtx = methodTagContexts.endCtx(status.getCode());
+      } else {
+        endCtx = module.withStatus(
+            parentCtx, RpcMeasureConstants.GRPC_SERVER_STATUS, status.getCode());
+      }
+      measureMap.record(endCtx);
     }
 
     @Override
     public Context filterContext(Context context) {
-      if (!module.tagger.empty().equals(parentCtx)) {
+      if (!module.isEmpty(parentCtx)) {
         return ContextUtils.withValue(context, parentCtx);
       }
       return context;
@@ -667,15 +775,21 @@ final class CensusStatsModule {
     public ServerStreamTracer newServerStreamTracer(String fullMethodName, Metadata headers) {
       TagContext parentCtx = headers.get(statsHeader);
       if (parentCtx == null) {
-        parentCtx = tagger.empty();
-      }
-      TagValue methodTag = TagValue.create(fullMethodName);
-      parentCtx =
-          tagger
-              .toBuilder(parentCtx)
-              .putLocal(RpcMeasureConstants.GRPC_SERVER_METHOD, methodTag)
-              .build();
-      return new ServerTracer(CensusStatsModule.this, parentCtx);
+        parentCtx = emptyTagContext;
+      }
+      MethodTagContexts methodTagContexts =
+          isEmpty(parentCtx) ? serverTagContexts.get(fullMethodName) : null;
+      if (methodTagContexts != null) {
+        parentCtx = methodTagContexts.startCtx;
+      } else {
+        TagValue methodTag = TagValue.create(fullMethodName);
+        parentCtx =
+            tagger
+                .toBuilder(parentCtx)
+                .putLocal(RpcMeasureConstants.GRPC_SERVER_METHOD, methodTag)
+                .build();
+      }
+      return new ServerTracer(CensusStatsModule.this, parentCtx, methodTagContexts);
     }
   }
 
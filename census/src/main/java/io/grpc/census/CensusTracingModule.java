@@ -40,6 +40,8 @@ import io.opencensus.trace.Status;
 import io.opencensus.trace.Tracer;
 import io.opencensus.trace.propagation.BinaryFormat;
 import io.opencensus.trace.unsafe.ContextUtils;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -58,6 +60,13 @@ import javax.annotation.Nullable;
  */
 final class CensusTracingModule {
   private static final Logger logger = Logger.getLogger(CensusTracingModule.class.getName());
+  // On the server the method name comes from the client, so the cache needs a bound.
+  private static final int MAX_CACHED_SPAN_NAMES = 1000;
+
+  /**
+   * End options of statuses without a description, indexed by [sampledToLocalTracing][code].
+   */
+  private static final EndSpanOptions[][] END_SPAN_OPTIONS = createEndSpanOptionsTable();
 
   @Nullable private static final AtomicIntegerFieldUpdater<ClientCallTracer> callEndedUpdater;
 
@@ -90,6 +99,8 @@ final class CensusTracingModule {
   final Metadata.Key<SpanContext> tracingHeader;
   private final TracingClientInterceptor clientInterceptor = new TracingClientInterceptor();
   private final ServerTracerFactory serverTracerFactory = new ServerTracerFactory();
+  private final ConcurrentMap<String, String> clientSpanNames = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, String> serverSpanNames = new ConcurrentHashMap<>();
 
   CensusTracingModule(
       Tracer censusTracer, final BinaryFormat censusPropagationBinaryFormat) {
@@ -202,15 +213,52 @@ final class CensusTracingModule {
 
   private static EndSpanOptions createEndSpanOptions(
       io.grpc.Status status, boolean sampledToLocalTracing) {
+    if (status.getDescription() == null) {
+      return END_SPAN_OPTIONS[sampledToLocalTracing ? 1 : 0][status.getCode().ordinal()];
+    }
     return EndSpanOptions.builder()
         .setStatus(convertStatus(status))
         .setSampleToLocalSpanStore(sampledToLocalTracing)
         .build();
   }
 
+  private static EndSpanOptions[][] createEndSpanOptionsTable() {
+    io.grpc.Status.Code[] codes = io.grpc.Status.Code.values();
+    EndSpanOptions[][] table = new EndSpanOptions[2][codes.length];
+    for (int sampled = 0; sampled < 2; sampled++) {
+      for (io.grpc.Status.Code code : codes) {
+        table[sampled][code.ordinal()] = EndSpanOptions.builder()
+            .setStatus(convertStatus(code.toStatus()))
+            .setSampleToLocalSpanStore(sampled == 1)
+            .build();
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Returns the span name of {@code fullMethodName}, reusing the one of previous calls if
+   * possible.
+   */
+  private String getSpanName(boolean isServer, String fullMethodName) {
+    ConcurrentMap<String, String> cache = isServer ? serverSpanNames : clientSpanNames;
+    String spanName = cache.get(fullMethodName);
+    if (spanName == null) {
+      spanName = generateTraceSpanName(isServer, fullMethodName);
+      if (cache.size() < MAX_CACHED_SPAN_NAMES) {
+        cache.putIfAbsent(fullMethodName, spanName);
+      }
+    }
+    return spanName;
+  }
+
   private static void recordMessageEvent(
       Span span, MessageEvent.Type type,
       int seqNo, long optionalWireSize, long optionalUncompressedSize) {
+    if (!span.getOptions().contains(Span.Options.RECORD_EVENTS)) {
+      // The span drops events anyway, so don't bother building them.
+      return;
+    }
     MessageEvent.Builder eventBuilder = MessageEvent.builder(type, seqNo);
     if (optionalUncompressedSize != -1) {
       eventBuilder.setUncompressedMessageSize(optionalUncompressedSize);
@@ -234,7 +282,7 @@ final class CensusTracingModule {
       this.span =
           censusTracer
               .spanBuilderWithExplicitParent(
-                  generateTraceSpanName(false, method.getFullMethodName()),
+                  getSpanName(false, method.getFullMethodName()),
                   parentSpan)
               .setRecordEvents(true)
               .startSpan();
@@ -304,7 +352,7 @@ final class CensusTracingModule {
       this.span =
           censusTracer
               .spanBuilderWithRemoteParent(
-                  generateTraceSpanName(true, fullMethodName),
+                  getSpanName(true, fullMethodName),
                   remoteSpan)
               .setRecordEvents(true)
               .startSpan();
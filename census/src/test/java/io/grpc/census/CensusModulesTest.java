@@ -92,6 +92,7 @@ import io.opencensus.trace.propagation.BinaryFormat;
 import io.opencensus.trace.propagation.SpanContextParseException;
 import io.opencensus.trace.unsafe.ContextUtils;
 import java.io.InputStream;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
@@ -172,9 +173,11 @@ public class CensusModulesTest {
   private final FakeStatsRecorder statsRecorder = new FakeStatsRecorder();
   private final Random random = new Random(1234);
   private final Span fakeClientParentSpan = MockableSpan.generateRandomSpan(random);
-  private final Span spyClientSpan = spy(MockableSpan.generateRandomSpan(random));
+  private final Span spyClientSpan =
+      spy(MockableSpan.generateRandomSpan(random, EnumSet.of(Span.Options.RECORD_EVENTS)));
   private final SpanContext fakeClientSpanContext = spyClientSpan.getContext();
-  private final Span spyServerSpan = spy(MockableSpan.generateRandomSpan(random));
+  private final Span spyServerSpan =
+      spy(MockableSpan.generateRandomSpan(random, EnumSet.of(Span.Options.RECORD_EVENTS)));
   private final byte[] binarySpanContext = new byte[]{3, 1, 5};
   private final SpanBuilder spyClientSpanBuilder = spy(new MockableSpan.Builder());
   private final SpanBuilder spyServerSpanBuilder = spy(new MockableSpan.Builder());
@@ -646,6 +649,107 @@ public class CensusModulesTest {
     verifyNoMoreInteractions(spyClientSpan);
   }
 
+  @Test
+  public void clientStatsMethodTagContextsKeepStatusAndParentTags() {
+    // The first two calls share the tag contexts of the method, the last one has tags of its own.
+    TagContext extraCtx = tagger.emptyBuilder().putLocal(
+        StatsTestUtils.EXTRA_TAG, TagValue.create("extra value")).build();
+    TagContext[] parentCtxs = {tagger.empty(), tagger.empty(), extraCtx};
+    Status[] statuses = {Status.OK, Status.UNAVAILABLE.withDescription("gone"), Status.OK};
+    for (int i = 0; i < statuses.length; i++) {
+      CensusStatsModule.ClientCallTracer callTracer =
+          censusStats.newClientCallTracer(parentCtxs[i], method.getFullMethodName());
+      callTracer.callEnded(statuses[i]);
+
+      StatsTestUtils.MetricsRecord record = statsRecorder.pollRecord();
+      assertNotNull(record);
+      assertEquals(
+          method.getFullMethodName(),
+          record.tags.get(RpcMeasureConstants.GRPC_CLIENT_METHOD).asString());
+      assertNull(record.tags.get(RpcMeasureConstants.GRPC_CLIENT_STATUS));
+
+      record = statsRecorder.pollRecord();
+      assertNotNull(record);
+      assertEquals(
+          method.getFullMethodName(),
+          record.tags.get(RpcMeasureConstants.GRPC_CLIENT_METHOD).asString());
+      assertEquals(
+          statuses[i].getCode().toString(),
+          record.tags.get(RpcMeasureConstants.GRPC_CLIENT_STATUS).asString());
+      if (parentCtxs[i] == extraCtx) {
+        assertEquals("extra value", record.tags.get(StatsTestUtils.EXTRA_TAG).asString());
+      } else {
+        assertNull(record.tags.get(StatsTestUtils.EXTRA_TAG));
+      }
+    }
+  }
+
+  @Test
+  public void serverStatsMethodTagContextsKeepStatus() {
+    ServerStreamTracer.Factory tracerFactory = censusStats.getServerTracerFactory();
+    Status[] statuses = {Status.OK, Status.CANCELLED, Status.OK};
+    for (Status status : statuses) {
+      ServerStreamTracer tracer =
+          tracerFactory.newServerStreamTracer(method.getFullMethodName(), new Metadata());
+      tracer.streamClosed(status);
+
+      StatsTestUtils.MetricsRecord record = statsRecorder.pollRecord();
+      assertNotNull(record);
+      assertNull(record.tags.get(RpcMeasureConstants.GRPC_SERVER_STATUS));
+      record = statsRecorder.pollRecord();
+      assertNotNull(record);
+      assertEquals(
+          method.getFullMethodName(),
+          record.tags.get(RpcMeasureConstants.GRPC_SERVER_METHOD).asString());
+      assertEquals(
+          status.getCode().toString(),
+          record.tags.get(RpcMeasureConstants.GRPC_SERVER_STATUS).asString());
+    }
+  }
+
+  @Test
+  public void clientTracingSkipsMessageEventsOfSpanNotRecordingEvents() {
+    Span span = spy(MockableSpan.generateRandomSpan(random));
+    when(spyClientSpanBuilder.startSpan()).thenReturn(span);
+    CensusTracingModule.ClientCallTracer callTracer =
+        censusTracing.newClientCallTracer(null, method);
+    ClientStreamTracer clientStreamTracer =
+        callTracer.newClientStreamTracer(STREAM_INFO, new Metadata());
+
+    clientStreamTracer.outboundMessageSent(0, 882, -1);
+    clientStreamTracer.inboundMessageRead(0, 255, 90);
+    callTracer.callEnded(Status.INTERNAL.withDescription("Oops"));
+
+    verify(span, never()).addMessageEvent(any(MessageEvent.class));
+    verify(span).end(
+        EndSpanOptions.builder()
+            .setStatus(io.opencensus.trace.Status.INTERNAL.withDescription("Oops"))
+            .setSampleToLocalSpanStore(false)
+            .build());
+  }
+
+  @Test
+  public void serverTracingSkipsMessageEventsOfSpanNotRecordingEvents() {
+    Span span = spy(MockableSpan.generateRandomSpan(random));
+    when(spyServerSpanBuilder.startSpan()).thenReturn(span);
+    ServerStreamTracer serverStreamTracer =
+        censusTracing.getServerTracerFactory().newServerStreamTracer(
+            method.getFullMethodName(), new Metadata());
+    serverStreamTracer.serverCallStarted(
+        new CallInfo<>(method, Attributes.EMPTY, null));
+
+    serverStreamTracer.outboundMessageSent(0, 882, -1);
+    serverStreamTracer.inboundMessageRead(0, 255, 90);
+    serverStreamTracer.streamClosed(Status.CANCELLED);
+
+    verify(span, never()).addMessageEvent(any(MessageEvent.class));
+    verify(span).end(
+        EndSpanOptions.builder()
+            .setStatus(io.opencensus.trace.Status.CANCELLED)
+            .setSampleToLocalSpanStore(false)
+            .build());
+  }
+
   @Test
   public void statsHeadersPropagateTags_record() {
     subtestStatsHeadersPropagateTags(true, true);
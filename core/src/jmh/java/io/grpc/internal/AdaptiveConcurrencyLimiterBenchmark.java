@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import io.grpc.Metadata;
+import io.grpc.Status;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Simulates an overloaded server: many more callers than the server has workers, so that calls
+ * queue for a worker. Compares the latency of the calls with and without
+ * {@link AdaptiveConcurrencyLimiter}; with the limiter, the calls beyond the limit are rejected
+ * instead of queued, which keeps the latency of the admitted calls close to their service time.
+ */
+@State(Scope.Benchmark)
+public class AdaptiveConcurrencyLimiterBenchmark {
+  private static final String METHOD = "service/method";
+  private static final int WORKERS = 4;
+
+  @Param({"false", "true"})
+  public boolean limiterEnabled;
+
+  @Param({"1000"})
+  public long serviceTokens;
+
+  private final Metadata headers = new Metadata();
+  private final Semaphore workers = new Semaphore(WORKERS, true);
+  private AdaptiveConcurrencyLimiter limiter;
+
+  /** Counts the admitted and the rejected calls of a caller. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Calls {
+    public long admitted;
+    public long rejected;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      admitted = 0;
+      rejected = 0;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    limiter = limiterEnabled
+        ? AdaptiveConcurrencyLimiter.newBuilder().setDefaultLimit(WORKERS, 1, 1000).build()
+        : null;
+  }
+
+  /**
+   * Latency of a call, including the time queued for a worker.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Threads(32)
+  public void call(Calls calls) throws InterruptedException {
+    AdaptiveConcurrencyLimiter.Permit permit = null;
+    if (limiter != null) {
+      permit = limiter.tryAcquire(METHOD, headers);
+      if (permit == null) {
+        calls.rejected++;
+        return;
+      }
+    }
+    workers.acquire();
+    try {
+      Blackhole.consumeCPU(serviceTokens);
+    } finally {
+      workers.release();
+    }
+    if (permit != null) {
+      permit.release(Status.OK);
+    }
+    calls.admitted++;
+  }
+}
@@ -18,6 +18,7 @@ package io.grpc.internal;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import io.grpc.InternalChannelz;
+import io.grpc.InternalChannelz.ChannelStats;
 import io.grpc.InternalChannelz.ServerStats;
 import io.grpc.InternalChannelz.SocketStats;
 import io.grpc.InternalInstrumented;
@@ -31,6 +32,7 @@ import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
 
 /**
  * Javadoc.
@@ -51,6 +53,8 @@ public class ChannelzBenchmark {
   public InternalInstrumented<SocketStats> serverSocketToAdd;
   public InternalInstrumented<SocketStats> serverSocketToRemove;
 
+  public CallTracer callTracer = CallTracer.getDefaultFactory().create();
+
   /**
    * Javadoc.
    */
@@ -130,6 +134,41 @@ public class ChannelzBenchmark {
     channelz.removeServerSocket(serverForServerSocket, serverSocketToRemove);
   }
 
+  /**
+   * Per-call overhead of the channelz call counters, as paid by every RPC on a channel.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void reportCall() {
+    callTracer.reportCallStarted();
+    callTracer.reportCallEnded(true);
+  }
+
+  /**
+   * Same as {@link #reportCall} but with many threads sharing one channel.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Threads(16)
+  public void reportCallContended() {
+    callTracer.reportCallStarted();
+    callTracer.reportCallEnded(true);
+  }
+
+  /**
+   * Cost of reading the call counters, as paid by a channelz query.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public ChannelStats.Builder snapshotCallStats() {
+    ChannelStats.Builder builder = new ChannelStats.Builder();
+    callTracer.updateBuilder(builder);
+    return builder;
+  }
+
   private static <T> InternalInstrumented<T> create() {
     return new InternalInstrumented<T>() {
       final InternalLogId id = InternalLogId.allocate(getClass(), "fake-tag");
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Limits the number of calls a server handles concurrently. Calls beyond the limit are rejected
+ * with {@code RESOURCE_EXHAUSTED} as soon as their stream is created, before any message is
+ * deserialized or any work is queued on the application executor.
+ *
+ * <p>The limit adapts to the latency of the calls, like TCP Vegas: the lowest latency seen is
+ * taken as the latency without load, and the number of queued calls is estimated from how much
+ * the latency of each completed call exceeds it. The limit grows while few calls are queued and
+ * shrinks once many are, or when calls exceed their deadline. The lowest latency is periodically
+ * re-measured to follow changes of the workload.
+ *
+ * <p>Methods can be given their own limit, other methods sharing the default limit. Calls can
+ * additionally be assigned a priority using a request header. A call of a priority is only
+ * admitted while the calls in flight are below the share of the limit configured for that
+ * priority, so that lower priorities are shed first when the server is overloaded.
+ */
+@ThreadSafe
+public final class AdaptiveConcurrencyLimiter {
+
+  private final Limit defaultLimit;
+  private final Map<String, Limit> methodLimits;
+  @Nullable
+  private final Metadata.Key<String> priorityKey;
+  private final Map<String, Double> priorityShares;
+  private final Deadline.Ticker ticker;
+  private final LongCounter rejectedCount = LongCounterFactory.create();
+
+  private AdaptiveConcurrencyLimiter(Builder builder) {
+    this.defaultLimit = builder.defaultLimit.build();
+    Map<String, Limit> methodLimits = new HashMap<>();
+    for (Map.Entry<String, LimitConfig> entry : builder.methodLimits.entrySet()) {
+      methodLimits.put(entry.getKey(), entry.getValue().build());
+    }
+    this.methodLimits = Collections.unmodifiableMap(methodLimits);
+    this.priorityKey = builder.priorityKey;
+    this.priorityShares = Collections.unmodifiableMap(new HashMap<>(builder.priorityShares));
+    this.ticker = builder.ticker;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Admits a new call if the limit of its method allows it, returning the permit that must be
+   * released once the call completes, or {@code null} if the call must be rejected.
+   */
+  @Nullable
+  public Permit tryAcquire(String fullMethodName, Metadata headers) {
+    Limit limit = getLimitFor(fullMethodName);
+    double share = 1;
+    if (priorityKey != null) {
+      String priority = headers.get(priorityKey);
+      if (priority != null) {
+        Double priorityShare = priorityShares.get(priority);
+        if (priorityShare != null) {
+          share = priorityShare;
+        }
+      }
+    }
+    if (!limit.tryAcquire(share)) {
+      rejectedCount.add(1);
+      return null;
+    }
+    return new Permit(limit, ticker.nanoTime());
+  }
+
+  /** Returns the current concurrency limit of the method. */
+  public int getLimit(String fullMethodName) {
+    return getLimitFor(fullMethodName).limit;
+  }
+
+  /** Returns the number of calls of the method currently in flight. */
+  public int getInFlight(String fullMethodName) {
+    return getLimitFor(fullMethodName).inFlight.get();
+  }
+
+  /** Returns the number of calls rejected so far. */
+  public long getRejectedCount() {
+    return rejectedCount.value();
+  }
+
+  private Limit getLimitFor(String fullMethodName) {
+    Limit limit = methodLimits.get(fullMethodName);
+    return limit != null ? limit : defaultLimit;
+  }
+
+  /** A slot of an admitted call. */
+  public final class Permit {
+    private final Limit limit;
+    private final long startNanos;
+
+    private Permit(Limit limit, long startNanos) {
+      this.limit = limit;
+      this.startNanos = startNanos;
+    }
+
+    /**
+     * Releases the slot of the call, and updates the limit with the latency of the call if it
+     * succeeded, or with a drop if it exceeded its deadline. Must be called exactly once, when the
+     * stream of the call is closed.
+     */
+    public void release(Status status) {
+      long rttNanos = ticker.nanoTime() - startNanos;
+      switch (status.getCode()) {
+        case OK:
+          limit.release(rttNanos, false);
+          break;
+        case DEADLINE_EXCEEDED:
+          limit.release(rttNanos, true);
+          break;
+        default:
+          // Cancelled by the client, or failed, maybe before doing any work, e.g. UNIMPLEMENTED.
+          // The latency says nothing about the load of the server.
+          limit.release();
+      }
+    }
+  }
+
+  /** The adaptive limit of the calls of one or more methods. */
+  @VisibleForTesting
+  static final class Limit {
+    // The minimum RTT is re-measured after this many times the limit of samples.
+    @VisibleForTesting
+    static final int PROBE_MULTIPLIER = 30;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    @GuardedBy("this")
+    private double estimatedLimit;
+    @GuardedBy("this")
+    private long rttNoLoadNanos;
+    @GuardedBy("this")
+    private long samplesSinceProbe;
+
+    Limit(int initialLimit, int minLimit, int maxLimit) {
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+      this.estimatedLimit = initialLimit;
+      this.limit = initialLimit;
+    }
+
+    boolean tryAcquire(double share) {
+      int allowed = Math.max(1, (int) (limit * share));
+      while (true) {
+        int current = inFlight.get();
+        if (current >= allowed) {
+          return false;
+        }
+        if (inFlight.compareAndSet(current, current + 1)) {
+          return true;
+        }
+      }
+    }
+
+    void release() {
+      inFlight.decrementAndGet();
+    }
+
+    void release(long rttNanos, boolean dropped) {
+      int current = inFlight.getAndDecrement();
+      update(Math.max(rttNanos, 1), current, dropped);
+    }
+
+    private synchronized void update(long rttNanos, int inFlight, boolean dropped) {
+      if (++samplesSinceProbe >= PROBE_MULTIPLIER * estimatedLimit) {
+        samplesSinceProbe = 0;
+        rttNoLoadNanos = rttNanos;
+        return;
+      }
+      double step = Math.max(1, Math.log10(estimatedLimit));
+      double newLimit;
+      if (dropped) {
+        newLimit = estimatedLimit - step;
+      } else if (rttNoLoadNanos == 0 || rttNanos < rttNoLoadNanos) {
+        rttNoLoadNanos = rttNanos;
+        return;
+      } else if (inFlight * 2 < estimatedLimit) {
+        // Calls are not limited by the limit, so their latency tells nothing about larger limits.
+        return;
+      } else {
+        double queueSize = Math.ceil(estimatedLimit * (1 - (double) rttNoLoadNanos / rttNanos));
+        if (queueSize <= step) {
+          newLimit = estimatedLimit + 6 * step;
+        } else if (queueSize < 3 * step) {
+          newLimit = estimatedLimit + step;
+        } else if (queueSize > 6 * step) {
+          newLimit = estimatedLimit - step;
+        } else {
+          return;
+        }
+      }
+      estimatedLimit = Math.min(maxLimit, Math.max(minLimit, newLimit));
+      limit = (int) estimatedLimit;
+    }
+  }
+
+  private static final class LimitConfig {
+    final int initialLimit;
+    final int minLimit;
+    final int maxLimit;
+
+    LimitConfig(int initialLimit, int minLimit, int maxLimit) {
+      checkArgument(minLimit > 0, "minLimit must be positive");
+      checkArgument(minLimit <= maxLimit, "minLimit must not be larger than maxLimit");
+      checkArgument(
+          initialLimit >= minLimit && initialLimit <= maxLimit,
+          "initialLimit must be between minLimit and maxLimit");
+      this.initialLimit = initialLimit;
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+    }
+
+    Limit build() {
+      return new Limit(initialLimit, minLimit, maxLimit);
+    }
+  }
+
+  /** Builder for {@link AdaptiveConcurrencyLimiter}. */
+  public static final class Builder {
+    private LimitConfig defaultLimit = new LimitConfig(20, 1, 1000);
+    private final Map<String, LimitConfig> methodLimits = new HashMap<>();
+    private Metadata.Key<String> priorityKey;
+    private final Map<String, Double> priorityShares = new HashMap<>();
+    private Deadline.Ticker ticker = Deadline.getSystemTicker();
+
+    private Builder() {}
+
+    /**
+     * Sets the limit shared by the methods without a limit of their own. Defaults to an initial
+     * limit of 20, bounded between 1 and 1000.
+     */
+    public Builder setDefaultLimit(int initialLimit, int minLimit, int maxLimit) {
+      defaultLimit = new LimitConfig(initialLimit, minLimit, maxLimit);
+      return this;
+    }
+
+    /** Gives the method a limit of its own. */
+    public Builder setMethodLimit(
+        String fullMethodName, int initialLimit, int minLimit, int maxLimit) {
+      methodLimits.put(
+          checkNotNull(fullMethodName, "fullMethodName"),
+          new LimitConfig(initialLimit, minLimit, maxLimit));
+      return this;
+    }
+
+    /** Sets the request header carrying the priority of a call. */
+    public Builder setPriorityKey(Metadata.Key<String> priorityKey) {
+      this.priorityKey = checkNotNull(priorityKey, "priorityKey");
+      return this;
+    }
+
+    /**
+     * Sets the share of the limit that calls of the priority may use, between 0 exclusive and 1.
+     * Calls without a priority or of a priority without a share may use the whole limit.
+     */
+    public Builder setPriorityShare(String priority, double share) {
+      checkArgument(share > 0 && share <= 1, "share must be in (0, 1]");
+      priorityShares.put(checkNotNull(priority, "priority"), share);
+      return this;
+    }
+
+    @VisibleForTesting
+    Builder setTicker(Deadline.Ticker ticker) {
+      this.ticker = checkNotNull(ticker, "ticker");
+      return this;
+    }
+
+    public AdaptiveConcurrencyLimiter build() {
+      return new AdaptiveConcurrencyLimiter(this);
+    }
+  }
+}
@@ -14,33 +14,35 @@
  * limitations under the License.
  */
 
-package io.grpc.rls;
+package io.grpc.internal;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
-import io.grpc.internal.TimeProvider;
+import com.google.common.base.Objects;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.concurrent.ThreadSafe;
 
 /**
- * Implementation of {@link Throttler} that keeps track of recent history (the duration of which is
- * specified to the constructor) and throttles requests at the client side based on the number of
- * requests that the
- * backend has accepted and the total number of requests generated. A given request will be
- * throttled with a probability
+ * Throttles requests at the client side, keeping track of recent history (the duration of which is
+ * specified to the constructor) of the number of requests that the backend has accepted and the
+ * total number of requests generated. A given request will be throttled with a probability
  * <pre>
  *   throttleProbability = (requests - ratio_for_accepts * accepts) / (requests + requests_padding)
  * </pre>
  * where requests is the total number of requests, accepts is the total number of requests that the
  * backend has accepted and ratio_for_accepts is just a constant multiplier passed to the
  * constructor (see the description of ratio_for_accepts for more information).
+ *
+ * <p>Two throttlers are equal if they have the same configuration, regardless of their history.
  */
-final class AdaptiveThrottler implements Throttler {
+@ThreadSafe
+public final class AdaptiveThrottler {
 
   private static final int DEFAULT_HISTORY_SECONDS = 30;
   private static final int DEFAULT_REQUEST_PADDING = 8;
@@ -74,6 +76,7 @@ final class AdaptiveThrottler implements Throttler {
    */
   @VisibleForTesting
   final TimeBasedAccumulator throttledStat;
+  private final LongCounter locallyThrottledCount = LongCounterFactory.create();
 
   private AdaptiveThrottler(Builder builder) {
     this.historySeconds = builder.historySeconds;
@@ -85,7 +88,13 @@ final class AdaptiveThrottler implements Throttler {
     this.throttledStat = new TimeBasedAccumulator(internalNanos, timeProvider);
   }
 
-  @Override
+  /**
+   * Checks if a given request should be throttled by the client. This should be called for every
+   * request before allowing it to hit the network. If the returned value is true, the request
+   * should be aborted immediately (as if it had been throttled by the server).
+   *
+   * <p>This updates internal state and should be called exactly once for each request.
+   */
   public boolean shouldThrottle() {
     return shouldThrottle(randomFloat());
   }
@@ -98,6 +107,7 @@ final class AdaptiveThrottler implements Throttler {
     }
     requestStat.increment(nowNanos);
     throttledStat.increment(nowNanos);
+    locallyThrottledCount.add(1);
     return true;
   }
 
@@ -116,7 +126,14 @@ final class AdaptiveThrottler implements Throttler {
     return (requests - ratioForAccepts * accepts) / (requests + requestsPadding);
   }
 
-  @Override
+  /**
+   * Registers a response received from the backend for a request allowed by shouldThrottle. This
+   * should be called for every response received from the backend (i.e., once for each request for
+   * which ShouldThrottle returned false). This updates the internal statistics used by
+   * shouldThrottle.
+   *
+   * @param throttled specifies whether the request was throttled by the backend.
+   */
   public void registerBackendResponse(boolean throttled) {
     long now = timeProvider.currentTimeNanos();
     requestStat.increment(now);
@@ -125,10 +142,31 @@ final class AdaptiveThrottler implements Throttler {
     }
   }
 
+  /** Returns the number of requests throttled by the client so far. */
+  public long getLocallyThrottledCount() {
+    return locallyThrottledCount.value();
+  }
+
   private static float randomFloat() {
     return ThreadLocalRandom.current().nextFloat();
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof AdaptiveThrottler)) {
+      return false;
+    }
+    AdaptiveThrottler that = (AdaptiveThrottler) o;
+    return historySeconds == that.historySeconds
+        && requestsPadding == that.requestsPadding
+        && Float.compare(ratioForAccepts, that.ratioForAccepts) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(historySeconds, requestsPadding, ratioForAccepts);
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
@@ -145,7 +183,7 @@ final class AdaptiveThrottler implements Throttler {
   }
 
   /** Builder for {@link AdaptiveThrottler}. */
-  static final class Builder {
+  public static final class Builder {
 
     private float ratioForAccepts = DEFAULT_RATIO_FOR_ACCEPT;
     private int historySeconds = DEFAULT_HISTORY_SECONDS;
@@ -153,16 +191,19 @@ final class AdaptiveThrottler implements Throttler {
     private TimeProvider timeProvider = TimeProvider.SYSTEM_TIME_PROVIDER;
 
     public Builder setRatioForAccepts(float ratioForAccepts) {
+      checkArgument(ratioForAccepts > 0, "ratioForAccepts must be positive");
       this.ratioForAccepts = ratioForAccepts;
       return this;
     }
 
     public Builder setHistorySeconds(int historySeconds) {
+      checkArgument(historySeconds > 0, "historySeconds must be positive");
       this.historySeconds = historySeconds;
       return this;
     }
 
     public Builder setRequestsPadding(int requestsPadding) {
+      checkArgument(requestsPadding > 0, "requestsPadding must be positive");
       this.requestsPadding = requestsPadding;
       return this;
     }
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.ForwardingClientCall.SimpleForwardingClientCall;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
+
+/**
+ * Rejects calls locally, without sending them, with the probability computed by an {@link
+ * AdaptiveThrottler} from how many recent calls the backends rejected. A call is counted as
+ * rejected by the backend if it fails with {@code UNAVAILABLE} or {@code RESOURCE_EXHAUSTED}.
+ * Locally rejected calls fail with {@code RESOURCE_EXHAUSTED}, on the executor of the call, the
+ * same as calls failing before they get a stream.
+ *
+ * <p>The channel installs it itself when the service config has an {@code adaptiveThrottling}
+ * policy.
+ */
+public final class AdaptiveThrottlingInterceptor implements ClientInterceptor {
+  static final Status THROTTLED_STATUS =
+      Status.RESOURCE_EXHAUSTED.withDescription("Call throttled locally by adaptive throttling");
+
+  private final AdaptiveThrottler throttler;
+  private final Executor defaultExecutor;
+
+  /**
+   * Creates an interceptor failing throttled calls on {@code defaultExecutor} if their {@link
+   * CallOptions} have no executor.
+   */
+  public AdaptiveThrottlingInterceptor(AdaptiveThrottler throttler, Executor defaultExecutor) {
+    this.throttler = checkNotNull(throttler, "throttler");
+    this.defaultExecutor = checkNotNull(defaultExecutor, "defaultExecutor");
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    Executor callExecutor = callOptions.getExecutor();
+    if (callExecutor == null) {
+      callExecutor = defaultExecutor;
+    }
+    return throttle(next.newCall(method, callOptions), throttler, callExecutor);
+  }
+
+  static <ReqT, RespT> ClientCall<ReqT, RespT> throttle(
+      ClientCall<ReqT, RespT> call, AdaptiveThrottler throttler, Executor callExecutor) {
+    return new ThrottlingClientCall<>(call, throttler, callExecutor);
+  }
+
+  private static boolean isRejectedByBackend(Status status) {
+    switch (status.getCode()) {
+      case UNAVAILABLE:
+      case RESOURCE_EXHAUSTED:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static final class ThrottlingClientCall<ReqT, RespT>
+      extends SimpleForwardingClientCall<ReqT, RespT> {
+    private final AdaptiveThrottler throttler;
+    private final Executor callExecutor;
+    // Only accessed by the application thread, like the other ClientCall methods.
+    private boolean throttled;
+
+    ThrottlingClientCall(
+        ClientCall<ReqT, RespT> delegate, AdaptiveThrottler throttler, Executor callExecutor) {
+      super(delegate);
+      this.throttler = throttler;
+      this.callExecutor = checkNotNull(callExecutor, "callExecutor");
+    }
+
+    @Override
+    public void start(final Listener<RespT> responseListener, Metadata headers) {
+      if (throttler.shouldThrottle()) {
+        throttled = true;
+        // Fail the call on its executor, like ClientCallImpl does when it cannot start a stream.
+        final class ClosedByThrottling extends ContextRunnable {
+          ClosedByThrottling() {
+            super(Context.current());
+          }
+
+          @Override
+          public void runInContext() {
+            responseListener.onClose(THROTTLED_STATUS, new Metadata());
+          }
+        }
+
+        callExecutor.execute(new ClosedByThrottling());
+        return;
+      }
+      super.start(
+          new SimpleForwardingClientCallListener<RespT>(responseListener) {
+            @Override
+            public void onClose(Status status, Metadata trailers) {
+              throttler.registerBackendResponse(isRejectedByBackend(status));
+              super.onClose(status, trailers);
+            }
+          },
+          headers);
+    }
+
+    @Override
+    public void request(int numMessages) {
+      if (!throttled) {
+        super.request(numMessages);
+      }
+    }
+
+    @Override
+    public void cancel(@Nullable String message, @Nullable Throwable cause) {
+      if (!throttled) {
+        super.cancel(message, cause);
+      }
+    }
+
+    @Override
+    public void halfClose() {
+      if (!throttled) {
+        super.halfClose();
+      }
+    }
+
+    @Override
+    public void sendMessage(ReqT message) {
+      if (!throttled) {
+        super.sendMessage(message);
+      }
+    }
+
+    @Override
+    public boolean isReady() {
+      return !throttled && super.isReady();
+    }
+  }
+}
@@ -42,7 +42,7 @@ final class ChannelTracer {
   static final Logger logger = Logger.getLogger(ChannelLogger.class.getName());
   private final Object lock = new Object();
   private final InternalLogId logId;
-  @GuardedBy("lock")
+  // The reference is immutable, its contents are guarded by lock.
   @Nullable
   private final Collection<Event> events;
   private final long channelCreationTimeNanos;
@@ -107,16 +107,16 @@ final class ChannelTracer {
   }
 
   boolean isTraceEnabled() {
-    synchronized (lock) {
-      return events != null;
-    }
+    // events is final, so there is no need to take the lock just to check it
+    return events != null;
   }
 
   void traceOnly(Event event) {
+    if (events == null) {
+      return;
+    }
     synchronized (lock) {
-      if (events != null) {
-        events.add(event);
-      }
+      events.add(event);
     }
   }
 
@@ -21,6 +21,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.grpc.CallOptions;
 import io.grpc.Context;
+import io.grpc.Deadline;
 import io.grpc.InternalChannelz.SocketStats;
 import io.grpc.InternalLogId;
 import io.grpc.LoadBalancer.PickResult;
@@ -64,6 +65,8 @@ final class DelayedClientTransport implements ManagedClientTransport {
   private Runnable reportTransportTerminated;
   private Listener listener;
 
+  private final LongCounter expiredStreams = LongCounterFactory.create();
+
   @Nonnull
   @GuardedBy("lock")
   private Collection<PendingStream> pendingStreams = new LinkedHashSet<>();
@@ -253,6 +256,14 @@ final class DelayedClientTransport implements ManagedClientTransport {
     // shutdown().
   }
 
+  /**
+   * Returns the number of pending streams failed by {@link #reprocess} because their deadline
+   * expired before a transport was picked for them.
+   */
+  final long getExpiredStreamsCount() {
+    return expiredStreams.value();
+  }
+
   public final boolean hasPendingStreams() {
     synchronized (lock) {
       return !pendingStreams.isEmpty();
@@ -289,6 +300,22 @@ final class DelayedClientTransport implements ManagedClientTransport {
     ArrayList<PendingStream> toRemove = new ArrayList<>();
 
     for (final PendingStream stream : toProcess) {
+      if (stream.isDeadlineExpired()) {
+        // The deadline expired while the stream was waiting for a transport. Fail it here instead
+        // of sending it, since the server would only reject it.
+        expiredStreams.add(1);
+        Runnable runnable = stream.setStream(
+            new FailingClientStream(
+                Status.DEADLINE_EXCEEDED.withDescription(
+                    "Deadline expired while waiting for a transport"),
+                RpcProgress.DROPPED));
+        if (runnable != null) {
+          // Drain in-line, the same as shutdownNow(), as the failing stream throws everything away.
+          runnable.run();
+        }
+        toRemove.add(stream);
+        continue;
+      }
       PickResult pickResult = picker.pickSubchannel(stream.args);
       CallOptions callOptions = stream.args.getCallOptions();
       final ClientTransport transport = GrpcUtil.getTransportFromPickResult(pickResult,
@@ -351,6 +378,17 @@ final class DelayedClientTransport implements ManagedClientTransport {
       this.args = args;
     }
 
+    private boolean isDeadlineExpired() {
+      Deadline deadline = args.getCallOptions().getDeadline();
+      Deadline contextDeadline = context.getDeadline();
+      if (deadline == null) {
+        deadline = contextDeadline;
+      } else if (contextDeadline != null) {
+        deadline = deadline.minimum(contextDeadline);
+      }
+      return deadline != null && deadline.isExpired();
+    }
+
     /** Runnable may be null. */
     private Runnable createRealStream(ClientTransport transport) {
       ClientStream realStream;
@@ -25,4 +25,10 @@ public interface LongCounter {
 
   /** Returns the value of this counter. */
   long value();
+
+  /**
+   * Returns the value of this counter and resets it to zero. Every concurrent update is included
+   * in exactly one of the values returned.
+   */
+  long sumThenReset();
 }
@@ -20,15 +20,13 @@ package io.grpc.internal;
  * A factory for creating {@link LongCounter} objects. The concrete implementation returned may
  * be platform dependent.
  */
-final class LongCounterFactory {
+public final class LongCounterFactory {
   /**
-   * Creates a LongCounter.
+   * Creates a LongCounter. The returned counter is striped so that concurrent updates from many
+   * threads do not contend on a single memory location, and does not depend on JDK8's
+   * {@code LongAdder} or reflection.
    */
   public static LongCounter create() {
-    if (ReflectionLongAdderCounter.isAvailable()) {
-      return new ReflectionLongAdderCounter();
-    } else {
-      return new AtomicLongCounter();
-    }
+    return new StripedLongCounter();
   }
 }
@@ -292,6 +292,8 @@ final class ManagedChannelImpl extends ManagedChannel implements
 
   private final long perRpcBufferLimit;
   private final long channelBufferLimit;
+  @Nullable
+  private final RetryBufferPool retryBufferPool;
 
   // Temporary false flag that can skip the retry code path.
   private final boolean retryEnabled;
@@ -325,6 +327,7 @@ final class ManagedChannelImpl extends ManagedChannel implements
         ChannelStats.Builder builder = new InternalChannelz.ChannelStats.Builder();
         channelCallTracer.updateBuilder(builder);
         channelTracer.updateBuilder(builder);
+        builder.setCallsExpired(delayedTransport.getExpiredStreamsCount());
         builder.setTarget(target).setState(channelStateManager.getState());
         List<InternalWithLogId> children = new ArrayList<>();
         children.addAll(subchannels);
@@ -551,6 +554,7 @@ final class ManagedChannelImpl extends ManagedChannel implements
                 channelBufferUsed,
                 perRpcBufferLimit,
                 channelBufferLimit,
+                retryBufferPool,
                 getCallExecutor(callOptions),
                 transportFactory.getScheduledExecutorService(),
                 retryPolicy,
@@ -701,6 +705,8 @@ final class ManagedChannelImpl extends ManagedChannel implements
 
     this.channelBufferLimit = builder.retryBufferSize;
     this.perRpcBufferLimit = builder.perRpcBufferLimit;
+    this.retryBufferPool =
+        builder.retryBufferPoolingEnabled ? RetryBufferPool.getDefault() : null;
     final class ChannelCallTracerFactory implements CallTracer.Factory {
       @Override
       public CallTracer create() {
@@ -937,7 +943,7 @@ final class ManagedChannelImpl extends ManagedChannel implements
       @Override
       public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(
           MethodDescriptor<RequestT, ResponseT> method, CallOptions callOptions) {
-        return new ClientCallImpl<>(
+        ClientCall<RequestT, ResponseT> call = new ClientCallImpl<>(
             method,
             getCallExecutor(callOptions),
             callOptions,
@@ -948,6 +954,12 @@ final class ManagedChannelImpl extends ManagedChannel implements
             .setFullStreamDecompression(fullStreamDecompression)
             .setDecompressorRegistry(decompressorRegistry)
             .setCompressorRegistry(compressorRegistry);
+        AdaptiveThrottler throttler = lastServiceConfig.getAdaptiveThrottling();
+        if (throttler != null) {
+          call = AdaptiveThrottlingInterceptor.throttle(
+              call, throttler, getCallExecutor(callOptions));
+        }
+        return call;
       }
 
       @Override
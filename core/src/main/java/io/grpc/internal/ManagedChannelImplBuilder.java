@@ -142,6 +142,7 @@ public final class ManagedChannelImplBuilder
   int maxHedgedAttempts = 5;
   long retryBufferSize = DEFAULT_RETRY_BUFFER_SIZE_IN_BYTES;
   long perRpcBufferLimit = DEFAULT_PER_RPC_BUFFER_LIMIT_IN_BYTES;
+  boolean retryBufferPoolingEnabled;
   boolean retryEnabled = false; // TODO(zdapeng): default to true
   // Temporarily disable retry when stats or tracing is enabled to avoid breakage, until we know
   // what should be the desired behavior for retry + stats/tracing.
@@ -600,6 +601,15 @@ public final class ManagedChannelImplBuilder
     tracingEnabled = value;
   }
 
+  /**
+   * Disable or enable pooling of the retry buffer. When enabled, each message of a retriable or
+   * hedged RPC is serialized once into a pooled buffer shared by all its attempts, instead of
+   * keeping the message and serializing it again for each attempt. Disabled by default.
+   */
+  public void setRetryBufferPoolingEnabled(boolean value) {
+    retryBufferPoolingEnabled = value;
+  }
+
   /**
    * Verifies the authority is valid.
    */
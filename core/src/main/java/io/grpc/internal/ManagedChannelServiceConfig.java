@@ -47,6 +47,8 @@ final class ManagedChannelServiceConfig {
   @Nullable
   private final Throttle retryThrottling;
   @Nullable
+  private final AdaptiveThrottler adaptiveThrottling;
+  @Nullable
   private final Object loadBalancingConfig;
   @Nullable
   private final Map<String, ?> healthCheckingConfig;
@@ -56,12 +58,14 @@ final class ManagedChannelServiceConfig {
       Map<String, MethodInfo> serviceMethodMap,
       Map<String, MethodInfo> serviceMap,
       @Nullable Throttle retryThrottling,
+      @Nullable AdaptiveThrottler adaptiveThrottling,
       @Nullable Object loadBalancingConfig,
       @Nullable Map<String, ?> healthCheckingConfig) {
     this.defaultMethodConfig = defaultMethodConfig;
     this.serviceMethodMap = Collections.unmodifiableMap(new HashMap<>(serviceMethodMap));
     this.serviceMap = Collections.unmodifiableMap(new HashMap<>(serviceMap));
     this.retryThrottling = retryThrottling;
+    this.adaptiveThrottling = adaptiveThrottling;
     this.loadBalancingConfig = loadBalancingConfig;
     this.healthCheckingConfig =
         healthCheckingConfig != null
@@ -77,6 +81,7 @@ final class ManagedChannelServiceConfig {
             new HashMap<String, MethodInfo>(),
             new HashMap<String, MethodInfo>(),
             /* retryThrottling= */ null,
+            /* adaptiveThrottling= */ null,
             /* loadBalancingConfig= */ null,
             /* healthCheckingConfig= */ null);
   }
@@ -94,6 +99,8 @@ final class ManagedChannelServiceConfig {
     if (retryEnabled) {
       retryThrottling = ServiceConfigUtil.getThrottlePolicy(serviceConfig);
     }
+    AdaptiveThrottler adaptiveThrottling =
+        ServiceConfigUtil.getAdaptiveThrottlingPolicy(serviceConfig);
     Map<String, MethodInfo> serviceMethodMap = new HashMap<>();
     Map<String, MethodInfo> serviceMap = new HashMap<>();
     Map<String, ?> healthCheckingConfig =
@@ -112,6 +119,7 @@ final class ManagedChannelServiceConfig {
               serviceMethodMap,
               serviceMap,
               retryThrottling,
+              adaptiveThrottling,
               loadBalancingConfig,
               healthCheckingConfig);
     }
@@ -161,6 +169,7 @@ final class ManagedChannelServiceConfig {
             serviceMethodMap,
             serviceMap,
             retryThrottling,
+            adaptiveThrottling,
             loadBalancingConfig,
             healthCheckingConfig);
   }
@@ -194,6 +203,15 @@ final class ManagedChannelServiceConfig {
     return retryThrottling;
   }
 
+  /**
+   * Returns the throttler shared by all the calls of the channel, or {@code null} if calls are not
+   * throttled.
+   */
+  @Nullable
+  AdaptiveThrottler getAdaptiveThrottling() {
+    return adaptiveThrottling;
+  }
+
   @Nullable
   MethodInfo getMethodConfig(MethodDescriptor<?, ?> method) {
     MethodInfo methodInfo = serviceMethodMap.get(method.getFullMethodName());
@@ -219,12 +237,14 @@ final class ManagedChannelServiceConfig {
     return Objects.equal(serviceMethodMap, that.serviceMethodMap)
         && Objects.equal(serviceMap, that.serviceMap)
         && Objects.equal(retryThrottling, that.retryThrottling)
+        && Objects.equal(adaptiveThrottling, that.adaptiveThrottling)
         && Objects.equal(loadBalancingConfig, that.loadBalancingConfig);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(serviceMethodMap, serviceMap, retryThrottling, loadBalancingConfig);
+    return Objects.hashCode(
+        serviceMethodMap, serviceMap, retryThrottling, adaptiveThrottling, loadBalancingConfig);
   }
 
   @Override
@@ -233,6 +253,7 @@ final class ManagedChannelServiceConfig {
         .add("serviceMethodMap", serviceMethodMap)
         .add("serviceMap", serviceMap)
         .add("retryThrottling", retryThrottling)
+        .add("adaptiveThrottling", adaptiveThrottling)
         .add("loadBalancingConfig", loadBalancingConfig)
         .toString();
   }
@@ -308,6 +308,7 @@ final class OobChannel extends ManagedChannel implements InternalInstrumented<Ch
     final ChannelStats.Builder builder = new ChannelStats.Builder();
     channelCallsTracer.updateBuilder(builder);
     channelTracer.updateBuilder(builder);
+    builder.setCallsExpired(delayedTransport.getExpiredStreamsCount());
     builder
         .setTarget(authority)
         .setState(subchannel.getState())
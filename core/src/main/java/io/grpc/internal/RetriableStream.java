@@ -31,6 +31,7 @@ import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.Status;
 import io.grpc.internal.ClientStreamListener.RpcProgress;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -80,6 +81,8 @@ abstract class RetriableStream<ReqT> implements ClientStream {
   private final long perRpcBufferLimit;
   private final long channelBufferLimit;
   @Nullable
+  private final RetryBufferPool bufferPool;
+  @Nullable
   private final Throttle throttle;
   @GuardedBy("lock")
   private final InsightBuilder closedSubstreamsInsight = new InsightBuilder();
@@ -98,6 +101,12 @@ abstract class RetriableStream<ReqT> implements ClientStream {
   @GuardedBy("lock")
   private long perRpcBufferUsed;
 
+  // The serialized messages referenced by the buffer. Set to null once no attempt can replay the
+  // buffer any more, at which point they are released.
+  @GuardedBy("lock")
+  @Nullable
+  private List<SerializedMessage> bufferedMessages;
+
   private ClientStreamListener masterListener;
   @GuardedBy("lock")
   private FutureCanceller scheduledRetry;
@@ -111,10 +120,31 @@ abstract class RetriableStream<ReqT> implements ClientStream {
       Executor callExecutor, ScheduledExecutorService scheduledExecutorService,
       @Nullable RetryPolicy retryPolicy, @Nullable HedgingPolicy hedgingPolicy,
       @Nullable Throttle throttle) {
+    this(
+        method, headers, channelBufferUsed, perRpcBufferLimit, channelBufferLimit, null,
+        callExecutor, scheduledExecutorService, retryPolicy, hedgingPolicy, throttle);
+  }
+
+  /**
+   * If {@code bufferPool} is not null, each outbound message is serialized once into an array of
+   * the pool, which is shared by all the attempts that send it and returned to the pool once the
+   * RPC no longer needs to replay it.
+   */
+  RetriableStream(
+      MethodDescriptor<ReqT, ?> method, Metadata headers,
+      ChannelBufferMeter channelBufferUsed, long perRpcBufferLimit, long channelBufferLimit,
+      @Nullable RetryBufferPool bufferPool,
+      Executor callExecutor, ScheduledExecutorService scheduledExecutorService,
+      @Nullable RetryPolicy retryPolicy, @Nullable HedgingPolicy hedgingPolicy,
+      @Nullable Throttle throttle) {
     this.method = method;
     this.channelBufferUsed = channelBufferUsed;
     this.perRpcBufferLimit = perRpcBufferLimit;
     this.channelBufferLimit = channelBufferLimit;
+    this.bufferPool = bufferPool;
+    if (bufferPool != null) {
+      this.bufferedMessages = new ArrayList<>();
+    }
     this.callExecutor = callExecutor;
     this.scheduledExecutorService = scheduledExecutorService;
     this.headers = headers;
@@ -142,6 +172,9 @@ abstract class RetriableStream<ReqT> implements ClientStream {
       final Collection<Substream> savedDrainedSubstreams = state.drainedSubstreams;
 
       state = state.committed(winningSubstream);
+      if (state.passThrough) {
+        releaseBufferedMessages();
+      }
 
       // subtract the share of this RPC from channelBufferUsed.
       channelBufferUsed.addAndGet(-perRpcBufferUsed);
@@ -256,6 +289,9 @@ abstract class RetriableStream<ReqT> implements ClientStream {
         }
         if (index == savedState.buffer.size()) { // I'm drained
           state = savedState.substreamDrained(substream);
+          if (state.passThrough) {
+            releaseBufferedMessages();
+          }
           return;
         }
 
@@ -445,6 +481,10 @@ abstract class RetriableStream<ReqT> implements ClientStream {
     Runnable runnable = commit(noopSubstream);
 
     if (runnable != null) {
+      synchronized (lock) {
+        // No attempt replays the buffer after the noop substream has won.
+        releaseBufferedMessages();
+      }
       masterListener.closed(reason, RpcProgress.PROCESSED, new Metadata());
       runnable.run();
       return;
@@ -454,14 +494,38 @@ abstract class RetriableStream<ReqT> implements ClientStream {
     synchronized (lock) {
       // This is not required, but causes a short-circuit in the draining process.
       state = state.cancelled();
+      releaseBufferedMessages();
+    }
+  }
+
+  @GuardedBy("lock")
+  private void releaseBufferedMessages() {
+    if (bufferedMessages == null) {
+      return;
     }
+    for (SerializedMessage message : bufferedMessages) {
+      message.release();
+    }
+    bufferedMessages = null;
   }
 
   private void delayOrExecute(BufferEntry bufferEntry) {
+    delayOrExecute(bufferEntry, null);
+  }
+
+  /**
+   * Buffers the entry and runs it with the drained substreams. If {@code message} is not null,
+   * the buffer holds a reference to it as long as an attempt may replay the entry.
+   */
+  private void delayOrExecute(BufferEntry bufferEntry, @Nullable SerializedMessage message) {
     Collection<Substream> savedDrainedSubstreams;
     synchronized (lock) {
       if (!state.passThrough) {
         state.buffer.add(bufferEntry);
+        if (message != null && bufferedMessages != null) {
+          message.retain();
+          bufferedMessages.add(message);
+        }
       }
       savedDrainedSubstreams = state.drainedSubstreams;
     }
@@ -487,6 +551,11 @@ abstract class RetriableStream<ReqT> implements ClientStream {
       return;
     }
 
+    if (bufferPool != null) {
+      sendSerializedMessage(serialize(message));
+      return;
+    }
+
     class SendMessageEntry implements BufferEntry {
       @Override
       public void runWith(Substream substream) {
@@ -497,6 +566,37 @@ abstract class RetriableStream<ReqT> implements ClientStream {
     delayOrExecute(new SendMessageEntry());
   }
 
+  private SerializedMessage serialize(ReqT message) {
+    try {
+      return SerializedMessage.serialize(method.streamRequest(message), bufferPool);
+    } catch (IOException e) {
+      throw Status.INTERNAL
+          .withDescription("Failed to serialize message")
+          .withCause(e)
+          .asRuntimeException();
+    }
+  }
+
+  private void sendSerializedMessage(final SerializedMessage message) {
+    class SendSerializedMessageEntry implements BufferEntry {
+      @Override
+      public void runWith(Substream substream) {
+        InputStream stream = message.tryOpenStream();
+        // The message is only released before all the attempts have sent it if they have lost to
+        // another attempt, or the RPC is cancelled.
+        if (stream != null) {
+          substream.stream.writeMessage(stream);
+        }
+      }
+    }
+
+    try {
+      delayOrExecute(new SendSerializedMessageEntry(), message);
+    } finally {
+      message.release();
+    }
+  }
+
   @Override
   public final void request(final int numMessages) {
     State savedState = state;
@@ -1241,13 +1341,17 @@ abstract class RetriableStream<ReqT> implements ClientStream {
               channelBufferUsed.addAndGet(bufferNeeded - perRpcBufferUsed);
           perRpcBufferUsed = bufferNeeded;
 
-          if (savedChannelBufferUsed > channelBufferLimit) {
+          if (savedChannelBufferUsed > channelBufferLimit
+              || channelBufferUsed.isProcessBudgetExceeded()) {
             substream.bufferLimitExceeded = true;
           }
         }
 
         if (substream.bufferLimitExceeded) {
           postCommitTask = commit(substream);
+          if (postCommitTask != null) {
+            channelBufferUsed.recordBufferLimitCommit();
+          }
         }
       }
 
@@ -1263,11 +1367,42 @@ abstract class RetriableStream<ReqT> implements ClientStream {
    */
   static final class ChannelBufferMeter {
     private final AtomicLong bufferUsed = new AtomicLong();
+    private final LongCounter bufferLimitCommits = LongCounterFactory.create();
+    private final RetryBufferBudget processBudget;
+
+    ChannelBufferMeter() {
+      this(RetryBufferBudget.getGlobal());
+    }
 
+    ChannelBufferMeter(RetryBufferBudget processBudget) {
+      this.processBudget = checkNotNull(processBudget, "processBudget");
+    }
+
+    /** Also accounts the bytes to the budget of the process. */
     @VisibleForTesting
     long addAndGet(long newBytesUsed) {
+      processBudget.addAndGet(newBytesUsed);
       return bufferUsed.addAndGet(newBytesUsed);
     }
+
+    boolean isProcessBudgetExceeded() {
+      return processBudget.isExceeded();
+    }
+
+    void recordBufferLimitCommit() {
+      bufferLimitCommits.add(1);
+      processBudget.recordBufferLimitCommit();
+    }
+
+    /** Returns the number of bytes the channel currently buffers for retry and hedging. */
+    long getBufferedBytes() {
+      return bufferUsed.get();
+    }
+
+    /** Returns the number of RPCs committed because a buffer limit was exceeded. */
+    long getBufferLimitCommits() {
+      return bufferLimitCommits.value();
+    }
   }
 
   /**
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A budget for the memory used to buffer the messages of retriable and hedged RPCs, shared by
+ * all the channels of the process on top of the buffer limit of each channel. When the budget is
+ * exceeded, an RPC that needs more buffer is committed to its current attempt, the same as when
+ * the buffer limit of its channel is exceeded.
+ *
+ * <p>The limit of the global budget is unlimited unless set by {@link #setLimit}, or by the
+ * {@value #LIMIT_PROPERTY} system property.
+ */
+@ThreadSafe
+public final class RetryBufferBudget {
+  static final String LIMIT_PROPERTY = "io.grpc.internal.RetryBufferBudget.limit";
+
+  private static final RetryBufferBudget GLOBAL =
+      new RetryBufferBudget(Long.getLong(LIMIT_PROPERTY, Long.MAX_VALUE));
+
+  private final AtomicLong bufferUsed = new AtomicLong();
+  private final LongCounter bufferLimitCommits = LongCounterFactory.create();
+  private volatile long limit;
+
+  @VisibleForTesting
+  RetryBufferBudget(long limit) {
+    checkArgument(limit > 0, "limit must be positive");
+    this.limit = limit;
+  }
+
+  /** Returns the budget shared by all the channels of the process. */
+  public static RetryBufferBudget getGlobal() {
+    return GLOBAL;
+  }
+
+  /** Sets the maximum number of bytes buffered for retry and hedging across all the channels. */
+  public void setLimit(long bytes) {
+    checkArgument(bytes > 0, "limit must be positive");
+    limit = bytes;
+  }
+
+  public long getLimit() {
+    return limit;
+  }
+
+  /** Returns the number of bytes currently buffered for retry and hedging. */
+  public long getBufferedBytes() {
+    return bufferUsed.get();
+  }
+
+  /**
+   * Returns the number of RPCs committed to their current attempt because a buffer limit, of an
+   * RPC, a channel or the process, was exceeded.
+   */
+  public long getBufferLimitCommits() {
+    return bufferLimitCommits.value();
+  }
+
+  long addAndGet(long newBytesUsed) {
+    return bufferUsed.addAndGet(newBytesUsed);
+  }
+
+  boolean isExceeded() {
+    return bufferUsed.get() > limit;
+  }
+
+  void recordBufferLimitCommit() {
+    bufferLimitCommits.add(1);
+  }
+}
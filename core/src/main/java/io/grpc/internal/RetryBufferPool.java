@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A pool of the byte arrays holding the serialized messages that {@link RetriableStream} buffers
+ * for retry and hedging. The arrays are pooled in power of two size classes, and the pool keeps
+ * at most a fixed number of idle bytes. Arrays too large for any size class are not pooled.
+ */
+@ThreadSafe
+final class RetryBufferPool {
+  @VisibleForTesting
+  static final int MIN_POOLED_SIZE = 1 << 10;
+  @VisibleForTesting
+  static final int MAX_POOLED_SIZE = 1 << 20;
+  private static final long DEFAULT_MAX_IDLE_BYTES = 16L * 1024 * 1024;
+  private static final RetryBufferPool DEFAULT = new RetryBufferPool(DEFAULT_MAX_IDLE_BYTES);
+
+  private final long maxIdleBytes;
+  private final Object lock = new Object();
+  @GuardedBy("lock")
+  private final List<ArrayDeque<byte[]>> idleArrays;
+  @GuardedBy("lock")
+  private long idleBytes;
+
+  @VisibleForTesting
+  RetryBufferPool(long maxIdleBytes) {
+    checkArgument(maxIdleBytes >= 0, "maxIdleBytes must not be negative");
+    this.maxIdleBytes = maxIdleBytes;
+    int sizeClasses = sizeClass(MAX_POOLED_SIZE) + 1;
+    this.idleArrays = new ArrayList<>(sizeClasses);
+    for (int i = 0; i < sizeClasses; i++) {
+      idleArrays.add(new ArrayDeque<byte[]>());
+    }
+  }
+
+  /** Returns the pool shared by all the channels of the process. */
+  static RetryBufferPool getDefault() {
+    return DEFAULT;
+  }
+
+  /** Returns an array of at least {@code size} bytes. Its content is undefined. */
+  byte[] allocate(int size) {
+    checkArgument(size >= 0, "size must not be negative");
+    if (size > MAX_POOLED_SIZE) {
+      return new byte[size];
+    }
+    int sizeClass = sizeClass(size);
+    synchronized (lock) {
+      byte[] array = idleArrays.get(sizeClass).poll();
+      if (array != null) {
+        idleBytes -= array.length;
+        return array;
+      }
+    }
+    return new byte[MIN_POOLED_SIZE << sizeClass];
+  }
+
+  /** Returns an array to the pool. The caller must not use the array afterwards. */
+  void free(byte[] array) {
+    int length = array.length;
+    if (length < MIN_POOLED_SIZE || length > MAX_POOLED_SIZE || Integer.bitCount(length) != 1) {
+      return;
+    }
+    synchronized (lock) {
+      if (idleBytes + length > maxIdleBytes) {
+        return;
+      }
+      idleArrays.get(sizeClass(length)).add(array);
+      idleBytes += length;
+    }
+  }
+
+  /** Returns the number of bytes held by the idle arrays of the pool. */
+  long getIdleBytes() {
+    synchronized (lock) {
+      return idleBytes;
+    }
+  }
+
+  private static int sizeClass(int size) {
+    if (size <= MIN_POOLED_SIZE) {
+      return 0;
+    }
+    int roundedUp = Integer.highestOneBit(size - 1) << 1;
+    return Integer.numberOfTrailingZeros(roundedUp)
+        - Integer.numberOfTrailingZeros(MIN_POOLED_SIZE);
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static com.google.common.base.Preconditions.checkState;
+
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A message serialized once into an array of a {@link RetryBufferPool}, so that it can be sent on
+ * several retry or hedging attempts without serializing it again.
+ *
+ * <p>The message is reference counted. It is created with one reference, and every stream opened
+ * on it holds one more until the stream is closed. The array goes back to the pool when the last
+ * reference is released.
+ */
+@ThreadSafe
+final class SerializedMessage {
+  private static final int DEFAULT_SIZE_HINT = 4096;
+
+  private final RetryBufferPool pool;
+  private final byte[] array;
+  private final int length;
+  private final AtomicInteger refCount = new AtomicInteger(1);
+
+  private SerializedMessage(RetryBufferPool pool, byte[] array, int length) {
+    this.pool = pool;
+    this.array = array;
+    this.length = length;
+  }
+
+  /** Reads {@code message} to the end into an array of {@code pool}, and closes it. */
+  static SerializedMessage serialize(InputStream message, RetryBufferPool pool)
+      throws IOException {
+    try {
+      int sizeHint = DEFAULT_SIZE_HINT;
+      if (message instanceof KnownLength) {
+        sizeHint = message.available();
+      }
+      byte[] array = pool.allocate(sizeHint);
+      int length = 0;
+      try {
+        while (true) {
+          if (length == array.length) {
+            int b = message.read();
+            if (b == -1) {
+              break;
+            }
+            byte[] larger = pool.allocate(Math.max(array.length * 2, length + 1));
+            System.arraycopy(array, 0, larger, 0, length);
+            pool.free(array);
+            array = larger;
+            array[length++] = (byte) b;
+          }
+          int read = message.read(array, length, array.length - length);
+          if (read == -1) {
+            break;
+          }
+          length += read;
+        }
+      } catch (IOException | RuntimeException e) {
+        pool.free(array);
+        throw e;
+      }
+      return new SerializedMessage(pool, array, length);
+    } finally {
+      GrpcUtil.closeQuietly(message);
+    }
+  }
+
+  int length() {
+    return length;
+  }
+
+  /**
+   * Adds a reference to the message. Returns {@code false}, without adding it, if the last
+   * reference has already been released.
+   */
+  boolean retain() {
+    while (true) {
+      int count = refCount.get();
+      if (count == 0) {
+        return false;
+      }
+      if (refCount.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /** Releases a reference to the message. */
+  void release() {
+    int count = refCount.decrementAndGet();
+    checkState(count >= 0, "Message already released");
+    if (count == 0) {
+      pool.free(array);
+    }
+  }
+
+  /**
+   * Opens a stream reading the message, holding a reference to it until the stream is closed.
+   * Returns {@code null} if the last reference to the message has already been released.
+   */
+  @Nullable
+  InputStream tryOpenStream() {
+    if (!retain()) {
+      return null;
+    }
+    return new MessageStream();
+  }
+
+  private final class MessageStream extends InputStream implements KnownLength, Drainable {
+    private int position;
+    private boolean closed;
+
+    @Override
+    public int read() throws IOException {
+      checkOpen();
+      if (position == length) {
+        return -1;
+      }
+      return array[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      checkOpen();
+      checkPositionIndexes(off, off + len, b.length);
+      if (position == length) {
+        return len == 0 ? 0 : -1;
+      }
+      int count = Math.min(len, length - position);
+      System.arraycopy(array, position, b, off, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+      checkOpen();
+      return length - position;
+    }
+
+    @Override
+    public int drainTo(OutputStream target) throws IOException {
+      checkOpen();
+      int count = length - position;
+      target.write(array, position, count);
+      position = length;
+      return count;
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        release();
+      }
+    }
+
+    private void checkOpen() throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+    }
+  }
+}
@@ -33,6 +33,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.grpc.Attributes;
 import io.grpc.BinaryLog;
+import io.grpc.Compressor;
 import io.grpc.CompressorRegistry;
 import io.grpc.Context;
 import io.grpc.Deadline;
@@ -73,6 +74,7 @@ import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
@@ -126,8 +128,11 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
 
   private final InternalChannelz channelz;
   private final CallTracer serverCallTracer;
+  private final LongCounter expiredCalls = LongCounterFactory.create();
   private final Deadline.Ticker ticker;
   private final ServerCallExecutorSupplier executorSupplier;
+  @Nullable
+  private final AdaptiveConcurrencyLimiter concurrencyLimiter;
 
   /**
    * Construct a server.
@@ -163,6 +168,7 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
     this.ticker = checkNotNull(builder.ticker, "ticker");
     channelz.addServer(this);
     this.executorSupplier = builder.executorSupplier;
+    this.concurrencyLimiter = builder.concurrencyLimiter;
   }
 
   /**
@@ -468,8 +474,25 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
       }
     }
 
-    private void streamCreatedInternal(
-        final ServerStream stream, final String methodName, final Metadata headers, final Tag tag) {
+    private void streamCreatedInternal(ServerStream transportStream, final String methodName,
+        final Metadata headers, final Tag tag) {
+      // Shed load before doing any work for the call.
+      final ServerStream stream;
+      if (concurrencyLimiter != null) {
+        AdaptiveConcurrencyLimiter.Permit permit =
+            concurrencyLimiter.tryAcquire(methodName, headers);
+        if (permit == null) {
+          transportStream.setListener(NOOP_LISTENER);
+          transportStream.close(
+              Status.RESOURCE_EXHAUSTED.withDescription("Server concurrency limit exceeded"),
+              new Metadata());
+          return;
+        }
+        stream = new PermitReleasingStream(transportStream, permit);
+      } else {
+        stream = transportStream;
+      }
+
       final Executor wrappedExecutor;
       // This is a performance optimization that avoids the synchronization and queuing overhead
       // that comes with SerializingExecutor.
@@ -484,11 +507,10 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
         String encoding = headers.get(MESSAGE_ENCODING_KEY);
         Decompressor decompressor = decompressorRegistry.lookupDecompressor(encoding);
         if (decompressor == null) {
+          Status status = Status.UNIMPLEMENTED.withDescription(
+              String.format("Can't find decompressor for %s", encoding));
           stream.setListener(NOOP_LISTENER);
-          stream.close(
-              Status.UNIMPLEMENTED.withDescription(
-                  String.format("Can't find decompressor for %s", encoding)),
-              new Metadata());
+          stream.close(status, new Metadata());
           return;
         }
         stream.setDecompressor(decompressor);
@@ -612,7 +634,19 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
             return;
           }
           try {
-            listener = startWrappedCall(methodName, Futures.getDone(future), headers);
+            ServerCallParameters<?, ?> callParams = Futures.getDone(future);
+            Deadline deadline = context.getDeadline();
+            if (deadline != null && deadline.isExpired()) {
+              // The deadline expired while the call was queued. Fail it without starting the
+              // handler, so no work is done and no message is deserialized for it.
+              expiredCalls.add(1);
+              callParams.call.close(
+                  Status.DEADLINE_EXCEEDED.withDescription(
+                      "Deadline expired before the call was started"),
+                  new Metadata());
+              return;
+            }
+            listener = startWrappedCall(methodName, callParams, headers);
           } catch (Throwable ex) {
             stream.close(Status.fromThrowable(ex), new Metadata());
             context.cancel(null);
@@ -722,6 +756,7 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
       builder.addListenSockets(stats);
     }
     serverCallTracer.updateBuilder(builder);
+    builder.setCallsExpired(expiredCalls.value());
     SettableFuture<ServerStats> ret = SettableFuture.create();
     ret.set(builder.build());
     return ret;
@@ -952,6 +987,139 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
     }
   }
 
+  /**
+   * A stream releasing the concurrency limiter permit of its call as soon as it is closed, without
+   * waiting for the application to be notified. The permit is released with the status the call
+   * was closed with, as the listener of a stream closed by the server is told it closed with
+   * {@code OK} whatever the status of the call.
+   */
+  private static final class PermitReleasingStream implements ServerStream {
+    private final ServerStream delegate;
+    private final AdaptiveConcurrencyLimiter.Permit permit;
+    @Nullable
+    private volatile Status closeStatus;
+
+    PermitReleasingStream(ServerStream delegate, AdaptiveConcurrencyLimiter.Permit permit) {
+      this.delegate = delegate;
+      this.permit = permit;
+    }
+
+    @Override
+    public void request(int numMessages) {
+      delegate.request(numMessages);
+    }
+
+    @Override
+    public void writeMessage(InputStream message) {
+      delegate.writeMessage(message);
+    }
+
+    @Override
+    public void flush() {
+      delegate.flush();
+    }
+
+    @Override
+    public boolean isReady() {
+      return delegate.isReady();
+    }
+
+    @Override
+    public void optimizeForDirectExecutor() {
+      delegate.optimizeForDirectExecutor();
+    }
+
+    @Override
+    public void setCompressor(Compressor compressor) {
+      delegate.setCompressor(compressor);
+    }
+
+    @Override
+    public void setMessageCompression(boolean enable) {
+      delegate.setMessageCompression(enable);
+    }
+
+    @Override
+    public void writeHeaders(Metadata headers) {
+      delegate.writeHeaders(headers);
+    }
+
+    @Override
+    public void close(Status status, Metadata trailers) {
+      // Only the first close has an effect on the stream.
+      if (closeStatus == null) {
+        closeStatus = status;
+      }
+      delegate.close(status, trailers);
+    }
+
+    @Override
+    public void cancel(Status status) {
+      delegate.cancel(status);
+    }
+
+    @Override
+    public void setDecompressor(Decompressor decompressor) {
+      delegate.setDecompressor(decompressor);
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      return delegate.getAttributes();
+    }
+
+    @Override
+    @Nullable
+    public String getAuthority() {
+      return delegate.getAuthority();
+    }
+
+    @Override
+    public void setListener(ServerStreamListener serverStreamListener) {
+      delegate.setListener(new PermitReleasingListener(serverStreamListener));
+    }
+
+    @Override
+    public StatsTraceContext statsTraceContext() {
+      return delegate.statsTraceContext();
+    }
+
+    @Override
+    public int streamId() {
+      return delegate.streamId();
+    }
+
+    private final class PermitReleasingListener implements ServerStreamListener {
+      private final ServerStreamListener delegate;
+
+      PermitReleasingListener(ServerStreamListener delegate) {
+        this.delegate = delegate;
+      }
+
+      @Override
+      public void messagesAvailable(MessageProducer producer) {
+        delegate.messagesAvailable(producer);
+      }
+
+      @Override
+      public void halfClosed() {
+        delegate.halfClosed();
+      }
+
+      @Override
+      public void closed(Status status) {
+        Status callStatus = closeStatus;
+        permit.release(status.isOk() && callStatus != null ? callStatus : status);
+        delegate.closed(status);
+      }
+
+      @Override
+      public void onReady() {
+        delegate.onReady();
+      }
+    }
+  }
+
   @VisibleForTesting
   static final class ContextCloser implements Runnable {
     private final Context.CancellableContext context;
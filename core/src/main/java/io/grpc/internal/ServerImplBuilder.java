@@ -96,6 +96,8 @@ public final class ServerImplBuilder extends ServerBuilder<ServerImplBuilder> {
   CallTracer.Factory callTracerFactory = CallTracer.getDefaultFactory();
   @Nullable
   ServerCallExecutorSupplier executorSupplier;
+  @Nullable
+  AdaptiveConcurrencyLimiter concurrencyLimiter;
 
   /**
    * An interface to provide to provide transport specific information for the server. This method
@@ -229,6 +231,14 @@ public final class ServerImplBuilder extends ServerBuilder<ServerImplBuilder> {
     tracingEnabled = value;
   }
 
+  /**
+   * Sets the limiter rejecting calls beyond the concurrency the server can handle, or {@code null}
+   * to admit all calls.  Disabled by default.
+   */
+  public void setConcurrencyLimiter(@Nullable AdaptiveConcurrencyLimiter concurrencyLimiter) {
+    this.concurrencyLimiter = concurrencyLimiter;
+  }
+
   /**
    * Sets a custom deadline ticker.  This should only be called from InProcessServerBuilder.
    */
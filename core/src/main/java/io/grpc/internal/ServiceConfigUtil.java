@@ -120,6 +120,55 @@ public final class ServiceConfigUtil {
     return new Throttle(maxTokens, tokenRatio);
   }
 
+  @Nullable
+  static AdaptiveThrottler getAdaptiveThrottlingPolicy(@Nullable Map<String, ?> serviceConfig) {
+    if (serviceConfig == null) {
+      return null;
+    }
+
+    /* schema as follows
+    {
+      "adaptiveThrottling": {
+        // The duration of the history of calls used to compute the throttling probability.
+        //
+        // This field is optional and must be greater than zero. Defaults to 30.
+        "historySeconds": number,
+
+        // Added to the number of calls when computing the throttling probability. Higher
+        // numbers throttle less.
+        //
+        // This field is optional and must be greater than zero. Defaults to 8.
+        "requestsPadding": number,
+
+        // How many more calls are sent than the backends currently accept.
+        //
+        // This field is optional and must be greater than zero. Defaults to 1.2.
+        "ratioForAccepts": number
+      }
+    }
+    */
+
+    Map<String, ?> throttling = JsonUtil.getObject(serviceConfig, "adaptiveThrottling");
+    if (throttling == null) {
+      return null;
+    }
+
+    AdaptiveThrottler.Builder builder = AdaptiveThrottler.builder();
+    Integer historySeconds = JsonUtil.getNumberAsInteger(throttling, "historySeconds");
+    if (historySeconds != null) {
+      builder.setHistorySeconds(historySeconds);
+    }
+    Integer requestsPadding = JsonUtil.getNumberAsInteger(throttling, "requestsPadding");
+    if (requestsPadding != null) {
+      builder.setRequestsPadding(requestsPadding);
+    }
+    Double ratioForAccepts = JsonUtil.getNumber(throttling, "ratioForAccepts");
+    if (ratioForAccepts != null) {
+      builder.setRatioForAccepts(ratioForAccepts.floatValue());
+    }
+    return builder.build();
+  }
+
   @Nullable
   static Integer getMaxAttemptsFromRetryPolicy(Map<String, ?> retryPolicy) {
     return JsonUtil.getNumberAsInteger(retryPolicy, "maxAttempts");
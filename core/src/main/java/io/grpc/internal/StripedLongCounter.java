@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link LongCounter} modeled after JDK8's {@code LongAdder} that does not depend on it. Updates
+ * go to a single base cell until a compare-and-set on it fails, after which the counter inflates
+ * into a set of cache-line padded stripes selected by the updating thread. A thread moves to
+ * another stripe when a compare-and-set on its stripe fails, so that threads colliding on a stripe
+ * spread out. Reading sums the base and all the stripes, so it is not an atomic snapshot when there
+ * are concurrent updates. {@link #sumThenReset} atomically takes each stripe, so that it does not
+ * lose updates and does not block them.
+ */
+final class StripedLongCounter implements LongCounter {
+  /** Number of longs between two stripes, so that stripes do not share a cache line. */
+  private static final int PADDING = 8;
+  private static final int MAX_STRIPES = 64;
+  private static final int DEFAULT_STRIPES =
+      stripeCount(Runtime.getRuntime().availableProcessors());
+  // The hash selecting the stripe of each thread, in a one element array so that it can be updated
+  // without boxing. Shared by all counters, like the probe of LongAdder.
+  private static final ThreadLocal<int[]> probe = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      // Thread ids are sequential, so spread them.
+      long id = Thread.currentThread().getId();
+      int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+      h ^= h >>> 16;
+      return new int[] {h == 0 ? 1 : h};
+    }
+  };
+
+  private final AtomicLong base = new AtomicLong();
+  private final int stripes;
+  private volatile AtomicLongArray cells;
+
+  StripedLongCounter() {
+    this(DEFAULT_STRIPES);
+  }
+
+  @VisibleForTesting
+  StripedLongCounter(int stripes) {
+    this.stripes = stripeCount(stripes);
+  }
+
+  @Override
+  public void add(long delta) {
+    AtomicLongArray cells = this.cells;
+    if (cells == null) {
+      long current = base.get();
+      if (base.compareAndSet(current, current + delta)) {
+        return;
+      }
+      cells = inflate();
+    }
+    int[] threadProbe = probe.get();
+    while (true) {
+      int index = (threadProbe[0] & (stripes - 1)) * PADDING;
+      long current = cells.get(index);
+      if (cells.compareAndSet(index, current, current + delta)) {
+        return;
+      }
+      threadProbe[0] = advanceProbe(threadProbe[0]);
+    }
+  }
+
+  @Override
+  public long value() {
+    long sum = base.get();
+    AtomicLongArray cells = this.cells;
+    if (cells != null) {
+      for (int i = 0; i < cells.length(); i += PADDING) {
+        sum += cells.get(i);
+      }
+    }
+    return sum;
+  }
+
+  @Override
+  public long sumThenReset() {
+    long sum = base.getAndSet(0L);
+    AtomicLongArray cells = this.cells;
+    if (cells != null) {
+      for (int i = 0; i < cells.length(); i += PADDING) {
+        sum += cells.getAndSet(i, 0L);
+      }
+    }
+    return sum;
+  }
+
+  @VisibleForTesting
+  boolean isInflated() {
+    return cells != null;
+  }
+
+  private synchronized AtomicLongArray inflate() {
+    if (cells == null) {
+      cells = new AtomicLongArray(stripes * PADDING);
+    }
+    return cells;
+  }
+
+  /** Returns the next value of a non-zero xorshift sequence, which never returns to zero. */
+  @VisibleForTesting
+  static int advanceProbe(int h) {
+    h ^= h << 13;
+    h ^= h >>> 17;
+    h ^= h << 5;
+    return h;
+  }
+
+  /** Rounds up to a power of two in the range [1, {@link #MAX_STRIPES}]. */
+  private static int stripeCount(int requested) {
+    int count = 1;
+    while (count < requested && count < MAX_STRIPES) {
+      count <<= 1;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.grpc.Metadata;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AdaptiveConcurrencyLimiterTest {
+  private static final String METHOD = "service/method";
+  private static final Metadata.Key<String> PRIORITY_KEY =
+      Metadata.Key.of("priority", Metadata.ASCII_STRING_MARSHALLER);
+
+  private final FakeClock fakeClock = new FakeClock();
+
+  private AdaptiveConcurrencyLimiter.Builder newBuilder() {
+    return AdaptiveConcurrencyLimiter.newBuilder().setTicker(fakeClock.getDeadlineTicker());
+  }
+
+  @Test
+  public void rejectsCallsBeyondLimit() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder().setDefaultLimit(2, 1, 10).build();
+
+    AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(METHOD, new Metadata());
+    assertThat(permit).isNotNull();
+    assertThat(limiter.tryAcquire(METHOD, new Metadata())).isNotNull();
+    assertThat(limiter.tryAcquire(METHOD, new Metadata())).isNull();
+    assertThat(limiter.getInFlight(METHOD)).isEqualTo(2);
+    assertThat(limiter.getRejectedCount()).isEqualTo(1);
+
+    permit.release(Status.CANCELLED);
+
+    assertThat(limiter.getInFlight(METHOD)).isEqualTo(1);
+    assertThat(limiter.tryAcquire(METHOD, new Metadata())).isNotNull();
+  }
+
+  @Test
+  public void methodLimit_notSharedWithDefaultLimit() {
+    AdaptiveConcurrencyLimiter limiter =
+        newBuilder().setDefaultLimit(1, 1, 10).setMethodLimit(METHOD, 1, 1, 10).build();
+
+    assertThat(limiter.tryAcquire(METHOD, new Metadata())).isNotNull();
+    assertThat(limiter.tryAcquire("service/other", new Metadata())).isNotNull();
+    assertThat(limiter.tryAcquire(METHOD, new Metadata())).isNull();
+    assertThat(limiter.tryAcquire("service/another", new Metadata())).isNull();
+    assertThat(limiter.getInFlight(METHOD)).isEqualTo(1);
+    assertThat(limiter.getInFlight("service/other")).isEqualTo(1);
+  }
+
+  @Test
+  public void priorityShare_lowerPriorityShedFirst() {
+    AdaptiveConcurrencyLimiter limiter =
+        newBuilder()
+            .setDefaultLimit(4, 1, 10)
+            .setPriorityKey(PRIORITY_KEY)
+            .setPriorityShare("batch", 0.5)
+            .build();
+    Metadata batch = new Metadata();
+    batch.put(PRIORITY_KEY, "batch");
+
+    assertThat(limiter.tryAcquire(METHOD, batch)).isNotNull();
+    assertThat(limiter.tryAcquire(METHOD, batch)).isNotNull();
+    assertThat(limiter.tryAcquire(METHOD, batch)).isNull();
+    assertThat(limiter.tryAcquire(METHOD, new Metadata())).isNotNull();
+    assertThat(limiter.tryAcquire(METHOD, new Metadata())).isNotNull();
+    assertThat(limiter.tryAcquire(METHOD, new Metadata())).isNull();
+  }
+
+  @Test
+  public void limitGrows_whenLatencyDoesNotIncrease() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder().setDefaultLimit(10, 1, 100).build();
+    List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(limiter, 10);
+    fakeClock.forwardTime(1, TimeUnit.MILLISECONDS);
+
+    for (AdaptiveConcurrencyLimiter.Permit permit : permits) {
+      permit.release(Status.OK);
+    }
+
+    assertThat(limiter.getLimit(METHOD)).isGreaterThan(10);
+  }
+
+  @Test
+  public void limitShrinks_whenLatencyIncreases() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder().setDefaultLimit(10, 1, 100).build();
+    AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(METHOD, new Metadata());
+    fakeClock.forwardTime(1, TimeUnit.MILLISECONDS);
+    permit.release(Status.OK);
+    List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(limiter, 10);
+    fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
+
+    permits.get(0).release(Status.OK);
+
+    assertThat(limiter.getLimit(METHOD)).isEqualTo(9);
+  }
+
+  @Test
+  public void limitShrinks_whenDeadlineExceeded() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder().setDefaultLimit(10, 1, 100).build();
+    AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(METHOD, new Metadata());
+
+    permit.release(Status.DEADLINE_EXCEEDED);
+
+    assertThat(limiter.getLimit(METHOD)).isEqualTo(9);
+  }
+
+  @Test
+  public void limitNotBelowMinLimit() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder().setDefaultLimit(2, 2, 100).build();
+
+    limiter.tryAcquire(METHOD, new Metadata()).release(Status.DEADLINE_EXCEEDED);
+
+    assertThat(limiter.getLimit(METHOD)).isEqualTo(2);
+  }
+
+  @Test
+  public void cancelledCall_doesNotUpdateLimit() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder().setDefaultLimit(10, 1, 100).build();
+    List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(limiter, 10);
+    fakeClock.forwardTime(1, TimeUnit.MILLISECONDS);
+
+    for (AdaptiveConcurrencyLimiter.Permit permit : permits) {
+      permit.release(Status.CANCELLED);
+    }
+
+    assertThat(limiter.getLimit(METHOD)).isEqualTo(10);
+    assertThat(limiter.getInFlight(METHOD)).isEqualTo(0);
+  }
+
+  @Test
+  public void failedCall_doesNotUpdateLimit() {
+    AdaptiveConcurrencyLimiter limiter = newBuilder().setDefaultLimit(10, 1, 100).build();
+    AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(METHOD, new Metadata());
+    fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
+    permit.release(Status.OK);
+
+    // calls failing right away do not lower the latency without load
+    for (AdaptiveConcurrencyLimiter.Permit fastPermit : acquire(limiter, 10)) {
+      fastPermit.release(Status.UNIMPLEMENTED);
+    }
+    assertThat(limiter.getLimit(METHOD)).isEqualTo(10);
+    assertThat(limiter.getInFlight(METHOD)).isEqualTo(0);
+
+    List<AdaptiveConcurrencyLimiter.Permit> permits = acquire(limiter, 10);
+    fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
+    permits.get(0).release(Status.OK);
+
+    assertThat(limiter.getLimit(METHOD)).isGreaterThan(10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidLimit() {
+    newBuilder().setDefaultLimit(0, 1, 10);
+  }
+
+  private static List<AdaptiveConcurrencyLimiter.Permit> acquire(
+      AdaptiveConcurrencyLimiter limiter, int count) {
+    List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(METHOD, new Metadata());
+      assertThat(permit).isNotNull();
+      permits.add(permit);
+    }
+    return permits;
+  }
+}
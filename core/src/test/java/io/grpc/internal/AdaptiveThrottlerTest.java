@@ -14,12 +14,10 @@
  * limitations under the License.
  */
 
-package io.grpc.rls;
+package io.grpc.internal;
 
 import static com.google.common.truth.Truth.assertThat;
 
-import io.grpc.internal.FakeClock;
-import io.grpc.internal.TimeProvider;
 import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
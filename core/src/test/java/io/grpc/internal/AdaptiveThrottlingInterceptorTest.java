@@ -0,0 +1,196 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.testing.TestMethodDescriptors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/** Unit tests for {@link AdaptiveThrottlingInterceptor}. */
+@RunWith(JUnit4.class)
+public class AdaptiveThrottlingInterceptorTest {
+  @Rule
+  public final MockitoRule mocks = MockitoJUnit.rule();
+
+  private final MethodDescriptor<Void, Void> method = TestMethodDescriptors.voidMethod();
+  private final FakeClock fakeClock = new FakeClock();
+  private final AdaptiveThrottler throttler =
+      AdaptiveThrottler.builder()
+          .setRequestsPadding(1)
+          .setTimeProvider(fakeClock.getTimeProvider())
+          .build();
+  private final AdaptiveThrottlingInterceptor interceptor =
+      new AdaptiveThrottlingInterceptor(throttler, fakeClock.getScheduledExecutorService());
+
+  @Mock
+  private ClientCall<Void, Void> delegate;
+
+  private final Channel channel = new Channel() {
+    @SuppressWarnings("unchecked")
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+        MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
+      return (ClientCall<ReqT, RespT>) delegate;
+    }
+
+    @Override
+    public String authority() {
+      return "authority";
+    }
+  };
+
+  @Test
+  public void acceptedByBackend() {
+    RecordingListener listener = new RecordingListener();
+    ClientCall<Void, Void> call = interceptor.interceptCall(method, CallOptions.DEFAULT, channel);
+    call.start(listener, new Metadata());
+
+    captureStartedListener(delegate).onClose(Status.OK, new Metadata());
+
+    assertThat(listener.status).isSameInstanceAs(Status.OK);
+    long now = fakeClock.getTimeProvider().currentTimeNanos();
+    assertThat(throttler.requestStat.get(now)).isEqualTo(1L);
+    assertThat(throttler.throttledStat.get(now)).isEqualTo(0L);
+  }
+
+  @Test
+  public void rejectedByBackend() {
+    RecordingListener listener = new RecordingListener();
+    ClientCall<Void, Void> call = interceptor.interceptCall(method, CallOptions.DEFAULT, channel);
+    call.start(listener, new Metadata());
+
+    captureStartedListener(delegate).onClose(Status.RESOURCE_EXHAUSTED, new Metadata());
+
+    assertThat(listener.status).isSameInstanceAs(Status.RESOURCE_EXHAUSTED);
+    long now = fakeClock.getTimeProvider().currentTimeNanos();
+    assertThat(throttler.requestStat.get(now)).isEqualTo(1L);
+    assertThat(throttler.throttledStat.get(now)).isEqualTo(1L);
+  }
+
+  @Test
+  public void failedWithOtherStatus_acceptedByBackend() {
+    ClientCall<Void, Void> call = interceptor.interceptCall(method, CallOptions.DEFAULT, channel);
+    call.start(new RecordingListener(), new Metadata());
+
+    captureStartedListener(delegate).onClose(Status.INTERNAL, new Metadata());
+
+    long now = fakeClock.getTimeProvider().currentTimeNanos();
+    assertThat(throttler.requestStat.get(now)).isEqualTo(1L);
+    assertThat(throttler.throttledStat.get(now)).isEqualTo(0L);
+  }
+
+  @Test
+  public void throttledLocally_afterBackendRejections() {
+    RecordingListener throttledListener = null;
+    ClientCall<Void, Void> throttledCall = null;
+    ClientCall<Void, Void> throttledDelegate = null;
+    // Each rejection raises the throttling probability, to k / (k + 1) after k rejections, so a
+    // call is throttled long before the loop ends.
+    for (int i = 0; i < 100 && throttledCall == null; i++) {
+      @SuppressWarnings("unchecked")
+      ClientCall<Void, Void> delegateCall = mock(ClientCall.class);
+      ClientCall<Void, Void> call = AdaptiveThrottlingInterceptor.throttle(
+          delegateCall, throttler, fakeClock.getScheduledExecutorService());
+      RecordingListener listener = new RecordingListener();
+      call.start(listener, new Metadata());
+      if (fakeClock.numPendingTasks() != 0) {
+        throttledListener = listener;
+        throttledCall = call;
+        throttledDelegate = delegateCall;
+      } else {
+        captureStartedListener(delegateCall).onClose(Status.UNAVAILABLE, new Metadata());
+      }
+    }
+    assertThat(throttledCall).isNotNull();
+    // The listener is closed on the executor of the call, not from within start().
+    assertThat(throttledListener.status).isNull();
+    assertThat(fakeClock.runDueTasks()).isEqualTo(1);
+
+    throttledCall.request(1);
+    throttledCall.sendMessage(null);
+    throttledCall.halfClose();
+    throttledCall.cancel("cancelled", null);
+
+    assertThat(throttledCall.isReady()).isFalse();
+    verifyNoInteractions(throttledDelegate);
+    assertThat(throttledListener.status)
+        .isSameInstanceAs(AdaptiveThrottlingInterceptor.THROTTLED_STATUS);
+    assertThat(throttler.getLocallyThrottledCount()).isEqualTo(1L);
+  }
+
+  @Test
+  public void throttledLocally_closedOnExecutorOfCallOptions() {
+    FakeClock callExecutor = new FakeClock();
+    CallOptions callOptions =
+        CallOptions.DEFAULT.withExecutor(callExecutor.getScheduledExecutorService());
+    RecordingListener throttledListener = null;
+    for (int i = 0; i < 100 && throttledListener == null; i++) {
+      ClientCall<Void, Void> call = interceptor.interceptCall(method, callOptions, channel);
+      RecordingListener listener = new RecordingListener();
+      call.start(listener, new Metadata());
+      if (callExecutor.numPendingTasks() != 0) {
+        throttledListener = listener;
+      } else {
+        captureStartedListener(delegate).onClose(Status.UNAVAILABLE, new Metadata());
+        reset(delegate);
+      }
+    }
+    assertThat(throttledListener).isNotNull();
+    assertThat(fakeClock.numPendingTasks()).isEqualTo(0);
+    assertThat(throttledListener.status).isNull();
+
+    assertThat(callExecutor.runDueTasks()).isEqualTo(1);
+    assertThat(throttledListener.status)
+        .isSameInstanceAs(AdaptiveThrottlingInterceptor.THROTTLED_STATUS);
+  }
+
+  private static ClientCall.Listener<Void> captureStartedListener(ClientCall<Void, Void> call) {
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<ClientCall.Listener<Void>> listenerCaptor =
+        ArgumentCaptor.forClass(ClientCall.Listener.class);
+    verify(call).start(listenerCaptor.capture(), any(Metadata.class));
+    return listenerCaptor.getValue();
+  }
+
+  private static final class RecordingListener extends ClientCall.Listener<Void> {
+    Status status;
+
+    @Override
+    public void onClose(Status status, Metadata trailers) {
+      this.status = status;
+    }
+  }
+}
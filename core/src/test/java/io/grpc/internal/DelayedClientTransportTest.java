@@ -36,6 +36,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import io.grpc.CallOptions;
+import io.grpc.Deadline;
 import io.grpc.IntegerMarshaller;
 import io.grpc.LoadBalancer.PickResult;
 import io.grpc.LoadBalancer.PickSubchannelArgs;
@@ -282,6 +283,26 @@ public class DelayedClientTransportTest {
     assertEquals(Status.Code.UNAVAILABLE, statusCaptor.getValue().getCode());
   }
 
+  @Test public void reprocess_deadlineExpiredWhilePending() {
+    FakeClock deadlineClock = new FakeClock();
+    CallOptions expiringCallOptions = CallOptions.DEFAULT.withDeadline(
+        Deadline.after(1, TimeUnit.SECONDS, deadlineClock.getDeadlineTicker()));
+    ClientStream stream = delayedTransport.newStream(method, headers, expiringCallOptions);
+    stream.start(streamListener);
+    deadlineClock.forwardTime(2, TimeUnit.SECONDS);
+
+    delayedTransport.reprocess(mockPicker);
+
+    verify(mockPicker, never()).pickSubchannel(any(PickSubchannelArgs.class));
+    verify(mockRealTransport, never()).newStream(
+        any(MethodDescriptor.class), any(Metadata.class), any(CallOptions.class));
+    verify(streamListener)
+        .closed(statusCaptor.capture(), eq(RpcProgress.DROPPED), any(Metadata.class));
+    assertEquals(Status.Code.DEADLINE_EXCEEDED, statusCaptor.getValue().getCode());
+    assertFalse(delayedTransport.hasPendingStreams());
+    assertEquals(1, delayedTransport.getExpiredStreamsCount());
+  }
+
   @Test public void shutdownNowThenNewStream() {
     delayedTransport.shutdownNow(Status.UNAVAILABLE);
     verify(transportListener).transportShutdown(any(Status.class));
@@ -70,6 +70,53 @@ public class ManagedChannelServiceConfigTest {
     assertThat(mcsc.getHealthCheckingConfig()).isNull();
   }
 
+  @Test
+  public void managedChannelServiceConfig_shouldParseAdaptiveThrottling() throws Exception {
+    Map<String, ?> rawServiceConfig =
+        parseConfig(
+            "{\"adaptiveThrottling\": "
+                + "{\"historySeconds\": 10, \"requestsPadding\": 2, \"ratioForAccepts\": 1.5}}");
+    ManagedChannelServiceConfig mcsc =
+        ManagedChannelServiceConfig.fromServiceConfig(rawServiceConfig, false, 3, 4, null);
+
+    assertThat(mcsc.getAdaptiveThrottling())
+        .isEqualTo(
+            AdaptiveThrottler.builder()
+                .setHistorySeconds(10)
+                .setRequestsPadding(2)
+                .setRatioForAccepts(1.5f)
+                .build());
+  }
+
+  @Test
+  public void managedChannelServiceConfig_adaptiveThrottlingDefaults() throws Exception {
+    Map<String, ?> rawServiceConfig = parseConfig("{\"adaptiveThrottling\": {}}");
+    ManagedChannelServiceConfig mcsc =
+        ManagedChannelServiceConfig.fromServiceConfig(rawServiceConfig, true, 3, 4, null);
+
+    assertThat(mcsc.getAdaptiveThrottling()).isEqualTo(AdaptiveThrottler.builder().build());
+  }
+
+  @Test
+  public void managedChannelServiceConfig_shouldHandleNoAdaptiveThrottling() throws Exception {
+    ManagedChannelServiceConfig mcsc =
+        ManagedChannelServiceConfig
+            .fromServiceConfig(Collections.<String, Object>emptyMap(), true, 3, 4, null);
+
+    assertThat(mcsc.getAdaptiveThrottling()).isNull();
+  }
+
+  @Test
+  public void managedChannelServiceConfig_failsOnInvalidAdaptiveThrottling() throws Exception {
+    Map<String, ?> rawServiceConfig =
+        parseConfig("{\"adaptiveThrottling\": {\"historySeconds\": 0}}");
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("historySeconds must be positive");
+
+    ManagedChannelServiceConfig.fromServiceConfig(rawServiceConfig, true, 3, 4, null);
+  }
+
   @Test
   public void createManagedChannelServiceConfig_failsOnDuplicateMethod() {
     Map<String, ?> name1 = ImmutableMap.of("service", "service", "method", "method");
@@ -137,19 +137,22 @@ public class RetriableStreamTest {
           .setRequestMarshaller(new StringMarshaller())
           .setResponseMarshaller(new StringMarshaller())
           .build();
-  private final ChannelBufferMeter channelBufferUsed = new ChannelBufferMeter();
+  private final RetryBufferBudget processBudget = new RetryBufferBudget(Long.MAX_VALUE);
+  private final ChannelBufferMeter channelBufferUsed = new ChannelBufferMeter(processBudget);
   private final FakeClock fakeClock = new FakeClock();
 
   private final class RecordedRetriableStream extends RetriableStream<String> {
     RecordedRetriableStream(MethodDescriptor<String, ?> method, Metadata headers,
         ChannelBufferMeter channelBufferUsed, long perRpcBufferLimit, long channelBufferLimit,
+        @Nullable RetryBufferPool bufferPool,
         Executor callExecutor,
         ScheduledExecutorService scheduledExecutorService,
         @Nullable RetryPolicy retryPolicy,
         @Nullable HedgingPolicy hedgingPolicy,
         @Nullable Throttle throttle) {
       super(
-          method, headers, channelBufferUsed, perRpcBufferLimit, channelBufferLimit, callExecutor,
+          method, headers, channelBufferUsed, perRpcBufferLimit, channelBufferLimit, bufferPool,
+          callExecutor,
           scheduledExecutorService,
           retryPolicy,
           hedgingPolicy,
@@ -186,17 +189,24 @@ public class RetriableStreamTest {
   private RetriableStream<String> newThrottledRetriableStream(Throttle throttle) {
     return new RecordedRetriableStream(
         method, new Metadata(), channelBufferUsed, PER_RPC_BUFFER_LIMIT, CHANNEL_BUFFER_LIMIT,
-        MoreExecutors.directExecutor(), fakeClock.getScheduledExecutorService(), RETRY_POLICY,
-        null, throttle);
+        null, MoreExecutors.directExecutor(), fakeClock.getScheduledExecutorService(),
+        RETRY_POLICY, null, throttle);
   }
 
   private RetriableStream<String> newThrottledHedgingStream(Throttle throttle) {
     return new RecordedRetriableStream(
         method, new Metadata(), channelBufferUsed, PER_RPC_BUFFER_LIMIT, CHANNEL_BUFFER_LIMIT,
-        MoreExecutors.directExecutor(), fakeClock.getScheduledExecutorService(),
+        null, MoreExecutors.directExecutor(), fakeClock.getScheduledExecutorService(),
         null, HEDGING_POLICY, throttle);
   }
 
+  private RetriableStream<String> newPooledHedgingStream(RetryBufferPool bufferPool) {
+    return new RecordedRetriableStream(
+        method, new Metadata(), channelBufferUsed, PER_RPC_BUFFER_LIMIT, CHANNEL_BUFFER_LIMIT,
+        bufferPool, MoreExecutors.directExecutor(), fakeClock.getScheduledExecutorService(),
+        null, HEDGING_POLICY, null);
+  }
+
   @After
   public void tearDown() {
     assertEquals(0, fakeClock.numPendingTasks());
@@ -934,6 +944,28 @@ public class RetriableStreamTest {
     assertEquals(0, channelBufferUsed.addAndGet(0));
   }
 
+  @Test
+  public void processBudgetExceeded() {
+    ClientStream mockStream1 = mock(ClientStream.class);
+    doReturn(mockStream1).when(retriableStreamRecorder).newSubstream(0);
+    processBudget.setLimit(500);
+
+    retriableStream.start(masterListener);
+
+    bufferSizeTracer.outboundWireSize(400);
+    // another channel of the process buffers the rest of the budget
+    new ChannelBufferMeter(processBudget).addAndGet(200);
+    verify(retriableStreamRecorder, never()).postCommit();
+
+    bufferSizeTracer.outboundWireSize(1);
+
+    verify(retriableStreamRecorder).postCommit();
+    assertEquals(0, channelBufferUsed.getBufferedBytes());
+    assertEquals(200, processBudget.getBufferedBytes());
+    assertEquals(1, channelBufferUsed.getBufferLimitCommits());
+    assertEquals(1, processBudget.getBufferLimitCommits());
+  }
+
   @Test
   public void perRpcBufferLimitExceededDuringBackoff() {
     ClientStream mockStream1 = mock(ClientStream.class);
@@ -2227,6 +2259,39 @@ public class RetriableStreamTest {
     assertEquals(CHANNEL_BUFFER_LIMIT - 200, channelBufferUsed.addAndGet(0));
   }
 
+  @Test
+  public void hedging_pooledBuffer_sharedByAttemptsAndReleasedOnCommit() throws Exception {
+    RetryBufferPool bufferPool = new RetryBufferPool(1 << 20);
+    RetriableStream<String> pooledHedgingStream = newPooledHedgingStream(bufferPool);
+    ClientStream mockStream1 = mock(ClientStream.class);
+    ClientStream mockStream2 = mock(ClientStream.class);
+    doReturn(mockStream1).when(retriableStreamRecorder).newSubstream(0);
+    doReturn(mockStream2).when(retriableStreamRecorder).newSubstream(1);
+
+    pooledHedgingStream.start(masterListener);
+    pooledHedgingStream.sendMessage("msg");
+    fakeClock.forwardTime(HEDGING_DELAY_IN_SECONDS, TimeUnit.SECONDS);
+
+    ArgumentCaptor<InputStream> messageCaptor1 = ArgumentCaptor.forClass(InputStream.class);
+    verify(mockStream1).writeMessage(messageCaptor1.capture());
+    ArgumentCaptor<InputStream> messageCaptor2 = ArgumentCaptor.forClass(InputStream.class);
+    verify(mockStream2).writeMessage(messageCaptor2.capture());
+    // the transports close the messages once they are framed
+    assertEquals("msg", method.parseRequest(messageCaptor1.getValue()));
+    messageCaptor1.getValue().close();
+    assertEquals("msg", method.parseRequest(messageCaptor2.getValue()));
+    messageCaptor2.getValue().close();
+    assertEquals(0, bufferPool.getIdleBytes());
+
+    ArgumentCaptor<ClientStreamListener> sublistenerCaptor2 =
+        ArgumentCaptor.forClass(ClientStreamListener.class);
+    verify(mockStream2).start(sublistenerCaptor2.capture());
+    sublistenerCaptor2.getValue().headersRead(new Metadata());
+
+    verify(retriableStreamRecorder).postCommit();
+    assertThat(bufferPool.getIdleBytes()).isGreaterThan(0L);
+  }
+
   @Test
   public void hedging_transparentRetry() {
     ClientStream mockStream1 = mock(ClientStream.class);
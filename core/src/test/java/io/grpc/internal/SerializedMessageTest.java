@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link SerializedMessage} and {@link RetryBufferPool}. */
+@RunWith(JUnit4.class)
+public class SerializedMessageTest {
+  private final RetryBufferPool pool = new RetryBufferPool(1 << 20);
+
+  @Test
+  public void serialize_growsBeyondSizeHint() throws Exception {
+    byte[] data = new byte[10000];
+    Arrays.fill(data, (byte) 7);
+
+    SerializedMessage message = SerializedMessage.serialize(new ByteArrayInputStream(data), pool);
+
+    assertThat(message.length()).isEqualTo(data.length);
+    InputStream stream = message.tryOpenStream();
+    assertThat(((KnownLength) stream).available()).isEqualTo(data.length);
+    assertThat(ByteStreams.toByteArray(stream)).isEqualTo(data);
+    // the arrays outgrown while reading are back in the pool
+    assertThat(pool.getIdleBytes()).isGreaterThan(0L);
+  }
+
+  @Test
+  public void streamsShareTheMessage() throws Exception {
+    byte[] data = {1, 2, 3};
+    SerializedMessage message = SerializedMessage.serialize(new ByteArrayInputStream(data), pool);
+
+    InputStream stream1 = message.tryOpenStream();
+    InputStream stream2 = message.tryOpenStream();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((Drainable) stream1).drainTo(out);
+    assertThat(out.toByteArray()).isEqualTo(data);
+    assertThat(ByteStreams.toByteArray(stream2)).isEqualTo(data);
+    message.release();
+    stream1.close();
+    assertThat(pool.getIdleBytes()).isEqualTo(0L);
+
+    stream2.close();
+
+    assertThat(pool.getIdleBytes()).isGreaterThan(0L);
+    assertThat(message.tryOpenStream()).isNull();
+  }
+
+  @Test
+  public void closeTwice_releasesOnce() throws Exception {
+    SerializedMessage message =
+        SerializedMessage.serialize(new ByteArrayInputStream(new byte[1]), pool);
+    InputStream stream = message.tryOpenStream();
+
+    stream.close();
+    stream.close();
+
+    assertThat(message.retain()).isTrue();
+  }
+
+  @Test
+  public void pool_reusesFreedArrays() {
+    byte[] array = pool.allocate(RetryBufferPool.MIN_POOLED_SIZE + 1);
+    assertThat(array.length).isEqualTo(RetryBufferPool.MIN_POOLED_SIZE * 2);
+
+    pool.free(array);
+
+    assertThat(pool.allocate(RetryBufferPool.MIN_POOLED_SIZE + 1)).isSameInstanceAs(array);
+    assertThat(pool.getIdleBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  public void pool_doesNotPoolLargeArrays() {
+    byte[] array = pool.allocate(RetryBufferPool.MAX_POOLED_SIZE + 1);
+    assertThat(array.length).isEqualTo(RetryBufferPool.MAX_POOLED_SIZE + 1);
+
+    pool.free(array);
+
+    assertThat(pool.getIdleBytes()).isEqualTo(0L);
+  }
+}
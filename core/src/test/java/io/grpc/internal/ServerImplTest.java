@@ -87,6 +87,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -607,6 +608,89 @@ public class ServerImplTest {
     verifyNoMoreInteractions(stream);
   }
 
+  @Test
+  public void concurrencyLimitExceeded() throws Exception {
+    AdaptiveConcurrencyLimiter limiter =
+        AdaptiveConcurrencyLimiter.newBuilder().setDefaultLimit(1, 1, 1).build();
+    assertNotNull(limiter.tryAcquire("Waiter/serve", new Metadata()));
+    builder.setConcurrencyLimiter(limiter);
+    createAndStartServer();
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    transportListener.transportReady(Attributes.EMPTY);
+
+    transportListener.streamCreated(stream, "Waiter/serve", new Metadata());
+
+    verify(stream).setListener(isA(ServerStreamListener.class));
+    verify(stream).streamId();
+    verify(stream).close(statusCaptor.capture(), any(Metadata.class));
+    Status status = statusCaptor.getValue();
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED, status.getCode());
+    assertEquals("Server concurrency limit exceeded", status.getDescription());
+    assertEquals(1, limiter.getRejectedCount());
+    assertEquals(1, limiter.getInFlight("Waiter/serve"));
+
+    verifyNoMoreInteractions(stream);
+  }
+
+  @Test
+  public void concurrencyLimitPermitReleasedWhenStreamClosed() throws Exception {
+    AdaptiveConcurrencyLimiter limiter =
+        AdaptiveConcurrencyLimiter.newBuilder().setDefaultLimit(1, 1, 1).build();
+    builder.setConcurrencyLimiter(limiter);
+    ServerStreamListener streamListener = testStreamClose_setup(
+        new AtomicReference<ServerCall<String, Integer>>(), new AtomicReference<Context>(),
+        new AtomicBoolean(), null);
+    assertEquals(1, limiter.getInFlight("Waiter/serve"));
+
+    streamListener.closed(Status.OK);
+
+    assertEquals(0, limiter.getInFlight("Waiter/serve"));
+    assertEquals(1, executor.runDueTasks());
+  }
+
+  @Test
+  public void concurrencyLimitNotUpdatedByUnimplementedCall() throws Exception {
+    AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.newBuilder()
+        .setDefaultLimit(10, 1, 100)
+        .setTicker(timer.getDeadlineTicker())
+        .build();
+    // Calls take 10ms without load.
+    AdaptiveConcurrencyLimiter.Permit probe = limiter.tryAcquire("Waiter/nonexist", new Metadata());
+    timer.forwardTime(10, TimeUnit.MILLISECONDS);
+    probe.release(Status.OK);
+    List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+    for (int i = 0; i < 9; i++) {
+      permits.add(limiter.tryAcquire("Waiter/nonexist", new Metadata()));
+    }
+    builder.setConcurrencyLimiter(limiter);
+    createAndStartServer();
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    transportListener.transportReady(Attributes.EMPTY);
+    Metadata requestHeaders = new Metadata();
+    StatsTraceContext statsTraceCtx =
+        StatsTraceContext.newServerContext(
+            streamTracerFactories, "Waiter/nonexist", requestHeaders);
+    when(stream.statsTraceContext()).thenReturn(statsTraceCtx);
+    transportListener.streamCreated(stream, "Waiter/nonexist", requestHeaders);
+    verify(stream).setListener(streamListenerCaptor.capture());
+    assertEquals(10, limiter.getInFlight("Waiter/nonexist"));
+
+    assertEquals(1, executor.runDueTasks());
+    verify(stream).close(statusCaptor.capture(), any(Metadata.class));
+    assertEquals(Status.Code.UNIMPLEMENTED, statusCaptor.getValue().getCode());
+    // The transport reports a stream closed by the server as closed with OK.
+    streamListenerCaptor.getValue().closed(Status.OK);
+    assertEquals(9, limiter.getInFlight("Waiter/nonexist"));
+
+    // Had the immediate failure been sampled as the latency without load, this call would look
+    // queued, and shrink the limit.
+    timer.forwardTime(10, TimeUnit.MILLISECONDS);
+    permits.get(0).release(Status.OK);
+    assertThat(limiter.getLimit("Waiter/nonexist")).isGreaterThan(10);
+  }
+
   @Test
   public void basicExchangeSuccessful() throws Exception {
     createAndStartServer();
@@ -1145,23 +1229,24 @@ public class ServerImplTest {
   }
 
   @Test
-  public void testContextExpiredBeforeStreamCreate_StreamCancelNotCalledBeforeSetListener()
-      throws Exception {
+  public void testContextExpiredBeforeStreamCreate_callNotStarted() throws Exception {
     AtomicBoolean contextCancelled = new AtomicBoolean(false);
     AtomicReference<Context> context = new AtomicReference<>();
     AtomicReference<ServerCall<String, Integer>> callReference = new AtomicReference<>();
 
     testStreamClose_setup(callReference, context, contextCancelled, 0L);
 
-    // This assert that stream.setListener(jumpListener) is called before stream.cancel(), which
-    // prevents extremely short deadlines causing NPEs.
+    // The deadline expired before the call was started, so the handler never sees the call, and
+    // the stream is closed only after stream.setListener(jumpListener), which prevents extremely
+    // short deadlines causing NPEs.
+    assertNull(callReference.get());
     InOrder inOrder = inOrder(stream);
     inOrder.verify(stream).setListener(any(ServerStreamListener.class));
-    inOrder.verify(stream).cancel(statusCaptor.capture());
-
-    assertThat(statusCaptor.getValue().asException())
-        .hasMessageThat().contains("context timed out");
-    assertTrue(callReference.get().isCancelled());
+    inOrder.verify(stream).close(statusCaptor.capture(), any(Metadata.class));
+    verify(stream, never()).cancel(any(Status.class));
+    assertEquals(Status.Code.DEADLINE_EXCEEDED, statusCaptor.getValue().getCode());
+    assertEquals(1, server.getStats().get().callsExpired);
+    assertEquals(1, server.getStats().get().callsFailed);
   }
 
   @Test
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class StripedLongCounterTest {
+  private StripedLongCounter counter = new StripedLongCounter();
+
+  @Test
+  public void testInitialValue() {
+    assertEquals(0, counter.value());
+  }
+
+  @Test
+  public void testIncrement() {
+    counter.add(1);
+    assertEquals(1, counter.value());
+  }
+
+  @Test
+  public void testIncrementMulti() {
+    counter.add(2);
+    counter.add(1);
+    assertEquals(3, counter.value());
+  }
+
+  @Test
+  public void testNegativeValue() {
+    counter.add(-2);
+    assertEquals(-2, counter.value());
+  }
+
+  @Test
+  public void sumThenReset() {
+    counter.add(3);
+    assertEquals(3, counter.sumThenReset());
+    assertEquals(0, counter.value());
+    counter.add(-1);
+    assertEquals(-1, counter.sumThenReset());
+  }
+
+  @Test
+  public void uncontendedUpdatesDoNotInflate() {
+    for (int i = 0; i < 1000; i++) {
+      counter.add(1);
+    }
+    assertFalse(counter.isInflated());
+    assertEquals(1000, counter.value());
+  }
+
+  @Test
+  public void advanceProbeVisitsEveryStripe() {
+    int stripes = 64;
+    boolean[] visited = new boolean[stripes];
+    int probe = 1;
+    for (int i = 0; i < 10000; i++) {
+      probe = StripedLongCounter.advanceProbe(probe);
+      assertNotEquals(0, probe);
+      visited[probe & (stripes - 1)] = true;
+    }
+    for (int i = 0; i < stripes; i++) {
+      assertTrue("stripe " + i, visited[i]);
+    }
+  }
+
+  @Test
+  public void concurrentUpdates() throws Exception {
+    final StripedLongCounter counter = new StripedLongCounter(4);
+    final int threads = 8;
+    final int iterations = 10000;
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      Thread worker = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+          for (int i = 0; i < iterations; i++) {
+            counter.add(1);
+          }
+        }
+      });
+      worker.start();
+      workers.add(worker);
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    assertEquals((long) threads * iterations, counter.value());
+  }
+
+  @Test
+  public void concurrentSumThenReset() throws Exception {
+    final StripedLongCounter counter = new StripedLongCounter(4);
+    final int threads = 8;
+    final int iterations = 10000;
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      Thread worker = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+          for (int i = 0; i < iterations; i++) {
+            counter.add(1);
+          }
+        }
+      });
+      worker.start();
+      workers.add(worker);
+    }
+    start.countDown();
+    long sum = 0;
+    boolean updating = true;
+    while (updating) {
+      updating = false;
+      for (Thread worker : workers) {
+        updating |= worker.isAlive();
+      }
+      sum += counter.sumThenReset();
+    }
+    assertEquals((long) threads * iterations, sum);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.grpclb;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.LoadBalancer.PickResult;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.LoadBalancer.Subchannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.grpclb.GrpclbState.BackendEntry;
+import io.grpc.grpclb.GrpclbState.DropEntry;
+import io.grpc.grpclb.GrpclbState.RoundRobinPicker;
+import io.grpc.internal.TimeProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Benchmarks picking from a grpclb {@link RoundRobinPicker} that drops 1 out of 10 requests,
+ * from one and from many threads sharing the picker as RPCs on a channel do.
+ */
+@State(Scope.Benchmark)
+public class RoundRobinPickerBenchmark {
+  private RoundRobinPicker picker;
+
+  /**
+   * Creates a picker over 10 backends, with a drop list dropping 1 out of 10 requests.
+   */
+  @Setup
+  public void setUp() {
+    GrpclbClientLoadRecorder loadRecorder =
+        new GrpclbClientLoadRecorder(TimeProvider.SYSTEM_TIME_PROVIDER);
+    List<DropEntry> dropList = new ArrayList<>();
+    List<BackendEntry> pickList = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      dropList.add(i == 0 ? new DropEntry(loadRecorder, "drop-token") : null);
+      pickList.add(new BackendEntry(new FakeSubchannel(), loadRecorder, "token-" + i));
+    }
+    picker = new RoundRobinPicker(dropList, pickList);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public PickResult pick(ArgsState args) {
+    return picker.pickSubchannel(args.args);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Threads(32)
+  public PickResult pickContended(ArgsState args) {
+    return picker.pickSubchannel(args.args);
+  }
+
+  /**
+   * Per-thread pick arguments, as the headers of a call are not shared with other calls.
+   */
+  @State(Scope.Thread)
+  public static class ArgsState {
+    final PickSubchannelArgs args = new PickSubchannelArgs() {
+      private final Metadata headers = new Metadata();
+
+      @Override
+      public CallOptions getCallOptions() {
+        return CallOptions.DEFAULT;
+      }
+
+      @Override
+      public Metadata getHeaders() {
+        return headers;
+      }
+
+      @Override
+      public MethodDescriptor<?, ?> getMethodDescriptor() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private static final class FakeSubchannel extends Subchannel {
+    @Override
+    public void shutdown() {}
+
+    @Override
+    public void requestConnection() {}
+
+    @Override
+    public Attributes getAttributes() {
+      return Attributes.EMPTY;
+    }
+  }
+}
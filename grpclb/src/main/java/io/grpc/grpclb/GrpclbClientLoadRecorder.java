@@ -25,11 +25,11 @@ import io.grpc.Status;
 import io.grpc.internal.TimeProvider;
 import io.grpc.lb.v1.ClientStats;
 import io.grpc.lb.v1.ClientStatsPerToken;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
-import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -56,13 +56,11 @@ final class GrpclbClientLoadRecorder extends ClientStreamTracer.Factory {
   @SuppressWarnings("unused")
   private volatile long callsFinished;
 
-  private static final class LongHolder {
-    long num;
-  }
-
   // Specific finish types
-  @GuardedBy("this")
-  private Map<String, LongHolder> callsDroppedPerToken = new HashMap<>(1);
+  // Tokens are kept once seen, as removing them would race with recording drops. Their number is
+  // bounded by the drop entries the balancer sends on this LB stream.
+  private final ConcurrentMap<String, AtomicLong> callsDroppedPerToken =
+      new ConcurrentHashMap<>(1);
   @SuppressWarnings("unused")
   private volatile long callsFailedToSend;
   @SuppressWarnings("unused")
@@ -86,13 +84,15 @@ final class GrpclbClientLoadRecorder extends ClientStreamTracer.Factory {
     callsStartedUpdater.getAndIncrement(this);
     callsFinishedUpdater.getAndIncrement(this);
 
-    synchronized (this) {
-      LongHolder holder;
-      if ((holder = callsDroppedPerToken.get(token)) == null) {
-        callsDroppedPerToken.put(token, (holder = new LongHolder()));
+    AtomicLong callsDropped = callsDroppedPerToken.get(token);
+    if (callsDropped == null) {
+      AtomicLong newCallsDropped = new AtomicLong();
+      callsDropped = callsDroppedPerToken.putIfAbsent(token, newCallsDropped);
+      if (callsDropped == null) {
+        callsDropped = newCallsDropped;
       }
-      holder.num++;
     }
+    callsDropped.getAndIncrement();
   }
 
   /**
@@ -107,18 +107,15 @@ final class GrpclbClientLoadRecorder extends ClientStreamTracer.Factory {
         .setNumCallsFinishedWithClientFailedToSend(callsFailedToSendUpdater.getAndSet(this, 0))
         .setNumCallsFinishedKnownReceived(callsFinishedKnownReceivedUpdater.getAndSet(this, 0));
 
-    Map<String, LongHolder> localCallsDroppedPerToken = Collections.emptyMap();
-    synchronized (this) {
-      if (!callsDroppedPerToken.isEmpty()) {
-        localCallsDroppedPerToken = callsDroppedPerToken;
-        callsDroppedPerToken = new HashMap<>(localCallsDroppedPerToken.size());
+    for (Map.Entry<String, AtomicLong> entry : callsDroppedPerToken.entrySet()) {
+      long callsDropped = entry.getValue().getAndSet(0);
+      if (callsDropped == 0) {
+        continue;
       }
-    }
-    for (Map.Entry<String, LongHolder> entry : localCallsDroppedPerToken.entrySet()) {
       statsBuilder.addCallsFinishedWithDrop(
           ClientStatsPerToken.newBuilder()
               .setLoadBalanceToken(entry.getKey())
-              .setNumCalls(entry.getValue().num)
+              .setNumCalls(callsDropped)
               .build());
     }
     return statsBuilder.build();
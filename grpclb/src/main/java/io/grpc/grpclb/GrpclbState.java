@@ -74,6 +74,7 @@ import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
@@ -1135,11 +1136,13 @@ final class GrpclbState {
   static final class RoundRobinPicker extends SubchannelPicker {
     @VisibleForTesting
     final List<DropEntry> dropList;
-    private int dropIndex;
+    // Whether dropList has any drop entry. If not, the drop round-robin is skipped.
+    private final boolean hasDrops;
+    private final AtomicInteger dropIndex = new AtomicInteger();
 
     @VisibleForTesting
     final List<? extends RoundRobinEntry> pickList;
-    private int pickIndex;
+    private final AtomicInteger pickIndex = new AtomicInteger();
 
     // dropList can be empty, which means no drop.
     // pickList must not be empty.
@@ -1147,34 +1150,40 @@ final class GrpclbState {
       this.dropList = checkNotNull(dropList, "dropList");
       this.pickList = checkNotNull(pickList, "pickList");
       checkArgument(!pickList.isEmpty(), "pickList is empty");
+      boolean hasDrops = false;
+      for (DropEntry drop : dropList) {
+        hasDrops |= drop != null;
+      }
+      this.hasDrops = hasDrops;
     }
 
     @Override
     public PickResult pickSubchannel(PickSubchannelArgs args) {
-      synchronized (pickList) {
-        // Two-level round-robin.
-        // First round-robin on dropList. If a drop entry is selected, request will be dropped.  If
-        // a non-drop entry is selected, then round-robin on pickList.  This makes sure requests are
-        // dropped at the same proportion as the drop entries appear on the round-robin list from
-        // the balancer, while only backends from pickList are selected for the non-drop cases.
-        if (!dropList.isEmpty()) {
-          DropEntry drop = dropList.get(dropIndex);
-          dropIndex++;
-          if (dropIndex == dropList.size()) {
-            dropIndex = 0;
-          }
-          if (drop != null) {
-            return drop.picked();
-          }
-        }
-
-        RoundRobinEntry pick = pickList.get(pickIndex);
-        pickIndex++;
-        if (pickIndex == pickList.size()) {
-          pickIndex = 0;
+      // Two-level round-robin.
+      // First round-robin on dropList. If a drop entry is selected, request will be dropped.  If
+      // a non-drop entry is selected, then round-robin on pickList.  This makes sure requests are
+      // dropped at the same proportion as the drop entries appear on the round-robin list from
+      // the balancer, while only backends from pickList are selected for the non-drop cases.
+      // Each level advances its own atomic cursor, so picks from many threads do not block each
+      // other, and every window of dropList.size() consecutive picks sees each drop entry once.
+      if (hasDrops) {
+        DropEntry drop = dropList.get(nextIndex(dropIndex, dropList.size()));
+        if (drop != null) {
+          return drop.picked();
         }
-        return pick.picked(args.getHeaders());
       }
+      int pickListSize = pickList.size();
+      RoundRobinEntry pick =
+          pickList.get(pickListSize == 1 ? 0 : nextIndex(pickIndex, pickListSize));
+      return pick.picked(args.getHeaders());
+    }
+
+    /**
+     * Advances the cursor and returns the index it pointed to. After the cursor overflows, the
+     * sequence restarts from 0, which skews a single round every 2^31 picks.
+     */
+    private static int nextIndex(AtomicInteger cursor, int size) {
+      return (cursor.getAndIncrement() & Integer.MAX_VALUE) % size;
     }
 
     @Override
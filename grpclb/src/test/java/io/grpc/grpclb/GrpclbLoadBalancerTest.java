@@ -51,6 +51,7 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.util.Durations;
 import com.google.protobuf.util.Timestamps;
 import io.grpc.Attributes;
+import io.grpc.CallOptions;
 import io.grpc.ChannelLogger;
 import io.grpc.ClientStreamTracer;
 import io.grpc.ConnectivityState;
@@ -68,6 +69,7 @@ import io.grpc.LoadBalancer.SubchannelPicker;
 import io.grpc.LoadBalancer.SubchannelStateListener;
 import io.grpc.ManagedChannel;
 import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
 import io.grpc.Status;
 import io.grpc.Status.Code;
 import io.grpc.SynchronizationContext;
@@ -360,6 +362,76 @@ public class GrpclbLoadBalancerTest {
     verify(subchannel, never()).getAttributes();
   }
 
+  @Test
+  public void roundRobinPickerConcurrentPicks() throws Exception {
+    GrpclbClientLoadRecorder loadRecorder =
+        new GrpclbClientLoadRecorder(fakeClock.getTimeProvider());
+    // 1 out of 3 requests are to be dropped
+    DropEntry d = new DropEntry(loadRecorder, "LBTOKEN0003");
+    List<DropEntry> dropList = Arrays.asList(null, d, null);
+    final BackendEntry b1 = new BackendEntry(mock(Subchannel.class));
+    final BackendEntry b2 = new BackendEntry(mock(Subchannel.class));
+    final RoundRobinPicker picker = new RoundRobinPicker(dropList, Arrays.asList(b1, b2));
+    final PickSubchannelArgs args = new PickSubchannelArgs() {
+      @Override
+      public CallOptions getCallOptions() {
+        return CallOptions.DEFAULT;
+      }
+
+      @Override
+      public Metadata getHeaders() {
+        return new Metadata();
+      }
+
+      @Override
+      public MethodDescriptor<?, ?> getMethodDescriptor() {
+        throw new UnsupportedOperationException();
+      }
+    };
+
+    final int picksPerThread = 3000;
+    Thread[] threads = new Thread[8];
+    final int[][] counts = new int[threads.length][3];
+    for (int i = 0; i < threads.length; i++) {
+      final int[] threadCounts = counts[i];
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < picksPerThread; j++) {
+            PickResult result = picker.pickSubchannel(args);
+            if (result == DROP_PICK_RESULT) {
+              threadCounts[0]++;
+            } else if (result == b1.result) {
+              threadCounts[1]++;
+            } else if (result == b2.result) {
+              threadCounts[2]++;
+            }
+          }
+        }
+      });
+      threads[i].start();
+    }
+    int[] totals = new int[3];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].join();
+      for (int j = 0; j < totals.length; j++) {
+        totals[j] += counts[i][j];
+      }
+    }
+
+    // Every pick advances the cursors exactly once, so the proportions hold across threads.
+    int picks = threads.length * picksPerThread;
+    assertThat(totals).asList().containsExactly(picks / 3, picks / 3, picks / 3).inOrder();
+    ClientStats stats = loadRecorder.generateLoadReport();
+    assertThat(stats.getNumCallsStarted()).isEqualTo(picks / 3);
+    assertThat(stats.getCallsFinishedWithDropList()).containsExactly(
+        ClientStatsPerToken.newBuilder()
+            .setLoadBalanceToken("LBTOKEN0003")
+            .setNumCalls(picks / 3)
+            .build());
+    assertThat(loadRecorder.generateLoadReport().getCallsFinishedWithDropList()).isEmpty();
+  }
+
   @Test
   public void roundRobinPickerWithIdleEntry_noDrop() {
     Subchannel subchannel = mock(Subchannel.class);
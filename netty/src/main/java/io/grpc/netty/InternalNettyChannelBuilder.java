@@ -76,6 +76,10 @@ public final class InternalNettyChannelBuilder {
     builder.setTracingEnabled(value);
   }
 
+  public static void setRetryBufferPoolingEnabled(NettyChannelBuilder builder, boolean value) {
+    builder.setRetryBufferPoolingEnabled(value);
+  }
+
   public static void setStatsRecordStartedRpcs(NettyChannelBuilder builder, boolean value) {
     builder.setStatsRecordStartedRpcs(value);
   }
@@ -19,10 +19,12 @@ package io.grpc.netty;
 import io.grpc.Attributes;
 import io.grpc.Internal;
 import io.grpc.ServerStreamTracer;
+import io.grpc.internal.AdaptiveConcurrencyLimiter;
 import io.grpc.internal.SharedResourcePool;
 import io.grpc.internal.TransportTracer;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Internal {@link NettyServerBuilder} accessor.  This is intended for usage internal to
@@ -56,6 +58,11 @@ public final class InternalNettyServerBuilder {
     builder.setTracingEnabled(value);
   }
 
+  public static void setConcurrencyLimiter(NettyServerBuilder builder,
+      @Nullable AdaptiveConcurrencyLimiter concurrencyLimiter) {
+    builder.setConcurrencyLimiter(concurrencyLimiter);
+  }
+
   public static void setForceHeapBuffer(NettyServerBuilder builder, boolean value) {
     builder.setForceHeapBuffer(value);
   }
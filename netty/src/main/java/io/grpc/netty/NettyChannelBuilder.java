@@ -593,6 +593,10 @@ public final class NettyChannelBuilder extends
     this.managedChannelImplBuilder.setStatsEnabled(value);
   }
 
+  void setRetryBufferPoolingEnabled(boolean value) {
+    this.managedChannelImplBuilder.setRetryBufferPoolingEnabled(value);
+  }
+
   void setStatsRecordStartedRpcs(boolean value) {
     this.managedChannelImplBuilder.setStatsRecordStartedRpcs(value);
   }
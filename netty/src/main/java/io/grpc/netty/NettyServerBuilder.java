@@ -33,6 +33,7 @@ import io.grpc.ServerBuilder;
 import io.grpc.ServerCredentials;
 import io.grpc.ServerStreamTracer;
 import io.grpc.internal.AbstractServerImplBuilder;
+import io.grpc.internal.AdaptiveConcurrencyLimiter;
 import io.grpc.internal.FixedObjectPool;
 import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.InternalServer;
@@ -59,6 +60,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
 import javax.net.ssl.SSLException;
 
 /**
@@ -382,6 +384,10 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
     this.serverImplBuilder.setStatsEnabled(value);
   }
 
+  void setConcurrencyLimiter(@Nullable AdaptiveConcurrencyLimiter concurrencyLimiter) {
+    this.serverImplBuilder.setConcurrencyLimiter(concurrencyLimiter);
+  }
+
   void setStatsRecordStartedRpcs(boolean value) {
     this.serverImplBuilder.setStatsRecordStartedRpcs(value);
   }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.rls;
+
+import io.grpc.internal.TimeProvider;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the hit rates of the RLS cache implementations on a trace of keys following a Zipfian
+ * distribution, interrupted by scans of keys used only once. Every miss caches the key, like a
+ * completed route lookup. The hit rate is {@code hits / (hits + misses)} of the reported counters.
+ */
+@State(Scope.Benchmark)
+public class RlsCacheHitRateBenchmark {
+  private static final int KEY_COUNT = 100_000;
+  private static final double ZIPF_EXPONENT = 0.99;
+  private static final int TRACE_LENGTH = 1_000_000;
+  // Every other 100k accesses start with a scan of 20k unique keys.
+  private static final int SCAN_PERIOD = 100_000;
+  private static final int SCAN_LENGTH = 20_000;
+
+  @Param({"lru", "tinyLfu"})
+  public String cacheType;
+
+  @Param({"100", "1000", "10000"})
+  public int cacheSize;
+
+  private ScheduledExecutorService ses;
+  private int[] trace;
+
+  /** Counters of the cache lookups of all invocations of an iteration. */
+  @AuxCounters
+  @State(Scope.Thread)
+  public static class HitCounters {
+    public long hits;
+    public long misses;
+
+    @Setup(Level.Iteration)
+    public void clean() {
+      hits = 0;
+      misses = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    ses = Executors.newSingleThreadScheduledExecutor();
+    double[] cumulativeWeights = new double[KEY_COUNT];
+    double totalWeight = 0;
+    for (int i = 0; i < KEY_COUNT; i++) {
+      totalWeight += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+      cumulativeWeights[i] = totalWeight;
+    }
+    Random random = new Random(1);
+    trace = new int[TRACE_LENGTH];
+    int scanKey = KEY_COUNT;
+    for (int i = 0; i < TRACE_LENGTH; i++) {
+      if ((i / SCAN_PERIOD) % 2 == 1 && i % SCAN_PERIOD < SCAN_LENGTH) {
+        trace[i] = scanKey++;
+        continue;
+      }
+      int key = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * totalWeight);
+      trace[i] = key >= 0 ? key : -key - 1;
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    ses.shutdownNow();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public int replay(HitCounters counters) {
+    LruCache<Integer, Integer> cache = newCache();
+    try {
+      for (int key : trace) {
+        if (cache.read(key) != null) {
+          counters.hits++;
+        } else {
+          counters.misses++;
+          cache.cache(key, key);
+        }
+      }
+      return cache.estimatedSize();
+    } finally {
+      cache.close();
+    }
+  }
+
+  private LruCache<Integer, Integer> newCache() {
+    if (cacheType.equals("tinyLfu")) {
+      return new TinyLfuCache<Integer, Integer>(
+          cacheSize, null, 1, TimeUnit.MINUTES, ses, TimeProvider.SYSTEM_TIME_PROVIDER) {
+        @Override
+        protected boolean isExpired(Integer key, Integer value, long nowNanos) {
+          return false;
+        }
+      };
+    }
+    return new LinkedHashLruCache<Integer, Integer>(
+        cacheSize, null, 1, TimeUnit.MINUTES, ses, TimeProvider.SYSTEM_TIME_PROVIDER) {
+      @Override
+      protected boolean isExpired(Integer key, Integer value, long nowNanos) {
+        return false;
+      }
+    };
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.rls;
+
+import com.google.common.collect.ImmutableList;
+import io.grpc.Metadata;
+import io.grpc.internal.TimeProvider;
+import io.grpc.rls.RlsProtoData.GrpcKeyBuilder;
+import io.grpc.rls.RlsProtoData.GrpcKeyBuilder.Name;
+import io.grpc.rls.RlsProtoData.NameMatcher;
+import io.grpc.rls.RlsProtoData.RouteLookupConfig;
+import io.grpc.rls.RlsProtoData.RouteLookupRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Benchmarks the RLS pick hot path, building the {@link RouteLookupRequest} of a call and looking
+ * it up in a cache holding entries of all the methods, with the lock-free {@link
+ * ConcurrentLruCache} and with the synchronized {@link LinkedHashLruCache}.
+ */
+@State(Scope.Benchmark)
+public class RlsCacheLookupBenchmark {
+  private static final String SERVICE = "benchmark.Service";
+
+  @Param({"concurrent", "linkedHash"})
+  public String cacheType;
+
+  @Param({"100"})
+  public int methodCount;
+
+  private final AtomicInteger nextMethod = new AtomicInteger();
+  private ScheduledExecutorService ses;
+  private RlsRequestFactory requestFactory;
+  private LruCache<RouteLookupRequest, String> cache;
+  private String[] fullMethodNames;
+  private Metadata headers;
+
+  /**
+   * Creates a key builder extracting one header for the service, and caches a target for every
+   * method called with the benchmark headers.
+   */
+  @Setup
+  public void setUp() {
+    RouteLookupConfig config = new RouteLookupConfig(
+        ImmutableList.of(
+            new GrpcKeyBuilder(
+                ImmutableList.of(new Name(SERVICE)),
+                ImmutableList.of(
+                    new NameMatcher("user", ImmutableList.of("x-user", "x-parent"), true)))),
+        /* lookupService= */ "rls.example.com",
+        /* lookupServiceTimeoutInMillis= */ TimeUnit.SECONDS.toMillis(2),
+        /* maxAgeInMillis= */ TimeUnit.SECONDS.toMillis(300),
+        /* staleAgeInMillis= */ TimeUnit.SECONDS.toMillis(240),
+        /* cacheSizeBytes= */ methodCount,
+        /* validTargets= */ ImmutableList.of("backend.example.com"),
+        /* defaultTarget= */ "backend.example.com");
+    requestFactory = new RlsRequestFactory(config, "service.example.com");
+    ses = Executors.newSingleThreadScheduledExecutor();
+    if (cacheType.equals("concurrent")) {
+      cache = new ConcurrentLruCache<RouteLookupRequest, String>(
+          methodCount, null, 1, TimeUnit.MINUTES, ses, TimeProvider.SYSTEM_TIME_PROVIDER) {
+        @Override
+        protected boolean isExpired(RouteLookupRequest key, String value, long nowNanos) {
+          return false;
+        }
+      };
+    } else {
+      cache = new LinkedHashLruCache<RouteLookupRequest, String>(
+          methodCount, null, 1, TimeUnit.MINUTES, ses, TimeProvider.SYSTEM_TIME_PROVIDER) {
+        @Override
+        protected boolean isExpired(RouteLookupRequest key, String value, long nowNanos) {
+          return false;
+        }
+      };
+    }
+    headers = new Metadata();
+    headers.put(Metadata.Key.of("x-user", Metadata.ASCII_STRING_MARSHALLER), "user");
+    fullMethodNames = new String[methodCount];
+    for (int i = 0; i < methodCount; i++) {
+      fullMethodNames[i] = SERVICE + "/Method" + i;
+      cache.cache(requestFactory.create(fullMethodNames[i], headers), "backend-" + i);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    cache.close();
+    ses.shutdownNow();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public String lookup() {
+    return doLookup();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Threads(32)
+  public String lookupContended() {
+    return doLookup();
+  }
+
+  private String doLookup() {
+    int method = (nextMethod.getAndIncrement() & Integer.MAX_VALUE) % methodCount;
+    return cache.read(requestFactory.create(fullMethodNames[method], headers));
+  }
+
+  /** Creates the requests of all methods, as done by pickers ahead of the cache lookup. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public List<RouteLookupRequest> createRequests() {
+    List<RouteLookupRequest> requests = new ArrayList<>(methodCount);
+    for (String fullMethodName : fullMethodNames) {
+      requests.add(requestFactory.create(fullMethodName, headers));
+    }
+    return requests;
+  }
+}
@@ -46,6 +46,8 @@ import io.grpc.SynchronizationContext;
 import io.grpc.SynchronizationContext.ScheduledHandle;
 import io.grpc.internal.BackoffPolicy;
 import io.grpc.internal.ExponentialBackoffPolicy;
+import io.grpc.internal.LongCounter;
+import io.grpc.internal.LongCounterFactory;
 import io.grpc.internal.TimeProvider;
 import io.grpc.lookup.v1.RouteLookupServiceGrpc;
 import io.grpc.lookup.v1.RouteLookupServiceGrpc.RouteLookupServiceStub;
@@ -65,6 +67,7 @@ import io.grpc.stub.StreamObserver;
 import io.grpc.util.ForwardingLoadBalancerHelper;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
@@ -94,14 +97,39 @@ final class CachingRlsLbClient {
   static boolean enableOobChannelDirectPath =
       Boolean.parseBoolean(System.getProperty(RLS_ENABLE_OOB_CHANNEL_DIRECTPATH_PROPERTY, "false"));
 
+  // System property to cache route lookup responses with the TinyLFU eviction policy instead of
+  // lru, by default lru is used. TinyLFU keeps hot entries when many keys are used only once, but
+  // reads of its cache take a lock.
+  private static final String RLS_ENABLE_TINYLFU_CACHE_PROPERTY =
+      "io.grpc.rls.CachingRlsLbClient.enable_tinylfu_cache";
+  @VisibleForTesting
+  static boolean enableTinyLfuCache =
+      Boolean.parseBoolean(System.getProperty(RLS_ENABLE_TINYLFU_CACHE_PROPERTY, "false"));
+
+  // Bounds of the interval between two rounds of refreshing hot entries ahead of staleness.
+  private static final long MIN_REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long MAX_REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+  // Minimum decayed hit count of an entry to be refreshed ahead of staleness. Hit counts are
+  // halved every refresh round, so an entry hit once per round converges to 2.
+  @VisibleForTesting
+  static final int HOT_ENTRY_MIN_HITS = 2;
+
   // All cache status changes (pending, backoff, success) must be under this lock
   private final Object lock = new Object();
-  // LRU cache based on access order (BACKOFF and actual data will be here)
-  @GuardedBy("lock")
-  private final LinkedHashLruCache<RouteLookupRequest, CacheEntry> linkedHashLruCache;
+  // LRU cache based on access order (BACKOFF and actual data will be here). Updated under the
+  // lock, but read without it, and without evicting, by picks hitting fresh data or backed-off
+  // entries.
+  private final LruCache<RouteLookupRequest, CacheEntry> lruCache;
   // any RPC on the fly will cached in this map
   @GuardedBy("lock")
   private final Map<RouteLookupRequest, PendingCacheEntry> pendingCallCache = new HashMap<>();
+  @GuardedBy("lock")
+  @Nullable
+  private ScheduledHandle refreshHandle;
+  // Picks served from cached data, other picks, and route lookups refreshing cached data.
+  private final LongCounter hitCount = LongCounterFactory.create();
+  private final LongCounter missCount = LongCounterFactory.create();
+  private final LongCounter refreshCount = LongCounterFactory.create();
 
   private final SynchronizationContext synchronizationContext;
   private final ScheduledExecutorService scheduledExecutorService;
@@ -113,6 +141,7 @@ final class CachingRlsLbClient {
   private final long maxAgeNanos;
   private final long staleAgeNanos;
   private final long callTimeoutNanos;
+  private final long refreshIntervalNanos;
 
   private final RlsLbHelper helper;
   private final ManagedChannel rlsChannel;
@@ -131,14 +160,25 @@ final class CachingRlsLbClient {
     maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(rlsConfig.getMaxAgeInMillis());
     staleAgeNanos = TimeUnit.MILLISECONDS.toNanos(rlsConfig.getStaleAgeInMillis());
     callTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(rlsConfig.getLookupServiceTimeoutInMillis());
+    refreshIntervalNanos = Math.max(
+        MIN_REFRESH_INTERVAL_NANOS, Math.min(staleAgeNanos / 10, MAX_REFRESH_INTERVAL_NANOS));
     timeProvider = checkNotNull(builder.timeProvider, "timeProvider");
     throttler = checkNotNull(builder.throttler, "throttler");
-    linkedHashLruCache =
-        new RlsAsyncLruCache(
-            rlsConfig.getCacheSizeBytes(),
-            builder.evictionListener,
-            scheduledExecutorService,
-            timeProvider);
+    if (enableTinyLfuCache) {
+      lruCache =
+          new RlsTinyLfuCache(
+              rlsConfig.getCacheSizeBytes(),
+              builder.evictionListener,
+              scheduledExecutorService,
+              timeProvider);
+    } else {
+      lruCache =
+          new RlsAsyncLruCache(
+              rlsConfig.getCacheSizeBytes(),
+              builder.evictionListener,
+              scheduledExecutorService,
+              timeProvider);
+    }
     logger = helper.getChannelLogger();
     String serverHost = null;
     try {
@@ -182,6 +222,9 @@ final class CachingRlsLbClient {
     refCountedChildPolicyWrapperFactory =
         new RefCountedChildPolicyWrapperFactory(
             childLbHelperProvider, new BackoffRefreshListener());
+    synchronized (lock) {
+      scheduleHotEntryRefresh();
+    }
     logger.log(ChannelLogLevel.DEBUG, "CachingRlsLbClient created");
   }
 
@@ -243,10 +286,25 @@ final class CachingRlsLbClient {
    */
   @CheckReturnValue
   final CachedRouteLookupResponse get(final RouteLookupRequest request) {
+    // Fast path for entries no status change is initiated for, or whose refresh is already on the
+    // fly. Their responses are immutable. Expired entries are left to the locked path to evict, as
+    // the eviction listener must run under the lock.
+    CacheEntry cachedEntry = lruCache.readWithoutEviction(request);
+    if (cachedEntry instanceof DataCacheEntry) {
+      DataCacheEntry dataEntry = (DataCacheEntry) cachedEntry;
+      if (dataEntry.refreshing || !dataEntry.isStaled(timeProvider.currentTimeNanos())) {
+        dataEntry.recordHit();
+        return dataEntry.cachedResponse;
+      }
+    } else if (cachedEntry instanceof BackoffCacheEntry) {
+      missCount.add(1);
+      return ((BackoffCacheEntry) cachedEntry).cachedResponse;
+    }
     synchronized (lock) {
       final CacheEntry cacheEntry;
-      cacheEntry = linkedHashLruCache.read(request);
+      cacheEntry = lruCache.read(request);
       if (cacheEntry == null) {
+        missCount.add(1);
         return handleNewRequest(request);
       }
 
@@ -257,9 +315,62 @@ final class CachingRlsLbClient {
         if (dataEntry.isStaled(timeProvider.currentTimeNanos())) {
           dataEntry.maybeRefresh();
         }
-        return CachedRouteLookupResponse.dataEntry((DataCacheEntry) cacheEntry);
+        dataEntry.recordHit();
+        return dataEntry.cachedResponse;
+      }
+      missCount.add(1);
+      return ((BackoffCacheEntry) cacheEntry).cachedResponse;
+    }
+  }
+
+  /** Returns the cache lookup counters of this client, for monitoring. */
+  CacheStats getCacheStats() {
+    return new CacheStats(hitCount.value(), missCount.value(), refreshCount.value());
+  }
+
+  @GuardedBy("lock")
+  private void scheduleHotEntryRefresh() {
+    refreshHandle = synchronizationContext.schedule(
+        new Runnable() {
+          @Override
+          public void run() {
+            refreshHotEntries();
+          }
+        },
+        refreshIntervalNanos,
+        TimeUnit.NANOSECONDS,
+        scheduledExecutorService);
+  }
+
+  /**
+   * Refreshes the data entries picks hit frequently that will become stale before the next round,
+   * so that hot keys don't wait for a route lookup when their entry expires. Entries that are not
+   * hot are still refreshed by the first pick hitting them once stale.
+   */
+  private void refreshHotEntries() {
+    synchronized (lock) {
+      long refreshBeforeNanos = timeProvider.currentTimeNanos() + refreshIntervalNanos;
+      for (CacheEntry entry : lruCache.values()) {
+        if (entry instanceof DataCacheEntry) {
+          DataCacheEntry dataEntry = (DataCacheEntry) entry;
+          if (dataEntry.decayHits() >= HOT_ENTRY_MIN_HITS
+              && dataEntry.isStaled(refreshBeforeNanos)) {
+            dataEntry.refreshAhead();
+          }
+        }
+      }
+      logger.log(ChannelLogLevel.DEBUG, "RLS cache stats: {0}", getCacheStats());
+      scheduleHotEntryRefresh();
+    }
+  }
+
+  /** Cancels the route lookups on the fly, as if they were given up on. */
+  @VisibleForTesting
+  void cancelPendingCalls() {
+    synchronized (lock) {
+      for (PendingCacheEntry pendingEntry : new ArrayList<>(pendingCallCache.values())) {
+        pendingEntry.pendingCall.cancel(false);
       }
-      return CachedRouteLookupResponse.backoffEntry((BackoffCacheEntry) cacheEntry);
     }
   }
 
@@ -267,8 +378,12 @@ final class CachingRlsLbClient {
   void close() {
     logger.log(ChannelLogLevel.DEBUG, "CachingRlsLbClient closed");
     synchronized (lock) {
+      if (refreshHandle != null) {
+        refreshHandle.cancel();
+        refreshHandle = null;
+      }
       // all childPolicyWrapper will be returned via AutoCleaningEvictionListener
-      linkedHashLruCache.close();
+      lruCache.close();
       // TODO(creamsoup) maybe cancel all pending requests
       pendingCallCache.clear();
       rlsChannel.shutdownNow();
@@ -298,13 +413,13 @@ final class CachingRlsLbClient {
         try {
           RouteLookupResponse response = asyncCall.get();
           DataCacheEntry dataEntry = new DataCacheEntry(request, response);
-          linkedHashLruCache.cache(request, dataEntry);
-          return CachedRouteLookupResponse.dataEntry(dataEntry);
+          lruCache.cache(request, dataEntry);
+          return dataEntry.cachedResponse;
         } catch (Exception e) {
           BackoffCacheEntry backoffEntry =
               new BackoffCacheEntry(request, Status.fromThrowable(e), backoffProvider.get());
-          linkedHashLruCache.cache(request, backoffEntry);
-          return CachedRouteLookupResponse.backoffEntry(backoffEntry);
+          lruCache.cache(request, backoffEntry);
+          return backoffEntry.cachedResponse;
         }
       }
     }
@@ -442,19 +557,31 @@ final class CachingRlsLbClient {
     private final ListenableFuture<RouteLookupResponse> pendingCall;
     private final RouteLookupRequest request;
     private final BackoffPolicy backoffPolicy;
+    // The entry this call refreshes, which is kept if the refresh fails before it is stale.
+    @Nullable
+    private final DataCacheEntry refreshedEntry;
 
     PendingCacheEntry(
         RouteLookupRequest request, ListenableFuture<RouteLookupResponse> pendingCall) {
-      this(request, pendingCall, null);
+      this(request, pendingCall, null, null);
     }
 
     PendingCacheEntry(
         RouteLookupRequest request,
         ListenableFuture<RouteLookupResponse> pendingCall,
         @Nullable BackoffPolicy backoffPolicy) {
+      this(request, pendingCall, backoffPolicy, null);
+    }
+
+    PendingCacheEntry(
+        RouteLookupRequest request,
+        ListenableFuture<RouteLookupResponse> pendingCall,
+        @Nullable BackoffPolicy backoffPolicy,
+        @Nullable DataCacheEntry refreshedEntry) {
       this.request = checkNotNull(request, "request");
       this.pendingCall = pendingCall;
       this.backoffPolicy = backoffPolicy == null ? backoffProvider.get() : backoffPolicy;
+      this.refreshedEntry = refreshedEntry;
       pendingCall.addListener(
           new Runnable() {
             @Override
@@ -467,37 +594,60 @@ final class CachingRlsLbClient {
 
     private void handleDoneFuture() {
       synchronized (lock) {
-        pendingCallCache.remove(request);
-        if (pendingCall.isCancelled()) {
-          return;
-        }
-
         try {
-          transitionToDataEntry(pendingCall.get());
-        } catch (Exception e) {
-          if (e instanceof ThrottledException) {
-            transitionToBackOff(Status.RESOURCE_EXHAUSTED.withCause(e));
-          } else {
-            transitionToBackOff(Status.fromThrowable(e));
+          pendingCallCache.remove(request);
+          if (pendingCall.isCancelled()) {
+            return;
+          }
+
+          try {
+            transitionToDataEntry(pendingCall.get());
+          } catch (Exception e) {
+            if (refreshedEntry != null && keepRefreshedEntry()) {
+              logger.log(ChannelLogLevel.DEBUG, "Refresh ahead of staleness failed:", e);
+              return;
+            }
+            if (e instanceof ThrottledException) {
+              transitionToBackOff(Status.RESOURCE_EXHAUSTED.withCause(e));
+            } else {
+              transitionToBackOff(Status.fromThrowable(e));
+            }
+          }
+        } finally {
+          // Picks skip the locked path for entries being refreshed, so the refreshed entry, if
+          // still cached, must be refreshed again by the next pick finding it stale.
+          if (refreshedEntry != null) {
+            refreshedEntry.refreshing = false;
           }
         }
       }
     }
 
+    /**
+     * Returns whether the refreshed entry is still cached and not stale yet, so that it can be
+     * served until the first pick hitting it once stale refreshes it.
+     */
+    private boolean keepRefreshedEntry() {
+      synchronized (lock) {
+        return lruCache.read(request) == refreshedEntry
+            && !refreshedEntry.isStaled(timeProvider.currentTimeNanos());
+      }
+    }
+
     private void transitionToDataEntry(RouteLookupResponse routeLookupResponse) {
       synchronized (lock) {
         logger.log(
             ChannelLogLevel.DEBUG,
             "Transition to data cache: routeLookupResponse={0}",
             routeLookupResponse);
-        linkedHashLruCache.cache(request, new DataCacheEntry(request, routeLookupResponse));
+        lruCache.cache(request, new DataCacheEntry(request, routeLookupResponse));
       }
     }
 
     private void transitionToBackOff(Status status) {
       synchronized (lock) {
         logger.log(ChannelLogLevel.DEBUG, "Transition to back off: status={0}", status);
-        linkedHashLruCache.cache(request, new BackoffCacheEntry(request, status, backoffPolicy));
+        lruCache.cache(request, new BackoffCacheEntry(request, status, backoffPolicy));
       }
     }
 
@@ -535,6 +685,13 @@ final class CachingRlsLbClient {
     private final long expireTime;
     private final long staleTime;
     private final ChildPolicyWrapper childPolicyWrapper;
+    // Returned by every pick hitting this entry.
+    private final CachedRouteLookupResponse cachedResponse;
+    // Whether a route lookup refreshing this entry is on the fly.
+    private volatile boolean refreshing;
+    // Hits since the last refresh round, halved every round. Updated without synchronization by
+    // picks, so concurrent hits may be lost, which is fine for telling hot entries apart.
+    private int recentHits;
 
     DataCacheEntry(RouteLookupRequest request, final RouteLookupResponse response) {
       super(request);
@@ -552,6 +709,7 @@ final class CachingRlsLbClient {
       } else {
         createChildLbPolicy();
       }
+      cachedResponse = CachedRouteLookupResponse.dataEntry(this);
     }
 
     private void createChildLbPolicy() {
@@ -592,24 +750,65 @@ final class CachingRlsLbClient {
           return;
         }
         final ListenableFuture<RouteLookupResponse> asyncCall = asyncRlsCall(request);
+        refreshCount.add(1);
         if (!asyncCall.isDone()) {
-          pendingCallCache.put(request, new PendingCacheEntry(request, asyncCall));
+          pendingCallCache.put(request, new PendingCacheEntry(request, asyncCall, null, this));
+          refreshing = true;
         } else {
           // async call returned finished future is most likely throttled
           try {
             RouteLookupResponse response = asyncCall.get();
-            linkedHashLruCache.cache(request, new DataCacheEntry(request, response));
+            lruCache.cache(request, new DataCacheEntry(request, response));
           } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
           } catch (Exception e) {
             BackoffCacheEntry backoffEntry =
                 new BackoffCacheEntry(request, Status.fromThrowable(e), backoffProvider.get());
-            linkedHashLruCache.cache(request, backoffEntry);
+            lruCache.cache(request, backoffEntry);
+          }
+        }
+      }
+    }
+
+    /**
+     * Refreshes this entry before it becomes stale. Unlike {@link #maybeRefresh()}, a failed
+     * refresh keeps this entry as long as it is not stale.
+     */
+    void refreshAhead() {
+      synchronized (lock) {
+        if (pendingCallCache.containsKey(request)) {
+          return;
+        }
+        ListenableFuture<RouteLookupResponse> asyncCall = asyncRlsCall(request);
+        refreshCount.add(1);
+        if (!asyncCall.isDone()) {
+          pendingCallCache.put(request, new PendingCacheEntry(request, asyncCall, null, this));
+          refreshing = true;
+        } else {
+          try {
+            lruCache.cache(request, new DataCacheEntry(request, asyncCall.get()));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } catch (Exception e) {
+            // most likely throttled, picks refresh this entry once stale
+            logger.log(ChannelLogLevel.DEBUG, "Refresh ahead of staleness failed:", e);
           }
         }
       }
     }
 
+    void recordHit() {
+      hitCount.add(1);
+      recentHits++;
+    }
+
+    /** Returns the hits since the last refresh round and halves them. */
+    int decayHits() {
+      int hits = recentHits;
+      recentHits = hits >>> 1;
+      return hits;
+    }
+
     @Nullable
     ChildPolicyWrapper getChildPolicyWrapper() {
       return childPolicyWrapper;
@@ -662,6 +861,8 @@ final class CachingRlsLbClient {
     private final ScheduledHandle scheduledHandle;
     private final BackoffPolicy backoffPolicy;
     private final long expireNanos;
+    // Returned by every pick hitting this entry.
+    private final CachedRouteLookupResponse cachedResponse;
     private boolean shutdown = false;
 
     BackoffCacheEntry(RouteLookupRequest request, Status status, BackoffPolicy backoffPolicy) {
@@ -681,6 +882,7 @@ final class CachingRlsLbClient {
               delayNanos,
               TimeUnit.NANOSECONDS,
               scheduledExecutorService);
+      cachedResponse = CachedRouteLookupResponse.backoffEntry(this);
     }
 
     /** Forcefully refreshes cache entry by ignoring the backoff timer. */
@@ -700,15 +902,15 @@ final class CachingRlsLbClient {
         if (!call.isDone()) {
           PendingCacheEntry pendingEntry = new PendingCacheEntry(request, call, backoffPolicy);
           pendingCallCache.put(request, pendingEntry);
-          linkedHashLruCache.invalidate(request);
+          lruCache.invalidate(request);
         } else {
           try {
             RouteLookupResponse response = call.get();
-            linkedHashLruCache.cache(request, new DataCacheEntry(request, response));
+            lruCache.cache(request, new DataCacheEntry(request, response));
           } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
           } catch (Exception e) {
-            linkedHashLruCache.cache(
+            lruCache.cache(
                 request,
                 new BackoffCacheEntry(request, Status.fromThrowable(e), backoffPolicy));
           }
@@ -750,6 +952,43 @@ final class CachingRlsLbClient {
     }
   }
 
+  /** Counters of the picks looking up the cache and of the route lookups refreshing it. */
+  static final class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long refreshCount;
+
+    CacheStats(long hitCount, long missCount, long refreshCount) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.refreshCount = refreshCount;
+    }
+
+    /** Returns the number of picks served from cached route lookup responses. */
+    long getHitCount() {
+      return hitCount;
+    }
+
+    /** Returns the number of picks finding a pending or backed-off entry, or no entry at all. */
+    long getMissCount() {
+      return missCount;
+    }
+
+    /** Returns the number of route lookups refreshing cached responses. */
+    long getRefreshCount() {
+      return refreshCount;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("hitCount", hitCount)
+          .add("missCount", missCount)
+          .add("refreshCount", refreshCount)
+          .toString();
+    }
+  }
+
   /** Returns a Builder for {@link CachingRlsLbClient}. */
   static Builder newBuilder() {
     return new Builder();
@@ -850,9 +1089,9 @@ final class CachingRlsLbClient {
     }
   }
 
-  /** Implementation of {@link LinkedHashLruCache} for RLS. */
+  /** Implementation of {@link ConcurrentLruCache} for RLS. */
   private static final class RlsAsyncLruCache
-      extends LinkedHashLruCache<RouteLookupRequest, CacheEntry> {
+      extends ConcurrentLruCache<RouteLookupRequest, CacheEntry> {
 
     RlsAsyncLruCache(long maxEstimatedSizeBytes,
         @Nullable EvictionListener<RouteLookupRequest, CacheEntry> evictionListener,
@@ -884,6 +1123,32 @@ final class CachingRlsLbClient {
     }
   }
 
+  /** Implementation of {@link TinyLfuCache} for RLS. */
+  private static final class RlsTinyLfuCache extends TinyLfuCache<RouteLookupRequest, CacheEntry> {
+
+    RlsTinyLfuCache(long maxEstimatedSizeBytes,
+        @Nullable EvictionListener<RouteLookupRequest, CacheEntry> evictionListener,
+        ScheduledExecutorService ses, TimeProvider timeProvider) {
+      super(
+          maxEstimatedSizeBytes,
+          new AutoCleaningEvictionListener(evictionListener),
+          1,
+          TimeUnit.MINUTES,
+          ses,
+          timeProvider);
+    }
+
+    @Override
+    protected boolean isExpired(RouteLookupRequest key, CacheEntry value, long nowNanos) {
+      return value.isExpired();
+    }
+
+    @Override
+    protected int estimateSizeOf(RouteLookupRequest key, CacheEntry value) {
+      return value.getSizeBytes();
+    }
+  }
+
   /**
    * LbStatusListener refreshes {@link BackoffCacheEntry} when lb state is changed to {@link
    * ConnectivityState#READY} from {@link ConnectivityState#TRANSIENT_FAILURE}.
@@ -898,7 +1163,7 @@ final class CachingRlsLbClient {
       if (prevState == ConnectivityState.TRANSIENT_FAILURE
           && newState == ConnectivityState.READY) {
         synchronized (lock) {
-          for (CacheEntry value : linkedHashLruCache.values()) {
+          for (CacheEntry value : lruCache.values()) {
             if (value instanceof BackoffCacheEntry) {
               ((BackoffCacheEntry) value).forceRefresh();
             }
@@ -924,13 +1189,15 @@ final class CachingRlsLbClient {
 
     @Override
     public PickResult pickSubchannel(PickSubchannelArgs args) {
-      String[] methodName = args.getMethodDescriptor().getFullMethodName().split("/", 2);
-      RouteLookupRequest request =
-          requestFactory.create(methodName[0], methodName[1], args.getHeaders());
+      RouteLookupRequest request = requestFactory.create(
+          args.getMethodDescriptor().getFullMethodName(), args.getHeaders());
       final CachedRouteLookupResponse response = CachingRlsLbClient.this.get(request);
-      logger.log(ChannelLogLevel.DEBUG,
-          "Got route lookup cache entry for service={0}, method={1}, headers={2}:\n {3}",
-          new Object[]{methodName[0], methodName[1], args.getHeaders(), response});
+      if (!response.hasData()) {
+        // Cache hits are not logged, as most picks hit the cache.
+        logger.log(ChannelLogLevel.DEBUG,
+            "Got route lookup cache entry for path={0}, headers={1}:\n {2}",
+            new Object[]{request.getPath(), args.getHeaders(), response});
+      }
 
       if (response.getHeaderData() != null && !response.getHeaderData().isEmpty()) {
         Metadata headers = args.getHeaders();
@@ -0,0 +1,527 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.rls;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import io.grpc.internal.TimeProvider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A ConcurrentLruCache implements the same access order lru cache as {@link LinkedHashLruCache},
+ * with entry level expiration time and periodic removal of expired entries, without taking a lock
+ * on reads.
+ *
+ * <p>Entries are looked up in a {@link ConcurrentHashMap}. Reads record accesses in lossy
+ * per-thread-striped buffers instead of reordering the lru list, and the buffers are replayed on
+ * the list under the lock by writes, or by a read finding its buffer filling up when the lock is
+ * free. Accesses dropped from full buffers only make the lru order approximate; all updates of the
+ * entries, the list and the estimated size still happen under the lock.
+ */
+@ThreadSafe
+abstract class ConcurrentLruCache<K, V> implements LruCache<K, V> {
+  // Must be powers of two.
+  private static final int MAX_READ_BUFFERS = 16;
+  private static final int READ_BUFFER_SIZE = 32;
+  private static final int READ_BUFFER_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+  private final ConcurrentHashMap<K, Node<K, V>> data;
+  private final ReentrantLock lock = new ReentrantLock();
+  // Sentinel of the lru list, which is circular; the eldest entry is next to it.
+  @GuardedBy("lock")
+  private final Node<K, V> head = new Node<>(null, null, 0);
+  private final List<ReadBuffer> readBuffers;
+  private final PeriodicCleaner periodicCleaner;
+  private final TimeProvider timeProvider;
+  @Nullable
+  private final EvictionListener<K, V> evictionListener;
+  private final AtomicLong estimatedSizeBytes = new AtomicLong();
+  private volatile long estimatedMaxSizeBytes;
+
+  ConcurrentLruCache(
+      long estimatedMaxSizeBytes,
+      @Nullable EvictionListener<K, V> evictionListener,
+      int cleaningInterval,
+      TimeUnit cleaningIntervalUnit,
+      ScheduledExecutorService ses,
+      TimeProvider timeProvider) {
+    checkState(estimatedMaxSizeBytes > 0, "max estimated cache size should be positive");
+    this.estimatedMaxSizeBytes = estimatedMaxSizeBytes;
+    this.evictionListener = evictionListener;
+    this.timeProvider = checkNotNull(timeProvider, "timeProvider");
+    // rough estimate or minimum hashmap default
+    data = new ConcurrentHashMap<>(Math.max((int) (estimatedMaxSizeBytes / 1000), 16));
+    head.prev = head;
+    head.next = head;
+    int readBufferCount = 1;
+    while (readBufferCount < Runtime.getRuntime().availableProcessors()
+        && readBufferCount < MAX_READ_BUFFERS) {
+      readBufferCount <<= 1;
+    }
+    readBuffers = new ArrayList<>(readBufferCount);
+    for (int i = 0; i < readBufferCount; i++) {
+      readBuffers.add(new ReadBuffer());
+    }
+    periodicCleaner = new PeriodicCleaner(ses, cleaningInterval, cleaningIntervalUnit).start();
+  }
+
+  /**
+   * Determines if the eldest entry should be kept or not when the cache size limit is reached. Note
+   * that LruCache is access level and the eldest is determined by access pattern.
+   */
+  @SuppressWarnings("unused")
+  protected boolean shouldInvalidateEldestEntry(K eldestKey, V eldestValue) {
+    return true;
+  }
+
+  /** Determines if the entry is already expired or not. */
+  protected abstract boolean isExpired(K key, V value, long nowNanos);
+
+  /**
+   * Returns estimated size of entry to keep track. If it always returns 1, the max size bytes
+   * behaves like max number of entry (default behavior).
+   */
+  @SuppressWarnings("unused")
+  protected int estimateSizeOf(K key, V value) {
+    return 1;
+  }
+
+  /** Updates size for given key if entry exists. It is useful if the cache value is mutated. */
+  public void updateEntrySize(K key) {
+    Node<K, V> node = readInternal(key, true);
+    if (node == null) {
+      return;
+    }
+    lock.lock();
+    try {
+      if (data.get(key) != node) {
+        return;
+      }
+      int prevSize = node.size;
+      node.size = estimateSizeOf(key, node.value);
+      estimatedSizeBytes.addAndGet(node.size - prevSize);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns estimated cache size bytes. Each entry size is calculated by {@link
+   * #estimateSizeOf(java.lang.Object, java.lang.Object)}.
+   */
+  public long estimatedSizeBytes() {
+    return estimatedSizeBytes.get();
+  }
+
+  @Override
+  @Nullable
+  public final V cache(K key, V value) {
+    checkNotNull(key, "key");
+    checkNotNull(value, "value");
+    Node<K, V> node = new Node<>(key, value, estimateSizeOf(key, value));
+    Node<K, V> existing;
+    lock.lock();
+    try {
+      drainReadBuffers();
+      estimatedSizeBytes.addAndGet(node.size);
+      existing = data.put(key, node);
+      if (existing != null) {
+        unlink(existing);
+        notifyEviction(existing, EvictionType.REPLACED);
+      }
+      linkLast(node);
+      evictIfNeeded();
+    } finally {
+      lock.unlock();
+    }
+    return existing == null ? null : existing.value;
+  }
+
+  @Override
+  @Nullable
+  @CheckReturnValue
+  public final V read(K key) {
+    Node<K, V> node = readInternal(key, true);
+    if (node != null) {
+      return node.value;
+    }
+    return null;
+  }
+
+  @Override
+  @Nullable
+  @CheckReturnValue
+  public final V readWithoutEviction(K key) {
+    Node<K, V> node = readInternal(key, false);
+    if (node != null) {
+      return node.value;
+    }
+    return null;
+  }
+
+  @Nullable
+  @CheckReturnValue
+  private Node<K, V> readInternal(K key, boolean evictExpired) {
+    checkNotNull(key, "key");
+    Node<K, V> node = data.get(key);
+    if (node == null) {
+      return null;
+    }
+    if (isExpired(key, node.value, timeProvider.currentTimeNanos())) {
+      if (!evictExpired) {
+        return null;
+      }
+      lock.lock();
+      try {
+        if (data.remove(key, node)) {
+          unlink(node);
+          notifyEviction(node, EvictionType.EXPIRED);
+        }
+      } finally {
+        lock.unlock();
+      }
+      return null;
+    }
+    recordAccess(node);
+    return node;
+  }
+
+  @Override
+  @Nullable
+  public final V invalidate(K key) {
+    checkNotNull(key, "key");
+    lock.lock();
+    try {
+      Node<K, V> existing = data.remove(key);
+      if (existing != null) {
+        unlink(existing);
+        notifyEviction(existing, EvictionType.EXPLICIT);
+      }
+      return existing == null ? null : existing.value;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public final void invalidateAll(Iterable<K> keys) {
+    checkNotNull(keys, "keys");
+    lock.lock();
+    try {
+      for (K key : keys) {
+        invalidate(key);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  @CheckReturnValue
+  public final boolean hasCacheEntry(K key) {
+    // call readInternal to filter already expired entry in the cache
+    return readInternal(key, true) != null;
+  }
+
+  @Override
+  public final List<V> values() {
+    lock.lock();
+    try {
+      List<V> list = new ArrayList<>(data.size());
+      for (Node<K, V> node = head.next; node != head; node = node.next) {
+        list.add(node.value);
+      }
+      return Collections.unmodifiableList(list);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Resizes cache. If new size is smaller than current estimated size, it will free up space by
+   * removing expired entries and removing oldest entries by LRU order.
+   */
+  public final void resize(int newSizeBytes) {
+    long now = timeProvider.currentTimeNanos();
+    lock.lock();
+    try {
+      this.estimatedMaxSizeBytes = newSizeBytes;
+      if (estimatedSizeBytes.get() <= newSizeBytes) {
+        // new size is larger no need to do cleanup
+        return;
+      }
+      // cleanup expired entries
+      cleanupExpiredEntries(Integer.MAX_VALUE, now);
+
+      // cleanup eldest entry until new size limit
+      drainReadBuffers();
+      while (head.next != head && estimatedMaxSizeBytes < estimatedSizeBytes.get()) {
+        evict(head.next, EvictionType.SIZE);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  @CheckReturnValue
+  public final int estimatedSize() {
+    return data.size();
+  }
+
+  /**
+   * Frees up space when the estimated size exceeds the limit, by removing at most one expired
+   * entry, and if there is none, the eldest entries.
+   */
+  @GuardedBy("lock")
+  private void evictIfNeeded() {
+    if (estimatedSizeBytes.get() <= estimatedMaxSizeBytes) {
+      return;
+    }
+    if (cleanupExpiredEntries(1, timeProvider.currentTimeNanos())) {
+      return;
+    }
+    while (head.next != head && estimatedSizeBytes.get() > estimatedMaxSizeBytes) {
+      Node<K, V> eldest = head.next;
+      if (!shouldInvalidateEldestEntry(eldest.key, eldest.value)) {
+        return;
+      }
+      evict(eldest, EvictionType.SIZE);
+    }
+  }
+
+  // maxExpiredEntries is by number of entries
+  private boolean cleanupExpiredEntries(int maxExpiredEntries, long now) {
+    checkArgument(maxExpiredEntries > 0, "maxExpiredEntries must be positive");
+    boolean removedAny = false;
+    lock.lock();
+    try {
+      Node<K, V> node = head.next;
+      while (node != head && maxExpiredEntries > 0) {
+        Node<K, V> next = node.next;
+        if (isExpired(node.key, node.value, now)) {
+          evict(node, EvictionType.EXPIRED);
+          removedAny = true;
+          maxExpiredEntries--;
+        }
+        node = next;
+      }
+    } finally {
+      lock.unlock();
+    }
+    return removedAny;
+  }
+
+  @GuardedBy("lock")
+  private void evict(Node<K, V> node, EvictionType cause) {
+    data.remove(node.key, node);
+    unlink(node);
+    notifyEviction(node, cause);
+  }
+
+  @GuardedBy("lock")
+  private void notifyEviction(Node<K, V> node, EvictionType cause) {
+    estimatedSizeBytes.addAndGet(-1 * node.size);
+    if (evictionListener != null) {
+      evictionListener.onEviction(node.key, node.value, cause);
+    }
+  }
+
+  @GuardedBy("lock")
+  private void linkLast(Node<K, V> node) {
+    node.prev = head.prev;
+    node.next = head;
+    head.prev.next = node;
+    head.prev = node;
+  }
+
+  @GuardedBy("lock")
+  private void unlink(Node<K, V> node) {
+    if (node.next == null) {
+      return;
+    }
+    node.prev.next = node.next;
+    node.next.prev = node.prev;
+    node.prev = null;
+    node.next = null;
+  }
+
+  private void recordAccess(Node<K, V> node) {
+    ReadBuffer readBuffer = readBuffers.get(readBufferIndex());
+    if (readBuffer.offer(node) && lock.tryLock()) {
+      try {
+        drainReadBuffers();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /** Moves the entries read since the previous drain to the end of the lru list. */
+  private void drainReadBuffers() {
+    lock.lock();
+    try {
+      for (ReadBuffer readBuffer : readBuffers) {
+        readBuffer.drain();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private int readBufferIndex() {
+    // Thread ids are sequential, so spread them before masking.
+    long id = Thread.currentThread().getId();
+    int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & (readBuffers.size() - 1);
+  }
+
+  @Override
+  public final void close() {
+    lock.lock();
+    try {
+      periodicCleaner.stop();
+      doClose();
+      data.clear();
+      for (ReadBuffer readBuffer : readBuffers) {
+        readBuffer.drain();
+      }
+      head.prev = head;
+      head.next = head;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  protected void doClose() {}
+
+  /**
+   * A bounded buffer of accessed entries. Accesses are dropped when it is full.
+   */
+  private final class ReadBuffer {
+    private final AtomicReferenceArray<Node<K, V>> nodes =
+        new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong writeCount = new AtomicLong();
+    // Only advanced under the lock.
+    private volatile long readCount;
+
+    /** Records an access, returning whether the buffer should be drained. */
+    boolean offer(Node<K, V> node) {
+      long writes = writeCount.get();
+      long pending = writes - readCount;
+      if (pending >= READ_BUFFER_SIZE) {
+        return true;
+      }
+      if (writeCount.compareAndSet(writes, writes + 1)) {
+        nodes.lazySet((int) (writes & (READ_BUFFER_SIZE - 1)), node);
+      }
+      return pending + 1 >= READ_BUFFER_DRAIN_THRESHOLD;
+    }
+
+    @GuardedBy("lock")
+    void drain() {
+      long reads = readCount;
+      long writes = writeCount.get();
+      while (reads < writes) {
+        int index = (int) (reads & (READ_BUFFER_SIZE - 1));
+        Node<K, V> node = nodes.get(index);
+        if (node == null) {
+          // The slot is claimed, but the access is not written yet.
+          break;
+        }
+        nodes.lazySet(index, null);
+        reads++;
+        // Entries removed since are unlinked.
+        if (node.next != null) {
+          unlink(node);
+          linkLast(node);
+        }
+      }
+      readCount = reads;
+    }
+  }
+
+  /** Periodically cleans up the AsyncRequestCache. */
+  private final class PeriodicCleaner {
+
+    private final ScheduledExecutorService ses;
+    private final int interval;
+    private final TimeUnit intervalUnit;
+    private ScheduledFuture<?> scheduledFuture;
+
+    PeriodicCleaner(ScheduledExecutorService ses, int interval, TimeUnit intervalUnit) {
+      this.ses = checkNotNull(ses, "ses");
+      checkState(interval > 0, "interval must be positive");
+      this.interval = interval;
+      this.intervalUnit = checkNotNull(intervalUnit, "intervalUnit");
+    }
+
+    PeriodicCleaner start() {
+      checkState(scheduledFuture == null, "cleaning task can be started only once");
+      this.scheduledFuture =
+          ses.scheduleAtFixedRate(new CleaningTask(), interval, interval, intervalUnit);
+      return this;
+    }
+
+    void stop() {
+      if (scheduledFuture != null) {
+        scheduledFuture.cancel(false);
+        scheduledFuture = null;
+      }
+    }
+
+    private class CleaningTask implements Runnable {
+
+      @Override
+      public void run() {
+        cleanupExpiredEntries(Integer.MAX_VALUE, timeProvider.currentTimeNanos());
+      }
+    }
+  }
+
+  private static final class Node<K, V> {
+    final K key;
+    final V value;
+    volatile int size;
+    // In the lru list, or null when removed.
+    @Nullable
+    Node<K, V> prev;
+    @Nullable
+    Node<K, V> next;
+
+    Node(K key, V value, int size) {
+      this.key = key;
+      this.value = value;
+      this.size = size;
+    }
+  }
+}
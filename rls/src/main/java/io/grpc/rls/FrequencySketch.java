@@ -0,0 +1,132 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.rls;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A count-min sketch estimating the access frequency of keys, used by {@link TinyLfuCache} to
+ * decide which entries to admit. Each key is counted by 4 counters of 4 bits, so frequencies are
+ * capped at 15. Once the number of increments reaches 10 times the capacity, all counters are
+ * halved so that the sketch reflects recent accesses.
+ */
+@NotThreadSafe
+final class FrequencySketch {
+
+  private static final int MAX_FREQUENCY = 15;
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+  private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+  private long[] table;
+  private int tableMask;
+  private int capacity;
+  private int sampleSize;
+  private int size;
+
+  FrequencySketch(int capacity) {
+    ensureCapacity(capacity);
+  }
+
+  /** Returns the number of keys this sketch is sized for. */
+  int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Resizes the sketch to count the given number of keys accurately, if it is larger than the
+   * current capacity. Frequencies counted so far are discarded.
+   */
+  void ensureCapacity(int capacity) {
+    checkArgument(capacity > 0, "capacity must be positive");
+    if (table != null && capacity <= this.capacity) {
+      return;
+    }
+    this.capacity = Math.min(capacity, 1 << 30);
+    table = new long[Math.max(tableSizeFor(this.capacity), 8)];
+    tableMask = table.length - 1;
+    sampleSize = this.capacity * 10;
+    size = 0;
+  }
+
+  /** Returns the estimated number of accesses of the key, up to 15. */
+  int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    int frequency = MAX_FREQUENCY;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /** Records an access of the key. */
+  void increment(Object key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++size == sampleSize) {
+      reset();
+    }
+  }
+
+  /** Increments the {@code j}th counter of {@code table[i]} unless it is saturated. */
+  private boolean incrementAt(int i, int j) {
+    int offset = j << 2;
+    long mask = 0xfL << offset;
+    if ((table[i] & mask) != mask) {
+      table[i] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /** Halves all counters, and the number of increments accordingly. */
+  private void reset() {
+    int oddCount = 0;
+    for (int i = 0; i < table.length; i++) {
+      oddCount += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size >>> 1) - (oddCount >>> 2);
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+
+  /** Applies a supplemental hash to defend against poor quality hash codes. */
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+
+  private static int tableSizeFor(int capacity) {
+    return Integer.highestOneBit(capacity - 1) << 1;
+  }
+}
@@ -166,6 +166,20 @@ abstract class LinkedHashLruCache<K, V> implements LruCache<K, V> {
     return null;
   }
 
+  @Override
+  @Nullable
+  @CheckReturnValue
+  public final V readWithoutEviction(K key) {
+    checkNotNull(key, "key");
+    synchronized (lock) {
+      SizedValue existing = delegate.get(key);
+      if (existing == null || isExpired(key, existing.value, timeProvider.currentTimeNanos())) {
+        return null;
+      }
+      return existing.value;
+    }
+  }
+
   @Nullable
   @CheckReturnValue
   private SizedValue readInternal(K key) {
@@ -219,7 +233,7 @@ abstract class LinkedHashLruCache<K, V> implements LruCache<K, V> {
     return readInternal(key) != null;
   }
 
-  /** Returns shallow copied values in the cache. */
+  @Override
   public final List<V> values() {
     synchronized (lock) {
       List<V> list = new ArrayList<>(delegate.size());
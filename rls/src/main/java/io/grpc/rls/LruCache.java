@@ -16,6 +16,7 @@
 
 package io.grpc.rls;
 
+import java.util.List;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nullable;
 
@@ -39,6 +40,15 @@ interface LruCache<K, V> {
   @CheckReturnValue
   V read(K key);
 
+  /**
+   * Returns cached value for given key if exists, otherwise {@code null}. Like {@link #read}, this
+   * operation doesn't return already expired cache entry, but it leaves the entry to be evicted by
+   * other operations, so that it never triggers {@link EvictionListener}.
+   */
+  @Nullable
+  @CheckReturnValue
+  V readWithoutEviction(K key);
+
   /**
    * Invalidates an entry for given key if exists. This operation will trigger {@link
    * EvictionListener} with {@link EvictionType#EXPLICIT}.
@@ -65,6 +75,9 @@ interface LruCache<K, V> {
   @CheckReturnValue
   int estimatedSize();
 
+  /** Returns shallow copied values in the cache. */
+  List<V> values();
+
   /** Closes underlying resources. */
   void close();
 
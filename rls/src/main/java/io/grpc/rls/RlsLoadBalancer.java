@@ -25,6 +25,7 @@ import io.grpc.ChannelLogger.ChannelLogLevel;
 import io.grpc.ConnectivityState;
 import io.grpc.LoadBalancer;
 import io.grpc.Status;
+import io.grpc.internal.AdaptiveThrottler;
 import javax.annotation.Nullable;
 
 /**
@@ -132,7 +133,32 @@ final class RlsLoadBalancer extends LoadBalancer {
 
     @Override
     public CachingRlsLbClient.Builder get() {
-      return CachingRlsLbClient.newBuilder().setThrottler(AdaptiveThrottler.builder().build());
+      return CachingRlsLbClient.newBuilder()
+          .setThrottler(new AdaptiveRlsThrottler(AdaptiveThrottler.builder().build()));
+    }
+  }
+
+  /** A {@link Throttler} throttling the RLS requests with an {@link AdaptiveThrottler}. */
+  static final class AdaptiveRlsThrottler implements Throttler {
+    private final AdaptiveThrottler delegate;
+
+    AdaptiveRlsThrottler(AdaptiveThrottler delegate) {
+      this.delegate = checkNotNull(delegate, "delegate");
+    }
+
+    @Override
+    public boolean shouldThrottle() {
+      return delegate.shouldThrottle();
+    }
+
+    @Override
+    public void registerBackendResponse(boolean throttled) {
+      delegate.registerBackendResponse(throttled);
+    }
+
+    @Override
+    public String toString() {
+      return delegate.toString();
     }
   }
 }
@@ -48,12 +48,16 @@ final class RlsProtoData {
 
     private final ImmutableMap<String, String> keyMap;
 
+    // Requests are the keys of the RLS cache, looked up on every pick.
+    private final int hashCode;
+
     RouteLookupRequest(
         String server, String path, String targetType, Map<String, String> keyMap) {
       this.server = checkNotNull(server, "server");
       this.path = checkNotNull(path, "path");
       this.targetType = checkNotNull(targetType, "targetName");
       this.keyMap = ImmutableMap.copyOf(checkNotNull(keyMap, "keyMap"));
+      this.hashCode = Objects.hashCode(server, path, targetType, this.keyMap);
     }
 
     /**
@@ -94,7 +98,8 @@ final class RlsProtoData {
         return false;
       }
       RouteLookupRequest that = (RouteLookupRequest) o;
-      return Objects.equal(server, that.server)
+      return hashCode == that.hashCode
+          && Objects.equal(server, that.server)
           && Objects.equal(path, that.path)
           && Objects.equal(targetType, that.targetType)
           && Objects.equal(keyMap, that.keyMap);
@@ -102,7 +107,7 @@ final class RlsProtoData {
 
     @Override
     public int hashCode() {
-      return Objects.hashCode(server, path, targetType, keyMap);
+      return hashCode;
     }
 
     @Override
@@ -20,6 +20,8 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Table;
 import io.grpc.Metadata;
 import io.grpc.Status;
@@ -29,8 +31,10 @@ import io.grpc.rls.RlsProtoData.GrpcKeyBuilder.Name;
 import io.grpc.rls.RlsProtoData.NameMatcher;
 import io.grpc.rls.RlsProtoData.RouteLookupConfig;
 import io.grpc.rls.RlsProtoData.RouteLookupRequest;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.annotation.CheckReturnValue;
 
 /**
@@ -38,12 +42,17 @@ import javax.annotation.CheckReturnValue;
  * RouteLookupConfig}.
  */
 final class RlsRequestFactory {
+  // Bounds the methods whose key builders are kept, for channels calling arbitrary methods.
+  private static final int MAX_METHOD_KEY_BUILDERS = 1000;
 
   private final String target;
   /**
    * schema: Path(/serviceName/methodName or /serviceName/*), rls request headerName, header fields.
    */
   private final Table<String, String, NameMatcher> keyBuilderTable;
+  /** The key builders of the methods called so far, by full method name. */
+  private final ConcurrentMap<String, MethodKeyBuilder> methodKeyBuilders =
+      new ConcurrentHashMap<>();
 
   RlsRequestFactory(RouteLookupConfig rlsConfig, String target) {
     checkNotNull(rlsConfig, "rlsConfig");
@@ -68,42 +77,99 @@ final class RlsRequestFactory {
     return table;
   }
 
+  /**
+   * Creates a {@link RouteLookupRequest} for given request's full method name and metadata. The
+   * key builder of each method is resolved once, and the request of methods without key builder
+   * headers is created once.
+   */
+  @CheckReturnValue
+  RouteLookupRequest create(String fullMethodName, Metadata metadata) {
+    checkNotNull(fullMethodName, "fullMethodName");
+    MethodKeyBuilder methodKeyBuilder = methodKeyBuilders.get(fullMethodName);
+    if (methodKeyBuilder == null) {
+      methodKeyBuilder = new MethodKeyBuilder(fullMethodName);
+      if (methodKeyBuilders.size() < MAX_METHOD_KEY_BUILDERS) {
+        methodKeyBuilders.putIfAbsent(fullMethodName, methodKeyBuilder);
+      }
+    }
+    return methodKeyBuilder.create(metadata);
+  }
+
   /** Creates a {@link RouteLookupRequest} for given request's metadata. */
   @CheckReturnValue
   RouteLookupRequest create(String service, String method, Metadata metadata) {
     checkNotNull(service, "service");
     checkNotNull(method, "method");
-    String path = "/" + service + "/" + method;
-    Map<String, NameMatcher> keyBuilder = keyBuilderTable.row(path);
-    // if no matching keyBuilder found, fall back to wildcard match (ServiceName/*)
-    if (keyBuilder.isEmpty()) {
-      keyBuilder = keyBuilderTable.row("/" + service + "/*");
-    }
-    Map<String, String> rlsRequestHeaders = createRequestHeaders(metadata, keyBuilder);
-    return new RouteLookupRequest(target, path, "grpc", rlsRequestHeaders);
+    return create(service + "/" + method, metadata);
   }
 
-  private Map<String, String> createRequestHeaders(
-      Metadata metadata, Map<String, NameMatcher> keyBuilder) {
-    Map<String, String> rlsRequestHeaders = new HashMap<>();
-    for (Map.Entry<String, NameMatcher> entry : keyBuilder.entrySet()) {
-      NameMatcher nameMatcher = entry.getValue();
-      String value = null;
-      for (String requestHeaderName : nameMatcher.names()) {
-        value = metadata.get(Metadata.Key.of(requestHeaderName, Metadata.ASCII_STRING_MARSHALLER));
+  /** The key builder of a method, with the request header keys to look up. */
+  private final class MethodKeyBuilder {
+    private final String path;
+    private final ImmutableList<HeaderKeyBuilder> headerKeyBuilders;
+    // Shared by all requests when no header is looked up.
+    private final RouteLookupRequest request;
+
+    MethodKeyBuilder(String fullMethodName) {
+      path = "/" + fullMethodName;
+      Map<String, NameMatcher> keyBuilder = keyBuilderTable.row(path);
+      // if no matching keyBuilder found, fall back to wildcard match (ServiceName/*)
+      if (keyBuilder.isEmpty()) {
+        int methodIndex = fullMethodName.indexOf('/');
+        if (methodIndex >= 0) {
+          keyBuilder =
+              keyBuilderTable.row("/" + fullMethodName.substring(0, methodIndex) + "/*");
+        }
+      }
+      ImmutableList.Builder<HeaderKeyBuilder> headerKeyBuilders = ImmutableList.builder();
+      for (Map.Entry<String, NameMatcher> entry : keyBuilder.entrySet()) {
+        headerKeyBuilders.add(new HeaderKeyBuilder(entry.getKey(), entry.getValue()));
+      }
+      this.headerKeyBuilders = headerKeyBuilders.build();
+      request = new RouteLookupRequest(
+          target, path, "grpc", Collections.<String, String>emptyMap());
+    }
+
+    RouteLookupRequest create(Metadata metadata) {
+      if (headerKeyBuilders.isEmpty()) {
+        return request;
+      }
+      ImmutableMap.Builder<String, String> rlsRequestHeaders = ImmutableMap.builder();
+      for (HeaderKeyBuilder headerKeyBuilder : headerKeyBuilders) {
+        String value = null;
+        for (Metadata.Key<String> headerKey : headerKeyBuilder.headerKeys) {
+          value = metadata.get(headerKey);
+          if (value != null) {
+            break;
+          }
+        }
         if (value != null) {
-          break;
+          rlsRequestHeaders.put(headerKeyBuilder.key, value);
+        } else if (!headerKeyBuilder.optional) {
+          throw new StatusRuntimeException(
+              Status.INVALID_ARGUMENT.withDescription(
+                  String.format("Missing mandatory metadata(%s) not found", headerKeyBuilder.key)));
         }
       }
-      if (value != null) {
-        rlsRequestHeaders.put(entry.getKey(), value);
-      } else if (!nameMatcher.isOptional()) {
-        throw new StatusRuntimeException(
-            Status.INVALID_ARGUMENT.withDescription(
-                String.format("Missing mandatory metadata(%s) not found", entry.getKey())));
+      return new RouteLookupRequest(target, path, "grpc", rlsRequestHeaders.build());
+    }
+  }
+
+  /** A key of the request, looked up in the request headers in order. */
+  private static final class HeaderKeyBuilder {
+    private final String key;
+    private final ImmutableList<Metadata.Key<String>> headerKeys;
+    private final boolean optional;
+
+    HeaderKeyBuilder(String key, NameMatcher nameMatcher) {
+      this.key = key;
+      ImmutableList.Builder<Metadata.Key<String>> headerKeys = ImmutableList.builder();
+      for (String requestHeaderName : nameMatcher.names()) {
+        headerKeys.add(Metadata.Key.of(requestHeaderName, Metadata.ASCII_STRING_MARSHALLER));
       }
+      this.headerKeys = headerKeys.build();
+      this.optional = nameMatcher.isOptional();
     }
-    return rlsRequestHeaders;
   }
 
   @Override
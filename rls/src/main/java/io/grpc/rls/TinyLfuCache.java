@@ -0,0 +1,552 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.rls;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import io.grpc.internal.TimeProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A TinyLfuCache is a size bounded cache with the W-TinyLFU eviction policy, supporting the same
+ * entry level expiration time and periodic removal of expired entries as {@link
+ * LinkedHashLruCache}. Unlike an lru cache, it keeps frequently used entries when many keys are
+ * used only once, e.g. by a scan over unique keys.
+ *
+ * <p>New entries are added to a small lru window taking 1% of the size limit. Entries leaving the
+ * window are admitted to the main space only if they were accessed more often than the entries
+ * they would evict, according to a {@link FrequencySketch} of recent accesses. The main space is
+ * a segmented lru: entries are admitted on probation, and promoted to the protected segment
+ * taking up to 80% of it when read again. Entries are evicted from the probation segment first.
+ * The most recently added entry always stays in the window, so that it can be read at least once.
+ */
+@ThreadSafe
+abstract class TinyLfuCache<K, V> implements LruCache<K, V> {
+  private static final int WINDOW_PERCENT = 1;
+  private static final int PROTECTED_PERCENT = 80;
+
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
+  private final Map<K, Node<K, V>> data;
+  @GuardedBy("lock")
+  private final FrequencySketch sketch;
+  // Sentinels of the circular lru lists of each segment; the eldest entry is next to them.
+  @GuardedBy("lock")
+  private final Node<K, V> window = Node.sentinel();
+  @GuardedBy("lock")
+  private final Node<K, V> probation = Node.sentinel();
+  @GuardedBy("lock")
+  private final Node<K, V> protectedSegment = Node.sentinel();
+  private final List<Node<K, V>> segments = Arrays.asList(window, probation, protectedSegment);
+  @GuardedBy("lock")
+  private long windowSizeBytes;
+  @GuardedBy("lock")
+  private long protectedSizeBytes;
+  @GuardedBy("lock")
+  private long estimatedMaxSizeBytes;
+  @GuardedBy("lock")
+  private long maxWindowSizeBytes;
+  @GuardedBy("lock")
+  private long maxProtectedSizeBytes;
+  private final PeriodicCleaner periodicCleaner;
+  private final TimeProvider timeProvider;
+  @Nullable
+  private final EvictionListener<K, V> evictionListener;
+  private final AtomicLong estimatedSizeBytes = new AtomicLong();
+
+  TinyLfuCache(
+      long estimatedMaxSizeBytes,
+      @Nullable EvictionListener<K, V> evictionListener,
+      int cleaningInterval,
+      TimeUnit cleaningIntervalUnit,
+      ScheduledExecutorService ses,
+      TimeProvider timeProvider) {
+    checkState(estimatedMaxSizeBytes > 0, "max estimated cache size should be positive");
+    this.evictionListener = evictionListener;
+    this.timeProvider = checkNotNull(timeProvider, "timeProvider");
+    // rough estimate or minimum hashmap default
+    int initialCapacity = Math.max((int) (estimatedMaxSizeBytes / 1000), 16);
+    data = new HashMap<>(initialCapacity);
+    sketch = new FrequencySketch(initialCapacity);
+    synchronized (lock) {
+      setMaxSizeBytes(estimatedMaxSizeBytes);
+    }
+    periodicCleaner = new PeriodicCleaner(ses, cleaningInterval, cleaningIntervalUnit).start();
+  }
+
+  /**
+   * Determines if the victim entry chosen by the eviction policy should be evicted or not when the
+   * cache size limit is reached. If not, the cache may stay over its size limit.
+   */
+  @SuppressWarnings("unused")
+  protected boolean shouldInvalidateEldestEntry(K eldestKey, V eldestValue) {
+    return true;
+  }
+
+  /** Determines if the entry is already expired or not. */
+  protected abstract boolean isExpired(K key, V value, long nowNanos);
+
+  /**
+   * Returns estimated size of entry to keep track. If it always returns 1, the max size bytes
+   * behaves like max number of entry (default behavior).
+   */
+  @SuppressWarnings("unused")
+  protected int estimateSizeOf(K key, V value) {
+    return 1;
+  }
+
+  /** Updates size for given key if entry exists. It is useful if the cache value is mutated. */
+  public void updateEntrySize(K key) {
+    synchronized (lock) {
+      Node<K, V> node = data.get(key);
+      if (node == null) {
+        return;
+      }
+      int prevSize = node.size;
+      setSize(node, estimateSizeOf(key, node.value));
+      estimatedSizeBytes.addAndGet(node.size - prevSize);
+      evictIfNeeded();
+    }
+  }
+
+  /**
+   * Returns estimated cache size bytes. Each entry size is calculated by {@link
+   * #estimateSizeOf(java.lang.Object, java.lang.Object)}.
+   */
+  public long estimatedSizeBytes() {
+    return estimatedSizeBytes.get();
+  }
+
+  @Override
+  @Nullable
+  public final V cache(K key, V value) {
+    checkNotNull(key, "key");
+    checkNotNull(value, "value");
+    int size = estimateSizeOf(key, value);
+    synchronized (lock) {
+      sketch.increment(key);
+      Node<K, V> existing = data.get(key);
+      if (existing != null) {
+        V prevValue = existing.value;
+        int prevSize = existing.size;
+        existing.value = value;
+        setSize(existing, size);
+        estimatedSizeBytes.addAndGet(size - prevSize);
+        onAccess(existing);
+        if (evictionListener != null) {
+          evictionListener.onEviction(key, prevValue, EvictionType.REPLACED);
+        }
+        evictIfNeeded();
+        return prevValue;
+      }
+      Node<K, V> node = new Node<>(key, value, size);
+      data.put(key, node);
+      estimatedSizeBytes.addAndGet(size);
+      node.segment = window;
+      windowSizeBytes += size;
+      linkLast(window, node);
+      if (data.size() > sketch.capacity()) {
+        sketch.ensureCapacity(data.size() * 2);
+      }
+      evictIfNeeded();
+      return null;
+    }
+  }
+
+  @Override
+  @Nullable
+  @CheckReturnValue
+  public final V read(K key) {
+    checkNotNull(key, "key");
+    synchronized (lock) {
+      Node<K, V> node = data.get(key);
+      if (node == null) {
+        return null;
+      }
+      if (isExpired(key, node.value, timeProvider.currentTimeNanos())) {
+        evict(node, EvictionType.EXPIRED);
+        return null;
+      }
+      sketch.increment(key);
+      onAccess(node);
+      return node.value;
+    }
+  }
+
+  @Override
+  @Nullable
+  @CheckReturnValue
+  public final V readWithoutEviction(K key) {
+    checkNotNull(key, "key");
+    synchronized (lock) {
+      Node<K, V> node = data.get(key);
+      if (node == null || isExpired(key, node.value, timeProvider.currentTimeNanos())) {
+        return null;
+      }
+      sketch.increment(key);
+      onAccess(node);
+      return node.value;
+    }
+  }
+
+  @Override
+  @Nullable
+  public final V invalidate(K key) {
+    checkNotNull(key, "key");
+    synchronized (lock) {
+      Node<K, V> node = data.get(key);
+      if (node == null) {
+        return null;
+      }
+      evict(node, EvictionType.EXPLICIT);
+      return node.value;
+    }
+  }
+
+  @Override
+  public final void invalidateAll(Iterable<K> keys) {
+    checkNotNull(keys, "keys");
+    synchronized (lock) {
+      for (K key : keys) {
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+          evict(node, EvictionType.EXPLICIT);
+        }
+      }
+    }
+  }
+
+  @Override
+  @CheckReturnValue
+  public final boolean hasCacheEntry(K key) {
+    checkNotNull(key, "key");
+    synchronized (lock) {
+      Node<K, V> node = data.get(key);
+      if (node == null) {
+        return false;
+      }
+      if (isExpired(key, node.value, timeProvider.currentTimeNanos())) {
+        evict(node, EvictionType.EXPIRED);
+        return false;
+      }
+      return true;
+    }
+  }
+
+  @Override
+  public final List<V> values() {
+    synchronized (lock) {
+      List<V> list = new ArrayList<>(data.size());
+      for (Node<K, V> segment : segments) {
+        for (Node<K, V> node = segment.next; node != segment; node = node.next) {
+          list.add(node.value);
+        }
+      }
+      return Collections.unmodifiableList(list);
+    }
+  }
+
+  /**
+   * Resizes cache. If new size is smaller than current estimated size, it will free up space by
+   * removing expired entries and then entries chosen by the eviction policy.
+   */
+  public final void resize(int newSizeBytes) {
+    long now = timeProvider.currentTimeNanos();
+    synchronized (lock) {
+      setMaxSizeBytes(newSizeBytes);
+      if (estimatedSizeBytes.get() > newSizeBytes) {
+        cleanupExpiredEntries(Integer.MAX_VALUE, now);
+      }
+      // protected and window segments may need to shrink, even if the cache does not
+      while (protectedSizeBytes > maxProtectedSizeBytes) {
+        demote(protectedSegment.next);
+      }
+      evictIfNeeded();
+    }
+  }
+
+  @Override
+  @CheckReturnValue
+  public final int estimatedSize() {
+    synchronized (lock) {
+      return data.size();
+    }
+  }
+
+  @GuardedBy("lock")
+  private void setMaxSizeBytes(long maxSizeBytes) {
+    estimatedMaxSizeBytes = maxSizeBytes;
+    maxWindowSizeBytes = Math.max(1, maxSizeBytes * WINDOW_PERCENT / 100);
+    maxProtectedSizeBytes = (maxSizeBytes - maxWindowSizeBytes) * PROTECTED_PERCENT / 100;
+  }
+
+  /** Moves a read entry to the end of its segment, promoting it if on probation. */
+  @GuardedBy("lock")
+  private void onAccess(Node<K, V> node) {
+    unlink(node);
+    if (node.segment == probation) {
+      node.segment = protectedSegment;
+      protectedSizeBytes += node.size;
+    }
+    linkLast(node.segment, node);
+    while (protectedSizeBytes > maxProtectedSizeBytes && protectedSegment.next != node) {
+      demote(protectedSegment.next);
+    }
+  }
+
+  /** Moves an entry of the protected segment back to the end of the probation segment. */
+  @GuardedBy("lock")
+  private void demote(Node<K, V> node) {
+    unlink(node);
+    protectedSizeBytes -= node.size;
+    node.segment = probation;
+    linkLast(probation, node);
+  }
+
+  /**
+   * Moves entries out of the window when it exceeds its size, admitting them to the main space or
+   * evicting them, then evicts entries while the cache exceeds its size limit.
+   */
+  @GuardedBy("lock")
+  private void evictIfNeeded() {
+    while (windowSizeBytes > maxWindowSizeBytes && window.next != window.prev) {
+      Node<K, V> candidate = window.next;
+      unlink(candidate);
+      windowSizeBytes -= candidate.size;
+      candidate.segment = probation;
+      linkLast(probation, candidate);
+      admit(candidate);
+    }
+    while (estimatedSizeBytes.get() > estimatedMaxSizeBytes) {
+      Node<K, V> victim = eldest();
+      if (victim == null || !shouldInvalidateEldestEntry(victim.key, victim.value)) {
+        return;
+      }
+      evict(victim, EvictionType.SIZE);
+    }
+  }
+
+  /**
+   * Makes room in the main space for a candidate leaving the window, by evicting entries of the
+   * probation segment, eldest first. Expired entries are evicted first. The candidate is evicted
+   * instead of the first victim accessed at least as often.
+   */
+  @GuardedBy("lock")
+  private void admit(Node<K, V> candidate) {
+    long now = timeProvider.currentTimeNanos();
+    if (isExpired(candidate.key, candidate.value, now)) {
+      evict(candidate, EvictionType.EXPIRED);
+      return;
+    }
+    int candidateFrequency = -1;
+    while (estimatedSizeBytes.get() - windowSizeBytes > estimatedMaxSizeBytes - maxWindowSizeBytes) {
+      Node<K, V> victim = probation.next != candidate ? probation.next : protectedSegment.next;
+      if (victim == protectedSegment) {
+        // the candidate is the only entry of the main space
+        return;
+      }
+      if (isExpired(victim.key, victim.value, now)) {
+        evict(victim, EvictionType.EXPIRED);
+        continue;
+      }
+      if (candidateFrequency < 0) {
+        candidateFrequency = sketch.frequency(candidate.key);
+      }
+      if (candidateFrequency <= sketch.frequency(victim.key)
+          || !shouldInvalidateEldestEntry(victim.key, victim.value)) {
+        evict(candidate, EvictionType.SIZE);
+        return;
+      }
+      evict(victim, EvictionType.SIZE);
+    }
+  }
+
+  /**
+   * Returns the entry to evict when the cache still exceeds its size limit after admission, which
+   * happens when entries are larger than their segment. The window is the last resort.
+   */
+  @GuardedBy("lock")
+  @Nullable
+  private Node<K, V> eldest() {
+    if (probation.next != probation) {
+      return probation.next;
+    }
+    if (protectedSegment.next != protectedSegment) {
+      return protectedSegment.next;
+    }
+    return window.next != window ? window.next : null;
+  }
+
+  // maxExpiredEntries is by number of entries
+  private boolean cleanupExpiredEntries(int maxExpiredEntries, long now) {
+    checkArgument(maxExpiredEntries > 0, "maxExpiredEntries must be positive");
+    boolean removedAny = false;
+    synchronized (lock) {
+      for (Node<K, V> segment : segments) {
+        Node<K, V> node = segment.next;
+        while (node != segment && maxExpiredEntries > 0) {
+          Node<K, V> next = node.next;
+          if (isExpired(node.key, node.value, now)) {
+            evict(node, EvictionType.EXPIRED);
+            removedAny = true;
+            maxExpiredEntries--;
+          }
+          node = next;
+        }
+      }
+    }
+    return removedAny;
+  }
+
+  @GuardedBy("lock")
+  private void setSize(Node<K, V> node, int size) {
+    if (node.segment == window) {
+      windowSizeBytes += size - node.size;
+    } else if (node.segment == protectedSegment) {
+      protectedSizeBytes += size - node.size;
+    }
+    node.size = size;
+  }
+
+  @GuardedBy("lock")
+  private void evict(Node<K, V> node, EvictionType cause) {
+    data.remove(node.key);
+    unlink(node);
+    if (node.segment == window) {
+      windowSizeBytes -= node.size;
+    } else if (node.segment == protectedSegment) {
+      protectedSizeBytes -= node.size;
+    }
+    estimatedSizeBytes.addAndGet(-1 * node.size);
+    if (evictionListener != null) {
+      evictionListener.onEviction(node.key, node.value, cause);
+    }
+  }
+
+  private static <K, V> void linkLast(Node<K, V> segment, Node<K, V> node) {
+    node.prev = segment.prev;
+    node.next = segment;
+    segment.prev.next = node;
+    segment.prev = node;
+  }
+
+  private static <K, V> void unlink(Node<K, V> node) {
+    node.prev.next = node.next;
+    node.next.prev = node.prev;
+    node.prev = null;
+    node.next = null;
+  }
+
+  @Override
+  public final void close() {
+    synchronized (lock) {
+      periodicCleaner.stop();
+      doClose();
+      data.clear();
+      for (Node<K, V> segment : segments) {
+        segment.prev = segment;
+        segment.next = segment;
+      }
+      windowSizeBytes = 0;
+      protectedSizeBytes = 0;
+    }
+  }
+
+  protected void doClose() {}
+
+  /** Periodically cleans up the AsyncRequestCache. */
+  private final class PeriodicCleaner {
+
+    private final ScheduledExecutorService ses;
+    private final int interval;
+    private final TimeUnit intervalUnit;
+    private ScheduledFuture<?> scheduledFuture;
+
+    PeriodicCleaner(ScheduledExecutorService ses, int interval, TimeUnit intervalUnit) {
+      this.ses = checkNotNull(ses, "ses");
+      checkState(interval > 0, "interval must be positive");
+      this.interval = interval;
+      this.intervalUnit = checkNotNull(intervalUnit, "intervalUnit");
+    }
+
+    PeriodicCleaner start() {
+      checkState(scheduledFuture == null, "cleaning task can be started only once");
+      this.scheduledFuture =
+          ses.scheduleAtFixedRate(new CleaningTask(), interval, interval, intervalUnit);
+      return this;
+    }
+
+    void stop() {
+      if (scheduledFuture != null) {
+        scheduledFuture.cancel(false);
+        scheduledFuture = null;
+      }
+    }
+
+    private class CleaningTask implements Runnable {
+
+      @Override
+      public void run() {
+        cleanupExpiredEntries(Integer.MAX_VALUE, timeProvider.currentTimeNanos());
+      }
+    }
+  }
+
+  private static final class Node<K, V> {
+    @Nullable
+    final K key;
+    @Nullable
+    V value;
+    int size;
+    // The sentinel of the segment this entry is in.
+    @Nullable
+    Node<K, V> segment;
+    @Nullable
+    Node<K, V> prev;
+    @Nullable
+    Node<K, V> next;
+
+    Node(@Nullable K key, @Nullable V value, int size) {
+      this.key = key;
+      this.value = value;
+      this.size = size;
+    }
+
+    static <K, V> Node<K, V> sentinel() {
+      Node<K, V> sentinel = new Node<>(null, null, 0);
+      sentinel.prev = sentinel;
+      sentinel.next = sentinel;
+      return sentinel;
+    }
+  }
+}
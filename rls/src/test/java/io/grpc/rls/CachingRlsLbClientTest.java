@@ -25,6 +25,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -57,6 +58,7 @@ import io.grpc.internal.BackoffPolicy;
 import io.grpc.internal.PickSubchannelArgsImpl;
 import io.grpc.lookup.v1.RouteLookupServiceGrpc;
 import io.grpc.rls.CachingRlsLbClient.CacheEntry;
+import io.grpc.rls.CachingRlsLbClient.CacheStats;
 import io.grpc.rls.CachingRlsLbClient.CachedRouteLookupResponse;
 import io.grpc.rls.CachingRlsLbClient.RlsPicker;
 import io.grpc.rls.DoNotUseDirectScheduledExecutorService.FakeTimeProvider;
@@ -145,6 +147,7 @@ public class CachingRlsLbClientTest {
 
   private CachingRlsLbClient rlsLbClient;
   private boolean existingEnableOobChannelDirectPath;
+  private boolean existingEnableTinyLfuCache;
   private Map<String, ?> rlsChannelServiceConfig;
   private String rlsChannelOverriddenAuthority;
 
@@ -152,6 +155,7 @@ public class CachingRlsLbClientTest {
   public void setUp() throws Exception {
     existingEnableOobChannelDirectPath = CachingRlsLbClient.enableOobChannelDirectPath;
     CachingRlsLbClient.enableOobChannelDirectPath = false;
+    existingEnableTinyLfuCache = CachingRlsLbClient.enableTinyLfuCache;
   }
 
   private void setUpRlsLbClient() {
@@ -171,6 +175,7 @@ public class CachingRlsLbClientTest {
   public void tearDown() throws Exception {
     rlsLbClient.close();
     CachingRlsLbClient.enableOobChannelDirectPath = existingEnableOobChannelDirectPath;
+    CachingRlsLbClient.enableTinyLfuCache = existingEnableTinyLfuCache;
   }
 
   private CachedRouteLookupResponse getInSyncContext(
@@ -238,6 +243,133 @@ public class CachingRlsLbClientTest {
     inOrder.verifyNoMoreInteractions();
   }
 
+  @Test
+  public void get_tinyLfuCache_expiredEntryEvictedByLockedPath() throws Exception {
+    CachingRlsLbClient.enableTinyLfuCache = true;
+    setUpRlsLbClient();
+    RouteLookupRequest routeLookupRequest =
+        new RouteLookupRequest(
+            "bigtable.googleapis.com", "/foo/bar", "grpc", ImmutableMap.<String, String>of());
+    rlsServerImpl.setLookupTable(
+        ImmutableMap.of(
+            routeLookupRequest,
+            new RouteLookupResponse(ImmutableList.of("target"), "header")));
+    CachedRouteLookupResponse resp = getInSyncContext(routeLookupRequest);
+    assertThat(resp.isPending()).isTrue();
+    fakeTimeProvider.forwardTime(SERVER_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+    assertThat(getInSyncContext(routeLookupRequest).hasData()).isTrue();
+
+    fakeTimeProvider.forwardTime(ROUTE_LOOKUP_CONFIG.getMaxAgeInMillis(), TimeUnit.MILLISECONDS);
+    verify(evictionListener, never())
+        .onEviction(eq(routeLookupRequest), any(CacheEntry.class), any(EvictionType.class));
+
+    resp = getInSyncContext(routeLookupRequest);
+    assertThat(resp.isPending()).isTrue();
+    verify(evictionListener)
+        .onEviction(eq(routeLookupRequest), any(CacheEntry.class), eq(EvictionType.EXPIRED));
+  }
+
+  @Test
+  public void get_hotEntry_refreshedAheadOfStaleness() throws Exception {
+    setUpRlsLbClient();
+    RouteLookupRequest routeLookupRequest =
+        new RouteLookupRequest(
+            "bigtable.googleapis.com", "/foo/bar", "grpc", ImmutableMap.<String, String>of());
+    rlsServerImpl.setLookupTable(
+        ImmutableMap.of(
+            routeLookupRequest,
+            new RouteLookupResponse(ImmutableList.of("target"), "header")));
+    // refresh rounds run every staleAge / 10 = 24 seconds, starting from the client creation
+    fakeTimeProvider.forwardTime(5, TimeUnit.SECONDS);
+    CachedRouteLookupResponse resp = getInSyncContext(routeLookupRequest);
+    assertThat(resp.isPending()).isTrue();
+    fakeTimeProvider.forwardTime(SERVER_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+
+    // the entry becoming stale at 245.01s is refreshed by the round at 240s
+    for (int i = 0; i < 10; i++) {
+      assertThat(getInSyncContext(routeLookupRequest).hasData()).isTrue();
+      assertThat(getInSyncContext(routeLookupRequest).hasData()).isTrue();
+      fakeTimeProvider.forwardTime(24, TimeUnit.SECONDS);
+    }
+    verify(evictionListener)
+        .onEviction(eq(routeLookupRequest), any(CacheEntry.class), eq(EvictionType.REPLACED));
+
+    resp = getInSyncContext(routeLookupRequest);
+    assertThat(resp.hasData()).isTrue();
+    CacheStats stats = rlsLbClient.getCacheStats();
+    assertThat(stats.getHitCount()).isEqualTo(21);
+    assertThat(stats.getMissCount()).isEqualTo(1);
+    assertThat(stats.getRefreshCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void get_hotEntry_keptIfRefreshAheadOfStalenessFails() throws Exception {
+    setUpRlsLbClient();
+    RouteLookupRequest routeLookupRequest =
+        new RouteLookupRequest(
+            "bigtable.googleapis.com", "/foo/bar", "grpc", ImmutableMap.<String, String>of());
+    rlsServerImpl.setLookupTable(
+        ImmutableMap.of(
+            routeLookupRequest,
+            new RouteLookupResponse(ImmutableList.of("target"), "header")));
+    fakeTimeProvider.forwardTime(5, TimeUnit.SECONDS);
+    CachedRouteLookupResponse resp = getInSyncContext(routeLookupRequest);
+    assertThat(resp.isPending()).isTrue();
+    fakeTimeProvider.forwardTime(SERVER_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+
+    for (int i = 0; i < 10; i++) {
+      if (i == 9) {
+        // the refresh by the round at 240s fails
+        rlsServerImpl.setLookupTable(ImmutableMap.<RouteLookupRequest, RouteLookupResponse>of());
+      }
+      assertThat(getInSyncContext(routeLookupRequest).hasData()).isTrue();
+      assertThat(getInSyncContext(routeLookupRequest).hasData()).isTrue();
+      fakeTimeProvider.forwardTime(24, TimeUnit.SECONDS);
+    }
+    verify(evictionListener, never())
+        .onEviction(eq(routeLookupRequest), any(CacheEntry.class), any(EvictionType.class));
+    assertThat(rlsLbClient.getCacheStats().getRefreshCount()).isEqualTo(1);
+
+    // the stale entry is still served, and refreshed again by the pick
+    resp = getInSyncContext(routeLookupRequest);
+    assertThat(resp.hasData()).isTrue();
+    assertThat(rlsLbClient.getCacheStats().getRefreshCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void get_hotEntry_refreshedByPickIfRefreshAheadOfStalenessCancelled() throws Exception {
+    setUpRlsLbClient();
+    RouteLookupRequest routeLookupRequest =
+        new RouteLookupRequest(
+            "bigtable.googleapis.com", "/foo/bar", "grpc", ImmutableMap.<String, String>of());
+    rlsServerImpl.setLookupTable(
+        ImmutableMap.of(
+            routeLookupRequest,
+            new RouteLookupResponse(ImmutableList.of("target"), "header")));
+    fakeTimeProvider.forwardTime(5, TimeUnit.SECONDS);
+    CachedRouteLookupResponse resp = getInSyncContext(routeLookupRequest);
+    assertThat(resp.isPending()).isTrue();
+    fakeTimeProvider.forwardTime(SERVER_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+
+    for (int i = 0; i < 9; i++) {
+      assertThat(getInSyncContext(routeLookupRequest).hasData()).isTrue();
+      assertThat(getInSyncContext(routeLookupRequest).hasData()).isTrue();
+      fakeTimeProvider.forwardTime(24, TimeUnit.SECONDS);
+    }
+    assertThat(getInSyncContext(routeLookupRequest).hasData()).isTrue();
+    assertThat(getInSyncContext(routeLookupRequest).hasData()).isTrue();
+    // the round at 240s starts the refresh, which is cancelled before the server responds
+    fakeTimeProvider.forwardTime(18990, TimeUnit.MILLISECONDS);
+    assertThat(rlsLbClient.getCacheStats().getRefreshCount()).isEqualTo(1);
+    rlsLbClient.cancelPendingCalls();
+
+    // once stale, the entry is still served, and refreshed again by the pick
+    fakeTimeProvider.forwardTime(5010, TimeUnit.MILLISECONDS);
+    resp = getInSyncContext(routeLookupRequest);
+    assertThat(resp.hasData()).isTrue();
+    assertThat(rlsLbClient.getCacheStats().getRefreshCount()).isEqualTo(2);
+  }
+
   @Test
   public void rls_overDirectPath() throws Exception {
     CachingRlsLbClient.enableOobChannelDirectPath = true;
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.rls;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FrequencySketchTest {
+
+  private final FrequencySketch sketch = new FrequencySketch(16);
+
+  @Test
+  public void frequency_notIncremented() {
+    assertThat(sketch.frequency("key")).isEqualTo(0);
+  }
+
+  @Test
+  public void increment() {
+    sketch.increment("key");
+    sketch.increment("key");
+    sketch.increment("key");
+
+    assertThat(sketch.frequency("key")).isEqualTo(3);
+    assertThat(sketch.frequency("other")).isEqualTo(0);
+  }
+
+  @Test
+  public void increment_saturates() {
+    for (int i = 0; i < 20; i++) {
+      sketch.increment("key");
+    }
+
+    assertThat(sketch.frequency("key")).isEqualTo(15);
+  }
+
+  @Test
+  public void increment_halvesFrequenciesAfterSampleSize() {
+    // sample size is 10 times the capacity
+    for (int i = 0; i < 15; i++) {
+      sketch.increment("key");
+    }
+    for (int i = 0; i < 144; i++) {
+      sketch.increment(i);
+    }
+    assertThat(sketch.frequency("key")).isEqualTo(15);
+
+    sketch.increment(144);
+
+    assertThat(sketch.frequency("key")).isEqualTo(7);
+  }
+
+  @Test
+  public void ensureCapacity() {
+    sketch.increment("key");
+
+    sketch.ensureCapacity(8);
+    assertThat(sketch.capacity()).isEqualTo(16);
+    assertThat(sketch.frequency("key")).isEqualTo(1);
+
+    sketch.ensureCapacity(100);
+    assertThat(sketch.capacity()).isEqualTo(100);
+    assertThat(sketch.frequency("key")).isEqualTo(0);
+  }
+}
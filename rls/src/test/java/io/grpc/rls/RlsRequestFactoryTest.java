@@ -156,4 +156,30 @@ public class RlsRequestFactoryTest {
     assertThat(request.getServer()).isEqualTo("bigtable.googleapis.com");
     assertThat(request.getKeyMap()).containsExactly("user", "test");
   }
+
+  @Test
+  public void create_fullMethodName() {
+    Metadata metadata = new Metadata();
+    metadata.put(Metadata.Key.of("User", Metadata.ASCII_STRING_MARSHALLER), "test");
+
+    RouteLookupRequest request = factory.create("com.google.service1/Create", metadata);
+    assertThat(request.getPath()).isEqualTo("/com.google.service1/Create");
+    assertThat(request.getKeyMap()).containsExactly("user", "test");
+
+    metadata.put(Metadata.Key.of("X-Google-Id", Metadata.ASCII_STRING_MARSHALLER), "123");
+    RouteLookupRequest request2 = factory.create("com.google.service1/Create", metadata);
+    assertThat(request2.getKeyMap()).containsExactly("user", "test", "id", "123");
+    assertThat(request2).isNotEqualTo(request);
+    assertThat(factory.create("com.google.service1/Create", metadata)).isEqualTo(request2);
+  }
+
+  @Test
+  public void create_noKeyBuilderHeaders_requestReused() {
+    RouteLookupRequest request = factory.create("abc.def.service999/Update", new Metadata());
+
+    assertThat(request.getPath()).isEqualTo("/abc.def.service999/Update");
+    assertThat(request.getKeyMap()).isEmpty();
+    assertThat(factory.create("abc.def.service999/Update", new Metadata()))
+        .isSameInstanceAs(request);
+  }
 }
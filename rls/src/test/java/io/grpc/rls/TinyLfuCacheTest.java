@@ -0,0 +1,379 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.rls;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.collect.ImmutableList;
+import io.grpc.rls.DoNotUseDirectScheduledExecutorService.FakeTimeProvider;
+import io.grpc.rls.LruCache.EvictionListener;
+import io.grpc.rls.LruCache.EvictionType;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+@RunWith(JUnit4.class)
+public class TinyLfuCacheTest {
+
+  // window of 1 entry, main space of 4 entries
+  private static final int MAX_SIZE = 5;
+
+  @Rule
+  public final MockitoRule mocks = MockitoJUnit.rule();
+
+  private final DoNotUseDirectScheduledExecutorService fakeScheduledService =
+      mock(DoNotUseDirectScheduledExecutorService.class, CALLS_REAL_METHODS);
+  private final FakeTimeProvider timeProvider = fakeScheduledService.getFakeTimeProvider();
+
+  @Mock
+  private EvictionListener<Integer, Entry> evictionListener;
+  private TinyLfuCache<Integer, Entry> cache;
+
+  @Before
+  public void setUp() {
+    this.cache = new TinyLfuCache<Integer, Entry>(
+        MAX_SIZE,
+        evictionListener,
+        10,
+        TimeUnit.NANOSECONDS,
+        fakeScheduledService,
+        timeProvider) {
+      @Override
+      protected boolean isExpired(Integer key, Entry value, long nowNanos) {
+        return value.expireTime <= nowNanos;
+      }
+
+      @Override
+      protected int estimateSizeOf(Integer key, Entry value) {
+        return value.size;
+      }
+    };
+  }
+
+  @Test
+  public void eviction_size_candidateNotMoreFrequentRejected() {
+    for (int i = 1; i <= MAX_SIZE; i++) {
+      cache.cache(i, new Entry("Entry" + i, Long.MAX_VALUE));
+    }
+    cache.cache(MAX_SIZE + 1, new Entry("should kick the last", Long.MAX_VALUE));
+
+    // the last entry leaves the window, but was not used more than the eldest of the main space
+    verify(evictionListener)
+        .onEviction(MAX_SIZE, new Entry("Entry" + MAX_SIZE, Long.MAX_VALUE), EvictionType.SIZE);
+    assertThat(cache.estimatedSize()).isEqualTo(MAX_SIZE);
+    assertThat(cache.hasCacheEntry(1)).isTrue();
+    assertThat(cache.hasCacheEntry(MAX_SIZE + 1)).isTrue();
+  }
+
+  @Test
+  public void eviction_size_moreFrequentCandidateAdmitted() {
+    for (int i = 1; i <= MAX_SIZE; i++) {
+      cache.cache(i, new Entry("Entry" + i, Long.MAX_VALUE));
+    }
+    assertThat(cache.read(MAX_SIZE)).isNotNull();
+    cache.cache(MAX_SIZE + 1, new Entry("should kick the first", Long.MAX_VALUE));
+
+    verify(evictionListener).onEviction(1, new Entry("Entry1", Long.MAX_VALUE), EvictionType.SIZE);
+    assertThat(cache.estimatedSize()).isEqualTo(MAX_SIZE);
+    assertThat(cache.hasCacheEntry(MAX_SIZE)).isTrue();
+  }
+
+  @Test
+  public void eviction_size_frequentEntriesSurviveScan() {
+    for (int i = 1; i <= 3; i++) {
+      cache.cache(i, new Entry("Entry" + i, Long.MAX_VALUE));
+    }
+    for (int i = 1; i <= 3; i++) {
+      assertThat(cache.read(i)).isNotNull();
+    }
+
+    for (int i = 100; i < 200; i++) {
+      cache.cache(i, new Entry("Entry" + i, Long.MAX_VALUE));
+    }
+
+    assertThat(cache.estimatedSize()).isEqualTo(MAX_SIZE);
+    for (int i = 1; i <= 3; i++) {
+      assertThat(cache.hasCacheEntry(i)).isTrue();
+    }
+    // the most recently added entry is always kept
+    assertThat(cache.hasCacheEntry(199)).isTrue();
+  }
+
+  @Test
+  public void size() {
+    Entry entry1 = new Entry("Entry0", timeProvider.currentTimeNanos() + 10);
+    Entry entry2 = new Entry("Entry1", timeProvider.currentTimeNanos() + 20);
+    cache.cache(0, entry1);
+    cache.cache(1, entry2);
+    assertThat(cache.estimatedSize()).isEqualTo(2);
+
+    assertThat(cache.invalidate(0)).isEqualTo(entry1);
+    assertThat(cache.estimatedSize()).isEqualTo(1);
+
+    assertThat(cache.invalidate(1)).isEqualTo(entry2);
+    assertThat(cache.estimatedSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void eviction_expire() {
+    Entry toBeEvicted = new Entry("Entry0", timeProvider.currentTimeNanos() + 10);
+    Entry survivor = new Entry("Entry1", timeProvider.currentTimeNanos() + 20);
+    cache.cache(0, toBeEvicted);
+    cache.cache(1, survivor);
+
+    timeProvider.forwardTime(10, TimeUnit.NANOSECONDS);
+    verify(evictionListener).onEviction(0, toBeEvicted, EvictionType.EXPIRED);
+
+    timeProvider.forwardTime(10, TimeUnit.NANOSECONDS);
+    verify(evictionListener).onEviction(1, survivor, EvictionType.EXPIRED);
+  }
+
+  @Test
+  public void eviction_explicit() {
+    Entry toBeEvicted = new Entry("Entry0", timeProvider.currentTimeNanos() + 10);
+    Entry survivor = new Entry("Entry1", timeProvider.currentTimeNanos() + 20);
+    cache.cache(0, toBeEvicted);
+    cache.cache(1, survivor);
+
+    assertThat(cache.invalidate(0)).isEqualTo(toBeEvicted);
+
+    verify(evictionListener).onEviction(0, toBeEvicted, EvictionType.EXPLICIT);
+  }
+
+  @Test
+  public void eviction_replaced() {
+    Entry toBeEvicted = new Entry("Entry0", timeProvider.currentTimeNanos() + 10);
+    Entry survivor = new Entry("Entry1", timeProvider.currentTimeNanos() + 20);
+    cache.cache(0, toBeEvicted);
+    assertThat(cache.cache(0, survivor)).isEqualTo(toBeEvicted);
+
+    verify(evictionListener).onEviction(0, toBeEvicted, EvictionType.REPLACED);
+    assertThat(cache.read(0)).isEqualTo(survivor);
+  }
+
+  @Test
+  public void eviction_size_shouldEvictAlreadyExpiredCandidate() {
+    for (int i = 1; i <= MAX_SIZE; i++) {
+      // last entry is already expired when added
+      cache.cache(i, new Entry("Entry" + i, timeProvider.currentTimeNanos() + MAX_SIZE - i));
+    }
+    cache.cache(MAX_SIZE + 1, new Entry("should kick the last", Long.MAX_VALUE));
+
+    verify(evictionListener)
+        .onEviction(eq(MAX_SIZE), any(Entry.class), eq(EvictionType.EXPIRED));
+    assertThat(cache.estimatedSize()).isEqualTo(MAX_SIZE);
+  }
+
+  @Test
+  public void eviction_size_shouldEvictAlreadyExpiredVictim() {
+    cache.cache(1, new Entry("Entry1", timeProvider.currentTimeNanos() + 1));
+    for (int i = 2; i <= MAX_SIZE; i++) {
+      cache.cache(i, new Entry("Entry" + i, Long.MAX_VALUE));
+    }
+    // first entry expires before the periodic cleaning
+    timeProvider.forwardTime(1, TimeUnit.NANOSECONDS);
+    cache.cache(MAX_SIZE + 1, new Entry("should kick the first", Long.MAX_VALUE));
+
+    verify(evictionListener).onEviction(eq(1), any(Entry.class), eq(EvictionType.EXPIRED));
+    assertThat(cache.estimatedSize()).isEqualTo(MAX_SIZE);
+    assertThat(cache.hasCacheEntry(MAX_SIZE)).isTrue();
+  }
+
+  @Test
+  public void eviction_get_shouldNotReturnAlreadyExpired() {
+    for (int i = 1; i <= MAX_SIZE; i++) {
+      // last entry is already expired when added
+      cache.cache(i, new Entry("Entry" + i, timeProvider.currentTimeNanos() + MAX_SIZE - i));
+    }
+
+    assertThat(cache.estimatedSize()).isEqualTo(MAX_SIZE);
+    assertThat(cache.read(MAX_SIZE)).isNull();
+    assertThat(cache.estimatedSize()).isEqualTo(MAX_SIZE - 1);
+    verify(evictionListener).onEviction(eq(MAX_SIZE), any(Entry.class), eq(EvictionType.EXPIRED));
+  }
+
+  @Test
+  public void readWithoutEviction_shouldNotEvictAlreadyExpired() {
+    Entry entry = new Entry("Entry", timeProvider.currentTimeNanos() + 1);
+    cache.cache(0, entry);
+    timeProvider.forwardTime(1, TimeUnit.NANOSECONDS);
+
+    assertThat(cache.readWithoutEviction(0)).isNull();
+    assertThat(cache.estimatedSize()).isEqualTo(1);
+    verify(evictionListener, never())
+        .onEviction(any(Integer.class), any(Entry.class), any(EvictionType.class));
+
+    assertThat(cache.read(0)).isNull();
+    verify(evictionListener).onEviction(0, entry, EvictionType.EXPIRED);
+  }
+
+  @Test
+  public void concurrentReadsWithoutEviction_ofExpiredEntries() throws Exception {
+    for (int i = 0; i < MAX_SIZE; i++) {
+      cache.cache(i, new Entry("Entry" + i, timeProvider.currentTimeNanos() + 1));
+    }
+    timeProvider.forwardTime(1, TimeUnit.NANOSECONDS);
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      final int thread = i;
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 5000; j++) {
+            assertThat(cache.readWithoutEviction((thread + j) % MAX_SIZE)).isNull();
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    verify(evictionListener, never())
+        .onEviction(any(Integer.class), any(Entry.class), any(EvictionType.class));
+    assertThat(cache.estimatedSize()).isEqualTo(MAX_SIZE);
+  }
+
+  @Test
+  public void updateEntrySize() {
+    Entry entry = new Entry("Entry", timeProvider.currentTimeNanos() + 10);
+
+    cache.cache(1, entry);
+
+    assertThat(cache.estimatedSizeBytes()).isEqualTo(1);
+    entry.size = 4;
+    assertThat(cache.estimatedSizeBytes()).isEqualTo(1);
+
+    cache.updateEntrySize(1);
+
+    assertThat(cache.estimatedSizeBytes()).isEqualTo(4);
+
+    cache.updateEntrySize(1);
+
+    assertThat(cache.estimatedSizeBytes()).isEqualTo(4);
+  }
+
+  @Test
+  public void updateEntrySize_multipleEntries() {
+    Entry entry1 = new Entry("Entry", timeProvider.currentTimeNanos() + 10, 2);
+    Entry entry2 = new Entry("Entry2", timeProvider.currentTimeNanos() + 10, 3);
+
+    cache.cache(1, entry1);
+    cache.cache(2, entry2);
+
+    assertThat(cache.estimatedSizeBytes()).isEqualTo(5);
+    entry2.size = 1;
+    assertThat(cache.estimatedSizeBytes()).isEqualTo(5);
+
+    cache.updateEntrySize(2);
+
+    assertThat(cache.estimatedSizeBytes()).isEqualTo(3);
+  }
+
+  @Test
+  public void invalidateAll() {
+    Entry entry1 = new Entry("Entry", timeProvider.currentTimeNanos() + 10);
+    Entry entry2 = new Entry("Entry2", timeProvider.currentTimeNanos() + 10);
+
+    cache.cache(1, entry1);
+    cache.cache(2, entry2);
+
+    assertThat(cache.estimatedSize()).isEqualTo(2);
+
+    cache.invalidateAll(ImmutableList.of(1, 2));
+
+    assertThat(cache.estimatedSize()).isEqualTo(0);
+    assertThat(cache.estimatedSizeBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void resize() {
+    Entry entry1 = new Entry("Entry", timeProvider.currentTimeNanos() + 10);
+    Entry entry2 = new Entry("Entry2", timeProvider.currentTimeNanos() + 10);
+    Entry entry3 = new Entry("Entry3", timeProvider.currentTimeNanos() + 10);
+
+    cache.cache(1, entry1);
+    cache.cache(2, entry2);
+    cache.cache(3, entry3);
+
+    assertThat(cache.estimatedSize()).isEqualTo(3);
+
+    cache.resize(2);
+
+    assertThat(cache.estimatedSize()).isEqualTo(2);
+    // eldest entry on probation should be evicted
+    assertThat(cache.hasCacheEntry(1)).isFalse();
+  }
+
+  @Test
+  public void values() {
+    Entry entry1 = new Entry("Entry", timeProvider.currentTimeNanos() + 10);
+    Entry entry2 = new Entry("Entry2", timeProvider.currentTimeNanos() + 10);
+
+    cache.cache(1, entry1);
+    cache.cache(2, entry2);
+
+    assertThat(cache.values()).containsExactly(entry1, entry2);
+  }
+
+  private static final class Entry {
+    String value;
+    long expireTime;
+    int size;
+
+    Entry(String value, long expireTime) {
+      this(value, expireTime, 1);
+    }
+
+    Entry(String value, long expireTime, int size) {
+      this.value = value;
+      this.expireTime = expireTime;
+      this.size = size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Entry entry = (Entry) o;
+      return expireTime == entry.expireTime && Objects.equals(value, entry.value);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(value, expireTime);
+    }
+  }
+}
@@ -0,0 +1,288 @@
+package io.grpc.rpcmetrics.v1;
+
+import static io.grpc.MethodDescriptor.generateFullMethodName;
+
+/**
+ */
+@javax.annotation.Generated(
+    value = "by gRPC proto compiler",
+    comments = "Source: grpc/rpcmetrics/v1/rpcmetrics.proto")
+@io.grpc.stub.annotations.GrpcGenerated
+public final class RpcMetricsGrpc {
+
+  private RpcMetricsGrpc() {}
+
+  public static final String SERVICE_NAME = "grpc.rpcmetrics.v1.RpcMetrics";
+
+  // Static method descriptors that strictly reflect the proto.
+  private static volatile io.grpc.MethodDescriptor<io.grpc.rpcmetrics.v1.GetRpcMetricsRequest,
+      io.grpc.rpcmetrics.v1.GetRpcMetricsResponse> getGetRpcMetricsMethod;
+
+  @io.grpc.stub.annotations.RpcMethod(
+      fullMethodName = SERVICE_NAME + '/' + "GetRpcMetrics",
+      requestType = io.grpc.rpcmetrics.v1.GetRpcMetricsRequest.class,
+      responseType = io.grpc.rpcmetrics.v1.GetRpcMetricsResponse.class,
+      methodType = io.grpc.MethodDescriptor.MethodType.UNARY)
+  public static io.grpc.MethodDescriptor<io.grpc.rpcmetrics.v1.GetRpcMetricsRequest,
+      io.grpc.rpcmetrics.v1.GetRpcMetricsResponse> getGetRpcMetricsMethod() {
+    io.grpc.MethodDescriptor<io.grpc.rpcmetrics.v1.GetRpcMetricsRequest, io.grpc.rpcmetrics.v1.GetRpcMetricsResponse> getGetRpcMetricsMethod;
+    if ((getGetRpcMetricsMethod = RpcMetricsGrpc.getGetRpcMetricsMethod) == null) {
+      synchronized (RpcMetricsGrpc.class) {
+        if ((getGetRpcMetricsMethod = RpcMetricsGrpc.getGetRpcMetricsMethod) == null) {
+          RpcMetricsGrpc.getGetRpcMetricsMethod = getGetRpcMetricsMethod =
+              io.grpc.MethodDescriptor.<io.grpc.rpcmetrics.v1.GetRpcMetricsRequest, io.grpc.rpcmetrics.v1.GetRpcMetricsResponse>newBuilder()
+              .setType(io.grpc.MethodDescriptor.MethodType.UNARY)
+              .setFullMethodName(generateFullMethodName(SERVICE_NAME, "GetRpcMetrics"))
+              .setSampledToLocalTracing(true)
+              .setRequestMarshaller(io.grpc.protobuf.ProtoUtils.marshaller(
+                  io.grpc.rpcmetrics.v1.GetRpcMetricsRequest.getDefaultInstance()))
+              .setResponseMarshaller(io.grpc.protobuf.ProtoUtils.marshaller(
+                  io.grpc.rpcmetrics.v1.GetRpcMetricsResponse.getDefaultInstance()))
+              .setSchemaDescriptor(new RpcMetricsMethodDescriptorSupplier("GetRpcMetrics"))
+              .build();
+        }
+      }
+    }
+    return getGetRpcMetricsMethod;
+  }
+
+  /**
+   * Creates a new async stub that supports all call types for the service
+   */
+  public static RpcMetricsStub newStub(io.grpc.Channel channel) {
+    io.grpc.stub.AbstractStub.StubFactory<RpcMetricsStub> factory =
+      new io.grpc.stub.AbstractStub.StubFactory<RpcMetricsStub>() {
+        @java.lang.Override
+        public RpcMetricsStub newStub(io.grpc.Channel channel, io.grpc.CallOptions callOptions) {
+          return new RpcMetricsStub(channel, callOptions);
+        }
+      };
+    return RpcMetricsStub.newStub(factory, channel);
+  }
+
+  /**
+   * Creates a new blocking-style stub that supports unary and streaming output calls on the service
+   */
+  public static RpcMetricsBlockingStub newBlockingStub(
+      io.grpc.Channel channel) {
+    io.grpc.stub.AbstractStub.StubFactory<RpcMetricsBlockingStub> factory =
+      new io.grpc.stub.AbstractStub.StubFactory<RpcMetricsBlockingStub>() {
+        @java.lang.Override
+        public RpcMetricsBlockingStub newStub(io.grpc.Channel channel, io.grpc.CallOptions callOptions) {
+          return new RpcMetricsBlockingStub(channel, callOptions);
+        }
+      };
+    return RpcMetricsBlockingStub.newStub(factory, channel);
+  }
+
+  /**
+   * Creates a new ListenableFuture-style stub that supports unary calls on the service
+   */
+  public static RpcMetricsFutureStub newFutureStub(
+      io.grpc.Channel channel) {
+    io.grpc.stub.AbstractStub.StubFactory<RpcMetricsFutureStub> factory =
+      new io.grpc.stub.AbstractStub.StubFactory<RpcMetricsFutureStub>() {
+        @java.lang.Override
+        public RpcMetricsFutureStub newStub(io.grpc.Channel channel, io.grpc.CallOptions callOptions) {
+          return new RpcMetricsFutureStub(channel, callOptions);
+        }
+      };
+    return RpcMetricsFutureStub.newStub(factory, channel);
+  }
+
+  /**
+   */
+  public static abstract class RpcMetricsImplBase implements io.grpc.BindableService {
+
+    /**
+     * <pre>
+     * Returns a snapshot of the recorded per-method metrics.
+     * </pre>
+     */
+    public void getRpcMetrics(io.grpc.rpcmetrics.v1.GetRpcMetricsRequest request,
+        io.grpc.stub.StreamObserver<io.grpc.rpcmetrics.v1.GetRpcMetricsResponse> responseObserver) {
+      io.grpc.stub.ServerCalls.asyncUnimplementedUnaryCall(getGetRpcMetricsMethod(), responseObserver);
+    }
+
+    @java.lang.Override public final io.grpc.ServerServiceDefinition bindService() {
+      return io.grpc.ServerServiceDefinition.builder(getServiceDescriptor())
+          .addMethod(
+            getGetRpcMetricsMethod(),
+            io.grpc.stub.ServerCalls.asyncUnaryCall(
+              new MethodHandlers<
+                io.grpc.rpcmetrics.v1.GetRpcMetricsRequest,
+                io.grpc.rpcmetrics.v1.GetRpcMetricsResponse>(
+                  this, METHODID_GET_RPC_METRICS)))
+          .build();
+    }
+  }
+
+  /**
+   */
+  public static final class RpcMetricsStub extends io.grpc.stub.AbstractAsyncStub<RpcMetricsStub> {
+    private RpcMetricsStub(
+        io.grpc.Channel channel, io.grpc.CallOptions callOptions) {
+      super(channel, callOptions);
+    }
+
+    @java.lang.Override
+    protected RpcMetricsStub build(
+        io.grpc.Channel channel, io.grpc.CallOptions callOptions) {
+      return new RpcMetricsStub(channel, callOptions);
+    }
+
+    /**
+     * <pre>
+     * Returns a snapshot of the recorded per-method metrics.
+     * </pre>
+     */
+    public void getRpcMetrics(io.grpc.rpcmetrics.v1.GetRpcMetricsRequest request,
+        io.grpc.stub.StreamObserver<io.grpc.rpcmetrics.v1.GetRpcMetricsResponse> responseObserver) {
+      io.grpc.stub.ClientCalls.asyncUnaryCall(
+          getChannel().newCall(getGetRpcMetricsMethod(), getCallOptions()), request, responseObserver);
+    }
+  }
+
+  /**
+   */
+  public static final class RpcMetricsBlockingStub extends io.grpc.stub.AbstractBlockingStub<RpcMetricsBlockingStub> {
+    private RpcMetricsBlockingStub(
+        io.grpc.Channel channel, io.grpc.CallOptions callOptions) {
+      super(channel, callOptions);
+    }
+
+    @java.lang.Override
+    protected RpcMetricsBlockingStub build(
+        io.grpc.Channel channel, io.grpc.CallOptions callOptions) {
+      return new RpcMetricsBlockingStub(channel, callOptions);
+    }
+
+    /**
+     * <pre>
+     * Returns a snapshot of the recorded per-method metrics.
+     * </pre>
+     */
+    public io.grpc.rpcmetrics.v1.GetRpcMetricsResponse getRpcMetrics(io.grpc.rpcmetrics.v1.GetRpcMetricsRequest request) {
+      return io.grpc.stub.ClientCalls.blockingUnaryCall(
+          getChannel(), getGetRpcMetricsMethod(), getCallOptions(), request);
+    }
+  }
+
+  /**
+   */
+  public static final class RpcMetricsFutureStub extends io.grpc.stub.AbstractFutureStub<RpcMetricsFutureStub> {
+    private RpcMetricsFutureStub(
+        io.grpc.Channel channel, io.grpc.CallOptions callOptions) {
+      super(channel, callOptions);
+    }
+
+    @java.lang.Override
+    protected RpcMetricsFutureStub build(
+        io.grpc.Channel channel, io.grpc.CallOptions callOptions) {
+      return new RpcMetricsFutureStub(channel, callOptions);
+    }
+
+    /**
+     * <pre>
+     * Returns a snapshot of the recorded per-method metrics.
+     * </pre>
+     */
+    public com.google.common.util.concurrent.ListenableFuture<io.grpc.rpcmetrics.v1.GetRpcMetricsResponse> getRpcMetrics(
+        io.grpc.rpcmetrics.v1.GetRpcMetricsRequest request) {
+      return io.grpc.stub.ClientCalls.futureUnaryCall(
+          getChannel().newCall(getGetRpcMetricsMethod(), getCallOptions()), request);
+    }
+  }
+
+  private static final int METHODID_GET_RPC_METRICS = 0;
+
+  private static final class MethodHandlers<Req, Resp> implements
+      io.grpc.stub.ServerCalls.UnaryMethod<Req, Resp>,
+      io.grpc.stub.ServerCalls.ServerStreamingMethod<Req, Resp>,
+      io.grpc.stub.ServerCalls.ClientStreamingMethod<Req, Resp>,
+      io.grpc.stub.ServerCalls.BidiStreamingMethod<Req, Resp> {
+    private final RpcMetricsImplBase serviceImpl;
+    private final int methodId;
+
+    MethodHandlers(RpcMetricsImplBase serviceImpl, int methodId) {
+      this.serviceImpl = serviceImpl;
+      this.methodId = methodId;
+    }
+
+    @java.lang.Override
+    @java.lang.SuppressWarnings("unchecked")
+    public void invoke(Req request, io.grpc.stub.StreamObserver<Resp> responseObserver) {
+      switch (methodId) {
+        case METHODID_GET_RPC_METRICS:
+          serviceImpl.getRpcMetrics((io.grpc.rpcmetrics.v1.GetRpcMetricsRequest) request,
+              (io.grpc.stub.StreamObserver<io.grpc.rpcmetrics.v1.GetRpcMetricsResponse>) responseObserver);
+          break;
+        default:
+          throw new AssertionError();
+      }
+    }
+
+    @java.lang.Override
+    @java.lang.SuppressWarnings("unchecked")
+    public io.grpc.stub.StreamObserver<Req> invoke(
+        io.grpc.stub.StreamObserver<Resp> responseObserver) {
+      switch (methodId) {
+        default:
+          throw new AssertionError();
+      }
+    }
+  }
+
+  private static abstract class RpcMetricsBaseDescriptorSupplier
+      implements io.grpc.protobuf.ProtoFileDescriptorSupplier, io.grpc.protobuf.ProtoServiceDescriptorSupplier {
+    RpcMetricsBaseDescriptorSupplier() {}
+
+    @java.lang.Override
+    public com.google.protobuf.Descriptors.FileDescriptor getFileDescriptor() {
+      return io.grpc.rpcmetrics.v1.RpcMetricsProto.getDescriptor();
+    }
+
+    @java.lang.Override
+    public com.google.protobuf.Descriptors.ServiceDescriptor getServiceDescriptor() {
+      return getFileDescriptor().findServiceByName("RpcMetrics");
+    }
+  }
+
+  private static final class RpcMetricsFileDescriptorSupplier
+      extends RpcMetricsBaseDescriptorSupplier {
+    RpcMetricsFileDescriptorSupplier() {}
+  }
+
+  private static final class RpcMetricsMethodDescriptorSupplier
+      extends RpcMetricsBaseDescriptorSupplier
+      implements io.grpc.protobuf.ProtoMethodDescriptorSupplier {
+    private final String methodName;
+
+    RpcMetricsMethodDescriptorSupplier(String methodName) {
+      this.methodName = methodName;
+    }
+
+    @java.lang.Override
+    public com.google.protobuf.Descriptors.MethodDescriptor getMethodDescriptor() {
+      return getServiceDescriptor().findMethodByName(methodName);
+    }
+  }
+
+  private static volatile io.grpc.ServiceDescriptor serviceDescriptor;
+
+  public static io.grpc.ServiceDescriptor getServiceDescriptor() {
+    io.grpc.ServiceDescriptor result = serviceDescriptor;
+    if (result == null) {
+      synchronized (RpcMetricsGrpc.class) {
+        result = serviceDescriptor;
+        if (result == null) {
+          serviceDescriptor = result = io.grpc.ServiceDescriptor.newBuilder(SERVICE_NAME)
+              .setSchemaDescriptor(new RpcMetricsFileDescriptorSupplier())
+              .addMethod(getGetRpcMetricsMethod())
+              .build();
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.protobuf.services;
+
+import com.google.protobuf.ByteString;
+import io.grpc.binarylog.v1.GrpcLogEntry;
+import io.grpc.binarylog.v1.Message;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Throughput of RPC threads logging to a {@link BinaryLogSink}, compared to binary logging being
+ * disabled.
+ */
+@State(Scope.Benchmark)
+public class BinaryLogSinkBenchmark {
+
+  public enum SinkType {
+    DISABLED, TEMP_FILE, ASYNC_FILE
+  }
+
+  @Param
+  public SinkType sinkType;
+
+  private BinaryLogSink sink;
+  private final GrpcLogEntry entry = GrpcLogEntry.newBuilder()
+      .setCallId(1234)
+      .setType(GrpcLogEntry.EventType.EVENT_TYPE_CLIENT_MESSAGE)
+      .setLogger(GrpcLogEntry.Logger.LOGGER_CLIENT)
+      .setMessage(Message.newBuilder()
+          .setLength(256)
+          .setData(ByteString.copyFrom(new byte[256])))
+      .build();
+
+  /**
+   * Creates the sink.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    switch (sinkType) {
+      case DISABLED:
+        sink = null;
+        break;
+      case TEMP_FILE:
+        sink = new TempFileSink();
+        break;
+      case ASYNC_FILE:
+        sink = AsyncFileSink.newBuilder().build();
+        break;
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  /**
+   * Closes the sink.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (sink != null) {
+      sink.close();
+    }
+  }
+
+  /**
+   * Logs one entry, as done for every message of a call.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @Threads(4)
+  public void write() {
+    if (sink != null) {
+      sink.write(entry);
+    }
+  }
+}
@@ -0,0 +1,566 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.protobuf.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import io.grpc.ExperimentalApi;
+import io.grpc.internal.GrpcUtil;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link BinaryLogSink} that does not block the calling thread. Messages are put in a bounded
+ * lock-free queue and appended by a background thread to segment files, which are rotated when
+ * they reach a size limit. When the queue is full the message is dropped and counted in
+ * {@link #getDroppedCount}, so a slow disk never slows down RPCs.
+ *
+ * <p>The background thread buffers what it writes and flushes it each time it has emptied the
+ * queue, so messages still in the buffer are lost if the process dies. Segment files are plain
+ * files rather than memory mappings, so old segments can be deleted on every platform, including
+ * Windows where a mapped file cannot be.
+ *
+ * <p>Each segment file contains messages written with
+ * {@link MessageLite#writeDelimitedTo(java.io.OutputStream)}, like the files of the default binary
+ * log. Segment files are named {@code <prefix>.<n>}, where {@code n} increases from 0. A sink
+ * started in a directory that already holds segments of the same prefix continues after the
+ * highest existing {@code n}, and counts the existing segments in the number of segments to keep.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/4017")
+@ThreadSafe
+public final class AsyncFileSink implements BinaryLogSink {
+  private static final Logger logger = Logger.getLogger(AsyncFileSink.class.getName());
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final RingBuffer<MessageLite> queue;
+  private final SegmentWriter writer;
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+  // The number of write() calls between their check of closed and the end of their offer.
+  private final AtomicInteger activeWriters = new AtomicInteger();
+  private final CountDownLatch drainerTerminated = new CountDownLatch(1);
+  @Nullable
+  private final Thread drainer;
+  private final AtomicBoolean closed = new AtomicBoolean();
+  private volatile boolean drainerParked;
+
+  /**
+   * Returns a new builder.
+   */
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  @VisibleForTesting
+  AsyncFileSink(
+      File directory, String filePrefix, int maxSegmentBytes, int maxSegments,
+      int queueCapacity, @Nullable ThreadFactory threadFactory) {
+    this.queue = new RingBuffer<>(queueCapacity);
+    this.writer = new SegmentWriter(directory, filePrefix, maxSegmentBytes, maxSegments);
+    if (threadFactory != null) {
+      drainer = threadFactory.newThread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            drainUntilClosed();
+          } finally {
+            drainerTerminated.countDown();
+          }
+        }
+      });
+      drainer.start();
+    } else {
+      drainer = null;
+      drainerTerminated.countDown();
+    }
+  }
+
+  /**
+   * Queues the {@code message} to be written. Never blocks; the message is dropped if the queue is
+   * full or the sink is closed.
+   */
+  @Override
+  public void write(MessageLite message) {
+    checkNotNull(message, "message");
+    activeWriters.incrementAndGet();
+    try {
+      if (closed.get()) {
+        logger.log(Level.FINEST, "Attempt to write after AsyncFileSink is closed.");
+        dropped.incrementAndGet();
+        return;
+      }
+      if (!queue.offer(message)) {
+        dropped.incrementAndGet();
+        return;
+      }
+    } finally {
+      activeWriters.decrementAndGet();
+    }
+    if (drainerParked) {
+      drainerParked = false;
+      LockSupport.unpark(drainer);
+    }
+  }
+
+  /**
+   * Returns the number of messages that were not written, because the queue was full, the message
+   * did not fit in a segment, or the sink was closed or had failed.
+   */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Returns the number of messages written to segment files.
+   */
+  public long getWrittenCount() {
+    return written.get();
+  }
+
+  /**
+   * Returns the directory that the segment files are written to.
+   */
+  public File getDirectory() {
+    return writer.directory;
+  }
+
+  @VisibleForTesting
+  List<File> getSegmentFiles() {
+    return writer.getSegmentFiles();
+  }
+
+  /**
+   * Stops accepting messages, writes the messages already queued and closes the current segment.
+   */
+  @Override
+  public void close() throws IOException {
+    // Only one caller may drain below, as the queue has a single consumer.
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    // A writer that did not see the flag is about to queue its message. Wait for it, so that the
+    // message is written below rather than left in the queue.
+    while (activeWriters.get() != 0) {
+      Thread.yield();
+    }
+    if (drainer != null) {
+      LockSupport.unpark(drainer);
+      boolean interrupted = false;
+      while (true) {
+        try {
+          drainerTerminated.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    // The drainer may have seen the flag before the last writers queued their messages.
+    drain();
+    writer.close();
+  }
+
+  private void drainUntilClosed() {
+    while (true) {
+      // Read the flag before draining, so that nothing queued before close() is left behind.
+      boolean closing = closed.get();
+      if (drain() == 0) {
+        if (closing) {
+          return;
+        }
+        drainerParked = true;
+        // Check again, a writer may have missed the flag.
+        if (queue.isEmpty()) {
+          LockSupport.parkNanos(this, MAX_PARK_NANOS);
+        }
+        drainerParked = false;
+      }
+    }
+  }
+
+  /**
+   * Writes all the queued messages. Must only be called by one thread at a time.
+   *
+   * @return the number of messages taken from the queue
+   */
+  @VisibleForTesting
+  int drain() {
+    int count = 0;
+    MessageLite message;
+    while ((message = queue.poll()) != null) {
+      count++;
+      if (writer.write(message)) {
+        written.incrementAndGet();
+      } else {
+        dropped.incrementAndGet();
+      }
+    }
+    if (count > 0) {
+      writer.flush();
+    }
+    return count;
+  }
+
+  /**
+   * Builder for {@link AsyncFileSink}.
+   */
+  public static final class Builder {
+    private File directory;
+    private String filePrefix = "BINARY_INFO";
+    private int maxSegmentBytes = 64 * 1024 * 1024;
+    private int maxSegments = 10;
+    private int queueCapacity = 8192;
+
+    private Builder() {}
+
+    /**
+     * Sets the directory of the segment files. By default a new directory is created in the JVM's
+     * temp dir.
+     */
+    public Builder setDirectory(File directory) {
+      this.directory = checkNotNull(directory, "directory");
+      return this;
+    }
+
+    /**
+     * Sets the prefix of the segment file names. Defaults to {@code BINARY_INFO}.
+     */
+    public Builder setFilePrefix(String filePrefix) {
+      this.filePrefix = checkNotNull(filePrefix, "filePrefix");
+      return this;
+    }
+
+    /**
+     * Sets the size at which a segment file is closed and a new one started. Defaults to 64 MiB.
+     * Messages that do not fit in a segment are dropped.
+     */
+    public Builder setMaxSegmentBytes(int maxSegmentBytes) {
+      checkArgument(maxSegmentBytes > 0, "maxSegmentBytes must be positive");
+      this.maxSegmentBytes = maxSegmentBytes;
+      return this;
+    }
+
+    /**
+     * Sets the number of segment files to keep; older ones are deleted. {@code 0} keeps all of
+     * them. Defaults to 10.
+     */
+    public Builder setMaxSegments(int maxSegments) {
+      checkArgument(maxSegments >= 0, "maxSegments must not be negative");
+      this.maxSegments = maxSegments;
+      return this;
+    }
+
+    /**
+     * Sets the number of messages that can be queued before new ones are dropped. It is rounded
+     * up to a power of two. Defaults to 8192.
+     */
+    public Builder setQueueCapacity(int queueCapacity) {
+      checkArgument(queueCapacity > 0, "queueCapacity must be positive");
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Creates the sink and starts its writer thread.
+     */
+    public AsyncFileSink build() throws IOException {
+      File dir = directory;
+      if (dir == null) {
+        dir = Files.createTempDirectory(filePrefix + ".").toFile();
+      } else if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("Unable to create directory " + dir);
+      }
+      logger.log(Level.INFO, "Writing binary logs to {0}", dir.getAbsolutePath());
+      return new AsyncFileSink(
+          dir, filePrefix, maxSegmentBytes, maxSegments, queueCapacity,
+          GrpcUtil.getThreadFactory("grpc-binlog-sink-%d", true));
+    }
+  }
+
+  /**
+   * Writes messages into files of a bounded size. Only used by the draining thread, and by
+   * {@link #close} once draining is over.
+   */
+  private static final class SegmentWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    final File directory;
+    private final String filePrefix;
+    private final int maxSegmentBytes;
+    private final int maxSegments;
+    private final ArrayDeque<File> segmentFiles = new ArrayDeque<>();
+    private int nextSegment;
+    private boolean failed;
+    @Nullable
+    private FileOutputStream fileOut;
+    @Nullable
+    private CodedOutputStream out;
+    private long segmentBytes;
+
+    SegmentWriter(File directory, String filePrefix, int maxSegmentBytes, int maxSegments) {
+      this.directory = checkNotNull(directory, "directory");
+      this.filePrefix = checkNotNull(filePrefix, "filePrefix");
+      checkArgument(maxSegmentBytes > 0, "maxSegmentBytes must be positive");
+      checkArgument(maxSegments >= 0, "maxSegments must not be negative");
+      this.maxSegmentBytes = maxSegmentBytes;
+      this.maxSegments = maxSegments;
+      loadExistingSegments();
+    }
+
+    /**
+     * Adds the segments left in the directory by a previous sink, so that they are not overwritten
+     * and are deleted in turn when they are the oldest.
+     */
+    private void loadExistingSegments() {
+      File[] files = directory.listFiles();
+      if (files == null) {
+        return;
+      }
+      String namePrefix = filePrefix + ".";
+      TreeMap<Integer, File> existing = new TreeMap<>();
+      for (File file : files) {
+        String name = file.getName();
+        if (!name.startsWith(namePrefix) || !file.isFile()) {
+          continue;
+        }
+        Integer index = parseSegmentIndex(name.substring(namePrefix.length()));
+        if (index != null) {
+          existing.put(index, file);
+        }
+      }
+      segmentFiles.addAll(existing.values());
+      if (!existing.isEmpty()) {
+        nextSegment = existing.lastKey() + 1;
+      }
+    }
+
+    @Nullable
+    private static Integer parseSegmentIndex(String suffix) {
+      if (suffix.isEmpty() || suffix.length() > 9) {
+        return null;
+      }
+      for (int i = 0; i < suffix.length(); i++) {
+        char c = suffix.charAt(i);
+        if (c < '0' || c > '9') {
+          return null;
+        }
+      }
+      return Integer.parseInt(suffix);
+    }
+
+    /**
+     * Returns {@code false} if the message was not written.
+     */
+    boolean write(MessageLite message) {
+      if (failed) {
+        return false;
+      }
+      int size = message.getSerializedSize();
+      long length = (long) CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+      if (length > maxSegmentBytes) {
+        logger.log(Level.FINE, "Dropping binary log entry of {0} bytes", length);
+        return false;
+      }
+      try {
+        if (out == null || segmentBytes + length > maxSegmentBytes) {
+          rotate();
+        }
+        out.writeUInt32NoTag(size);
+        message.writeTo(out);
+        segmentBytes += length;
+        return true;
+      } catch (IOException e) {
+        fail(e);
+        return false;
+      }
+    }
+
+    /**
+     * Writes the buffered bytes to the current segment file.
+     */
+    void flush() {
+      if (out == null) {
+        return;
+      }
+      try {
+        out.flush();
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+
+    private void fail(IOException e) {
+      logger.log(Level.SEVERE, "Caught exception while writing", e);
+      failed = true;
+      closeQuietly();
+    }
+
+    private void rotate() throws IOException {
+      closeSegment();
+      File file = new File(
+          directory, String.format(Locale.US, "%s.%d", filePrefix, nextSegment++));
+      fileOut = new FileOutputStream(file);
+      out = CodedOutputStream.newInstance(fileOut, BUFFER_SIZE);
+      segmentBytes = 0;
+      segmentFiles.addLast(file);
+      if (maxSegments > 0) {
+        while (segmentFiles.size() > maxSegments) {
+          File oldest = segmentFiles.removeFirst();
+          if (!oldest.delete()) {
+            logger.log(Level.WARNING, "Unable to delete binary log segment {0}", oldest);
+          }
+        }
+      }
+    }
+
+    /**
+     * Flushes and closes the current segment.
+     */
+    private void closeSegment() throws IOException {
+      if (fileOut == null) {
+        return;
+      }
+      FileOutputStream fileOut = this.fileOut;
+      this.fileOut = null;
+      try {
+        out.flush();
+      } finally {
+        out = null;
+        fileOut.close();
+      }
+    }
+
+    void close() throws IOException {
+      closeSegment();
+    }
+
+    private void closeQuietly() {
+      try {
+        closeSegment();
+      } catch (IOException e) {
+        logger.log(Level.SEVERE, "Caught exception while closing", e);
+      }
+    }
+
+    List<File> getSegmentFiles() {
+      return new ArrayList<>(segmentFiles);
+    }
+  }
+
+  /**
+   * A bounded multi-producer single-consumer queue. Every slot carries a sequence number that tells
+   * whether it is free for the producer of a given position or filled for the consumer, so
+   * producers only contend on the tail position and never wait for each other.
+   */
+  @VisibleForTesting
+  static final class RingBuffer<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Only accessed by the consumer.
+    private long head;
+
+    RingBuffer(int requestedCapacity) {
+      checkArgument(requestedCapacity > 0, "capacity must be positive");
+      checkArgument(requestedCapacity <= 1 << 30, "capacity too large");
+      int capacity = Integer.highestOneBit(requestedCapacity);
+      if (capacity < requestedCapacity) {
+        capacity <<= 1;
+      }
+      mask = capacity - 1;
+      elements = new AtomicReferenceArray<>(capacity);
+      sequences = new AtomicLongArray(capacity);
+      for (int i = 0; i < capacity; i++) {
+        sequences.set(i, i);
+      }
+    }
+
+    /**
+     * Returns {@code false} if the queue is full.
+     */
+    boolean offer(E element) {
+      while (true) {
+        long position = tail.get();
+        int index = (int) (position & mask);
+        long sequence = sequences.get(index);
+        if (sequence == position) {
+          if (tail.compareAndSet(position, position + 1)) {
+            elements.lazySet(index, element);
+            sequences.set(index, position + 1);
+            return true;
+          }
+        } else if (sequence < position) {
+          // The consumer has not freed the slot yet, so the queue is full.
+          return false;
+        }
+        // Another producer took the position, retry with the next one.
+      }
+    }
+
+    @Nullable
+    E poll() {
+      int index = (int) (head & mask);
+      if (sequences.get(index) != head + 1) {
+        return null;
+      }
+      E element = elements.get(index);
+      elements.lazySet(index, null);
+      sequences.set(index, head + mask + 1);
+      head++;
+      return element;
+    }
+
+    /**
+     * Returns whether there is nothing to poll. Must only be called by the consumer.
+     */
+    boolean isEmpty() {
+      return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    int capacity() {
+      return mask + 1;
+    }
+  }
+}
@@ -72,6 +72,11 @@ public abstract class BinaryLogProvider extends BinaryLog {
     if (binlogInterceptor == null) {
       return oMethodDef;
     }
+    if (binlogInterceptor instanceof HeadersOnly) {
+      return oMethodDef.withServerCallHandler(
+          InternalServerInterceptors.interceptCallHandlerCreate(
+              binlogInterceptor, oMethodDef.getServerCallHandler()));
+    }
     MethodDescriptor<byte[], byte[]> binMethod =
         BinaryLogProvider.toByteBufferMethod(oMethodDef.getMethodDescriptor());
     ServerMethodDefinition<byte[], byte[]> binDef =
@@ -85,7 +90,8 @@ public abstract class BinaryLogProvider extends BinaryLog {
   /**
    * Returns a {@link ServerInterceptor} for binary logging. gRPC is free to cache the interceptor,
    * so the interceptor must be reusable across calls. At runtime, the request and response
-   * marshallers are always {@code Marshaller<InputStream>}.
+   * marshallers are always {@code Marshaller<InputStream>}, unless the interceptor is
+   * {@link HeadersOnly}.
    * Returns {@code null} if this method is not binary logged.
    */
   // TODO(zpencer): ensure the interceptor properly handles retries and hedging
@@ -95,7 +101,8 @@ public abstract class BinaryLogProvider extends BinaryLog {
   /**
    * Returns a {@link ClientInterceptor} for binary logging. gRPC is free to cache the interceptor,
    * so the interceptor must be reusable across calls. At runtime, the request and response
-   * marshallers are always {@code Marshaller<InputStream>}.
+   * marshallers are always {@code Marshaller<InputStream>}, unless the interceptor is
+   * {@link HeadersOnly}.
    * Returns {@code null} if this method is not binary logged.
    */
   // TODO(zpencer): ensure the interceptor properly handles retries and hedging
@@ -103,6 +110,12 @@ public abstract class BinaryLogProvider extends BinaryLog {
   protected abstract ClientInterceptor getClientInterceptor(
       String fullMethodName, CallOptions callOptions);
 
+  /**
+   * Marks interceptors that never look at messages. Calls intercepted by them keep their own
+   * marshallers, so messages are not serialized to byte arrays for the log.
+   */
+  interface HeadersOnly {}
+
   @Override
   public void close() throws IOException {
     // default impl: noop
@@ -150,6 +163,8 @@ public abstract class BinaryLogProvider extends BinaryLog {
           method.getFullMethodName(), callOptions);
       if (binlogInterceptor == null) {
         return next.newCall(method, callOptions);
+      } else if (binlogInterceptor instanceof HeadersOnly) {
+        return binlogInterceptor.interceptCall(method, callOptions, next);
       } else {
         return InternalClientInterceptors
             .wrapClientInterceptor(
@@ -68,7 +68,7 @@ class BinaryLogProviderImpl extends BinaryLogProvider {
   @Override
   public ServerInterceptor getServerInterceptor(String fullMethodName) {
     BinlogHelper helperForMethod = factory.getLog(fullMethodName);
-    if (helperForMethod == null) {
+    if (helperForMethod == null || !helperForMethod.shouldLog(fullMethodName)) {
       return null;
     }
     return helperForMethod.getServerInterceptor(counter.getAndIncrement());
@@ -79,7 +79,7 @@ class BinaryLogProviderImpl extends BinaryLogProvider {
   public ClientInterceptor getClientInterceptor(
       String fullMethodName, CallOptions callOptions) {
     BinlogHelper helperForMethod = factory.getLog(fullMethodName);
-    if (helperForMethod == null) {
+    if (helperForMethod == null || !helperForMethod.shouldLog(fullMethodName)) {
       return null;
     }
     return helperForMethod.getClientInterceptor(counter.getAndIncrement());
@@ -25,7 +25,8 @@ public final class BinaryLogs {
   /**
    * Creates a binary log that writes to a temp file. <b>Warning:</b> this implementation is
    * not performance optimized, and RPCs will experience back pressure if disk IO does not keep
-   * up.
+   * up. Use {@link #createBinaryLog(BinaryLogSink, String)} with an {@link AsyncFileSink} to log
+   * without blocking RPCs.
    */
   public static BinaryLog createBinaryLog() throws IOException {
     return new BinaryLogProviderImpl();
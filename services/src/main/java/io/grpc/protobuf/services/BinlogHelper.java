@@ -25,6 +25,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
+import com.google.common.base.Ticker;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Duration;
 import com.google.protobuf.util.Durations;
@@ -63,6 +64,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
@@ -87,10 +91,29 @@ final class BinlogHelper {
 
   @VisibleForTesting
   final SinkWriter writer;
+  @VisibleForTesting
+  final CallSampler sampler;
+  // false if only headers and trailers are logged
+  @VisibleForTesting
+  final boolean logMessages;
 
   @VisibleForTesting
   BinlogHelper(SinkWriter writer) {
+    this(writer, CallSampler.ALWAYS, true);
+  }
+
+  BinlogHelper(SinkWriter writer, CallSampler sampler, boolean logMessages) {
     this.writer = writer;
+    this.sampler = checkNotNull(sampler, "sampler");
+    this.logMessages = logMessages;
+  }
+
+  /**
+   * Decides whether a new call of {@code fullMethodName} is logged. Must be called once per call,
+   * before any of the interceptors are created.
+   */
+  boolean shouldLog(String fullMethodName) {
+    return sampler.shouldLog(fullMethodName);
   }
 
   // TODO(zpencer): move proto related static helpers into this class
@@ -392,7 +415,7 @@ final class BinlogHelper {
 
 
   public ClientInterceptor getClientInterceptor(final long callId) {
-    return new ClientInterceptor() {
+    ClientInterceptor interceptor = new ClientInterceptor() {
       boolean trailersOnlyResponse = true;
       @Override
       public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
@@ -422,13 +445,15 @@ final class BinlogHelper {
                 new SimpleForwardingClientCallListener<RespT>(responseListener) {
                   @Override
                   public void onMessage(RespT message) {
-                    writer.logRpcMessage(
-                        seq.getAndIncrement(),
-                        EventType.EVENT_TYPE_SERVER_MESSAGE,
-                        method.getResponseMarshaller(),
-                        message,
-                        GrpcLogEntry.Logger.LOGGER_CLIENT,
-                        callId);
+                    if (logMessages) {
+                      writer.logRpcMessage(
+                          seq.getAndIncrement(),
+                          EventType.EVENT_TYPE_SERVER_MESSAGE,
+                          method.getResponseMarshaller(),
+                          message,
+                          GrpcLogEntry.Logger.LOGGER_CLIENT,
+                          callId);
+                    }
                     super.onMessage(message);
                   }
 
@@ -463,13 +488,15 @@ final class BinlogHelper {
 
           @Override
           public void sendMessage(ReqT message) {
-            writer.logRpcMessage(
-                seq.getAndIncrement(),
-                EventType.EVENT_TYPE_CLIENT_MESSAGE,
-                method.getRequestMarshaller(),
-                message,
-                GrpcLogEntry.Logger.LOGGER_CLIENT,
-                callId);
+            if (logMessages) {
+              writer.logRpcMessage(
+                  seq.getAndIncrement(),
+                  EventType.EVENT_TYPE_CLIENT_MESSAGE,
+                  method.getRequestMarshaller(),
+                  message,
+                  GrpcLogEntry.Logger.LOGGER_CLIENT,
+                  callId);
+            }
             super.sendMessage(message);
           }
 
@@ -493,10 +520,11 @@ final class BinlogHelper {
         };
       }
     };
+    return logMessages ? interceptor : new HeadersOnlyClientInterceptor(interceptor);
   }
 
   public ServerInterceptor getServerInterceptor(final long callId) {
-    return new ServerInterceptor() {
+    ServerInterceptor interceptor = new ServerInterceptor() {
       @Override
       public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
           final ServerCall<ReqT, RespT> call,
@@ -522,13 +550,15 @@ final class BinlogHelper {
         ServerCall<ReqT, RespT> wCall = new SimpleForwardingServerCall<ReqT, RespT>(call) {
           @Override
           public void sendMessage(RespT message) {
-            writer.logRpcMessage(
-                seq.getAndIncrement(),
-                EventType.EVENT_TYPE_SERVER_MESSAGE,
-                call.getMethodDescriptor().getResponseMarshaller(),
-                message,
-                GrpcLogEntry.Logger.LOGGER_SERVER,
-                callId);
+            if (logMessages) {
+              writer.logRpcMessage(
+                  seq.getAndIncrement(),
+                  EventType.EVENT_TYPE_SERVER_MESSAGE,
+                  call.getMethodDescriptor().getResponseMarshaller(),
+                  message,
+                  GrpcLogEntry.Logger.LOGGER_SERVER,
+                  callId);
+            }
             super.sendMessage(message);
           }
 
@@ -559,13 +589,15 @@ final class BinlogHelper {
         return new SimpleForwardingServerCallListener<ReqT>(next.startCall(wCall, headers)) {
           @Override
           public void onMessage(ReqT message) {
-            writer.logRpcMessage(
-                seq.getAndIncrement(),
-                EventType.EVENT_TYPE_CLIENT_MESSAGE,
-                call.getMethodDescriptor().getRequestMarshaller(),
-                message,
-                GrpcLogEntry.Logger.LOGGER_SERVER,
-                callId);
+            if (logMessages) {
+              writer.logRpcMessage(
+                  seq.getAndIncrement(),
+                  EventType.EVENT_TYPE_CLIENT_MESSAGE,
+                  call.getMethodDescriptor().getRequestMarshaller(),
+                  message,
+                  GrpcLogEntry.Logger.LOGGER_SERVER,
+                  callId);
+            }
             super.onMessage(message);
           }
 
@@ -589,6 +621,129 @@ final class BinlogHelper {
         };
       }
     };
+    return logMessages ? interceptor : new HeadersOnlyServerInterceptor(interceptor);
+  }
+
+  /**
+   * Wraps a client interceptor that does not log messages, so that calls keep their marshallers and
+   * messages are not serialized for the log.
+   */
+  private static final class HeadersOnlyClientInterceptor
+      implements ClientInterceptor, BinaryLogProvider.HeadersOnly {
+    private final ClientInterceptor delegate;
+
+    HeadersOnlyClientInterceptor(ClientInterceptor delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+      return delegate.interceptCall(method, callOptions, next);
+    }
+  }
+
+  /**
+   * Server counterpart of {@link HeadersOnlyClientInterceptor}.
+   */
+  private static final class HeadersOnlyServerInterceptor
+      implements ServerInterceptor, BinaryLogProvider.HeadersOnly {
+    private final ServerInterceptor delegate;
+
+    HeadersOnlyServerInterceptor(ServerInterceptor delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+        ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+      return delegate.interceptCall(call, headers, next);
+    }
+  }
+
+  /**
+   * Decides which calls are logged: each call is picked with a fixed probability, then calls of a
+   * method above a rate are dropped. The decision is made once per call, before anything is copied
+   * for the log.
+   *
+   * <p>Method names come from the clients, so only the first {@link #MAX_RATE_LIMITED_METHODS}
+   * methods get a rate limit of their own. The calls of the other methods share one.
+   */
+  @VisibleForTesting
+  static final class CallSampler {
+    static final CallSampler ALWAYS = new CallSampler(1, 0, Ticker.systemTicker());
+    @VisibleForTesting
+    static final int MAX_RATE_LIMITED_METHODS = 1000;
+
+    final double probability;
+    // 0 if unlimited
+    final int maxCallsPerSecond;
+    private final Ticker ticker;
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    // Shared by the methods beyond MAX_RATE_LIMITED_METHODS, null if unlimited
+    @Nullable
+    private final TokenBucket overflowBucket;
+
+    CallSampler(double probability, int maxCallsPerSecond, Ticker ticker) {
+      checkArgument(probability >= 0 && probability <= 1, "probability must be in [0, 1]");
+      checkArgument(maxCallsPerSecond >= 0, "maxCallsPerSecond must not be negative");
+      this.probability = probability;
+      this.maxCallsPerSecond = maxCallsPerSecond;
+      this.ticker = checkNotNull(ticker, "ticker");
+      this.overflowBucket =
+          maxCallsPerSecond == 0 ? null : new TokenBucket(maxCallsPerSecond, ticker.read());
+    }
+
+    boolean shouldLog(String fullMethodName) {
+      if (probability < 1 && ThreadLocalRandom.current().nextDouble() >= probability) {
+        return false;
+      }
+      if (maxCallsPerSecond == 0) {
+        return true;
+      }
+      TokenBucket bucket = buckets.get(fullMethodName);
+      if (bucket == null) {
+        if (buckets.size() >= MAX_RATE_LIMITED_METHODS) {
+          return overflowBucket.tryAcquire(ticker.read());
+        }
+        bucket = new TokenBucket(maxCallsPerSecond, ticker.read());
+        TokenBucket existing = buckets.putIfAbsent(fullMethodName, bucket);
+        if (existing != null) {
+          bucket = existing;
+        }
+      }
+      return bucket.tryAcquire(ticker.read());
+    }
+  }
+
+  /**
+   * A lock-free token bucket holding up to one second worth of calls. Instead of a token count it
+   * keeps the time at which the bucket will be full again, so taking a token is a single
+   * compare-and-set.
+   */
+  private static final class TokenBucket {
+    private final long nanosPerToken;
+    private final long maxBacklogNanos;
+    private final AtomicLong fullAtNanos;
+
+    TokenBucket(int tokensPerSecond, long nowNanos) {
+      this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / tokensPerSecond;
+      this.maxBacklogNanos = nanosPerToken * tokensPerSecond - nanosPerToken;
+      this.fullAtNanos = new AtomicLong(nowNanos);
+    }
+
+    boolean tryAcquire(long nowNanos) {
+      while (true) {
+        long fullAt = fullAtNanos.get();
+        if (fullAt - nowNanos > maxBacklogNanos) {
+          return false;
+        }
+        long next = (fullAt - nowNanos > 0 ? fullAt : nowNanos) + nanosPerToken;
+        if (fullAtNanos.compareAndSet(fullAt, next)) {
+          return true;
+        }
+      }
+    }
   }
 
   interface Factory {
@@ -713,39 +868,84 @@ final class BinlogHelper {
      *
      * <p>{@code {h(:\d+)?}, {m(:\d+)?}, {h(:\d+)?,m(:\d+)?}}
      *
+     * <p>Any of these may be followed by sampling options, separated by {@code ;}, in any order:
+     * {@code s:<probability>} logs each call with the given probability in [0, 1],
+     * {@code r:<n>} logs at most {@code n} calls per second of each method, and {@code n} logs
+     * headers and trailers only, without message events. The sampling options may also be used
+     * alone, in which case headers and messages are logged in full. For example,
+     * {@code {h:256;s:0.01;r:100}} logs 1% of the calls, up to 100 per second and method, with at
+     * most 256 bytes of headers.
+     *
      * <p>If the {@code logConfig} is null, the returned binlog will have a limit of
      * Integer.MAX_VALUE.
      */
     @VisibleForTesting
     @Nullable
     static BinlogHelper createBinaryLog(BinaryLogSink sink, @Nullable String logConfig) {
+      return createBinaryLog(sink, logConfig, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    static BinlogHelper createBinaryLog(
+        BinaryLogSink sink, @Nullable String logConfig, Ticker ticker) {
       if (logConfig == null) {
         return new BinlogHelper(
             new SinkWriterImpl(
                 sink, TimeProvider.SYSTEM_TIME_PROVIDER, Integer.MAX_VALUE, Integer.MAX_VALUE));
       }
       try {
-        final int maxHeaderBytes;
-        final int maxMsgBytes;
-        String[] parts = logConfig.split(";", 2);
-        if (parts.length == 2) {
-          if (!(parts[0].startsWith("h") && parts[1].startsWith("m"))) {
+        int maxHeaderBytes = 0;
+        int maxMsgBytes = 0;
+        String[] parts = logConfig.split(";", -1);
+        int i = 0;
+        // The grammar specifies that if both h and m are present, h comes before m
+        if (parts[i].startsWith("h")) {
+          maxHeaderBytes = optionalInt(parts[i++].substring(1));
+        }
+        if (i < parts.length && parts[i].startsWith("m")) {
+          maxMsgBytes = optionalInt(parts[i++].substring(1));
+        }
+        boolean hasLimits = i > 0;
+        double probability = 1;
+        int maxCallsPerSecond = 0;
+        boolean logMessages = true;
+        Set<Character> options = new HashSet<>();
+        for (; i < parts.length; i++) {
+          String part = parts[i];
+          if (part.isEmpty() || !options.add(part.charAt(0))) {
+            throw new IllegalArgumentException("Illegal log config pattern");
+          }
+          if (part.startsWith("s:")) {
+            probability = Double.parseDouble(checkDecimal(part.substring(2)));
+            if (probability > 1) {
+              throw new IllegalArgumentException("Illegal log config pattern");
+            }
+          } else if (part.startsWith("r:")) {
+            maxCallsPerSecond = Integer.parseInt(checkDigits(part.substring(2)));
+            if (maxCallsPerSecond == 0) {
+              throw new IllegalArgumentException("Illegal log config pattern");
+            }
+          } else if (part.equals("n") && maxMsgBytes == 0) {
+            logMessages = false;
+          } else {
             throw new IllegalArgumentException("Illegal log config pattern");
           }
-          maxHeaderBytes = optionalInt(parts[0].substring(1));
-          maxMsgBytes = optionalInt(parts[1].substring(1));
-        } else if (parts[0].startsWith("h")) {
-          maxHeaderBytes = optionalInt(parts[0].substring(1));
-          maxMsgBytes = 0;
-        } else if (parts[0].startsWith("m")) {
-          maxHeaderBytes = 0;
-          maxMsgBytes = optionalInt(parts[0].substring(1));
-        } else {
-          throw new IllegalArgumentException("Illegal log config pattern");
         }
+        if (!hasLimits) {
+          if (options.isEmpty()) {
+            throw new IllegalArgumentException("Illegal log config pattern");
+          }
+          maxHeaderBytes = Integer.MAX_VALUE;
+          maxMsgBytes = logMessages ? Integer.MAX_VALUE : 0;
+        }
+        CallSampler sampler = probability == 1 && maxCallsPerSecond == 0
+            ? CallSampler.ALWAYS
+            : new CallSampler(probability, maxCallsPerSecond, ticker);
         return new BinlogHelper(
             new SinkWriterImpl(
-                sink, TimeProvider.SYSTEM_TIME_PROVIDER, maxHeaderBytes, maxMsgBytes));
+                sink, TimeProvider.SYSTEM_TIME_PROVIDER, maxHeaderBytes, maxMsgBytes),
+            sampler,
+            logMessages);
       } catch (NumberFormatException e) {
         throw new IllegalArgumentException("Illegal log config pattern");
       }
@@ -762,6 +962,20 @@ final class BinlogHelper {
       return s;
     }
 
+    /** Returns {@code s}, after verifying it is a decimal number like {@code 0.25}. */
+    static String checkDecimal(String s) {
+      int dot = s.indexOf('.');
+      if (dot == -1) {
+        return checkDigits(s);
+      }
+      if (dot == 0 || dot == s.length() - 1) {
+        throw new IllegalArgumentException("Illegal log config pattern");
+      }
+      checkDigits(s.substring(0, dot));
+      checkDigits(s.substring(dot + 1));
+      return s;
+    }
+
     /** Parses the optional int of the form "" (max int) or ":123" (123). */
     static int optionalInt(String s) {
       if (s.isEmpty()) {
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.protobuf.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.grpc.ExperimentalApi;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A lock-free histogram of non-negative values with log-linear buckets, in the style of HDR
+ * histograms. Every power-of-two range is split into 8 equally sized buckets, so a value is
+ * reported with a relative error of at most 12.5%. Values of 2<sup>41</sup> and above are counted
+ * in the last bucket.
+ *
+ * <p>Recording a value does not allocate and does not block.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/2861")
+@ThreadSafe
+public final class LogLinearHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40;
+  static final int BUCKET_COUNT =
+      SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong sum = new AtomicLong();
+
+  /**
+   * Records a value. Negative values are recorded as zero.
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    buckets.getAndIncrement(bucketIndex(value));
+    sum.getAndAdd(value);
+  }
+
+  /**
+   * Returns a copy of the current state. The copy is not atomic with respect to concurrent
+   * {@link #record} calls, so the returned count and sum may be off by the in-flight values.
+   */
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKET_COUNT];
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = buckets.get(i);
+      count += counts[i];
+    }
+    return new Snapshot(counts, count, sum.get());
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKET_COUNT - 1;
+    }
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+    return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+  }
+
+  static long bucketLowerBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+    long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+    return (SUB_BUCKETS + subBucket) << shift;
+  }
+
+  static long bucketUpperBound(int index) {
+    if (index == BUCKET_COUNT - 1) {
+      return Long.MAX_VALUE;
+    }
+    return bucketLowerBound(index + 1) - 1;
+  }
+
+  /**
+   * An immutable copy of a {@link LogLinearHistogram}.
+   */
+  public static final class Snapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+
+    private Snapshot(long[] counts, long count, long sum) {
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+    }
+
+    /** Returns the number of recorded values. */
+    public long getCount() {
+      return count;
+    }
+
+    /** Returns the sum of the recorded values. */
+    public long getSum() {
+      return sum;
+    }
+
+    /** Returns the number of buckets. */
+    public int getNumBuckets() {
+      return counts.length;
+    }
+
+    /** Returns the number of values recorded in the bucket at {@code index}. */
+    public long getCountInBucket(int index) {
+      return counts[index];
+    }
+
+    /** Returns the smallest value counted in the bucket at {@code index}. */
+    public long getBucketLowerBound(int index) {
+      return bucketLowerBound(index);
+    }
+
+    /** Returns the largest value counted in the bucket at {@code index}. */
+    public long getBucketUpperBound(int index) {
+      return bucketUpperBound(index);
+    }
+
+    /**
+     * Returns an upper bound of the value at the given percentile, or 0 if nothing was recorded.
+     *
+     * @param percentile a number in [0, 100]
+     */
+    public long getValueAtPercentile(double percentile) {
+      checkArgument(
+          percentile >= 0 && percentile <= 100, "percentile must be in [0, 100]: %s", percentile);
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return bucketUpperBound(i);
+        }
+      }
+      return bucketUpperBound(counts.length - 1);
+    }
+  }
+}
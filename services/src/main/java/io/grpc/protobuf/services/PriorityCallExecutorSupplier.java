@@ -0,0 +1,331 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.protobuf.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.ExperimentalApi;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.Status;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link ServerCallExecutorSupplier} that schedules the calls of a server by priority, so that
+ * batch traffic cannot starve latency-critical calls when the server is backed up.
+ *
+ * <p>Each priority has a queue and a weight. Tasks run on the underlying executor, but instead of
+ * running in the order they were submitted, the next task to run is taken from the non-empty
+ * queues by smooth weighted round robin: while all the queues are busy, a priority of weight 3
+ * gets three times as many tasks run as a priority of weight 1, without long bursts of either.
+ *
+ * <p>A call whose deadline expires while it waits for its first task to run is closed with
+ * {@code DEADLINE_EXCEEDED} without ever being handed to the application.
+ *
+ * <p>The time tasks wait in the queue of each priority is recorded in a histogram.
+ *
+ * <p>Install it with {@link io.grpc.ServerBuilder#callExecutor}.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/8274")
+@ThreadSafe
+public final class PriorityCallExecutorSupplier implements ServerCallExecutorSupplier {
+  private static final Logger logger =
+      Logger.getLogger(PriorityCallExecutorSupplier.class.getName());
+
+  /** Computes the priority of a call. */
+  public interface PriorityFunction {
+    /**
+     * Returns the priority of the call, the index of its weight in the order the priorities were
+     * added to the builder. Out of range values are clamped to the first or the last priority.
+     */
+    int getPriority(ServerCall<?, ?> call, Metadata headers);
+  }
+
+  private final Executor executor;
+  private final int[] weights;
+  private final PriorityFunction priorityFunction;
+  private final Ticker ticker;
+  private final Object lock = new Object();
+  @GuardedBy("lock")
+  private final List<ArrayDeque<Task>> queues;
+  @GuardedBy("lock")
+  private final long[] currentWeights;
+  private final LogLinearHistogram[] queueWaitMicros;
+  private final AtomicLong expiredCount = new AtomicLong();
+  private final Runnable dispatcher = new Runnable() {
+    @Override
+    public void run() {
+      Task task = poll();
+      if (task != null) {
+        runTask(task);
+      }
+    }
+  };
+
+  private PriorityCallExecutorSupplier(Builder builder) {
+    this.executor = builder.executor;
+    this.weights = new int[builder.weights.size()];
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = builder.weights.get(i);
+    }
+    this.priorityFunction = builder.priorityFunction;
+    this.ticker = builder.ticker;
+    this.queues = new ArrayList<>(weights.length);
+    this.queueWaitMicros = new LogLinearHistogram[weights.length];
+    for (int i = 0; i < weights.length; i++) {
+      queues.add(new ArrayDeque<Task>());
+      queueWaitMicros[i] = new LogLinearHistogram();
+    }
+    this.currentWeights = new long[weights.length];
+  }
+
+  /** Creates a builder of a supplier running the tasks of the calls on {@code executor}. */
+  public static Builder newBuilder(Executor executor) {
+    return new Builder(executor);
+  }
+
+  /**
+   * Returns a {@link PriorityFunction} taking the priority of a call from the value of a request
+   * header, or {@code defaultPriority} if the header is missing or has no priority.
+   */
+  public static PriorityFunction byHeader(
+      final Metadata.Key<String> key, Map<String, Integer> priorities, final int defaultPriority) {
+    checkNotNull(key, "key");
+    final Map<String, Integer> priorityMap = Collections.unmodifiableMap(new HashMap<>(priorities));
+    return new PriorityFunction() {
+      @Override
+      public int getPriority(ServerCall<?, ?> call, Metadata headers) {
+        String value = headers.get(key);
+        Integer priority = value == null ? null : priorityMap.get(value);
+        return priority == null ? defaultPriority : priority;
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link PriorityFunction} taking the priority of a call from its full method name, or
+   * {@code defaultPriority} if the method has no priority.
+   */
+  public static PriorityFunction byMethod(
+      Map<String, Integer> priorities, final int defaultPriority) {
+    final Map<String, Integer> priorityMap = Collections.unmodifiableMap(new HashMap<>(priorities));
+    return new PriorityFunction() {
+      @Override
+      public int getPriority(ServerCall<?, ?> call, Metadata headers) {
+        Integer priority = priorityMap.get(call.getMethodDescriptor().getFullMethodName());
+        return priority == null ? defaultPriority : priority;
+      }
+    };
+  }
+
+  @Override
+  public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata metadata) {
+    int priority = priorityFunction.getPriority(call, metadata);
+    priority = Math.max(0, Math.min(weights.length - 1, priority));
+    // The server looks up the executor in the context of the call.
+    return new CallExecutor(call, priority, Context.current().getDeadline());
+  }
+
+  /** Returns the number of priorities. */
+  public int getPriorityCount() {
+    return weights.length;
+  }
+
+  /** Returns the number of tasks of the priority waiting to run. */
+  public int getQueueSize(int priority) {
+    synchronized (lock) {
+      return queues.get(priority).size();
+    }
+  }
+
+  /** Returns the time, in microseconds, the tasks of the priority waited to run. */
+  public LogLinearHistogram.Snapshot getQueueWaitMicros(int priority) {
+    return queueWaitMicros[priority].snapshot();
+  }
+
+  /** Returns the number of calls closed because their deadline expired while queued. */
+  public long getExpiredCount() {
+    return expiredCount.get();
+  }
+
+  private void enqueue(Task task) {
+    synchronized (lock) {
+      queues.get(task.priority).add(task);
+    }
+    boolean success = false;
+    try {
+      executor.execute(dispatcher);
+      success = true;
+    } finally {
+      if (!success) {
+        synchronized (lock) {
+          queues.get(task.priority).remove(task);
+        }
+      }
+    }
+  }
+
+  @Nullable
+  private Task poll() {
+    synchronized (lock) {
+      int best = -1;
+      long totalWeight = 0;
+      for (int i = 0; i < weights.length; i++) {
+        if (queues.get(i).isEmpty()) {
+          continue;
+        }
+        currentWeights[i] += weights[i];
+        totalWeight += weights[i];
+        if (best == -1 || currentWeights[i] > currentWeights[best]) {
+          best = i;
+        }
+      }
+      if (best == -1) {
+        return null;
+      }
+      currentWeights[best] -= totalWeight;
+      ArrayDeque<Task> queue = queues.get(best);
+      Task task = queue.poll();
+      if (queue.isEmpty()) {
+        // An idle priority does not accumulate credit.
+        currentWeights[best] = 0;
+      }
+      return task;
+    }
+  }
+
+  private void runTask(Task task) {
+    long waitNanos = ticker.read() - task.enqueueNanos;
+    queueWaitMicros[task.priority].record(TimeUnit.NANOSECONDS.toMicros(waitNanos));
+    CallExecutor callExecutor = task.callExecutor;
+    if (!callExecutor.started) {
+      if (callExecutor.deadline != null && callExecutor.deadline.isExpired()) {
+        expiredCount.incrementAndGet();
+        // The task is dropped, so the serializing executor of the call never runs again. The
+        // application never sees the call, and closing it releases the stream.
+        callExecutor.closeExpired();
+        return;
+      }
+      callExecutor.started = true;
+    }
+    task.runnable.run();
+  }
+
+  private final class CallExecutor implements Executor {
+    private final ServerCall<?, ?> call;
+    private final int priority;
+    @Nullable
+    private final Deadline deadline;
+    // The server serializes the tasks of a call, so at most one thread accesses it at a time.
+    private boolean started;
+
+    CallExecutor(ServerCall<?, ?> call, int priority, @Nullable Deadline deadline) {
+      this.call = call;
+      this.priority = priority;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      enqueue(new Task(this, command, ticker.read()));
+    }
+
+    void closeExpired() {
+      try {
+        call.close(
+            Status.DEADLINE_EXCEEDED.withDescription("Deadline expired while queued"),
+            new Metadata());
+      } catch (RuntimeException e) {
+        logger.log(Level.FINE, "Failed to close expired call", e);
+      }
+    }
+  }
+
+  private static final class Task {
+    final CallExecutor callExecutor;
+    final Runnable runnable;
+    final int priority;
+    final long enqueueNanos;
+
+    Task(CallExecutor callExecutor, Runnable runnable, long enqueueNanos) {
+      this.callExecutor = callExecutor;
+      this.runnable = checkNotNull(runnable, "runnable");
+      this.priority = callExecutor.priority;
+      this.enqueueNanos = enqueueNanos;
+    }
+  }
+
+  /** Builder for {@link PriorityCallExecutorSupplier}. */
+  public static final class Builder {
+    private final Executor executor;
+    private final List<Integer> weights = new ArrayList<>();
+    private PriorityFunction priorityFunction;
+    private Ticker ticker = Ticker.systemTicker();
+
+    private Builder(Executor executor) {
+      this.executor = checkNotNull(executor, "executor");
+    }
+
+    /**
+     * Adds a priority of the given weight. Priorities are numbered from 0 in the order they are
+     * added.
+     */
+    public Builder addPriority(int weight) {
+      checkArgument(weight > 0, "weight must be positive");
+      weights.add(weight);
+      return this;
+    }
+
+    /** Sets how the priority of a call is computed. Required. */
+    public Builder setPriorityFunction(PriorityFunction priorityFunction) {
+      this.priorityFunction = checkNotNull(priorityFunction, "priorityFunction");
+      return this;
+    }
+
+    @VisibleForTesting
+    Builder setTicker(Ticker ticker) {
+      this.ticker = checkNotNull(ticker, "ticker");
+      return this;
+    }
+
+    public PriorityCallExecutorSupplier build() {
+      checkState(!weights.isEmpty(), "No priority added");
+      checkState(priorityFunction != null, "priorityFunction not set");
+      return new PriorityCallExecutorSupplier(this);
+    }
+  }
+}
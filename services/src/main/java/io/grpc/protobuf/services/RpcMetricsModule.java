@@ -0,0 +1,364 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.protobuf.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ExperimentalApi;
+import io.grpc.ForwardingClientCall.SimpleForwardingClientCall;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Records per-method call latency, message size and status code distributions into
+ * {@link LogLinearHistogram}s, without depending on a stats library. Install
+ * {@link #getClientInterceptor()} on channels and {@link #getServerTracerFactory()} on servers,
+ * then read the results with {@link #getClientMetrics()} and {@link #getServerMetrics()}, or
+ * export them with {@link RpcMetricsService}.
+ *
+ * <p>The per-method histograms are created on the first call of each method. Recording does not
+ * allocate or lock beyond the per-call tracer objects.
+ *
+ * <p>On the client-side, latency is measured from when the call is created until it is closed,
+ * including all retry attempts. On the server-side, latency is measured from when the stream is
+ * created until it is closed.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/2861")
+@ThreadSafe
+public final class RpcMetricsModule {
+  /**
+   * Calls of methods seen after this many distinct methods are recorded under
+   * {@link #OTHER_METHODS}, so that a client sending arbitrary method names can not make the
+   * server allocate unbounded memory.
+   */
+  private static final int DEFAULT_MAX_METHODS = 1000;
+
+  /** The method name used for calls once the maximum number of methods has been reached. */
+  public static final String OTHER_METHODS = "<other>";
+
+  private final Ticker ticker;
+  private final int maxMethods;
+  private final MethodMetricsMap clientMethods = new MethodMetricsMap();
+  private final MethodMetricsMap serverMethods = new MethodMetricsMap();
+
+  /**
+   * Creates a module that measures time with {@link System#nanoTime}.
+   */
+  public RpcMetricsModule() {
+    this(Ticker.systemTicker(), DEFAULT_MAX_METHODS);
+  }
+
+  @VisibleForTesting
+  RpcMetricsModule(Ticker ticker, int maxMethods) {
+    checkArgument(maxMethods > 0, "maxMethods must be positive");
+    this.ticker = checkNotNull(ticker, "ticker");
+    this.maxMethods = maxMethods;
+  }
+
+  /**
+   * Returns the client interceptor that records metrics of calls made through a channel.
+   */
+  public ClientInterceptor getClientInterceptor() {
+    return new MetricsClientInterceptor();
+  }
+
+  /**
+   * Returns the server tracer factory that records metrics of calls handled by a server.
+   */
+  public ServerStreamTracer.Factory getServerTracerFactory() {
+    return new MetricsServerTracerFactory();
+  }
+
+  /**
+   * Returns a snapshot of the metrics of the calls made by clients, sorted by method name.
+   */
+  public List<MethodMetricsSnapshot> getClientMetrics() {
+    return clientMethods.snapshot();
+  }
+
+  /**
+   * Returns a snapshot of the metrics of the calls handled by servers, sorted by method name.
+   */
+  public List<MethodMetricsSnapshot> getServerMetrics() {
+    return serverMethods.snapshot();
+  }
+
+  /**
+   * An immutable copy of the metrics of one method.
+   */
+  public static final class MethodMetricsSnapshot {
+    private final String fullMethodName;
+    private final LogLinearHistogram.Snapshot latencyMicros;
+    private final LogLinearHistogram.Snapshot sentMessageBytes;
+    private final LogLinearHistogram.Snapshot receivedMessageBytes;
+    private final Map<Status.Code, Long> statusCounts;
+
+    MethodMetricsSnapshot(
+        String fullMethodName,
+        LogLinearHistogram.Snapshot latencyMicros,
+        LogLinearHistogram.Snapshot sentMessageBytes,
+        LogLinearHistogram.Snapshot receivedMessageBytes,
+        Map<Status.Code, Long> statusCounts) {
+      this.fullMethodName = fullMethodName;
+      this.latencyMicros = latencyMicros;
+      this.sentMessageBytes = sentMessageBytes;
+      this.receivedMessageBytes = receivedMessageBytes;
+      this.statusCounts = Collections.unmodifiableMap(statusCounts);
+    }
+
+    /** Returns the full method name, or {@link RpcMetricsModule#OTHER_METHODS}. */
+    public String getFullMethodName() {
+      return fullMethodName;
+    }
+
+    /** Returns the distribution of call latencies, in microseconds. */
+    public LogLinearHistogram.Snapshot getLatencyMicros() {
+      return latencyMicros;
+    }
+
+    /** Returns the distribution of the sizes of sent messages, in bytes. */
+    public LogLinearHistogram.Snapshot getSentMessageBytes() {
+      return sentMessageBytes;
+    }
+
+    /** Returns the distribution of the sizes of received messages, in bytes. */
+    public LogLinearHistogram.Snapshot getReceivedMessageBytes() {
+      return receivedMessageBytes;
+    }
+
+    /** Returns the number of completed calls per status code, omitting codes never seen. */
+    public Map<Status.Code, Long> getStatusCounts() {
+      return statusCounts;
+    }
+  }
+
+  /**
+   * The live metrics of one method. Also serves as the stream tracer of the method on the
+   * client-side, since message sizes are recorded without any per-stream state.
+   */
+  private static final class MethodMetrics extends ClientStreamTracer {
+    private static final Status.Code[] CODES = Status.Code.values();
+
+    final String fullMethodName;
+    final LogLinearHistogram latencyMicros = new LogLinearHistogram();
+    final LogLinearHistogram sentMessageBytes = new LogLinearHistogram();
+    final LogLinearHistogram receivedMessageBytes = new LogLinearHistogram();
+    final AtomicLongArray statusCounts = new AtomicLongArray(CODES.length);
+
+    MethodMetrics(String fullMethodName) {
+      this.fullMethodName = fullMethodName;
+    }
+
+    void recordCallEnded(long elapsedNanos, Status status) {
+      latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+      statusCounts.getAndIncrement(status.getCode().ordinal());
+    }
+
+    @Override
+    public void outboundMessageSent(
+        int seqNo, long optionalWireSize, long optionalUncompressedSize) {
+      recordMessageSize(sentMessageBytes, optionalWireSize, optionalUncompressedSize);
+    }
+
+    @Override
+    public void inboundMessageRead(
+        int seqNo, long optionalWireSize, long optionalUncompressedSize) {
+      recordMessageSize(receivedMessageBytes, optionalWireSize, optionalUncompressedSize);
+    }
+
+    MethodMetricsSnapshot snapshot() {
+      Map<Status.Code, Long> counts = new EnumMap<>(Status.Code.class);
+      for (int i = 0; i < CODES.length; i++) {
+        long count = statusCounts.get(i);
+        if (count != 0) {
+          counts.put(CODES[i], count);
+        }
+      }
+      return new MethodMetricsSnapshot(
+          fullMethodName,
+          latencyMicros.snapshot(),
+          sentMessageBytes.snapshot(),
+          receivedMessageBytes.snapshot(),
+          counts);
+    }
+
+    private static void recordMessageSize(
+        LogLinearHistogram histogram, long optionalWireSize, long optionalUncompressedSize) {
+      if (optionalUncompressedSize >= 0) {
+        histogram.record(optionalUncompressedSize);
+      } else if (optionalWireSize >= 0) {
+        histogram.record(optionalWireSize);
+      }
+    }
+  }
+
+  private final class MethodMetricsMap {
+    private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+    private final MethodMetrics otherMethods = new MethodMetrics(OTHER_METHODS);
+
+    MethodMetrics get(String fullMethodName) {
+      MethodMetrics metrics = methods.get(fullMethodName);
+      if (metrics != null) {
+        return metrics;
+      }
+      // The size check is racy, so the limit may be slightly exceeded. That is fine, it only needs
+      // to stop unbounded growth.
+      if (methods.size() >= maxMethods) {
+        return otherMethods;
+      }
+      metrics = new MethodMetrics(fullMethodName);
+      MethodMetrics existing = methods.putIfAbsent(fullMethodName, metrics);
+      return existing != null ? existing : metrics;
+    }
+
+    List<MethodMetricsSnapshot> snapshot() {
+      List<MethodMetrics> sorted = new ArrayList<>(methods.values());
+      Collections.sort(sorted, new Comparator<MethodMetrics>() {
+        @Override
+        public int compare(MethodMetrics a, MethodMetrics b) {
+          return a.fullMethodName.compareTo(b.fullMethodName);
+        }
+      });
+      List<MethodMetricsSnapshot> result = new ArrayList<>(sorted.size() + 1);
+      for (MethodMetrics metrics : sorted) {
+        result.add(metrics.snapshot());
+      }
+      MethodMetricsSnapshot other = otherMethods.snapshot();
+      if (!other.getStatusCounts().isEmpty()) {
+        result.add(other);
+      }
+      return Collections.unmodifiableList(result);
+    }
+  }
+
+  /**
+   * Measures the latency of a client call. Created for each call, because the call starts
+   * earlier than its streams, and may have several or no streams at all.
+   */
+  private static final class ClientCallTracer extends ClientStreamTracer.Factory {
+    private static final AtomicIntegerFieldUpdater<ClientCallTracer> callEndedUpdater =
+        AtomicIntegerFieldUpdater.newUpdater(ClientCallTracer.class, "callEnded");
+
+    private final Ticker ticker;
+    private final MethodMetrics metrics;
+    private final long startNanos;
+    private volatile int callEnded;
+
+    ClientCallTracer(Ticker ticker, MethodMetrics metrics) {
+      this.ticker = ticker;
+      this.metrics = metrics;
+      this.startNanos = ticker.read();
+    }
+
+    @Override
+    public ClientStreamTracer newClientStreamTracer(
+        ClientStreamTracer.StreamInfo info, Metadata headers) {
+      return metrics;
+    }
+
+    void callEnded(Status status) {
+      if (callEndedUpdater.getAndSet(this, 1) != 0) {
+        return;
+      }
+      metrics.recordCallEnded(ticker.read() - startNanos, status);
+    }
+  }
+
+  private static final class ServerTracer extends ServerStreamTracer {
+    private final Ticker ticker;
+    private final MethodMetrics metrics;
+    private final long startNanos;
+
+    ServerTracer(Ticker ticker, MethodMetrics metrics) {
+      this.ticker = ticker;
+      this.metrics = metrics;
+      this.startNanos = ticker.read();
+    }
+
+    @Override
+    public void outboundMessageSent(
+        int seqNo, long optionalWireSize, long optionalUncompressedSize) {
+      metrics.outboundMessageSent(seqNo, optionalWireSize, optionalUncompressedSize);
+    }
+
+    @Override
+    public void inboundMessageRead(
+        int seqNo, long optionalWireSize, long optionalUncompressedSize) {
+      metrics.inboundMessageRead(seqNo, optionalWireSize, optionalUncompressedSize);
+    }
+
+    @Override
+    public void streamClosed(Status status) {
+      metrics.recordCallEnded(ticker.read() - startNanos, status);
+    }
+  }
+
+  private final class MetricsServerTracerFactory extends ServerStreamTracer.Factory {
+    @Override
+    public ServerStreamTracer newServerStreamTracer(String fullMethodName, Metadata headers) {
+      return new ServerTracer(ticker, serverMethods.get(fullMethodName));
+    }
+  }
+
+  private final class MetricsClientInterceptor implements ClientInterceptor {
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+      final ClientCallTracer tracerFactory =
+          new ClientCallTracer(ticker, clientMethods.get(method.getFullMethodName()));
+      ClientCall<ReqT, RespT> call =
+          next.newCall(method, callOptions.withStreamTracerFactory(tracerFactory));
+      return new SimpleForwardingClientCall<ReqT, RespT>(call) {
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+          delegate().start(
+              new SimpleForwardingClientCallListener<RespT>(responseListener) {
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                  tracerFactory.callEnded(status);
+                  super.onClose(status, trailers);
+                }
+              },
+              headers);
+        }
+      };
+    }
+  }
+}
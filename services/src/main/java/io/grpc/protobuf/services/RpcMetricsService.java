@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.protobuf.services;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.ExperimentalApi;
+import io.grpc.Status;
+import io.grpc.protobuf.services.RpcMetricsModule.MethodMetricsSnapshot;
+import io.grpc.rpcmetrics.v1.GetRpcMetricsRequest;
+import io.grpc.rpcmetrics.v1.GetRpcMetricsResponse;
+import io.grpc.rpcmetrics.v1.Histogram;
+import io.grpc.rpcmetrics.v1.MethodMetrics;
+import io.grpc.rpcmetrics.v1.RpcMetricsGrpc;
+import io.grpc.rpcmetrics.v1.StatusCount;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An admin service that exports the metrics recorded by a {@link RpcMetricsModule}. It is meant to
+ * be registered next to the services returned by {@link io.grpc.services.AdminInterface}.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/2861")
+public final class RpcMetricsService extends RpcMetricsGrpc.RpcMetricsImplBase {
+  private final RpcMetricsModule module;
+
+  /**
+   * Creates an instance that exports the metrics of {@code module}.
+   */
+  public static RpcMetricsService newInstance(RpcMetricsModule module) {
+    return new RpcMetricsService(module);
+  }
+
+  private RpcMetricsService(RpcMetricsModule module) {
+    this.module = checkNotNull(module, "module");
+  }
+
+  @Override
+  public void getRpcMetrics(
+      GetRpcMetricsRequest request, StreamObserver<GetRpcMetricsResponse> responseObserver) {
+    String prefix = request.getMethodPrefix();
+    GetRpcMetricsResponse.Builder response = GetRpcMetricsResponse.newBuilder();
+    for (MethodMetricsSnapshot snapshot : filter(module.getClientMetrics(), prefix)) {
+      response.addClientMethods(toMethodMetrics(snapshot));
+    }
+    for (MethodMetricsSnapshot snapshot : filter(module.getServerMetrics(), prefix)) {
+      response.addServerMethods(toMethodMetrics(snapshot));
+    }
+    responseObserver.onNext(response.build());
+    responseObserver.onCompleted();
+  }
+
+  private static Iterable<MethodMetricsSnapshot> filter(
+      List<MethodMetricsSnapshot> snapshots, String prefix) {
+    if (prefix.isEmpty()) {
+      return snapshots;
+    }
+    List<MethodMetricsSnapshot> filtered = new ArrayList<>();
+    for (MethodMetricsSnapshot snapshot : snapshots) {
+      if (snapshot.getFullMethodName().startsWith(prefix)) {
+        filtered.add(snapshot);
+      }
+    }
+    return filtered;
+  }
+
+  static MethodMetrics toMethodMetrics(MethodMetricsSnapshot snapshot) {
+    MethodMetrics.Builder builder = MethodMetrics.newBuilder()
+        .setFullMethodName(snapshot.getFullMethodName())
+        .setLatencyMicros(toHistogram(snapshot.getLatencyMicros()))
+        .setSentMessageBytes(toHistogram(snapshot.getSentMessageBytes()))
+        .setReceivedMessageBytes(toHistogram(snapshot.getReceivedMessageBytes()));
+    for (Map.Entry<Status.Code, Long> entry : snapshot.getStatusCounts().entrySet()) {
+      builder.addStatusCounts(StatusCount.newBuilder()
+          .setCode(entry.getKey().name())
+          .setCount(entry.getValue()));
+    }
+    return builder.build();
+  }
+
+  static Histogram toHistogram(LogLinearHistogram.Snapshot snapshot) {
+    Histogram.Builder builder = Histogram.newBuilder()
+        .setCount(snapshot.getCount())
+        .setSum(snapshot.getSum());
+    for (int i = 0; i < snapshot.getNumBuckets(); i++) {
+      long count = snapshot.getCountInBucket(i);
+      if (count != 0) {
+        builder.addBuckets(Histogram.Bucket.newBuilder()
+            .setLowerBound(snapshot.getBucketLowerBound(i))
+            .setUpperBound(snapshot.getBucketUpperBound(i))
+            .setCount(count));
+      }
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.protobuf.services;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.protobuf.ByteString;
+import io.grpc.binarylog.v1.GrpcLogEntry;
+import io.grpc.binarylog.v1.Message;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link AsyncFileSink}.
+ */
+@RunWith(JUnit4.class)
+public class AsyncFileSinkTest {
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void readMyWrite() throws Exception {
+    AsyncFileSink sink = AsyncFileSink.newBuilder()
+        .setDirectory(tempFolder.getRoot())
+        .build();
+    GrpcLogEntry e1 = GrpcLogEntry.newBuilder().setCallId(1234).build();
+    GrpcLogEntry e2 = GrpcLogEntry.newBuilder().setCallId(5678).build();
+    sink.write(e1);
+    sink.write(e2);
+    sink.close();
+
+    assertThat(readAll(sink.getSegmentFiles())).containsExactly(e1, e2).inOrder();
+    assertThat(sink.getWrittenCount()).isEqualTo(2);
+    assertThat(sink.getDroppedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void rotatesSegmentsAndDeletesOldest() throws Exception {
+    GrpcLogEntry entry = entryWithPayload(1, 40);
+    int entrySize = entry.toByteArray().length + 1;
+    // Room for two entries per segment.
+    AsyncFileSink sink = new AsyncFileSink(
+        tempFolder.getRoot(), "test", entrySize * 2 + 1, 2, 16, null);
+    List<GrpcLogEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 7; i++) {
+      entries.add(entryWithPayload(i + 1, 40));
+      sink.write(entries.get(i));
+    }
+    assertThat(sink.drain()).isEqualTo(7);
+    sink.close();
+
+    List<File> segments = sink.getSegmentFiles();
+    assertThat(segments).containsExactly(
+        new File(tempFolder.getRoot(), "test.2"),
+        new File(tempFolder.getRoot(), "test.3")).inOrder();
+    assertThat(tempFolder.getRoot().list()).asList().containsExactly("test.2", "test.3");
+    assertThat(readAll(segments)).containsExactlyElementsIn(entries.subList(4, 7)).inOrder();
+    assertThat(segments.get(0).length()).isEqualTo(entrySize * 2);
+    assertThat(sink.getWrittenCount()).isEqualTo(7);
+  }
+
+  @Test
+  public void continuesAfterSegmentsOfPreviousRun() throws Exception {
+    GrpcLogEntry old0 = GrpcLogEntry.newBuilder().setCallId(1).build();
+    GrpcLogEntry old1 = GrpcLogEntry.newBuilder().setCallId(2).build();
+    writeSegment(new File(tempFolder.getRoot(), "test.0"), old0);
+    writeSegment(new File(tempFolder.getRoot(), "test.1"), old1);
+    assertThat(new File(tempFolder.getRoot(), "other.5").createNewFile()).isTrue();
+    assertThat(new File(tempFolder.getRoot(), "test.x").createNewFile()).isTrue();
+
+    AsyncFileSink sink = new AsyncFileSink(tempFolder.getRoot(), "test", 1024, 2, 4, null);
+    GrpcLogEntry entry = GrpcLogEntry.newBuilder().setCallId(3).build();
+    sink.write(entry);
+    sink.close();
+
+    List<File> segments = sink.getSegmentFiles();
+    assertThat(segments).containsExactly(
+        new File(tempFolder.getRoot(), "test.1"),
+        new File(tempFolder.getRoot(), "test.2")).inOrder();
+    assertThat(tempFolder.getRoot().list()).asList()
+        .containsExactly("test.1", "test.2", "other.5", "test.x");
+    assertThat(readAll(segments)).containsExactly(old1, entry).inOrder();
+  }
+
+  @Test
+  public void dropsWhenQueueIsFull() throws Exception {
+    AsyncFileSink sink = new AsyncFileSink(tempFolder.getRoot(), "test", 1024, 0, 4, null);
+    for (int i = 0; i < 6; i++) {
+      sink.write(GrpcLogEntry.newBuilder().setCallId(i).build());
+    }
+    assertThat(sink.getDroppedCount()).isEqualTo(2);
+
+    assertThat(sink.drain()).isEqualTo(4);
+    sink.write(GrpcLogEntry.newBuilder().setCallId(6).build());
+    sink.close();
+
+    List<Long> callIds = new ArrayList<>();
+    for (GrpcLogEntry entry : readAll(sink.getSegmentFiles())) {
+      callIds.add(entry.getCallId());
+    }
+    assertThat(callIds).containsExactly(0L, 1L, 2L, 3L, 6L).inOrder();
+    assertThat(sink.getWrittenCount()).isEqualTo(5);
+    assertThat(sink.getDroppedCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void dropsEntryLargerThanSegment() throws Exception {
+    AsyncFileSink sink = new AsyncFileSink(tempFolder.getRoot(), "test", 64, 0, 4, null);
+    GrpcLogEntry small = GrpcLogEntry.newBuilder().setCallId(1).build();
+    sink.write(entryWithPayload(2, 100));
+    sink.write(small);
+    sink.close();
+
+    assertThat(readAll(sink.getSegmentFiles())).containsExactly(small);
+    assertThat(sink.getWrittenCount()).isEqualTo(1);
+    assertThat(sink.getDroppedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void writeAfterCloseIsDropped() throws IOException {
+    AsyncFileSink sink = AsyncFileSink.newBuilder()
+        .setDirectory(tempFolder.getRoot())
+        .build();
+    sink.close();
+    sink.write(GrpcLogEntry.newBuilder().setCallId(1234).build());
+
+    assertThat(sink.getWrittenCount()).isEqualTo(0);
+    assertThat(sink.getDroppedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void writesRacingWithClose_areWrittenOrDropped() throws Exception {
+    final AsyncFileSink sink = AsyncFileSink.newBuilder()
+        .setDirectory(tempFolder.getRoot())
+        .setQueueCapacity(64)
+        .build();
+    final AtomicLong submitted = new AtomicLong();
+    final CountDownLatch started = new CountDownLatch(4);
+    List<Thread> writers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          started.countDown();
+          for (int j = 0; j < 20000; j++) {
+            sink.write(GrpcLogEntry.newBuilder().setCallId(j).build());
+            submitted.incrementAndGet();
+          }
+        }
+      });
+      thread.start();
+      writers.add(thread);
+    }
+    started.await();
+
+    sink.close();
+    for (Thread thread : writers) {
+      thread.join();
+    }
+
+    assertThat(sink.getWrittenCount() + sink.getDroppedCount()).isEqualTo(submitted.get());
+    assertThat(readAll(sink.getSegmentFiles())).hasSize((int) sink.getWrittenCount());
+  }
+
+  @Test
+  public void ringBuffer_roundsCapacityUp() {
+    assertThat(new AsyncFileSink.RingBuffer<String>(1).capacity()).isEqualTo(1);
+    assertThat(new AsyncFileSink.RingBuffer<String>(5).capacity()).isEqualTo(8);
+    assertThat(new AsyncFileSink.RingBuffer<String>(8).capacity()).isEqualTo(8);
+  }
+
+  @Test
+  public void ringBuffer_wrapsAround() {
+    AsyncFileSink.RingBuffer<Integer> buffer = new AsyncFileSink.RingBuffer<>(2);
+    for (int i = 0; i < 10; i++) {
+      assertThat(buffer.offer(i)).isTrue();
+      assertThat(buffer.offer(i + 100)).isTrue();
+      assertThat(buffer.offer(i + 200)).isFalse();
+      assertThat(buffer.poll()).isEqualTo(i);
+      assertThat(buffer.poll()).isEqualTo(i + 100);
+      assertThat(buffer.isEmpty()).isTrue();
+      assertThat(buffer.poll()).isNull();
+    }
+  }
+
+  private static GrpcLogEntry entryWithPayload(long callId, int payloadSize) {
+    return GrpcLogEntry.newBuilder()
+        .setCallId(callId)
+        .setMessage(Message.newBuilder().setData(ByteString.copyFrom(new byte[payloadSize])))
+        .build();
+  }
+
+  private static void writeSegment(File file, GrpcLogEntry entry) throws IOException {
+    FileOutputStream output = new FileOutputStream(file);
+    try {
+      entry.writeDelimitedTo(output);
+    } finally {
+      output.close();
+    }
+  }
+
+  private static List<GrpcLogEntry> readAll(List<File> files) throws IOException {
+    List<GrpcLogEntry> entries = new ArrayList<>();
+    for (File file : files) {
+      DataInputStream input = new DataInputStream(new FileInputStream(file));
+      try {
+        GrpcLogEntry entry;
+        while ((entry = GrpcLogEntry.parseDelimitedFrom(input)) != null) {
+          entries.add(entry);
+        }
+      } finally {
+        input.close();
+      }
+    }
+    return entries;
+  }
+}
@@ -48,6 +48,7 @@ import io.grpc.Attributes;
 import io.grpc.CallOptions;
 import io.grpc.Channel;
 import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
 import io.grpc.Context;
 import io.grpc.Deadline;
 import io.grpc.Grpc;
@@ -67,6 +68,7 @@ import io.grpc.binarylog.v1.Message;
 import io.grpc.binarylog.v1.MetadataEntry;
 import io.grpc.binarylog.v1.ServerHeader;
 import io.grpc.binarylog.v1.Trailer;
+import io.grpc.internal.FakeClock;
 import io.grpc.internal.NoopClientCall;
 import io.grpc.internal.NoopServerCall;
 import io.grpc.protobuf.StatusProto;
@@ -284,6 +286,170 @@ public final class BinlogHelperTest {
     assertIllegalPatternDetected("h:99999999999999");
   }
 
+  @Test
+  public void createLogFromOptionString_sampling() throws Exception {
+    BinlogHelper log = makeOptions("h:256;m:256;s:0.25;r:100");
+    assertSameLimits(BOTH_256, log);
+    assertEquals(0.25, log.sampler.probability, 0);
+    assertEquals(100, log.sampler.maxCallsPerSecond);
+    assertTrue(log.logMessages);
+
+    log = makeOptions("r:5;s:1");
+    assertSameLimits(BOTH_FULL, log);
+    assertEquals(1, log.sampler.probability, 0);
+    assertEquals(5, log.sampler.maxCallsPerSecond);
+
+    assertSame(BinlogHelper.CallSampler.ALWAYS, makeOptions("h").sampler);
+    assertSame(BinlogHelper.CallSampler.ALWAYS, makeOptions("h;s:1").sampler);
+  }
+
+  @Test
+  public void createLogFromOptionString_headersOnly() throws Exception {
+    BinlogHelper log = makeOptions("h:256;n");
+    assertSameLimits(HEADER_256, log);
+    assertFalse(log.logMessages);
+
+    log = makeOptions("n;s:0.5");
+    assertSameLimits(HEADER_FULL, log);
+    assertFalse(log.logMessages);
+    assertEquals(0.5, log.sampler.probability, 0);
+  }
+
+  @Test
+  public void createLogFromOptionString_malformedSampling() throws Exception {
+    assertIllegalPatternDetected("s:1.5");
+    assertIllegalPatternDetected("s:");
+    assertIllegalPatternDetected("s:.5");
+    assertIllegalPatternDetected("s:1e-3");
+    assertIllegalPatternDetected("s:-0.5");
+    assertIllegalPatternDetected("r:0");
+    assertIllegalPatternDetected("r:-1");
+    assertIllegalPatternDetected("s:0.1;s:0.2");
+    assertIllegalPatternDetected("h;s:0.1;m");
+    assertIllegalPatternDetected("m;n");
+    assertIllegalPatternDetected("h;");
+  }
+
+  @Test
+  public void sampling_probabilityZeroNeverLogs() throws Exception {
+    BinlogHelper log = makeOptions("s:0");
+    for (int i = 0; i < 100; i++) {
+      assertFalse(log.shouldLog("service/method"));
+    }
+  }
+
+  @Test
+  public void sampling_rateLimitedPerMethod() throws Exception {
+    FakeClock clock = new FakeClock();
+    BinlogHelper log = FactoryImpl.createBinaryLog(sink, "h;r:2", clock.getTicker());
+
+    assertTrue(log.shouldLog("service/method1"));
+    assertTrue(log.shouldLog("service/method1"));
+    assertFalse(log.shouldLog("service/method1"));
+    // Other methods have their own budget
+    assertTrue(log.shouldLog("service/method2"));
+
+    clock.forwardTime(499, TimeUnit.MILLISECONDS);
+    assertFalse(log.shouldLog("service/method1"));
+    clock.forwardTime(1, TimeUnit.MILLISECONDS);
+    assertTrue(log.shouldLog("service/method1"));
+    assertFalse(log.shouldLog("service/method1"));
+
+    // The bucket never holds more than one second worth of calls
+    clock.forwardTime(10, TimeUnit.SECONDS);
+    assertTrue(log.shouldLog("service/method1"));
+    assertTrue(log.shouldLog("service/method1"));
+    assertFalse(log.shouldLog("service/method1"));
+  }
+
+  @Test
+  public void sampling_methodsBeyondMaxShareRateLimit() throws Exception {
+    FakeClock clock = new FakeClock();
+    BinlogHelper log = FactoryImpl.createBinaryLog(sink, "h;r:1", clock.getTicker());
+    for (int i = 0; i < BinlogHelper.CallSampler.MAX_RATE_LIMITED_METHODS; i++) {
+      assertTrue(log.shouldLog("service/method" + i));
+    }
+
+    assertTrue(log.shouldLog("service/extra1"));
+    assertFalse(log.shouldLog("service/extra2"));
+    // Methods seen earlier keep their own budget
+    clock.forwardTime(1, TimeUnit.SECONDS);
+    assertTrue(log.shouldLog("service/method0"));
+    assertTrue(log.shouldLog("service/extra2"));
+  }
+
+  @Test
+  public void clientInterceptor_headersOnlyDoesNotLogMessages() throws Exception {
+    final AtomicReference<ClientCall.Listener<String>> interceptedListener =
+        new AtomicReference<>();
+    final AtomicReference<Object> actualRequest = new AtomicReference<>();
+    Channel channel = new Channel() {
+      @Override
+      public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(
+          MethodDescriptor<RequestT, ResponseT> methodDescriptor, CallOptions callOptions) {
+        return new NoopClientCall<RequestT, ResponseT>() {
+          @Override
+          @SuppressWarnings("unchecked")
+          public void start(Listener<ResponseT> responseListener, Metadata headers) {
+            interceptedListener.set((Listener<String>) responseListener);
+          }
+
+          @Override
+          public void sendMessage(RequestT message) {
+            actualRequest.set(message);
+          }
+        };
+      }
+
+      @Override
+      public String authority() {
+        return "the-authority";
+      }
+    };
+    // Messages must not be serialized for the log
+    @SuppressWarnings("unchecked")
+    MethodDescriptor.Marshaller<String> marshaller = mock(MethodDescriptor.Marshaller.class);
+    MethodDescriptor<String, String> method =
+        MethodDescriptor.<String, String>newBuilder()
+            .setType(MethodType.UNKNOWN)
+            .setFullMethodName("service/method")
+            .setRequestMarshaller(marshaller)
+            .setResponseMarshaller(marshaller)
+            .build();
+    ClientInterceptor interceptor =
+        new BinlogHelper(mockSinkWriter, BinlogHelper.CallSampler.ALWAYS, false)
+            .getClientInterceptor(CALL_ID);
+    assertTrue(interceptor instanceof BinaryLogProvider.HeadersOnly);
+    @SuppressWarnings("unchecked")
+    ClientCall.Listener<String> mockListener = mock(ClientCall.Listener.class);
+    ClientCall<String, String> interceptedCall =
+        interceptor.interceptCall(method, CallOptions.DEFAULT, channel);
+
+    Metadata clientInitial = new Metadata();
+    interceptedCall.start(mockListener, clientInitial);
+    interceptedCall.sendMessage("request");
+    interceptedListener.get().onMessage("response");
+    interceptedCall.halfClose();
+
+    assertEquals("request", actualRequest.get());
+    verify(mockListener).onMessage("response");
+    verify(mockSinkWriter).logClientHeader(
+        /*seq=*/ eq(1L),
+        eq("service/method"),
+        eq("the-authority"),
+        ArgumentMatchers.<Duration>isNull(),
+        same(clientInitial),
+        eq(Logger.LOGGER_CLIENT),
+        eq(CALL_ID),
+        ArgumentMatchers.<SocketAddress>isNull());
+    verify(mockSinkWriter).logHalfClose(
+        /*seq=*/ eq(2L),
+        eq(Logger.LOGGER_CLIENT),
+        eq(CALL_ID));
+    verifyNoMoreInteractions(mockSinkWriter);
+    verifyNoMoreInteractions(marshaller);
+  }
+
   @Test
   public void configBinLog_multiConfig_withGlobal() throws Exception {
     String configStr =
@@ -123,6 +123,7 @@ final class ChannelzTestHelper {
         /*callsStarted=*/ 1,
         /*callsSucceeded=*/ 2,
         /*callsFailed=*/ 3,
+        /*callsExpired=*/ 0,
         /*lastCallStartedNanos=*/ 4,
         Collections.<InternalInstrumented<SocketStats>>emptyList());
 
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.protobuf.services;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.Range;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link LogLinearHistogram}. */
+@RunWith(JUnit4.class)
+public class LogLinearHistogramTest {
+  private final LogLinearHistogram histogram = new LogLinearHistogram();
+
+  @Test
+  public void bucketBoundsAreContiguous() {
+    assertThat(LogLinearHistogram.bucketLowerBound(0)).isEqualTo(0);
+    for (int i = 1; i < LogLinearHistogram.BUCKET_COUNT; i++) {
+      assertThat(LogLinearHistogram.bucketLowerBound(i))
+          .isEqualTo(LogLinearHistogram.bucketUpperBound(i - 1) + 1);
+    }
+    assertThat(LogLinearHistogram.bucketUpperBound(LogLinearHistogram.BUCKET_COUNT - 1))
+        .isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void valuesFallWithinTheirBucket() {
+    long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 100, 1000, 123456789, (1L << 41) - 1};
+    for (long value : values) {
+      int index = LogLinearHistogram.bucketIndex(value);
+      assertThat(LogLinearHistogram.bucketLowerBound(index)).isAtMost(value);
+      assertThat(LogLinearHistogram.bucketUpperBound(index)).isAtLeast(value);
+    }
+  }
+
+  @Test
+  public void relativeErrorIsBounded() {
+    for (long value = 8; value < 1L << 41; value = value * 3 + 1) {
+      int index = LogLinearHistogram.bucketIndex(value);
+      long width =
+          LogLinearHistogram.bucketUpperBound(index) - LogLinearHistogram.bucketLowerBound(index);
+      assertThat((double) width / value).isAtMost(0.125);
+    }
+  }
+
+  @Test
+  public void hugeValuesGoToLastBucket() {
+    assertThat(LogLinearHistogram.bucketIndex(Long.MAX_VALUE))
+        .isEqualTo(LogLinearHistogram.BUCKET_COUNT - 1);
+    assertThat(LogLinearHistogram.bucketIndex(1L << 41))
+        .isEqualTo(LogLinearHistogram.BUCKET_COUNT - 1);
+  }
+
+  @Test
+  public void snapshot() {
+    histogram.record(3);
+    histogram.record(3);
+    histogram.record(1000);
+    histogram.record(-5);
+
+    LogLinearHistogram.Snapshot snapshot = histogram.snapshot();
+    assertThat(snapshot.getCount()).isEqualTo(4);
+    assertThat(snapshot.getSum()).isEqualTo(1006);
+    assertThat(snapshot.getCountInBucket(0)).isEqualTo(1);
+    assertThat(snapshot.getCountInBucket(3)).isEqualTo(2);
+    assertThat(snapshot.getCountInBucket(LogLinearHistogram.bucketIndex(1000))).isEqualTo(1);
+
+    histogram.record(5);
+    assertThat(snapshot.getCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void percentiles() {
+    assertThat(histogram.snapshot().getValueAtPercentile(50)).isEqualTo(0);
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+    LogLinearHistogram.Snapshot snapshot = histogram.snapshot();
+    assertThat(snapshot.getValueAtPercentile(0)).isEqualTo(1);
+    assertThat(snapshot.getValueAtPercentile(50)).isIn(Range.closed(50L, 56L));
+    assertThat(snapshot.getValueAtPercentile(100)).isIn(Range.closed(100L, 111L));
+  }
+}
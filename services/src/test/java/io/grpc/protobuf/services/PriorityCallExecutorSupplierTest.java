@@ -0,0 +1,204 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.protobuf.services;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.Status;
+import io.grpc.internal.FakeClock;
+import io.grpc.testing.TestMethodDescriptors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+/** Unit tests for {@link PriorityCallExecutorSupplier}. */
+@RunWith(JUnit4.class)
+public class PriorityCallExecutorSupplierTest {
+  private static final Metadata.Key<String> PRIORITY_KEY =
+      Metadata.Key.of("priority", Metadata.ASCII_STRING_MARSHALLER);
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final List<Runnable> dispatched = new ArrayList<>();
+  private final Executor executor = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      dispatched.add(command);
+    }
+  };
+  private final PriorityCallExecutorSupplier supplier =
+      PriorityCallExecutorSupplier.newBuilder(executor)
+          .addPriority(3)
+          .addPriority(1)
+          .setPriorityFunction(
+              PriorityCallExecutorSupplier.byHeader(
+                  PRIORITY_KEY, ImmutableMap.of("high", 0, "low", 1), 1))
+          .setTicker(fakeClock.getTicker())
+          .build();
+  private final List<String> ran = new ArrayList<>();
+
+  @Test
+  public void weightedFairDequeuing() {
+    Executor high = getExecutor(newCall(), "high");
+    Executor low = getExecutor(newCall(), "low");
+    for (int i = 0; i < 4; i++) {
+      low.execute(new Record("low" + i));
+    }
+    for (int i = 0; i < 4; i++) {
+      high.execute(new Record("high" + i));
+    }
+
+    runDispatched();
+
+    assertThat(ran)
+        .containsExactly("high0", "high1", "low0", "high2", "high3", "low1", "low2", "low3")
+        .inOrder();
+  }
+
+  @Test
+  public void byHeader_defaultPriority() {
+    Executor unknown = getExecutor(newCall(), "unknown");
+    unknown.execute(new Record("unknown"));
+
+    assertThat(supplier.getQueueSize(0)).isEqualTo(0);
+    assertThat(supplier.getQueueSize(1)).isEqualTo(1);
+  }
+
+  @Test
+  public void byMethod() {
+    ServerCall<?, ?> call = newCall();
+    PriorityCallExecutorSupplier.PriorityFunction function =
+        PriorityCallExecutorSupplier.byMethod(
+            ImmutableMap.of(call.getMethodDescriptor().getFullMethodName(), 5), 2);
+
+    assertThat(function.getPriority(call, new Metadata())).isEqualTo(5);
+  }
+
+  @Test
+  public void queueWaitRecordedPerPriority() {
+    Executor high = getExecutor(newCall(), "high");
+    high.execute(new Record("high"));
+    fakeClock.forwardTime(5, TimeUnit.MILLISECONDS);
+
+    runDispatched();
+
+    LogLinearHistogram.Snapshot snapshot = supplier.getQueueWaitMicros(0);
+    assertThat(snapshot.getCount()).isEqualTo(1);
+    assertThat(snapshot.getSum()).isEqualTo(5000);
+    assertThat(supplier.getQueueWaitMicros(1).getCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void callExpiredWhileQueued_closedWithoutRunning() {
+    ServerCall<?, ?> call = newCall();
+    Executor callExecutor = getExecutorWithDeadline(call, 1);
+    callExecutor.execute(new Record("expired"));
+    fakeClock.forwardTime(2, TimeUnit.SECONDS);
+
+    runDispatched();
+
+    assertThat(ran).isEmpty();
+    ArgumentCaptor<Status> statusCaptor = ArgumentCaptor.forClass(Status.class);
+    verify(call).close(statusCaptor.capture(), any(Metadata.class));
+    assertThat(statusCaptor.getValue().getCode()).isEqualTo(Status.Code.DEADLINE_EXCEEDED);
+    assertThat(supplier.getExpiredCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void startedCall_notDroppedAfterDeadline() {
+    ServerCall<?, ?> call = newCall();
+    Executor callExecutor = getExecutorWithDeadline(call, 1);
+    callExecutor.execute(new Record("first"));
+    runDispatched();
+    fakeClock.forwardTime(2, TimeUnit.SECONDS);
+    callExecutor.execute(new Record("second"));
+
+    runDispatched();
+
+    assertThat(ran).containsExactly("first", "second").inOrder();
+    verify(call, never()).close(any(Status.class), any(Metadata.class));
+    assertThat(supplier.getExpiredCount()).isEqualTo(0);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void build_noPriority() {
+    PriorityCallExecutorSupplier.newBuilder(executor)
+        .setPriorityFunction(PriorityCallExecutorSupplier.byMethod(
+            ImmutableMap.<String, Integer>of(), 0))
+        .build();
+  }
+
+  private Executor getExecutor(ServerCall<?, ?> call, String priority) {
+    Metadata headers = new Metadata();
+    headers.put(PRIORITY_KEY, priority);
+    return supplier.getExecutor(call, headers);
+  }
+
+  private Executor getExecutorWithDeadline(ServerCall<?, ?> call, long deadlineSeconds) {
+    Context.CancellableContext context = Context.ROOT.withDeadline(
+        Deadline.after(deadlineSeconds, TimeUnit.SECONDS, fakeClock.getDeadlineTicker()),
+        fakeClock.getScheduledExecutorService());
+    Context previous = context.attach();
+    try {
+      return getExecutor(call, "high");
+    } finally {
+      context.detach(previous);
+    }
+  }
+
+  private void runDispatched() {
+    while (!dispatched.isEmpty()) {
+      dispatched.remove(0).run();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ServerCall<Void, Void> newCall() {
+    ServerCall<Void, Void> call = mock(ServerCall.class);
+    MethodDescriptor<Void, Void> method = TestMethodDescriptors.voidMethod();
+    when(call.getMethodDescriptor()).thenReturn(method);
+    return call;
+  }
+
+  private final class Record implements Runnable {
+    private final String name;
+
+    Record(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public void run() {
+      ran.add(name);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.protobuf.services;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Ticker;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.services.RpcMetricsModule.MethodMetricsSnapshot;
+import io.grpc.rpcmetrics.v1.GetRpcMetricsRequest;
+import io.grpc.rpcmetrics.v1.GetRpcMetricsResponse;
+import io.grpc.rpcmetrics.v1.MethodMetrics;
+import io.grpc.rpcmetrics.v1.RpcMetricsGrpc;
+import io.grpc.rpcmetrics.v1.StatusCount;
+import io.grpc.testing.GrpcCleanupRule;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RpcMetricsModule} and {@link RpcMetricsService}. */
+@RunWith(JUnit4.class)
+public class RpcMetricsModuleTest {
+  private static final String HEALTH_CHECK = "grpc.health.v1.Health/Check";
+
+  @Rule public final GrpcCleanupRule cleanupRule = new GrpcCleanupRule();
+
+  private final FakeTicker ticker = new FakeTicker();
+  private final RpcMetricsModule module = new RpcMetricsModule(ticker, 100);
+  private final HealthStatusManager healthStatusManager = new HealthStatusManager();
+  private ManagedChannel channel;
+
+  @Before
+  public void setUp() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    cleanupRule.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addStreamTracerFactory(module.getServerTracerFactory())
+            .addService(healthStatusManager.getHealthService())
+            .addService(RpcMetricsService.newInstance(module))
+            .build()
+            .start());
+    channel = cleanupRule.register(
+        InProcessChannelBuilder.forName(serverName).directExecutor().build());
+  }
+
+  @Test
+  public void recordsClientAndServerMetrics() {
+    HealthGrpc.HealthBlockingStub stub =
+        HealthGrpc.newBlockingStub(
+            ClientInterceptors.intercept(channel, module.getClientInterceptor()));
+    stub.check(HealthCheckRequest.getDefaultInstance());
+    try {
+      stub.check(HealthCheckRequest.newBuilder().setService("unknown").build());
+      fail("Should have failed");
+    } catch (StatusRuntimeException e) {
+      assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.NOT_FOUND);
+    }
+
+    List<MethodMetricsSnapshot> clientMetrics = module.getClientMetrics();
+    assertThat(clientMetrics).hasSize(1);
+    MethodMetricsSnapshot client = clientMetrics.get(0);
+    assertThat(client.getFullMethodName()).isEqualTo(HEALTH_CHECK);
+    assertThat(client.getLatencyMicros().getCount()).isEqualTo(2);
+    // The in-process transport does not report message sizes
+    assertThat(client.getSentMessageBytes().getCount()).isEqualTo(0);
+    assertThat(client.getStatusCounts()).containsExactly(
+        Status.Code.OK, 1L, Status.Code.NOT_FOUND, 1L);
+
+    List<MethodMetricsSnapshot> serverMetrics = module.getServerMetrics();
+    assertThat(serverMetrics).hasSize(1);
+    MethodMetricsSnapshot server = serverMetrics.get(0);
+    assertThat(server.getFullMethodName()).isEqualTo(HEALTH_CHECK);
+    assertThat(server.getLatencyMicros().getCount()).isEqualTo(2);
+    assertThat(server.getStatusCounts()).containsExactly(
+        Status.Code.OK, 1L, Status.Code.NOT_FOUND, 1L);
+  }
+
+  @Test
+  public void latencyIsMeasuredWithTicker() {
+    final HealthGrpc.HealthBlockingStub stub = HealthGrpc.newBlockingStub(
+        ClientInterceptors.intercept(channel, module.getClientInterceptor()));
+    ticker.advanceOnRead = TimeUnit.MILLISECONDS.toNanos(5);
+    stub.check(HealthCheckRequest.getDefaultInstance());
+
+    MethodMetricsSnapshot client = module.getClientMetrics().get(0);
+    assertThat(client.getLatencyMicros().getSum()).isAtLeast(5000);
+  }
+
+  @Test
+  public void recordsMessageSizes() {
+    ServerStreamTracer tracer =
+        module.getServerTracerFactory().newServerStreamTracer("service/a", new Metadata());
+    tracer.inboundMessageRead(0, 10, 100);
+    tracer.inboundMessageRead(1, 30, -1);
+    tracer.inboundMessageRead(2, -1, -1);
+    tracer.outboundMessageSent(0, 5, 50);
+    tracer.streamClosed(Status.OK);
+
+    MethodMetricsSnapshot server = module.getServerMetrics().get(0);
+    assertThat(server.getReceivedMessageBytes().getCount()).isEqualTo(2);
+    assertThat(server.getReceivedMessageBytes().getSum()).isEqualTo(130);
+    assertThat(server.getSentMessageBytes().getCount()).isEqualTo(1);
+    assertThat(server.getSentMessageBytes().getSum()).isEqualTo(50);
+  }
+
+  @Test
+  public void methodsBeyondLimitAreAggregated() {
+    RpcMetricsModule module = new RpcMetricsModule(ticker, 1);
+    ServerStreamTracer.Factory factory = module.getServerTracerFactory();
+    factory.newServerStreamTracer("service/a", new Metadata()).streamClosed(Status.OK);
+    factory.newServerStreamTracer("service/b", new Metadata()).streamClosed(Status.OK);
+    factory.newServerStreamTracer("service/a", new Metadata()).streamClosed(Status.OK);
+
+    List<MethodMetricsSnapshot> metrics = module.getServerMetrics();
+    assertThat(metrics).hasSize(2);
+    assertThat(metrics.get(0).getFullMethodName()).isEqualTo("service/a");
+    assertThat(metrics.get(0).getLatencyMicros().getCount()).isEqualTo(2);
+    assertThat(metrics.get(1).getFullMethodName()).isEqualTo(RpcMetricsModule.OTHER_METHODS);
+    assertThat(metrics.get(1).getLatencyMicros().getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void serviceExportsMetrics() {
+    HealthGrpc.newBlockingStub(ClientInterceptors.intercept(channel, module.getClientInterceptor()))
+        .check(HealthCheckRequest.getDefaultInstance());
+
+    RpcMetricsGrpc.RpcMetricsBlockingStub metricsStub = RpcMetricsGrpc.newBlockingStub(channel);
+    GetRpcMetricsResponse response = metricsStub.getRpcMetrics(
+        GetRpcMetricsRequest.newBuilder().setMethodPrefix("grpc.health.").build());
+    assertThat(response.getClientMethodsCount()).isEqualTo(1);
+    assertThat(response.getServerMethodsCount()).isEqualTo(1);
+    MethodMetrics server = response.getServerMethods(0);
+    assertThat(server.getFullMethodName()).isEqualTo(HEALTH_CHECK);
+    assertThat(server.getLatencyMicros().getCount()).isEqualTo(1);
+    assertThat(server.getLatencyMicros().getBucketsCount()).isEqualTo(1);
+    assertThat(server.getStatusCountsList()).containsExactly(
+        StatusCount.newBuilder().setCode("OK").setCount(1).build());
+
+    // The previous call to the metrics service itself is now recorded too.
+    response = metricsStub.getRpcMetrics(GetRpcMetricsRequest.getDefaultInstance());
+    assertThat(response.getServerMethodsCount()).isEqualTo(2);
+  }
+
+  private static final class FakeTicker extends Ticker {
+    private long nanos;
+    long advanceOnRead;
+
+    @Override
+    public long read() {
+      nanos += advanceOnRead;
+      return nanos;
+    }
+  }
+}
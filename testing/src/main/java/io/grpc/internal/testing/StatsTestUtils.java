@@ -335,14 +335,22 @@ public class StatsTestUtils {
     /**
      * Creates a MockableSpan with a random trace ID and span ID.
      */
-    @SuppressWarnings("deprecation")
     public static MockableSpan generateRandomSpan(Random random) {
+      return generateRandomSpan(random, null);
+    }
+
+    /**
+     * Creates a MockableSpan with a random trace ID and span ID, and the given options.
+     */
+    @SuppressWarnings("deprecation")
+    public static MockableSpan generateRandomSpan(
+        Random random, @Nullable EnumSet<Options> options) {
       return new MockableSpan(
           SpanContext.create(
               TraceId.generateRandomId(random),
               SpanId.generateRandomId(random),
               TraceOptions.DEFAULT),
-          null);
+          options);
     }
 
     @Override
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import com.google.protobuf.Any;
+import com.google.protobuf.UInt32Value;
+import io.envoyproxy.envoy.config.cluster.v3.Cluster;
+import io.envoyproxy.envoy.config.cluster.v3.Cluster.DiscoveryType;
+import io.envoyproxy.envoy.config.cluster.v3.Cluster.EdsClusterConfig;
+import io.envoyproxy.envoy.config.cluster.v3.Cluster.LbPolicy;
+import io.envoyproxy.envoy.config.core.v3.Address;
+import io.envoyproxy.envoy.config.core.v3.AggregatedConfigSource;
+import io.envoyproxy.envoy.config.core.v3.ConfigSource;
+import io.envoyproxy.envoy.config.core.v3.Locality;
+import io.envoyproxy.envoy.config.core.v3.SocketAddress;
+import io.envoyproxy.envoy.config.endpoint.v3.ClusterLoadAssignment;
+import io.envoyproxy.envoy.config.endpoint.v3.Endpoint;
+import io.envoyproxy.envoy.config.endpoint.v3.LbEndpoint;
+import io.envoyproxy.envoy.config.endpoint.v3.LocalityLbEndpoints;
+import io.grpc.Context;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.internal.ExponentialBackoffPolicy;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.TimeProvider;
+import io.grpc.xds.AbstractXdsClient.ResourceType;
+import io.grpc.xds.ClientXdsClient.DecodedResource;
+import io.grpc.xds.internal.sds.TlsContextManagerImpl;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks decoding CDS and EDS responses of 10,000 resources by {@link ClientXdsClient}, on the
+ * calling thread only and split in parallel parts.
+ */
+@State(Scope.Benchmark)
+public class ClientXdsClientDecodeBenchmark {
+
+  @Param({"10000"})
+  public int resourceCount;
+
+  @Param({"1", "8"})
+  public int maxTasks;
+
+  private ManagedChannel channel;
+  private ScheduledExecutorService scheduler;
+  private ClientXdsClient xdsClient;
+  private List<Any> clusters;
+  private List<Any> clusterLoadAssignments;
+
+  /**
+   * Creates the client, not connected to any management server, and the resources.
+   */
+  @Setup
+  public void setUp() {
+    channel = InProcessChannelBuilder.forName("unused").directExecutor().build();
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    Bootstrapper.BootstrapInfo bootstrapInfo =
+        new Bootstrapper.BootstrapInfo(
+            Collections.singletonList(
+                new Bootstrapper.ServerInfo("unused", InsecureChannelCredentials.create(), true)),
+            EnvoyProtoData.Node.newBuilder().build(),
+            null,
+            null);
+    xdsClient =
+        new ClientXdsClient(
+            channel,
+            bootstrapInfo,
+            Context.ROOT,
+            scheduler,
+            new ExponentialBackoffPolicy.Provider(),
+            GrpcUtil.STOPWATCH_SUPPLIER,
+            TimeProvider.SYSTEM_TIME_PROVIDER,
+            new TlsContextManagerImpl(bootstrapInfo));
+    clusters = new ArrayList<>(resourceCount);
+    clusterLoadAssignments = new ArrayList<>(resourceCount);
+    for (int i = 0; i < resourceCount; i++) {
+      String clusterName = "cluster-" + i + ".googleapis.com";
+      clusters.add(Any.pack(buildCluster(clusterName)));
+      clusterLoadAssignments.add(Any.pack(buildClusterLoadAssignment(clusterName, i)));
+    }
+  }
+
+  /**
+   * Shuts down the client.
+   */
+  @TearDown
+  public void tearDown() {
+    xdsClient.shutdown();
+    channel.shutdownNow();
+    scheduler.shutdownNow();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public List<DecodedResource> decodeCds() {
+    return xdsClient.decodeResources(ResourceType.CDS, clusters, maxTasks);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public List<DecodedResource> decodeEds() {
+    return xdsClient.decodeResources(ResourceType.EDS, clusterLoadAssignments, maxTasks);
+  }
+
+  private static Cluster buildCluster(String clusterName) {
+    return Cluster.newBuilder()
+        .setName(clusterName)
+        .setType(DiscoveryType.EDS)
+        .setEdsClusterConfig(
+            EdsClusterConfig.newBuilder()
+                .setEdsConfig(
+                    ConfigSource.newBuilder()
+                        .setAds(AggregatedConfigSource.getDefaultInstance()))
+                .setServiceName(clusterName))
+        .setLbPolicy(LbPolicy.ROUND_ROBIN)
+        .build();
+  }
+
+  private static ClusterLoadAssignment buildClusterLoadAssignment(String clusterName, int index) {
+    LocalityLbEndpoints.Builder localityLbEndpoints =
+        LocalityLbEndpoints.newBuilder()
+            .setLocality(Locality.newBuilder().setRegion("region").setZone("zone"))
+            .setLoadBalancingWeight(UInt32Value.of(1))
+            .setPriority(0);
+    for (int i = 0; i < 3; i++) {
+      localityLbEndpoints.addLbEndpoints(
+          LbEndpoint.newBuilder()
+              .setEndpoint(
+                  Endpoint.newBuilder()
+                      .setAddress(
+                          Address.newBuilder()
+                              .setSocketAddress(
+                                  SocketAddress.newBuilder()
+                                      .setAddress(
+                                          "10." + i + "." + (index / 256 % 256) + "."
+                                              + (index % 256))
+                                      .setPortValue(8080)))));
+    }
+    return ClusterLoadAssignment.newBuilder()
+        .setClusterName(clusterName)
+        .addEndpoints(localityLbEndpoints)
+        .build();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import io.grpc.xds.EnvoyServerProtoData.CidrRange;
+import io.grpc.xds.EnvoyServerProtoData.ConnectionSourceType;
+import io.grpc.xds.EnvoyServerProtoData.FilterChain;
+import io.grpc.xds.EnvoyServerProtoData.FilterChainMatch;
+import io.grpc.xds.EnvoyServerProtoData.Listener;
+import io.grpc.xds.Filter.NamedFilterConfig;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks finding the filter chain of an accepted connection with {@link
+ * FilterChainMatchingIndex}, for listeners with filter chains matching distinct destination and
+ * source prefixes, and building the index on a listener update.
+ */
+@State(Scope.Benchmark)
+public class FilterChainMatchingIndexBenchmark {
+  private static final HttpConnectionManager HTTP_CONNECTION_MANAGER =
+      HttpConnectionManager.forRdsName(
+          10L, "route-config", Collections.<NamedFilterConfig>emptyList());
+
+  @Param({"1", "10", "100", "1000"})
+  public int filterChainCount;
+
+  private Listener listener;
+  private FilterChainMatchingIndex index;
+  private InetSocketAddress localAddress;
+  private InetSocketAddress remoteAddress;
+
+  /**
+   * Creates a listener with filter chains for destinations 10.x.y.0/24 and sources 172.16.x.y/32,
+   * and a connection matching its last filter chain.
+   */
+  @Setup
+  public void setUp() throws UnknownHostException {
+    List<FilterChain> filterChains = new ArrayList<>(filterChainCount);
+    for (int i = 0; i < filterChainCount; i++) {
+      String subnet = (i / 256) + "." + (i % 256);
+      FilterChainMatch filterChainMatch = new FilterChainMatch(
+          0,
+          Collections.singletonList(new CidrRange("10." + subnet + ".0", 24)),
+          Collections.<String>emptyList(),
+          Collections.singletonList(new CidrRange("172.16." + subnet, 32)),
+          ConnectionSourceType.ANY,
+          Collections.<Integer>emptyList(),
+          Collections.<String>emptyList(),
+          null);
+      filterChains.add(new FilterChain(
+          "filter-chain-" + i, filterChainMatch, HTTP_CONNECTION_MANAGER, null, null));
+    }
+    listener = new Listener("listener", "0.0.0.0:8000", filterChains, null);
+    index = FilterChainMatchingIndex.create(listener);
+    int last = filterChainCount - 1;
+    String subnet = (last / 256) + "." + (last % 256);
+    localAddress = new InetSocketAddress("10." + subnet + ".1", 8000);
+    remoteAddress = new InetSocketAddress("172.16." + subnet, 40000);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public FilterChain findMatchingFilterChain() {
+    return index.findMatchingFilterChain(localAddress, remoteAddress);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public FilterChainMatchingIndex createIndex() {
+    return FilterChainMatchingIndex.create(listener);
+  }
+}
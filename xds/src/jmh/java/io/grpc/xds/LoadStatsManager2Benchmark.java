@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import io.grpc.Status;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.xds.LoadStatsManager2.ClusterDropStats;
+import io.grpc.xds.LoadStatsManager2.ClusterLocalityStats;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Benchmarks recording calls and drops of a single locality of {@link LoadStatsManager2} from one
+ * and from many threads, as done by the cluster_impl load balancer for every call.
+ */
+@State(Scope.Benchmark)
+public class LoadStatsManager2Benchmark {
+  private ClusterLocalityStats localityStats;
+  private ClusterDropStats dropStats;
+
+  /**
+   * Creates the stats of the locality.
+   */
+  @Setup
+  public void setUp() {
+    LoadStatsManager2 loadStatsManager = new LoadStatsManager2(GrpcUtil.STOPWATCH_SUPPLIER);
+    localityStats = loadStatsManager.getClusterLocalityStats(
+        "cluster-foo.googleapis.com", null, Locality.create("region", "zone", "subzone"));
+    dropStats = loadStatsManager.getClusterDropStats("cluster-foo.googleapis.com", null);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void recordCall() {
+    localityStats.recordCallStarted();
+    localityStats.recordCallFinished(Status.OK);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Threads(8)
+  public void recordCallContended() {
+    localityStats.recordCallStarted();
+    localityStats.recordCallFinished(Status.OK);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Threads(8)
+  public void recordDropContended() {
+    dropStats.recordDroppedRequest("throttle");
+  }
+}
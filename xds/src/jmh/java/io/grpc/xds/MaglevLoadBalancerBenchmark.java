@@ -0,0 +1,191 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.xds.MaglevLoadBalancer.Permutation;
+import io.grpc.xds.MaglevLoadBalancer.Table;
+import io.grpc.xds.RingHashLoadBalancer.Ring;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the {@link MaglevLoadBalancer} lookup table with the {@link RingHashLoadBalancer} ring,
+ * both with their default sizes. The benchmarks measure building them and looking up a request
+ * hash. {@link #main} prints how evenly they spread requests over equally weighted endpoints and
+ * how many requests move to another endpoint when one endpoint is removed.
+ */
+@State(Scope.Benchmark)
+public class MaglevLoadBalancerBenchmark {
+  private static final long MIN_RING_SIZE =
+      ClientXdsClient.DEFAULT_RING_HASH_LB_POLICY_MIN_RING_SIZE;
+  private static final long MAX_RING_SIZE =
+      ClientXdsClient.DEFAULT_RING_HASH_LB_POLICY_MAX_RING_SIZE;
+  private static final int TABLE_SIZE =
+      (int) ClientXdsClient.DEFAULT_MAGLEV_LB_POLICY_TABLE_SIZE;
+
+  @Param({"10", "100", "1000"})
+  public int endpointCount;
+
+  private Map<EquivalentAddressGroup, Long> serverWeights;
+  private Ring ring;
+  private Table table;
+  private long hash;
+
+  /**
+   * Creates the endpoints, the ring and the table.
+   */
+  @Setup
+  public void setUp() {
+    serverWeights = createServerWeights(endpointCount);
+    ring = buildRing(serverWeights);
+    table = buildTable(serverWeights);
+    hash = new Random(1).nextLong();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Ring buildRing() {
+    return buildRing(serverWeights);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Table buildTable() {
+    return buildTable(serverWeights);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public EquivalentAddressGroup ringLookup() {
+    return ring.addrKeys[ring.addrIndices[ring.indexOf(hash++)]];
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public EquivalentAddressGroup tableLookup() {
+    return table.addrKeys[table.entries[table.indexOf(hash++)]];
+  }
+
+  /**
+   * Prints, for each endpoint count, the ratio of the maximum to the mean number of requests per
+   * endpoint and the fraction of requests to the remaining endpoints that move to another endpoint
+   * when one endpoint is removed, for 1,000,000 random request hashes.
+   */
+  public static void main(String[] args) {
+    int requestCount = 1_000_000;
+    for (int endpointCount : new int[] {10, 100, 1000}) {
+      Map<EquivalentAddressGroup, Long> serverWeights = createServerWeights(endpointCount);
+      EquivalentAddressGroup removed = serverWeights.keySet().iterator().next();
+      Map<EquivalentAddressGroup, Long> remainingWeights = new LinkedHashMap<>(serverWeights);
+      remainingWeights.remove(removed);
+      Ring ring = buildRing(serverWeights);
+      Ring remainingRing = buildRing(remainingWeights);
+      Table table = buildTable(serverWeights);
+      Table remainingTable = buildTable(remainingWeights);
+
+      Map<EquivalentAddressGroup, Integer> ringCounts = new HashMap<>();
+      Map<EquivalentAddressGroup, Integer> tableCounts = new HashMap<>();
+      int ringMoved = 0;
+      int ringRemaining = 0;
+      int tableMoved = 0;
+      int tableRemaining = 0;
+      Random random = new Random(1);
+      for (int i = 0; i < requestCount; i++) {
+        long hash = random.nextLong();
+        EquivalentAddressGroup ringAddr = ring.addrKeys[ring.addrIndices[ring.indexOf(hash)]];
+        increment(ringCounts, ringAddr);
+        if (!ringAddr.equals(removed)) {
+          ringRemaining++;
+          int index = remainingRing.indexOf(hash);
+          if (!ringAddr.equals(remainingRing.addrKeys[remainingRing.addrIndices[index]])) {
+            ringMoved++;
+          }
+        }
+        EquivalentAddressGroup tableAddr = table.addrKeys[table.entries[table.indexOf(hash)]];
+        increment(tableCounts, tableAddr);
+        if (!tableAddr.equals(removed)) {
+          tableRemaining++;
+          int index = remainingTable.indexOf(hash);
+          if (!tableAddr.equals(remainingTable.addrKeys[remainingTable.entries[index]])) {
+            tableMoved++;
+          }
+        }
+      }
+      double mean = (double) requestCount / endpointCount;
+      System.out.printf(
+          "endpoints=%d ring_hash(%d entries): max/mean=%.3f moved=%.4f"
+              + " maglev(%d entries): max/mean=%.3f moved=%.4f%n",
+          endpointCount, ring.hashes.length, max(ringCounts) / mean,
+          (double) ringMoved / ringRemaining, TABLE_SIZE, max(tableCounts) / mean,
+          (double) tableMoved / tableRemaining);
+    }
+  }
+
+  private static Map<EquivalentAddressGroup, Long> createServerWeights(int endpointCount) {
+    Map<EquivalentAddressGroup, Long> serverWeights = new LinkedHashMap<>();
+    for (int i = 0; i < endpointCount; i++) {
+      serverWeights.put(
+          new EquivalentAddressGroup(
+              InetSocketAddress.createUnresolved("10.0." + (i / 256) + "." + (i % 256), 8080)),
+          1L);
+    }
+    return serverWeights;
+  }
+
+  // Same ring size as RingHashLoadBalancer for equally weighted endpoints.
+  private static Ring buildRing(Map<EquivalentAddressGroup, Long> serverWeights) {
+    int count = serverWeights.size();
+    double scale = Math.min(Math.ceil((double) MIN_RING_SIZE / count) * count, MAX_RING_SIZE);
+    return RingHashLoadBalancer.buildRing(serverWeights, count, scale);
+  }
+
+  private static Table buildTable(Map<EquivalentAddressGroup, Long> serverWeights) {
+    return MaglevLoadBalancer.buildTable(
+        serverWeights, TABLE_SIZE, new HashMap<EquivalentAddressGroup, Permutation>());
+  }
+
+  private static void increment(Map<EquivalentAddressGroup, Integer> counts,
+      EquivalentAddressGroup addr) {
+    Integer count = counts.get(addr);
+    counts.put(addr, count == null ? 1 : count + 1);
+  }
+
+  private static int max(Map<EquivalentAddressGroup, Integer> counts) {
+    int max = 0;
+    for (int count : counts.values()) {
+      max = Math.max(max, count);
+    }
+    return max;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import io.grpc.Metadata;
+import io.grpc.xds.ThreadSafeRandom.ThreadSafeRandomImpl;
+import io.grpc.xds.VirtualHost.Route.RouteMatch;
+import io.grpc.xds.VirtualHost.Route.RouteMatch.PathMatcher;
+import io.grpc.xds.internal.Matchers.HeaderMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares finding the first route matching a call with a {@link RoutePathIndex} against scanning
+ * all routes. Every fifth route is a prefix route, the others match a single method, and the
+ * call matches the last route.
+ */
+@State(Scope.Benchmark)
+public class RoutePathIndexBenchmark {
+
+  @Param({"10", "100", "500"})
+  public int routeCount;
+
+  private final Metadata headers = new Metadata();
+  private final ThreadSafeRandom random = ThreadSafeRandomImpl.instance;
+  private List<RouteMatch> routeMatches;
+  private RoutePathIndex index;
+  private String fullMethodName;
+
+  /**
+   * Creates the routes and their index.
+   */
+  @Setup
+  public void setUp() {
+    routeMatches = new ArrayList<>(routeCount);
+    List<PathMatcher> pathMatchers = new ArrayList<>(routeCount);
+    for (int i = 0; i < routeCount; i++) {
+      PathMatcher pathMatcher = i % 5 == 0
+          ? PathMatcher.fromPrefix("/service" + i + "/", true)
+          : PathMatcher.fromPath("/service" + i + "/method", true);
+      pathMatchers.add(pathMatcher);
+      routeMatches.add(
+          RouteMatch.create(pathMatcher, Collections.<HeaderMatcher>emptyList(), null));
+    }
+    index = new RoutePathIndex(pathMatchers);
+    fullMethodName = "service" + (routeCount - 1) + "/method";
+  }
+
+  /**
+   * Evaluates every route in order, as before routes were indexed.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public RouteMatch linearScan() {
+    for (RouteMatch routeMatch : routeMatches) {
+      if (XdsNameResolver.matchRoute(routeMatch, "/" + fullMethodName, headers, random)) {
+        return routeMatch;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Evaluates only the routes whose path matches.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public RouteMatch indexed() {
+    for (int i : index.getCandidates(fullMethodName)) {
+      RouteMatch routeMatch = routeMatches.get(i);
+      if (XdsNameResolver.matchHeadersAndFraction(routeMatch, headers, random)) {
+        return routeMatch;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import com.google.common.collect.ImmutableMap;
+import io.grpc.xds.Filter.FilterConfig;
+import io.grpc.xds.VirtualHost.Route;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares finding the virtual host of a host name among 10,000 domains with a
+ * {@link VirtualHostIndex} against scanning every domain.
+ */
+@State(Scope.Benchmark)
+public class VirtualHostIndexBenchmark {
+  private static final int DOMAIN_COUNT = 10_000;
+
+  public enum MatchType {
+    EXACT, SUFFIX_WILDCARD, PREFIX_WILDCARD
+  }
+
+  @Param
+  public MatchType matchType;
+
+  private List<VirtualHost> virtualHosts;
+  private VirtualHostIndex index;
+  private String hostName;
+
+  /**
+   * Creates virtual hosts with an exact domain, a suffix wildcard and a prefix wildcard each.
+   */
+  @Setup
+  public void setUp() {
+    int virtualHostCount = DOMAIN_COUNT / 3;
+    virtualHosts = new ArrayList<>(virtualHostCount);
+    for (int i = 0; i < virtualHostCount; i++) {
+      virtualHosts.add(
+          VirtualHost.create(
+              "virtual-host-" + i,
+              Arrays.asList(
+                  "service" + i + ".example.com",
+                  "*.service" + i + ".example.com",
+                  "service" + i + ".internal.*"),
+              Collections.<Route>emptyList(),
+              ImmutableMap.<String, FilterConfig>of()));
+    }
+    index = new VirtualHostIndex(virtualHosts);
+    int last = virtualHostCount - 1;
+    switch (matchType) {
+      case EXACT:
+        hostName = "service" + last + ".example.com";
+        break;
+      case SUFFIX_WILDCARD:
+        hostName = "canary.service" + last + ".example.com";
+        break;
+      case PREFIX_WILDCARD:
+        hostName = "service" + last + ".internal.corp";
+        break;
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  /**
+   * Matches every domain of every virtual host, as before domains were indexed.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public VirtualHost linearScan() {
+    int matchingLen = -1;
+    VirtualHost targetVirtualHost = null;
+    for (VirtualHost virtualHost : virtualHosts) {
+      for (String domain : virtualHost.domains()) {
+        if (matchHostName(hostName, domain)) {
+          if (!domain.contains("*")) {
+            return virtualHost;
+          }
+          if (domain.length() > matchingLen
+              || (domain.length() == matchingLen && domain.startsWith("*"))) {
+            matchingLen = domain.length();
+            targetVirtualHost = virtualHost;
+          }
+        }
+      }
+    }
+    return targetVirtualHost;
+  }
+
+  // How XdsNameResolver matched a domain before domains were indexed.
+  private static boolean matchHostName(String hostName, String pattern) {
+    hostName = hostName.toLowerCase(Locale.US);
+    pattern = pattern.toLowerCase(Locale.US);
+    if (!pattern.contains("*")) {
+      return hostName.equals(pattern);
+    }
+    if (pattern.length() == 1) {
+      return true;
+    }
+    int index = pattern.indexOf('*');
+    if (pattern.indexOf('*', index + 1) != -1) {
+      return false;
+    }
+    if (index != 0 && index != pattern.length() - 1) {
+      return false;
+    }
+    if (hostName.length() < pattern.length()) {
+      return false;
+    }
+    if (index == 0 && hostName.endsWith(pattern.substring(1))) {
+      return true;
+    }
+    return index == pattern.length() - 1
+        && hostName.startsWith(pattern.substring(0, pattern.length() - 1));
+  }
+
+  /**
+   * Builds the index, which happens once for each update of the virtual hosts.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public VirtualHostIndex buildIndex() {
+    return new VirtualHostIndex(virtualHosts);
+  }
+
+  /**
+   * Looks up the host name in a built index.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public VirtualHost indexedLookup() {
+    return index.find(hostName);
+  }
+
+  /**
+   * Builds an index and looks up the host name once, which is what a client does for each update.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public VirtualHost buildIndexAndLookUp() {
+    return new VirtualHostIndex(virtualHosts).find(hostName);
+  }
+}
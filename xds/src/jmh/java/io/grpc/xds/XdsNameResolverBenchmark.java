@@ -0,0 +1,206 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import com.google.common.collect.ImmutableMap;
+import io.grpc.CallOptions;
+import io.grpc.InternalConfigSelector;
+import io.grpc.InternalConfigSelector.Result;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.NameResolver;
+import io.grpc.NameResolver.ConfigOrError;
+import io.grpc.NameResolver.ResolutionResult;
+import io.grpc.NameResolver.ServiceConfigParser;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import io.grpc.internal.ObjectPool;
+import io.grpc.internal.PickSubchannelArgsImpl;
+import io.grpc.xds.Filter.FilterConfig;
+import io.grpc.xds.Filter.NamedFilterConfig;
+import io.grpc.xds.ThreadSafeRandom.ThreadSafeRandomImpl;
+import io.grpc.xds.VirtualHost.Route;
+import io.grpc.xds.VirtualHost.Route.RouteAction;
+import io.grpc.xds.VirtualHost.Route.RouteAction.HashPolicy;
+import io.grpc.xds.VirtualHost.Route.RouteMatch;
+import io.grpc.xds.XdsClient.LdsUpdate;
+import io.grpc.xds.XdsNameResolverProvider.XdsClientPoolFactory;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks {@link InternalConfigSelector#selectConfig} of {@link XdsNameResolver} for calls
+ * matching the last route of a virtual host.
+ */
+@State(Scope.Benchmark)
+public class XdsNameResolverBenchmark {
+  private static final String AUTHORITY = "foo.googleapis.com";
+
+  @Param({"1", "50", "500"})
+  public int routeCount;
+
+  private final SynchronizationContext syncContext = new SynchronizationContext(
+      new Thread.UncaughtExceptionHandler() {
+        @Override
+        public void uncaughtException(Thread t, Throwable e) {
+          throw new AssertionError(e);
+        }
+      });
+  private ScheduledExecutorService scheduler;
+  private XdsNameResolver resolver;
+  private InternalConfigSelector configSelector;
+  private PickSubchannelArgsImpl args;
+
+  /**
+   * Resolves to a virtual host with {@link #routeCount} routes.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    final FakeXdsClient xdsClient = new FakeXdsClient();
+    XdsClientPoolFactory xdsClientPoolFactory = new XdsClientPoolFactory() {
+      @Override
+      public void setBootstrapOverride(Map<String, ?> bootstrap) {}
+
+      @Override
+      public ObjectPool<XdsClient> get() {
+        return getOrCreate();
+      }
+
+      @Override
+      public ObjectPool<XdsClient> getOrCreate() {
+        return new ObjectPool<XdsClient>() {
+          @Override
+          public XdsClient getObject() {
+            return xdsClient;
+          }
+
+          @Override
+          public XdsClient returnObject(Object object) {
+            return null;
+          }
+        };
+      }
+    };
+    ServiceConfigParser serviceConfigParser = new ServiceConfigParser() {
+      @Override
+      public ConfigOrError parseServiceConfig(Map<String, ?> rawServiceConfig) {
+        return ConfigOrError.fromConfig(rawServiceConfig);
+      }
+    };
+    resolver = new XdsNameResolver(AUTHORITY, serviceConfigParser, syncContext, scheduler,
+        xdsClientPoolFactory, ThreadSafeRandomImpl.instance, FilterRegistry.getDefaultRegistry());
+    final List<ResolutionResult> results = new ArrayList<>();
+    resolver.start(new NameResolver.Listener2() {
+      @Override
+      public void onResult(ResolutionResult resolutionResult) {
+        results.add(resolutionResult);
+      }
+
+      @Override
+      public void onError(Status error) {
+        throw new AssertionError(error);
+      }
+    });
+
+    List<Route> routes = new ArrayList<>(routeCount);
+    for (int i = 0; i < routeCount; i++) {
+      routes.add(
+          Route.forAction(
+              RouteMatch.withPathExactOnly("/service" + i + "/method"),
+              RouteAction.forCluster(
+                  "cluster" + i, Collections.<HashPolicy>emptyList(),
+                  TimeUnit.SECONDS.toNanos(i % 10 + 1)),
+              ImmutableMap.<String, FilterConfig>of()));
+    }
+    VirtualHost virtualHost = VirtualHost.create(
+        "virtual-host", Collections.singletonList(AUTHORITY), routes,
+        ImmutableMap.<String, FilterConfig>of());
+    xdsClient.ldsWatcher.onChanged(LdsUpdate.forApiListener(HttpConnectionManager.forVirtualHosts(
+        0L, Collections.singletonList(virtualHost),
+        Collections.singletonList(
+            new NamedFilterConfig("envoy.router", RouterFilter.ROUTER_CONFIG)))));
+    configSelector = results.get(results.size() - 1).getAttributes()
+        .get(InternalConfigSelector.KEY);
+    MethodDescriptor<Void, Void> method = MethodDescriptor.<Void, Void>newBuilder()
+        .setType(MethodDescriptor.MethodType.UNARY)
+        .setFullMethodName("service" + (routeCount - 1) + "/method")
+        .setRequestMarshaller(new VoidMarshaller())
+        .setResponseMarshaller(new VoidMarshaller())
+        .build();
+    args = new PickSubchannelArgsImpl(method, new Metadata(), CallOptions.DEFAULT);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    resolver.shutdown();
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Selects the config of a call. Calls are never started, so the selected cluster is retained
+   * and never released.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Result selectConfig() {
+    return configSelector.selectConfig(args);
+  }
+
+  private static final class FakeXdsClient extends XdsClient {
+    private LdsResourceWatcher ldsWatcher;
+
+    @Override
+    void watchLdsResource(String resourceName, LdsResourceWatcher watcher) {
+      ldsWatcher = watcher;
+    }
+
+    @Override
+    void cancelLdsResourceWatch(String resourceName, LdsResourceWatcher watcher) {
+      ldsWatcher = null;
+    }
+  }
+
+  private static final class VoidMarshaller implements MethodDescriptor.Marshaller<Void> {
+    @Override
+    public InputStream stream(Void value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Void parse(InputStream stream) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
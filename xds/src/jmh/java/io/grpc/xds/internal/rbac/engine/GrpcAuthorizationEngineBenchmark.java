@@ -0,0 +1,190 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds.internal.rbac.engine;
+
+import io.grpc.Attributes;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.Status;
+import io.grpc.xds.internal.Matchers.CidrMatcher;
+import io.grpc.xds.internal.Matchers.HeaderMatcher;
+import io.grpc.xds.internal.Matchers.StringMatcher;
+import io.grpc.xds.internal.rbac.engine.GrpcAuthorizationEngine.Action;
+import io.grpc.xds.internal.rbac.engine.GrpcAuthorizationEngine.AndMatcher;
+import io.grpc.xds.internal.rbac.engine.GrpcAuthorizationEngine.AuthConfig;
+import io.grpc.xds.internal.rbac.engine.GrpcAuthorizationEngine.AuthDecision;
+import io.grpc.xds.internal.rbac.engine.GrpcAuthorizationEngine.AuthHeaderMatcher;
+import io.grpc.xds.internal.rbac.engine.GrpcAuthorizationEngine.DestinationPortMatcher;
+import io.grpc.xds.internal.rbac.engine.GrpcAuthorizationEngine.Matcher;
+import io.grpc.xds.internal.rbac.engine.GrpcAuthorizationEngine.OrMatcher;
+import io.grpc.xds.internal.rbac.engine.GrpcAuthorizationEngine.PathMatcher;
+import io.grpc.xds.internal.rbac.engine.GrpcAuthorizationEngine.PolicyMatcher;
+import io.grpc.xds.internal.rbac.engine.GrpcAuthorizationEngine.SourceIpMatcher;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks evaluating calls of a connection against {@link GrpcAuthorizationEngine} configured
+ * with a policy per method, with policies depending on connection attributes only and with
+ * policies also matching request headers.
+ */
+@State(Scope.Benchmark)
+public class GrpcAuthorizationEngineBenchmark {
+  private static final String HEADER_KEY = "x-user";
+
+  @Param({"100", "1000"})
+  public int policyCount;
+
+  private List<PolicyMatcher> policies;
+  private GrpcAuthorizationEngine engine;
+  private GrpcAuthorizationEngine headerEngine;
+  private ServerCall<Void, Void> serverCall;
+  private Metadata headers;
+
+  /**
+   * Creates policies allowing calls of method {@code i} from 10.0.x.y/24 to port 8000, and a
+   * call of the last method from a matching connection.
+   */
+  @Setup
+  public void setUp() throws UnknownHostException {
+    policies = new ArrayList<>(policyCount);
+    List<PolicyMatcher> headerPolicies = new ArrayList<>(policyCount);
+    for (int i = 0; i < policyCount; i++) {
+      Matcher permission =
+          new PathMatcher(StringMatcher.forExact("/" + methodName(i), false));
+      Matcher source = new SourceIpMatcher(CidrMatcher.create(
+          InetAddress.getByName("10.0." + (i / 256) + "." + (i % 256)), 24));
+      Matcher port = new DestinationPortMatcher(8000);
+      policies.add(new PolicyMatcher(
+          "policy-" + i, OrMatcher.create(permission),
+          OrMatcher.create(AndMatcher.create(source, port))));
+      Matcher header = new AuthHeaderMatcher(
+          HeaderMatcher.forExactValue(HEADER_KEY, "user-" + i, false));
+      headerPolicies.add(new PolicyMatcher(
+          "policy-" + i, OrMatcher.create(permission), OrMatcher.create(header)));
+    }
+    engine = new GrpcAuthorizationEngine(new AuthConfig(policies, Action.ALLOW));
+    headerEngine = new GrpcAuthorizationEngine(new AuthConfig(headerPolicies, Action.ALLOW));
+
+    int last = policyCount - 1;
+    Attributes attributes = Attributes.newBuilder()
+        .set(Grpc.TRANSPORT_ATTR_LOCAL_ADDR, new InetSocketAddress("192.168.0.1", 8000))
+        .set(Grpc.TRANSPORT_ATTR_REMOTE_ADDR,
+            new InetSocketAddress("10.0." + (last / 256) + "." + (last % 256), 40000))
+        .build();
+    MethodDescriptor<Void, Void> method = MethodDescriptor.<Void, Void>newBuilder()
+        .setType(MethodDescriptor.MethodType.UNARY)
+        .setFullMethodName(methodName(last))
+        .setRequestMarshaller(VoidMarshaller.INSTANCE)
+        .setResponseMarshaller(VoidMarshaller.INSTANCE)
+        .build();
+    serverCall = new FakeServerCall(method, attributes);
+    headers = new Metadata();
+    headers.put(Metadata.Key.of(HEADER_KEY, Metadata.ASCII_STRING_MARSHALLER), "user-" + last);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public AuthDecision evaluate() {
+    return engine.evaluate(headers, serverCall);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public AuthDecision evaluateHeaderPolicies() {
+    return headerEngine.evaluate(headers, serverCall);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public GrpcAuthorizationEngine createEngine() {
+    return new GrpcAuthorizationEngine(new AuthConfig(policies, Action.ALLOW));
+  }
+
+  private static String methodName(int i) {
+    return "benchmark.Service/Method" + i;
+  }
+
+  private static final class FakeServerCall extends ServerCall<Void, Void> {
+    private final MethodDescriptor<Void, Void> method;
+    private final Attributes attributes;
+
+    FakeServerCall(MethodDescriptor<Void, Void> method, Attributes attributes) {
+      this.method = method;
+      this.attributes = attributes;
+    }
+
+    @Override
+    public void request(int numMessages) {}
+
+    @Override
+    public void sendHeaders(Metadata headers) {}
+
+    @Override
+    public void sendMessage(Void message) {}
+
+    @Override
+    public void close(Status status, Metadata trailers) {}
+
+    @Override
+    public boolean isCancelled() {
+      return false;
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      return attributes;
+    }
+
+    @Override
+    public MethodDescriptor<Void, Void> getMethodDescriptor() {
+      return method;
+    }
+  }
+
+  private enum VoidMarshaller implements MethodDescriptor.Marshaller<Void> {
+    INSTANCE;
+
+    @Override
+    public InputStream stream(Void value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Void parse(InputStream stream) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
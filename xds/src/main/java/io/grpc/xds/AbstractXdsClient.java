@@ -26,8 +26,11 @@ import com.google.common.base.Supplier;
 import com.google.protobuf.Any;
 import com.google.rpc.Code;
 import io.envoyproxy.envoy.service.discovery.v3.AggregatedDiscoveryServiceGrpc;
+import io.envoyproxy.envoy.service.discovery.v3.DeltaDiscoveryRequest;
+import io.envoyproxy.envoy.service.discovery.v3.DeltaDiscoveryResponse;
 import io.envoyproxy.envoy.service.discovery.v3.DiscoveryRequest;
 import io.envoyproxy.envoy.service.discovery.v3.DiscoveryResponse;
+import io.envoyproxy.envoy.service.discovery.v3.Resource;
 import io.grpc.Context;
 import io.grpc.InternalLogId;
 import io.grpc.ManagedChannel;
@@ -37,9 +40,16 @@ import io.grpc.SynchronizationContext.ScheduledHandle;
 import io.grpc.internal.BackoffPolicy;
 import io.grpc.stub.StreamObserver;
 import io.grpc.xds.XdsLogger.XdsLogLevel;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
@@ -87,6 +97,7 @@ abstract class AbstractXdsClient extends XdsClient {
   private final BackoffPolicy.Provider backoffPolicyProvider;
   private final Stopwatch stopwatch;
   private final Bootstrapper.BootstrapInfo bootstrapInfo;
+  private final boolean incremental;
 
   // Last successfully applied version_info for each resource type. Starts with empty string.
   // A version_info is used to update management server with client's most recent knowledge of
@@ -96,6 +107,17 @@ abstract class AbstractXdsClient extends XdsClient {
   private String cdsVersion = "";
   private String edsVersion = "";
 
+  // Versions of the individual resources last accepted with the incremental protocol. They are
+  // sent as the initial resource versions when the ADS stream is recreated, so that the management
+  // server does not resend resources the client already has.
+  private final Map<ResourceType, Map<String, String>> resourceVersions =
+      new EnumMap<>(ResourceType.class);
+  // Versions of the resources in the incremental response being handled. Accepted when the
+  // response is ACKed.
+  @Nullable
+  private Map<String, String> pendingResourceVersions;
+  private boolean pendingResponseAcked;
+
   private boolean shutdown;
   @Nullable
   private AbstractAdsStream adsStream;
@@ -113,37 +135,36 @@ abstract class AbstractXdsClient extends XdsClient {
     this.timeService = checkNotNull(timeService, "timeService");
     this.backoffPolicyProvider = checkNotNull(backoffPolicyProvider, "backoffPolicyProvider");
     stopwatch = checkNotNull(stopwatchSupplier, "stopwatchSupplier").get();
+    Bootstrapper.ServerInfo serverInfo = bootstrapInfo.getServers().get(0);
+    incremental = serverInfo.isUseProtocolV3() && serverInfo.isUseDeltaProtocol();
     logId = InternalLogId.allocate("xds-client", null);
     logger = XdsLogger.withLogId(logId);
     logger.log(XdsLogLevel.INFO, "Created");
   }
 
   /**
-   * Called when an LDS response is received.
-   */
-  // Must be synchronized.
-  protected void handleLdsResponse(String versionInfo, List<Any> resources, String nonce) {
-  }
-
-  /**
-   * Called when a RDS response is received.
+   * Called when a response of the given type is received, on the thread receiving it and not in
+   * the synchronization context, so that decoding the resources of a large response does not hold
+   * up other xDS events. Returns the handler of the decoded resources, which is called in the
+   * synchronization context unless the stream has been closed in the meantime.
    */
-  // Must be synchronized.
-  protected void handleRdsResponse(String versionInfo, List<Any> resources, String nonce) {
-  }
+  // Not synchronized, must be thread-safe.
+  protected abstract ResponseHandler decodeResponse(ResourceType type, List<Any> resources);
 
   /**
-   * Called when a CDS response is received.
+   * Handles the decoded resources of a response.
    */
-  // Must be synchronized.
-  protected void handleCdsResponse(String versionInfo, List<Any> resources, String nonce) {
+  protected interface ResponseHandler {
+    // Must be synchronized.
+    void handleResponse(String versionInfo, String nonce);
   }
 
   /**
-   * Called when an EDS response is received.
+   * Called when an accepted incremental response removes resources of the given type. The
+   * resources do not exist anymore.
    */
   // Must be synchronized.
-  protected void handleEdsResponse(String versionInfo, List<Any> resources, String nonce) {
+  protected void handleResourcesRemoved(ResourceType type, List<String> resourceNames) {
   }
 
   /**
@@ -216,13 +237,25 @@ abstract class AbstractXdsClient extends XdsClient {
    */
   // Must be synchronized.
   protected final void adjustResourceSubscription(ResourceType type) {
+    Collection<String> resources = getSubscribedResources(type);
+    if (incremental) {
+      // A resource subscribed to again must be sent anew, even if it is unchanged.
+      Map<String, String> versions = getResourceVersions(type);
+      if (resources == null) {
+        versions.clear();
+      } else {
+        versions.keySet().retainAll(resources);
+      }
+    }
     if (isInBackoff()) {
       return;
     }
     if (adsStream == null) {
       startRpcStream();
     }
-    Collection<String> resources = getSubscribedResources(type);
+    if (resources == null && incremental) {
+      resources = Collections.emptyList();  // unsubscribes from the remaining resources
+    }
     if (resources != null) {
       adsStream.sendDiscoveryRequest(type, resources);
     }
@@ -257,6 +290,16 @@ abstract class AbstractXdsClient extends XdsClient {
     if (resources == null) {
       resources = Collections.emptyList();
     }
+    if (pendingResourceVersions != null) {
+      Map<String, String> versions = getResourceVersions(type);
+      for (Map.Entry<String, String> entry : pendingResourceVersions.entrySet()) {
+        if (resources.contains(entry.getKey())) {
+          versions.put(entry.getKey(), entry.getValue());
+        }
+      }
+      pendingResourceVersions = null;
+      pendingResponseAcked = true;
+    }
     adsStream.sendDiscoveryRequest(type, versionInfo, resources, nonce, null);
   }
 
@@ -276,6 +319,37 @@ abstract class AbstractXdsClient extends XdsClient {
     adsStream.sendDiscoveryRequest(type, versionInfo, resources, nonce, errorDetail);
   }
 
+  /**
+   * Returns {@code true} if resources are discovered with the incremental (delta) variant of the
+   * xDS protocol. A response then only carries the resources that changed, and resources that no
+   * longer exist are removed explicitly instead of by leaving them out of a response.
+   */
+  protected final boolean isIncremental() {
+    return incremental;
+  }
+
+  /**
+   * Returns the version of the given resource last accepted. With the state of the world protocol,
+   * all resources of a type have the version of the last accepted response.
+   */
+  // Must be synchronized.
+  protected final String getResourceVersion(ResourceType type, String resourceName) {
+    if (!incremental) {
+      return getCurrentVersion(type);
+    }
+    String version = getResourceVersions(type).get(resourceName);
+    return version != null ? version : "";
+  }
+
+  private Map<String, String> getResourceVersions(ResourceType type) {
+    Map<String, String> versions = resourceVersions.get(type);
+    if (versions == null) {
+      versions = new HashMap<>();
+      resourceVersions.put(type, versions);
+    }
+    return versions;
+  }
+
   protected final SynchronizationContext getSyncContext() {
     return syncContext;
   }
@@ -303,7 +377,9 @@ abstract class AbstractXdsClient extends XdsClient {
   // Must be synchronized.
   private void startRpcStream() {
     checkState(adsStream == null, "Previous adsStream has not been cleared yet");
-    if (bootstrapInfo.getServers().get(0).isUseProtocolV3()) {
+    if (incremental) {
+      adsStream = new DeltaAdsStreamV3();
+    } else if (bootstrapInfo.getServers().get(0).isUseProtocolV3()) {
       adsStream = new AdsStreamV3();
     } else {
       adsStream = new AdsStreamV2();
@@ -453,7 +529,7 @@ abstract class AbstractXdsClient extends XdsClient {
     /**
      * Sends a client-initiated discovery request.
      */
-    final void sendDiscoveryRequest(ResourceType type, Collection<String> resources) {
+    void sendDiscoveryRequest(ResourceType type, Collection<String> resources) {
       String nonce;
       switch (type) {
         case LDS:
@@ -476,8 +552,21 @@ abstract class AbstractXdsClient extends XdsClient {
       sendDiscoveryRequest(type, getCurrentVersion(type), resources, nonce, null);
     }
 
+    /**
+     * Decodes the resources of a response. Called on the thread receiving the response, before
+     * the response is handled with {@link #handleRpcResponse}.
+     */
+    // Not synchronized.
+    @Nullable
+    final ResponseHandler decodeRpcResponse(ResourceType type, List<Any> resources) {
+      if (type == ResourceType.UNKNOWN) {
+        return null;
+      }
+      return decodeResponse(type, resources);
+    }
+
     final void handleRpcResponse(
-        ResourceType type, String versionInfo, List<Any> resources, String nonce) {
+        ResourceType type, String versionInfo, @Nullable ResponseHandler handler, String nonce) {
       if (closed) {
         return;
       }
@@ -489,24 +578,22 @@ abstract class AbstractXdsClient extends XdsClient {
       switch (type) {
         case LDS:
           ldsRespNonce = nonce;
-          handleLdsResponse(versionInfo, resources, nonce);
           break;
         case RDS:
           rdsRespNonce = nonce;
-          handleRdsResponse(versionInfo, resources, nonce);
           break;
         case CDS:
           cdsRespNonce = nonce;
-          handleCdsResponse(versionInfo, resources, nonce);
           break;
         case EDS:
           edsRespNonce = nonce;
-          handleEdsResponse(versionInfo, resources, nonce);
           break;
         case UNKNOWN:
         default:
           logger.log(XdsLogLevel.WARNING, "Ignore an unknown type of DiscoveryResponse");
+          return;
       }
+      handler.handleResponse(versionInfo, nonce);
     }
 
     final void handleRpcError(Throwable t) {
@@ -575,16 +662,17 @@ abstract class AbstractXdsClient extends XdsClient {
           new StreamObserver<io.envoyproxy.envoy.api.v2.DiscoveryResponse>() {
             @Override
             public void onNext(final io.envoyproxy.envoy.api.v2.DiscoveryResponse response) {
+              final ResourceType type = ResourceType.fromTypeUrl(response.getTypeUrl());
+              if (logger.isLoggable(XdsLogLevel.DEBUG)) {
+                logger.log(XdsLogLevel.DEBUG, "Received {0} response:\n{1}",
+                    type, msgPrinter.print(response));
+              }
+              final ResponseHandler handler =
+                  decodeRpcResponse(type, response.getResourcesList());
               syncContext.execute(new Runnable() {
                 @Override
                 public void run() {
-                  ResourceType type = ResourceType.fromTypeUrl(response.getTypeUrl());
-                  if (logger.isLoggable(XdsLogLevel.DEBUG)) {
-                    logger.log(XdsLogLevel.DEBUG, "Received {0} response:\n{1}",
-                        type, msgPrinter.print(response));
-                  }
-                  handleRpcResponse(type, response.getVersionInfo(), response.getResourcesList(),
-                      response.getNonce());
+                  handleRpcResponse(type, response.getVersionInfo(), handler, response.getNonce());
                 }
               });
             }
@@ -652,16 +740,16 @@ abstract class AbstractXdsClient extends XdsClient {
       StreamObserver<DiscoveryResponse> responseReader = new StreamObserver<DiscoveryResponse>() {
         @Override
         public void onNext(final DiscoveryResponse response) {
+          final ResourceType type = ResourceType.fromTypeUrl(response.getTypeUrl());
+          if (logger.isLoggable(XdsLogLevel.DEBUG)) {
+            logger.log(XdsLogLevel.DEBUG, "Received {0} response:\n{1}",
+                type, msgPrinter.print(response));
+          }
+          final ResponseHandler handler = decodeRpcResponse(type, response.getResourcesList());
           syncContext.execute(new Runnable() {
             @Override
             public void run() {
-              ResourceType type = ResourceType.fromTypeUrl(response.getTypeUrl());
-              if (logger.isLoggable(XdsLogLevel.DEBUG)) {
-                logger.log(XdsLogLevel.DEBUG, "Received {0} response:\n{1}",
-                    type, msgPrinter.print(response));
-              }
-              handleRpcResponse(type, response.getVersionInfo(), response.getResourcesList(),
-                  response.getNonce());
+              handleRpcResponse(type, response.getVersionInfo(), handler, response.getNonce());
             }
           });
         }
@@ -718,4 +806,150 @@ abstract class AbstractXdsClient extends XdsClient {
       requestWriter.onError(error);
     }
   }
+
+  /**
+   * ADS stream of the incremental variant of the protocol. Requests carry the changes to the
+   * subscribed resources instead of all of them, and responses carry only the resources that
+   * changed, each with its own version.
+   */
+  private final class DeltaAdsStreamV3 extends AbstractAdsStream {
+    private StreamObserver<DeltaDiscoveryRequest> requestWriter;
+    // Resources of each type subscribed to on this stream.
+    private final Map<ResourceType, Set<String>> subscribedResources =
+        new EnumMap<>(ResourceType.class);
+    private boolean nodeSent;
+
+    @Override
+    void start() {
+      AggregatedDiscoveryServiceGrpc.AggregatedDiscoveryServiceStub stub =
+          AggregatedDiscoveryServiceGrpc.newStub(channel);
+      StreamObserver<DeltaDiscoveryResponse> responseReader =
+          new StreamObserver<DeltaDiscoveryResponse>() {
+            @Override
+            public void onNext(final DeltaDiscoveryResponse response) {
+              final ResourceType type = ResourceType.fromTypeUrl(response.getTypeUrl());
+              if (logger.isLoggable(XdsLogLevel.DEBUG)) {
+                logger.log(XdsLogLevel.DEBUG, "Received {0} delta response:\n{1}",
+                    type, msgPrinter.print(response));
+              }
+              List<Any> resources = new ArrayList<>(response.getResourcesCount());
+              final Map<String, String> versions = new HashMap<>(response.getResourcesCount());
+              for (Resource resource : response.getResourcesList()) {
+                resources.add(resource.getResource());
+                versions.put(resource.getName(), resource.getVersion());
+              }
+              final ResponseHandler handler = decodeRpcResponse(type, resources);
+              syncContext.execute(new Runnable() {
+                @Override
+                public void run() {
+                  handleDeltaRpcResponse(type, response, versions, handler);
+                }
+              });
+            }
+
+            @Override
+            public void onError(final Throwable t) {
+              syncContext.execute(new Runnable() {
+                @Override
+                public void run() {
+                  handleRpcError(t);
+                }
+              });
+            }
+
+            @Override
+            public void onCompleted() {
+              syncContext.execute(new Runnable() {
+                @Override
+                public void run() {
+                  handleRpcCompleted();
+                }
+              });
+            }
+          };
+      requestWriter = stub.withWaitForReady().deltaAggregatedResources(responseReader);
+    }
+
+    private void handleDeltaRpcResponse(ResourceType type, DeltaDiscoveryResponse response,
+        Map<String, String> versions, @Nullable ResponseHandler handler) {
+      pendingResourceVersions = versions;
+      pendingResponseAcked = false;
+      handleRpcResponse(type, response.getSystemVersionInfo(), handler, response.getNonce());
+      pendingResourceVersions = null;
+      // Removals are only applied with the rest of an accepted response.
+      if (pendingResponseAcked && response.getRemovedResourcesCount() > 0) {
+        getResourceVersions(type).keySet().removeAll(response.getRemovedResourcesList());
+        handleResourcesRemoved(type, response.getRemovedResourcesList());
+      }
+    }
+
+    // Subscription changes do not respond to a DeltaDiscoveryResponse, so they carry no nonce.
+    @Override
+    void sendDiscoveryRequest(ResourceType type, Collection<String> resources) {
+      logger.log(XdsLogLevel.INFO, "Sending {0} request for resources: {1}", type, resources);
+      sendDiscoveryRequest(type, "", resources, "", null);
+    }
+
+    // The versionInfo is unused, the management server tracks the versions the client has.
+    @Override
+    void sendDiscoveryRequest(ResourceType type, String versionInfo, Collection<String> resources,
+        String nonce, @Nullable String errorDetail) {
+      checkState(requestWriter != null, "ADS stream has not been started");
+      DeltaDiscoveryRequest.Builder builder =
+          DeltaDiscoveryRequest.newBuilder()
+              .setTypeUrl(type.typeUrl())
+              .setResponseNonce(nonce);
+      if (!nodeSent) {
+        // Only required in the first request of the stream.
+        builder.setNode(bootstrapInfo.getNode().toEnvoyProtoNode());
+      }
+      Set<String> subscribed = subscribedResources.get(type);
+      if (subscribed == null) {
+        subscribed = new HashSet<>();
+        subscribedResources.put(type, subscribed);
+      }
+      Map<String, String> versions = getResourceVersions(type);
+      for (String resource : resources) {
+        if (subscribed.add(resource)) {
+          builder.addResourceNamesSubscribe(resource);
+          // Only resources known from a previous stream have a version.
+          String version = versions.get(resource);
+          if (version != null) {
+            builder.putInitialResourceVersions(resource, version);
+          }
+        }
+      }
+      if (subscribed.size() > resources.size()) {  // some resources are not subscribed anymore
+        for (Iterator<String> it = subscribed.iterator(); it.hasNext(); ) {
+          String resource = it.next();
+          if (!resources.contains(resource)) {
+            it.remove();
+            builder.addResourceNamesUnsubscribe(resource);
+          }
+        }
+      }
+      if (errorDetail != null) {
+        com.google.rpc.Status error =
+            com.google.rpc.Status.newBuilder()
+                .setCode(Code.INVALID_ARGUMENT_VALUE)
+                .setMessage(errorDetail)
+                .build();
+        builder.setErrorDetail(error);
+      }
+      if (nonce.isEmpty() && errorDetail == null
+          && builder.getResourceNamesSubscribeCount() == 0
+          && builder.getResourceNamesUnsubscribeCount() == 0) {
+        return;  // subscription unchanged
+      }
+      DeltaDiscoveryRequest request = builder.build();
+      requestWriter.onNext(request);
+      nodeSent = true;
+      logger.log(XdsLogLevel.DEBUG, "Sent DeltaDiscoveryRequest\n{0}", msgPrinter.print(request));
+    }
+
+    @Override
+    void sendError(Exception error) {
+      requestWriter.onError(error);
+    }
+  }
 }
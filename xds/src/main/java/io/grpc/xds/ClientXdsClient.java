@@ -26,6 +26,7 @@ import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
 import com.google.protobuf.Any;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
@@ -37,6 +38,7 @@ import io.envoyproxy.envoy.config.cluster.v3.Cluster;
 import io.envoyproxy.envoy.config.cluster.v3.Cluster.CustomClusterType;
 import io.envoyproxy.envoy.config.cluster.v3.Cluster.DiscoveryType;
 import io.envoyproxy.envoy.config.cluster.v3.Cluster.LbPolicy;
+import io.envoyproxy.envoy.config.cluster.v3.Cluster.MaglevLbConfig;
 import io.envoyproxy.envoy.config.cluster.v3.Cluster.RingHashLbConfig;
 import io.envoyproxy.envoy.config.core.v3.HttpProtocolOptions;
 import io.envoyproxy.envoy.config.core.v3.RoutingPriority;
@@ -57,6 +59,8 @@ import io.grpc.ManagedChannel;
 import io.grpc.Status;
 import io.grpc.SynchronizationContext.ScheduledHandle;
 import io.grpc.internal.BackoffPolicy;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder;
 import io.grpc.internal.TimeProvider;
 import io.grpc.xds.Endpoints.DropOverload;
 import io.grpc.xds.Endpoints.LbEndpoint;
@@ -85,16 +89,23 @@ import io.grpc.xds.internal.Matchers.HeaderMatcher;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
@@ -115,6 +126,15 @@ final class ClientXdsClient extends AbstractXdsClient {
   @VisibleForTesting
   static final long MAX_RING_HASH_LB_POLICY_RING_SIZE = 8 * 1024 * 1024L;
   @VisibleForTesting
+  static final long DEFAULT_MAGLEV_LB_POLICY_TABLE_SIZE = 65537L;
+  @VisibleForTesting
+  static final long MAX_MAGLEV_LB_POLICY_TABLE_SIZE = 5000011L;
+  // Responses with fewer resources per task are decoded on fewer threads.
+  @VisibleForTesting
+  static final int MIN_RESOURCES_PER_DECODING_TASK = 64;
+  private static final int MAX_DECODING_TASKS =
+      Math.min(8, Runtime.getRuntime().availableProcessors());
+  @VisibleForTesting
   static final String AGGREGATE_CLUSTER_TYPE_NAME = "envoy.clusters.aggregate";
   @VisibleForTesting
   static final String HASH_POLICY_FILTER_STATE_KEY = "io.grpc.channel_id";
@@ -122,6 +142,9 @@ final class ClientXdsClient extends AbstractXdsClient {
   static boolean enableFaultInjection =
       Strings.isNullOrEmpty(System.getenv("GRPC_XDS_EXPERIMENTAL_FAULT_INJECTION"))
           || Boolean.parseBoolean(System.getenv("GRPC_XDS_EXPERIMENTAL_FAULT_INJECTION"));
+  @VisibleForTesting
+  static boolean enableMaglev =
+      Boolean.parseBoolean(System.getenv("GRPC_XDS_EXPERIMENTAL_ENABLE_MAGLEV"));
 
   private static final String TYPE_URL_HTTP_CONNECTION_MANAGER_V2 =
       "type.googleapis.com/envoy.config.filter.network.http_connection_manager.v2"
@@ -147,6 +170,15 @@ final class ClientXdsClient extends AbstractXdsClient {
   private final Map<String, ResourceSubscriber> rdsResourceSubscribers = new HashMap<>();
   private final Map<String, ResourceSubscriber> cdsResourceSubscribers = new HashMap<>();
   private final Map<String, ResourceSubscriber> edsResourceSubscribers = new HashMap<>();
+  // Subscribed resources of each type last accepted, by their raw resource. A resource in a
+  // response that is equal to one of them has not changed and is not decoded and validated again.
+  // Updated in the synchronization context, read when decoding responses.
+  private final Map<ResourceType, Map<Any, ParsedResource>> acceptedResources =
+      new EnumMap<>(ResourceType.class);
+  private final Executor decodingExecutor =
+      SharedResourceHolder.get(GrpcUtil.SHARED_CHANNEL_EXECUTOR);
+  private long parsedResourceCount;
+  private long unchangedResourceCount;
   private final LoadStatsManager2 loadStatsManager;
   private final LoadReportClient lrsClient;
   private final TimeProvider timeProvider;
@@ -159,6 +191,11 @@ final class ClientXdsClient extends AbstractXdsClient {
       Supplier<Stopwatch> stopwatchSupplier, TimeProvider timeProvider,
       TlsContextManager tlsContextManager) {
     super(channel, bootstrapInfo, context, timeService, backoffPolicyProvider, stopwatchSupplier);
+    for (ResourceType type : ResourceType.values()) {
+      if (type != ResourceType.UNKNOWN) {
+        acceptedResources.put(type, new ConcurrentHashMap<Any, ParsedResource>());
+      }
+    }
     loadStatsManager = new LoadStatsManager2(stopwatchSupplier);
     this.timeProvider = timeProvider;
     this.tlsContextManager = checkNotNull(tlsContextManager, "tlsContextManager");
@@ -168,65 +205,186 @@ final class ClientXdsClient extends AbstractXdsClient {
   }
 
   @Override
-  protected void handleLdsResponse(String versionInfo, List<Any> resources, String nonce) {
-    Map<String, ParsedResource> parsedResources = new HashMap<>(resources.size());
-    Set<String> unpackedResources = new HashSet<>(resources.size());
-    List<String> errors = new ArrayList<>();
-    Set<String> retainedRdsResources = new HashSet<>();
-
-    for (int i = 0; i < resources.size(); i++) {
-      Any resource = resources.get(i);
+  protected ResponseHandler decodeResponse(final ResourceType type, List<Any> resources) {
+    final List<DecodedResource> decodedResources =
+        decodeResources(type, resources, MAX_DECODING_TASKS);
+    return new ResponseHandler() {
+      @Override
+      public void handleResponse(String versionInfo, String nonce) {
+        handleDecodedResponse(type, versionInfo, decodedResources, nonce);
+      }
+    };
+  }
 
-      // Unpack the Listener.
-      boolean isResourceV3 = resource.getTypeUrl().equals(ResourceType.LDS.typeUrl());
-      Listener listener;
+  /**
+   * Decodes the resources of a response. Large responses are split in up to {@code maxTasks}
+   * parts that are decoded in parallel.
+   */
+  @VisibleForTesting
+  List<DecodedResource> decodeResources(
+      final ResourceType type, final List<Any> resources, int maxTasks) {
+    final DecodedResource[] decodedResources = new DecodedResource[resources.size()];
+    int taskCount = Math.min(maxTasks, resources.size() / MIN_RESOURCES_PER_DECODING_TASK);
+    int partSize =
+        taskCount > 1 ? (resources.size() + taskCount - 1) / taskCount : resources.size();
+    List<FutureTask<Void>> tasks = new ArrayList<>();
+    for (int start = partSize; start < resources.size(); start += partSize) {
+      final int from = start;
+      final int to = Math.min(start + partSize, resources.size());
+      FutureTask<Void> task = new FutureTask<>(new Runnable() {
+        @Override
+        public void run() {
+          decodeResources(type, resources, from, to, decodedResources);
+        }
+      }, null);
+      tasks.add(task);
       try {
-        listener = unpackCompatibleType(resource, Listener.class, ResourceType.LDS.typeUrl(),
-            ResourceType.LDS.typeUrlV2());
-      } catch (InvalidProtocolBufferException e) {
-        errors.add("LDS response Resource index " + i + " - can't decode Listener: " + e);
+        decodingExecutor.execute(task);
+      } catch (RejectedExecutionException e) {
+        task.run();  // executor released on shutdown
+      }
+    }
+    decodeResources(type, resources, 0, Math.min(partSize, resources.size()), decodedResources);
+    for (FutureTask<Void> task : tasks) {
+      Futures.getUnchecked(task);
+    }
+    return Arrays.asList(decodedResources);
+  }
+
+  private void decodeResources(ResourceType type, List<Any> resources, int from, int to,
+      DecodedResource[] decodedResources) {
+    Map<Any, ParsedResource> accepted = getAcceptedResources(type);
+    for (int i = from; i < to; i++) {
+      Any resource = resources.get(i);
+      ParsedResource unchangedResource = accepted.get(resource);
+      if (unchangedResource != null) {
+        decodedResources[i] = DecodedResource.forUnchangedResource(unchangedResource);
         continue;
       }
-      String listenerName = listener.getName();
-      unpackedResources.add(listenerName);
+      switch (type) {
+        case LDS:
+          decodedResources[i] = decodeListener(i, resource);
+          break;
+        case RDS:
+          decodedResources[i] = decodeRouteConfiguration(i, resource);
+          break;
+        case CDS:
+          decodedResources[i] = decodeCluster(i, resource);
+          break;
+        case EDS:
+          decodedResources[i] = decodeClusterLoadAssignment(i, resource);
+          break;
+        case UNKNOWN:
+        default:
+          throw new AssertionError("Unknown resource type: " + type);
+      }
+    }
+  }
 
-      // Process Listener into LdsUpdate.
-      LdsUpdate ldsUpdate;
-      try {
-        if (listener.hasApiListener()) {
-          ldsUpdate = processClientSideListener(
-              listener, retainedRdsResources, enableFaultInjection && isResourceV3);
-        } else {
-          ldsUpdate = processServerSideListener(
-              listener, retainedRdsResources, enableFaultInjection && isResourceV3);
-        }
-      } catch (ResourceInvalidException e) {
-        errors.add(
-            "LDS response Listener '" + listenerName + "' validation error: " + e.getMessage());
+  private void handleDecodedResponse(ResourceType type, String versionInfo,
+      List<DecodedResource> decodedResources, String nonce) {
+    Map<String, ResourceSubscriber> subscribers = getSubscribedResourcesMap(type);
+    Map<String, ParsedResource> parsedResources = new HashMap<>(decodedResources.size());
+    Set<String> unpackedResources = new HashSet<>(decodedResources.size());
+    List<String> errors = new ArrayList<>();
+    // RDS resources referred to by Listeners, or EDS resources referred to by Clusters.
+    Set<String> retainedResources = new HashSet<>();
+
+    for (DecodedResource decodedResource : decodedResources) {
+      if (decodedResource.unchanged) {
+        unchangedResourceCount++;
+      } else {
+        parsedResourceCount++;
+      }
+      String resourceName = decodedResource.name;
+      if (resourceName == null) {  // could not be unpacked
+        errors.add(decodedResource.errorDetail);
         continue;
       }
 
-      // LdsUpdate parsed successfully.
-      parsedResources.put(listenerName, new ParsedResource(ldsUpdate, resource));
+      // Management server is required to always send newly requested resources, even if they
+      // may have been sent previously (proactively). Thus, client does not need to cache
+      // unrequested resources.
+      if ((type == ResourceType.CDS || type == ResourceType.EDS)
+          && !subscribers.containsKey(resourceName)) {
+        continue;
+      }
+      unpackedResources.add(resourceName);
+      if (decodedResource.errorDetail != null) {
+        errors.add(decodedResource.errorDetail);
+        continue;
+      }
+      retainedResources.addAll(decodedResource.parsedResource.getReferencedResources());
+      parsedResources.put(resourceName, decodedResource.parsedResource);
+    }
+    if (type != ResourceType.EDS) {
+      getLogger().log(XdsLogLevel.INFO,
+          "Received {0} Response version {1} nonce {2}. Parsed resources: {3}",
+          type, versionInfo, nonce, unpackedResources);
     }
-    getLogger().log(XdsLogLevel.INFO,
-        "Received LDS Response version {0} nonce {1}. Parsed resources: {2}",
-        versionInfo, nonce, unpackedResources);
 
     if (!errors.isEmpty()) {
-      handleResourcesRejected(ResourceType.LDS, unpackedResources, versionInfo, nonce, errors);
+      handleResourcesRejected(type, unpackedResources, versionInfo, nonce, errors);
       return;
     }
 
-    handleResourcesAccepted(ResourceType.LDS, parsedResources, versionInfo, nonce);
-    for (String resource : rdsResourceSubscribers.keySet()) {
-      if (!retainedRdsResources.contains(resource)) {
-        ResourceSubscriber subscriber = rdsResourceSubscribers.get(resource);
+    handleResourcesAccepted(type, parsedResources, versionInfo, nonce);
+    if (isIncremental()) {
+      return;
+    }
+    // LDS and CDS responses represent the state of the world, RDS and EDS resources not
+    // referenced by their resources anymore should be deleted.
+    Map<String, ResourceSubscriber> referencedSubscribers;
+    if (type == ResourceType.LDS) {
+      referencedSubscribers = rdsResourceSubscribers;
+    } else if (type == ResourceType.CDS) {
+      referencedSubscribers = edsResourceSubscribers;
+    } else {
+      return;
+    }
+    for (String resource : referencedSubscribers.keySet()) {
+      if (!retainedResources.contains(resource)) {
+        ResourceSubscriber subscriber = referencedSubscribers.get(resource);
         subscriber.onAbsent();
       }
     }
   }
 
+  // Not synchronized.
+  private DecodedResource decodeListener(int index, Any resource) {
+    // Unpack the Listener.
+    boolean isResourceV3 = resource.getTypeUrl().equals(ResourceType.LDS.typeUrl());
+    Listener listener;
+    try {
+      listener = unpackCompatibleType(resource, Listener.class, ResourceType.LDS.typeUrl(),
+          ResourceType.LDS.typeUrlV2());
+    } catch (InvalidProtocolBufferException e) {
+      return DecodedResource.forError(
+          null, "LDS response Resource index " + index + " - can't decode Listener: " + e);
+    }
+    String listenerName = listener.getName();
+
+    // Process Listener into LdsUpdate.
+    LdsUpdate ldsUpdate;
+    Set<String> rdsResources = new HashSet<>();
+    try {
+      if (listener.hasApiListener()) {
+        ldsUpdate = processClientSideListener(
+            listener, rdsResources, enableFaultInjection && isResourceV3);
+      } else {
+        ldsUpdate = processServerSideListener(
+            listener, rdsResources, enableFaultInjection && isResourceV3);
+      }
+    } catch (ResourceInvalidException e) {
+      return DecodedResource.forError(listenerName,
+          "LDS response Listener '" + listenerName + "' validation error: " + e.getMessage());
+    }
+
+    // LdsUpdate parsed successfully.
+    return DecodedResource.forResource(
+        new ParsedResource(listenerName, ldsUpdate, resource, rdsResources));
+  }
+
   private LdsUpdate processClientSideListener(
       Listener listener, Set<String> rdsResources, boolean parseHttpFilter)
       throws ResourceInvalidException {
@@ -899,51 +1057,33 @@ final class ClientXdsClient extends AbstractXdsClient {
         proto.getName(), proto.getWeight().getValue(), overrideConfigs.struct));
   }
 
-  @Override
-  protected void handleRdsResponse(String versionInfo, List<Any> resources, String nonce) {
-    Map<String, ParsedResource> parsedResources = new HashMap<>(resources.size());
-    Set<String> unpackedResources = new HashSet<>(resources.size());
-    List<String> errors = new ArrayList<>();
-
-    for (int i = 0; i < resources.size(); i++) {
-      Any resource = resources.get(i);
-
-      // Unpack the RouteConfiguration.
-      RouteConfiguration routeConfig;
-      try {
-        routeConfig = unpackCompatibleType(resource, RouteConfiguration.class,
-            ResourceType.RDS.typeUrl(), ResourceType.RDS.typeUrlV2());
-      } catch (InvalidProtocolBufferException e) {
-        errors.add("RDS response Resource index " + i + " - can't decode RouteConfiguration: " + e);
-        continue;
-      }
-      String routeConfigName = routeConfig.getName();
-      unpackedResources.add(routeConfigName);
-
-      // Process RouteConfiguration into RdsUpdate.
-      RdsUpdate rdsUpdate;
-      boolean isResourceV3 = resource.getTypeUrl().equals(ResourceType.RDS.typeUrl());
-      try {
-        rdsUpdate = processRouteConfiguration(
-            routeConfig, filterRegistry, enableFaultInjection && isResourceV3);
-      } catch (ResourceInvalidException e) {
-        errors.add(
-            "RDS response RouteConfiguration '" + routeConfigName + "' validation error: " + e
-                .getMessage());
-        continue;
-      }
-
-      parsedResources.put(routeConfigName, new ParsedResource(rdsUpdate, resource));
+  // Not synchronized.
+  private DecodedResource decodeRouteConfiguration(int index, Any resource) {
+    // Unpack the RouteConfiguration.
+    RouteConfiguration routeConfig;
+    try {
+      routeConfig = unpackCompatibleType(resource, RouteConfiguration.class,
+          ResourceType.RDS.typeUrl(), ResourceType.RDS.typeUrlV2());
+    } catch (InvalidProtocolBufferException e) {
+      return DecodedResource.forError(null,
+          "RDS response Resource index " + index + " - can't decode RouteConfiguration: " + e);
     }
-    getLogger().log(XdsLogLevel.INFO,
-        "Received RDS Response version {0} nonce {1}. Parsed resources: {2}",
-        versionInfo, nonce, unpackedResources);
+    String routeConfigName = routeConfig.getName();
 
-    if (!errors.isEmpty()) {
-      handleResourcesRejected(ResourceType.RDS, unpackedResources, versionInfo, nonce, errors);
-    } else {
-      handleResourcesAccepted(ResourceType.RDS, parsedResources, versionInfo, nonce);
+    // Process RouteConfiguration into RdsUpdate.
+    RdsUpdate rdsUpdate;
+    boolean isResourceV3 = resource.getTypeUrl().equals(ResourceType.RDS.typeUrl());
+    try {
+      rdsUpdate = processRouteConfiguration(
+          routeConfig, filterRegistry, enableFaultInjection && isResourceV3);
+    } catch (ResourceInvalidException e) {
+      return DecodedResource.forError(routeConfigName,
+          "RDS response RouteConfiguration '" + routeConfigName + "' validation error: " + e
+              .getMessage());
     }
+
+    return DecodedResource.forResource(new ParsedResource(
+        routeConfigName, rdsUpdate, resource, Collections.<String>emptySet()));
   }
 
   private static RdsUpdate processRouteConfiguration(
@@ -963,64 +1103,30 @@ final class ClientXdsClient extends AbstractXdsClient {
     return new RdsUpdate(virtualHosts);
   }
 
-  @Override
-  protected void handleCdsResponse(String versionInfo, List<Any> resources, String nonce) {
-    Map<String, ParsedResource> parsedResources = new HashMap<>(resources.size());
-    Set<String> unpackedResources = new HashSet<>(resources.size());
-    List<String> errors = new ArrayList<>();
-    Set<String> retainedEdsResources = new HashSet<>();
-
-    for (int i = 0; i < resources.size(); i++) {
-      Any resource = resources.get(i);
-
-      // Unpack the Cluster.
-      Cluster cluster;
-      try {
-        cluster = unpackCompatibleType(
-            resource, Cluster.class, ResourceType.CDS.typeUrl(), ResourceType.CDS.typeUrlV2());
-      } catch (InvalidProtocolBufferException e) {
-        errors.add("CDS response Resource index " + i + " - can't decode Cluster: " + e);
-        continue;
-      }
-      String clusterName = cluster.getName();
-
-      // Management server is required to always send newly requested resources, even if they
-      // may have been sent previously (proactively). Thus, client does not need to cache
-      // unrequested resources.
-      if (!cdsResourceSubscribers.containsKey(clusterName)) {
-        continue;
-      }
-      unpackedResources.add(clusterName);
-
-      // Process Cluster into CdsUpdate.
-      CdsUpdate cdsUpdate;
-      try {
-        cdsUpdate = parseCluster(cluster, retainedEdsResources);
-      } catch (ResourceInvalidException e) {
-        errors.add(
-            "CDS response Cluster '" + clusterName + "' validation error: " + e.getMessage());
-        continue;
-      }
-      parsedResources.put(clusterName, new ParsedResource(cdsUpdate, resource));
-    }
-    getLogger().log(XdsLogLevel.INFO,
-        "Received CDS Response version {0} nonce {1}. Parsed resources: {2}",
-        versionInfo, nonce, unpackedResources);
-
-    if (!errors.isEmpty()) {
-      handleResourcesRejected(ResourceType.CDS, unpackedResources, versionInfo, nonce, errors);
-      return;
+  // Not synchronized.
+  private static DecodedResource decodeCluster(int index, Any resource) {
+    // Unpack the Cluster.
+    Cluster cluster;
+    try {
+      cluster = unpackCompatibleType(
+          resource, Cluster.class, ResourceType.CDS.typeUrl(), ResourceType.CDS.typeUrlV2());
+    } catch (InvalidProtocolBufferException e) {
+      return DecodedResource.forError(
+          null, "CDS response Resource index " + index + " - can't decode Cluster: " + e);
     }
+    String clusterName = cluster.getName();
 
-    handleResourcesAccepted(ResourceType.CDS, parsedResources, versionInfo, nonce);
-    // CDS responses represents the state of the world, EDS resources not referenced in CDS
-    // resources should be deleted.
-    for (String resource : edsResourceSubscribers.keySet()) {
-      ResourceSubscriber subscriber = edsResourceSubscribers.get(resource);
-      if (!retainedEdsResources.contains(resource)) {
-        subscriber.onAbsent();
-      }
+    // Process Cluster into CdsUpdate.
+    CdsUpdate cdsUpdate;
+    Set<String> edsResources = new HashSet<>();
+    try {
+      cdsUpdate = parseCluster(cluster, edsResources);
+    } catch (ResourceInvalidException e) {
+      return DecodedResource.forError(clusterName,
+          "CDS response Cluster '" + clusterName + "' validation error: " + e.getMessage());
     }
+    return DecodedResource.forResource(
+        new ParsedResource(clusterName, cdsUpdate, resource, edsResources));
   }
 
   @VisibleForTesting
@@ -1061,6 +1167,17 @@ final class ClientXdsClient extends AbstractXdsClient {
             "Cluster " + cluster.getName() + ": invalid ring_hash_lb_config: " + lbConfig);
       }
       updateBuilder.ringHashLbPolicy(minRingSize, maxRingSize);
+    } else if (enableMaglev && cluster.getLbPolicy() == LbPolicy.MAGLEV) {
+      MaglevLbConfig lbConfig = cluster.getMaglevLbConfig();
+      long tableSize =
+          lbConfig.hasTableSize()
+              ? lbConfig.getTableSize().getValue()
+              : DEFAULT_MAGLEV_LB_POLICY_TABLE_SIZE;
+      if (tableSize > MAX_MAGLEV_LB_POLICY_TABLE_SIZE || !MaglevLoadBalancer.isPrime(tableSize)) {
+        throw new ResourceInvalidException(
+            "Cluster " + cluster.getName() + ": invalid maglev_lb_config: " + lbConfig);
+      }
+      updateBuilder.maglevLbPolicy(tableSize);
     } else if (cluster.getLbPolicy() == LbPolicy.ROUND_ROBIN) {
       updateBuilder.roundRobinLbPolicy();
     } else {
@@ -1186,54 +1303,30 @@ final class ClientXdsClient extends AbstractXdsClient {
         "Cluster " + clusterName + ": unsupported built-in discovery type: " + type);
   }
 
-  @Override
-  protected void handleEdsResponse(String versionInfo, List<Any> resources, String nonce) {
-    Map<String, ParsedResource> parsedResources = new HashMap<>(resources.size());
-    Set<String> unpackedResources = new HashSet<>(resources.size());
-    List<String> errors = new ArrayList<>();
-
-    for (int i = 0; i < resources.size(); i++) {
-      Any resource = resources.get(i);
-
-      // Unpack the ClusterLoadAssignment.
-      ClusterLoadAssignment assignment;
-      try {
-        assignment =
-            unpackCompatibleType(resource, ClusterLoadAssignment.class, ResourceType.EDS.typeUrl(),
-                ResourceType.EDS.typeUrlV2());
-      } catch (InvalidProtocolBufferException e) {
-        errors.add(
-            "EDS response Resource index " + i + " - can't decode ClusterLoadAssignment: " + e);
-        continue;
-      }
-      String clusterName = assignment.getClusterName();
-
-      // Skip information for clusters not requested.
-      // Management server is required to always send newly requested resources, even if they
-      // may have been sent previously (proactively). Thus, client does not need to cache
-      // unrequested resources.
-      if (!edsResourceSubscribers.containsKey(clusterName)) {
-        continue;
-      }
-      unpackedResources.add(clusterName);
-
-      // Process ClusterLoadAssignment into EdsUpdate.
-      EdsUpdate edsUpdate;
-      try {
-        edsUpdate = processClusterLoadAssignment(assignment);
-      } catch (ResourceInvalidException e) {
-        errors.add("EDS response ClusterLoadAssignment '" + clusterName
-            + "' validation error: " + e.getMessage());
-        continue;
-      }
-      parsedResources.put(clusterName, new ParsedResource(edsUpdate, resource));
+  // Not synchronized.
+  private static DecodedResource decodeClusterLoadAssignment(int index, Any resource) {
+    // Unpack the ClusterLoadAssignment.
+    ClusterLoadAssignment assignment;
+    try {
+      assignment =
+          unpackCompatibleType(resource, ClusterLoadAssignment.class, ResourceType.EDS.typeUrl(),
+              ResourceType.EDS.typeUrlV2());
+    } catch (InvalidProtocolBufferException e) {
+      return DecodedResource.forError(null,
+          "EDS response Resource index " + index + " - can't decode ClusterLoadAssignment: " + e);
     }
+    String clusterName = assignment.getClusterName();
 
-    if (!errors.isEmpty()) {
-      handleResourcesRejected(ResourceType.EDS, unpackedResources, versionInfo, nonce, errors);
-    } else {
-      handleResourcesAccepted(ResourceType.EDS, parsedResources, versionInfo, nonce);
+    // Process ClusterLoadAssignment into EdsUpdate.
+    EdsUpdate edsUpdate;
+    try {
+      edsUpdate = processClusterLoadAssignment(assignment);
+    } catch (ResourceInvalidException e) {
+      return DecodedResource.forError(clusterName, "EDS response ClusterLoadAssignment '"
+          + clusterName + "' validation error: " + e.getMessage());
     }
+    return DecodedResource.forResource(new ParsedResource(
+        clusterName, edsUpdate, resource, Collections.<String>emptySet()));
   }
 
   private static EdsUpdate processClusterLoadAssignment(ClusterLoadAssignment assignment)
@@ -1361,6 +1454,18 @@ final class ClientXdsClient extends AbstractXdsClient {
     return numerator;
   }
 
+  @Override
+  protected void handleResourcesRemoved(ResourceType type, List<String> resourceNames) {
+    Map<String, ResourceSubscriber> subscribers = getSubscribedResourcesMap(type);
+    for (String resourceName : resourceNames) {
+      ResourceSubscriber subscriber = subscribers.get(resourceName);
+      if (subscriber != null) {
+        subscriber.stopTimer();  // removal is conclusive
+        subscriber.onAbsent();
+      }
+    }
+  }
+
   @Override
   protected void handleStreamClosed(Status error) {
     cleanUpResourceTimers();
@@ -1400,6 +1505,7 @@ final class ClientXdsClient extends AbstractXdsClient {
       lrsClient.stopLoadReporting();
     }
     cleanUpResourceTimers();
+    SharedResourceHolder.release(GrpcUtil.SHARED_CHANNEL_EXECUTOR, decodingExecutor);
   }
 
   private Map<String, ResourceSubscriber> getSubscribedResourcesMap(ResourceType type) {
@@ -1629,18 +1735,68 @@ final class ClientXdsClient extends AbstractXdsClient {
     ackResponse(type, version, nonce);
 
     long updateTime = timeProvider.currentTimeNanos();
-    for (Map.Entry<String, ResourceSubscriber> entry : getSubscribedResourcesMap(type).entrySet()) {
-      String resourceName = entry.getKey();
-      ResourceSubscriber subscriber = entry.getValue();
-      // Notify the watchers.
-      if (parsedResources.containsKey(resourceName)) {
-        subscriber.onData(parsedResources.get(resourceName), version, updateTime);
-      } else if (type == ResourceType.LDS || type == ResourceType.CDS) {
-        // For State of the World services, notify watchers when their watched resource is missing
-        // from the ADS update.
-        subscriber.onAbsent();
+    Map<String, ResourceSubscriber> subscribers = getSubscribedResourcesMap(type);
+    if (isIncremental()) {
+      // Only the resources in an incremental response have changed, leave the others alone.
+      for (Map.Entry<String, ParsedResource> entry : parsedResources.entrySet()) {
+        ResourceSubscriber subscriber = subscribers.get(entry.getKey());
+        if (subscriber != null) {
+          subscriber.onData(
+              entry.getValue(), getResourceVersion(type, entry.getKey()), updateTime);
+        }
+      }
+    } else {
+      for (Map.Entry<String, ResourceSubscriber> entry : subscribers.entrySet()) {
+        String resourceName = entry.getKey();
+        ResourceSubscriber subscriber = entry.getValue();
+        // Notify the watchers.
+        if (parsedResources.containsKey(resourceName)) {
+          subscriber.onData(parsedResources.get(resourceName), version, updateTime);
+        } else if (type == ResourceType.LDS || type == ResourceType.CDS) {
+          // For State of the World services, notify watchers when their watched resource is
+          // missing from the ADS update.
+          subscriber.onAbsent();
+        }
       }
     }
+
+    // Remember the resources now held by subscribers, and forget those that are not anymore.
+    Map<Any, ParsedResource> accepted = getAcceptedResources(type);
+    for (ParsedResource parsedResource : parsedResources.values()) {
+      accepted.put(parsedResource.getRawResource(), parsedResource);
+    }
+    for (Iterator<ParsedResource> it = accepted.values().iterator(); it.hasNext(); ) {
+      if (!isHeldBySubscriber(subscribers, it.next())) {
+        it.remove();
+      }
+    }
+  }
+
+  private static boolean isHeldBySubscriber(
+      Map<String, ResourceSubscriber> subscribers, ParsedResource parsedResource) {
+    ResourceSubscriber subscriber = subscribers.get(parsedResource.getName());
+    return subscriber != null && subscriber.data == parsedResource.getResourceUpdate();
+  }
+
+  private Map<Any, ParsedResource> getAcceptedResources(ResourceType type) {
+    return acceptedResources.get(type);
+  }
+
+  /**
+   * Returns the number of resources in responses that were decoded and validated.
+   */
+  @VisibleForTesting
+  long getParsedResourceCount() {
+    return parsedResourceCount;
+  }
+
+  /**
+   * Returns the number of resources in responses that were skipped because they did not change
+   * since they were last accepted.
+   */
+  @VisibleForTesting
+  long getUnchangedResourceCount() {
+    return unchangedResourceCount;
   }
 
   private void handleResourcesRejected(
@@ -1664,13 +1820,61 @@ final class ClientXdsClient extends AbstractXdsClient {
     }
   }
 
+  /**
+   * A resource of a response, decoded before the response is handled.
+   */
+  @VisibleForTesting
+  static final class DecodedResource {
+    // Null if the resource could not be unpacked.
+    @Nullable
+    final String name;
+    // Null if the resource is invalid.
+    @Nullable
+    private final ParsedResource parsedResource;
+    @Nullable
+    final String errorDetail;
+    // Whether the resource is equal to a resource accepted before, and was not decoded again.
+    final boolean unchanged;
+
+    private DecodedResource(@Nullable String name, @Nullable ParsedResource parsedResource,
+        @Nullable String errorDetail, boolean unchanged) {
+      this.name = name;
+      this.parsedResource = parsedResource;
+      this.errorDetail = errorDetail;
+      this.unchanged = unchanged;
+    }
+
+    private static DecodedResource forResource(ParsedResource parsedResource) {
+      return new DecodedResource(parsedResource.getName(), parsedResource, null, false);
+    }
+
+    private static DecodedResource forUnchangedResource(ParsedResource parsedResource) {
+      return new DecodedResource(parsedResource.getName(), parsedResource, null, true);
+    }
+
+    private static DecodedResource forError(@Nullable String name, String errorDetail) {
+      return new DecodedResource(name, null, errorDetail, false);
+    }
+  }
+
   private static final class ParsedResource {
+    private final String name;
     private final ResourceUpdate resourceUpdate;
     private final Any rawResource;
+    // Resources of other types this resource refers to, RDS resources for a Listener and EDS
+    // resources for a Cluster.
+    private final Set<String> referencedResources;
 
-    private ParsedResource(ResourceUpdate resourceUpdate, Any rawResource) {
+    private ParsedResource(String name, ResourceUpdate resourceUpdate, Any rawResource,
+        Set<String> referencedResources) {
+      this.name = checkNotNull(name, "name");
       this.resourceUpdate = checkNotNull(resourceUpdate, "resourceUpdate");
       this.rawResource = checkNotNull(rawResource, "rawResource");
+      this.referencedResources = checkNotNull(referencedResources, "referencedResources");
+    }
+
+    private String getName() {
+      return name;
     }
 
     private ResourceUpdate getResourceUpdate() {
@@ -1680,6 +1884,10 @@ final class ClientXdsClient extends AbstractXdsClient {
     private Any getRawResource() {
       return rawResource;
     }
+
+    private Set<String> getReferencedResources() {
+      return referencedResources;
+    }
   }
 
   /**
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Strings;
+import io.grpc.xds.EnvoyServerProtoData.CidrRange;
+import io.grpc.xds.EnvoyServerProtoData.ConnectionSourceType;
+import io.grpc.xds.EnvoyServerProtoData.FilterChain;
+import io.grpc.xds.EnvoyServerProtoData.FilterChainMatch;
+import io.grpc.xds.EnvoyServerProtoData.Listener;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The filter chains of a {@link Listener} compiled for matching connections, following
+ * https://www.envoyproxy.io/docs/envoy/latest/api-v3/config/listener/v3/listener_components.proto#config-listener-v3-filterchainmatch.
+ *
+ * <p>Filter chains matching destination ports never match a connection, and are excluded when
+ * the index is created. Destination and source prefix ranges are kept in binary tries, one per
+ * address family, so that finding the filter chains with the most specific prefix takes one walk
+ * along the address bits. Each node of a destination trie holding filter chains has its own
+ * source tries for the filter chains most specific for the destination. Filter chains matching
+ * server names, transport protocols other than "raw_buffer" or application protocols never match
+ * either, but they are only left out of the source tries, after the most specific destination
+ * prefix is found, so that a connection they are the most specific for is not matched by a less
+ * specific filter chain.
+ */
+@Immutable
+final class FilterChainMatchingIndex {
+  private final Listener listener;
+  private final FilterChain[] filterChains;
+  // Whether each filter chain can match once its destination prefix is the most specific.
+  private final boolean[] matchable;
+  private final ConnectionSourceType[] sourceTypes;
+  // Sorted source ports of each filter chain.
+  private final int[][] sourcePorts;
+  private final PrefixTrieNode destinationIpv4Root;
+  private final PrefixTrieNode destinationIpv6Root;
+
+  private FilterChainMatchingIndex(Listener listener) {
+    this.listener = checkNotNull(listener, "listener");
+    List<FilterChain> chains = listener.getFilterChains();
+    filterChains = chains.toArray(new FilterChain[0]);
+    matchable = new boolean[filterChains.length];
+    sourceTypes = new ConnectionSourceType[filterChains.length];
+    sourcePorts = new int[filterChains.length][];
+    PrefixTrieNode.Builder ipv4Builder = new PrefixTrieNode.Builder();
+    PrefixTrieNode.Builder ipv6Builder = new PrefixTrieNode.Builder();
+    for (int i = 0; i < filterChains.length; i++) {
+      FilterChainMatch filterChainMatch = filterChains[i].getFilterChainMatch();
+      if (filterChainMatch.getDestinationPort() != 0) {
+        continue;
+      }
+      matchable[i] = isMatchable(filterChainMatch);
+      sourceTypes[i] = filterChainMatch.getConnectionSourceType();
+      List<Integer> ports = filterChainMatch.getSourcePorts();
+      sourcePorts[i] = new int[ports.size()];
+      for (int j = 0; j < ports.size(); j++) {
+        sourcePorts[i][j] = ports.get(j);
+      }
+      Arrays.sort(sourcePorts[i]);
+      addPrefixRanges(ipv4Builder, ipv6Builder, filterChainMatch.getPrefixRanges(), i);
+    }
+    destinationIpv4Root = ipv4Builder.build(this);
+    destinationIpv6Root = ipv6Builder.build(this);
+  }
+
+  /**
+   * Creates the index of the filter chains of the listener.
+   */
+  static FilterChainMatchingIndex create(Listener listener) {
+    return new FilterChainMatchingIndex(listener);
+  }
+
+  Listener getListener() {
+    return listener;
+  }
+
+  /**
+   * Returns the filter chain of the listener matching the connection, or {@code null} if none
+   * matches. The default filter chain of the listener is not considered.
+   *
+   * @param localInetAddr dest address of the inbound connection
+   * @param remoteInetAddr source address of the inbound connection
+   * @throws IllegalStateException if more than one filter chain matches
+   */
+  @Nullable
+  FilterChain findMatchingFilterChain(
+      InetSocketAddress localInetAddr, InetSocketAddress remoteInetAddr) {
+    InetAddress destAddress = localInetAddr.getAddress();
+    byte[] destBytes = destAddress.getAddress();
+    PrefixTrieNode destNode = findMostSpecific(
+        destBytes.length == 4 ? destinationIpv4Root : destinationIpv6Root, destBytes, null);
+    if (destNode == null) {
+      return null;
+    }
+    InetAddress sourceAddress = remoteInetAddr.getAddress();
+    boolean sameIpOrLoopback =
+        sourceAddress.isLoopbackAddress()
+            || sourceAddress.isAnyLocalAddress()
+            || sourceAddress.equals(destAddress);
+    boolean external = !sourceAddress.isLoopbackAddress() && !sourceAddress.isAnyLocalAddress();
+    SourceTypeFilter sourceTypeFilter =
+        new SourceTypeFilter(sourceTypes, sameIpOrLoopback, external);
+    byte[] sourceBytes = sourceAddress.getAddress();
+    PrefixTrieNode sourceNode = findMostSpecific(
+        sourceBytes.length == 4 ? destNode.sourceIpv4Root : destNode.sourceIpv6Root,
+        sourceBytes, sourceTypeFilter);
+    if (sourceNode == null) {
+      return null;
+    }
+
+    // Among the filter chains with the most specific source prefix, a match against the source
+    // port is more specific than a match against an empty list of ports.
+    int sourcePort = remoteInetAddr.getPort();
+    int prefixLen = sourceNode.maxPrefixLen(sourceTypeFilter);
+    FilterChain portMatch = null;
+    int portMatches = 0;
+    FilterChain emptyPortsMatch = null;
+    int emptyPortsMatches = 0;
+    for (int i = 0; i < sourceNode.chains.length; i++) {
+      int chain = sourceNode.chains[i];
+      if (sourceNode.prefixLens[i] != prefixLen || !sourceTypeFilter.matches(chain)) {
+        continue;
+      }
+      if (sourcePorts[chain].length == 0) {
+        emptyPortsMatch = filterChains[chain];
+        emptyPortsMatches++;
+      } else if (Arrays.binarySearch(sourcePorts[chain], sourcePort) >= 0) {
+        portMatch = filterChains[chain];
+        portMatches++;
+      }
+    }
+    if (portMatches > 1 || (portMatches == 0 && emptyPortsMatches > 1)) {
+      // close the connection
+      throw new IllegalStateException("Found 2 matching filter-chains");
+    }
+    return portMatches == 1 ? portMatch : emptyPortsMatch;
+  }
+
+  private static boolean isMatchable(FilterChainMatch filterChainMatch) {
+    String transportProtocol = filterChainMatch.getTransportProtocol();
+    return filterChainMatch.getServerNames().isEmpty()
+        && (Strings.isNullOrEmpty(transportProtocol) || "raw_buffer".equals(transportProtocol))
+        && filterChainMatch.getApplicationProtocols().isEmpty();
+  }
+
+  // Adds the prefix ranges of a filter chain to the tries. A filter chain without prefix ranges
+  // matches all addresses with a prefix length of 0.
+  private static void addPrefixRanges(PrefixTrieNode.Builder ipv4Builder,
+      PrefixTrieNode.Builder ipv6Builder, List<CidrRange> prefixRanges, int chain) {
+    if (prefixRanges.isEmpty()) {
+      ipv4Builder.add(new byte[4], 0, chain);
+      ipv6Builder.add(new byte[16], 0, chain);
+      return;
+    }
+    for (CidrRange cidrRange : prefixRanges) {
+      if (cidrRange.getPrefixLen() < 0) {  // never matches
+        continue;
+      }
+      byte[] prefix = cidrRange.getAddressPrefix().getAddress();
+      (prefix.length == 4 ? ipv4Builder : ipv6Builder)
+          .add(prefix, cidrRange.getPrefixLen(), chain);
+    }
+  }
+
+  /**
+   * Returns the deepest node on the path of the address holding filter chains, of the given
+   * source types if a filter is given, or {@code null} if there is none.
+   */
+  @Nullable
+  private static PrefixTrieNode findMostSpecific(
+      PrefixTrieNode root, byte[] address, @Nullable SourceTypeFilter sourceTypeFilter) {
+    PrefixTrieNode mostSpecific = null;
+    PrefixTrieNode node = root;
+    int depth = 0;
+    while (node != null) {
+      if (node.chains.length > 0
+          && (sourceTypeFilter == null || node.maxPrefixLen(sourceTypeFilter) >= 0)) {
+        mostSpecific = node;
+      }
+      if (depth == address.length * 8) {
+        break;
+      }
+      node = bit(address, depth) == 0 ? node.zero : node.one;
+      depth++;
+    }
+    return mostSpecific;
+  }
+
+  private static int bit(byte[] address, int index) {
+    return (address[index >> 3] >> (7 - (index & 7))) & 1;
+  }
+
+  /**
+   * Filters filter chains on the connection source type matched by the source of a connection.
+   */
+  private static final class SourceTypeFilter {
+    private final ConnectionSourceType[] sourceTypes;
+    private final boolean sameIpOrLoopback;
+    private final boolean external;
+
+    SourceTypeFilter(
+        ConnectionSourceType[] sourceTypes, boolean sameIpOrLoopback, boolean external) {
+      this.sourceTypes = sourceTypes;
+      this.sameIpOrLoopback = sameIpOrLoopback;
+      this.external = external;
+    }
+
+    boolean matches(int chain) {
+      ConnectionSourceType sourceType = sourceTypes[chain];
+      if (sourceType == ConnectionSourceType.SAME_IP_OR_LOOPBACK) {
+        return sameIpOrLoopback;
+      } else if (sourceType == ConnectionSourceType.EXTERNAL) {
+        return external;
+      }
+      return true;  // ANY or null
+    }
+  }
+
+  /**
+   * A node of a binary trie of address prefixes. The node at depth n holds the filter chains with
+   * a prefix of length n matching the path to it. Prefixes longer than the address are held at
+   * the deepest level, with their own length.
+   */
+  private static final class PrefixTrieNode {
+    @Nullable
+    private final PrefixTrieNode zero;
+    @Nullable
+    private final PrefixTrieNode one;
+    // Indices of the filter chains held, with their longest prefix length at this node.
+    private final int[] chains;
+    private final int[] prefixLens;
+    // Tries of the source prefixes of the most specific filter chains, for nodes of destination
+    // tries holding filter chains.
+    @Nullable
+    private final PrefixTrieNode sourceIpv4Root;
+    @Nullable
+    private final PrefixTrieNode sourceIpv6Root;
+
+    private PrefixTrieNode(@Nullable PrefixTrieNode zero, @Nullable PrefixTrieNode one,
+        int[] chains, int[] prefixLens, @Nullable PrefixTrieNode sourceIpv4Root,
+        @Nullable PrefixTrieNode sourceIpv6Root) {
+      this.zero = zero;
+      this.one = one;
+      this.chains = chains;
+      this.prefixLens = prefixLens;
+      this.sourceIpv4Root = sourceIpv4Root;
+      this.sourceIpv6Root = sourceIpv6Root;
+    }
+
+    // Returns the longest prefix length of the held filter chains of the source types, or -1.
+    private int maxPrefixLen(SourceTypeFilter sourceTypeFilter) {
+      int maxPrefixLen = -1;
+      for (int i = 0; i < chains.length; i++) {
+        if (prefixLens[i] > maxPrefixLen && sourceTypeFilter.matches(chains[i])) {
+          maxPrefixLen = prefixLens[i];
+        }
+      }
+      return maxPrefixLen;
+    }
+
+    private static final class Builder {
+      private Builder zero;
+      private Builder one;
+      private final Map<Integer, Integer> prefixLens = new LinkedHashMap<>();
+
+      void add(byte[] prefix, int prefixLen, int chain) {
+        Builder node = this;
+        int depth = Math.min(prefixLen, prefix.length * 8);
+        for (int i = 0; i < depth; i++) {
+          if (bit(prefix, i) == 0) {
+            if (node.zero == null) {
+              node.zero = new Builder();
+            }
+            node = node.zero;
+          } else {
+            if (node.one == null) {
+              node.one = new Builder();
+            }
+            node = node.one;
+          }
+        }
+        Integer existing = node.prefixLens.get(chain);
+        if (existing == null || existing < prefixLen) {
+          node.prefixLens.put(chain, prefixLen);
+        }
+      }
+
+      // Builds the trie. For a destination trie, also builds the source tries of its nodes.
+      PrefixTrieNode build(@Nullable FilterChainMatchingIndex index) {
+        PrefixTrieNode zeroNode = zero == null ? null : zero.build(index);
+        PrefixTrieNode oneNode = one == null ? null : one.build(index);
+        int[] chains = new int[prefixLens.size()];
+        int[] lens = new int[prefixLens.size()];
+        int i = 0;
+        int maxPrefixLen = -1;
+        for (Map.Entry<Integer, Integer> entry : prefixLens.entrySet()) {
+          chains[i] = entry.getKey();
+          lens[i] = entry.getValue();
+          maxPrefixLen = Math.max(maxPrefixLen, lens[i]);
+          i++;
+        }
+        PrefixTrieNode sourceIpv4Root = null;
+        PrefixTrieNode sourceIpv6Root = null;
+        if (index != null && chains.length > 0) {
+          Builder ipv4Builder = new Builder();
+          Builder ipv6Builder = new Builder();
+          List<Integer> mostSpecific = new ArrayList<>();
+          for (int j = 0; j < chains.length; j++) {
+            if (lens[j] == maxPrefixLen && index.matchable[chains[j]]) {
+              mostSpecific.add(chains[j]);
+            }
+          }
+          for (int chain : mostSpecific) {
+            addPrefixRanges(ipv4Builder, ipv6Builder,
+                index.filterChains[chain].getFilterChainMatch().getSourcePrefixRanges(), chain);
+          }
+          sourceIpv4Root = ipv4Builder.build(null);
+          sourceIpv6Root = ipv6Builder.build(null);
+        }
+        return new PrefixTrieNode(zeroNode, oneNode, chains, lens, sourceIpv4Root, sourceIpv6Root);
+      }
+    }
+  }
+}
@@ -23,6 +23,8 @@ import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
 import com.google.common.collect.Sets;
 import io.grpc.Status;
+import io.grpc.internal.LongCounter;
+import io.grpc.internal.LongCounterFactory;
 import io.grpc.xds.Stats.ClusterStats;
 import io.grpc.xds.Stats.DroppedRequests;
 import io.grpc.xds.Stats.UpstreamLocalityStats;
@@ -36,7 +38,6 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -241,8 +242,9 @@ final class LoadStatsManager2 {
     private final String clusterName;
     @Nullable
     private final String edsServiceName;
-    private final AtomicLong uncategorizedDrops = new AtomicLong();
-    private final ConcurrentMap<String, AtomicLong> categorizedDrops = new ConcurrentHashMap<>();
+    private final LongCounter uncategorizedDrops = LongCounterFactory.create();
+    private final ConcurrentMap<String, LongCounter> categorizedDrops =
+        new ConcurrentHashMap<>();
     private final Stopwatch stopwatch;
 
     private ClusterDropStats(
@@ -257,19 +259,22 @@ final class LoadStatsManager2 {
      * Records a dropped request with the specified category.
      */
     void recordDroppedRequest(String category) {
-      // There is a race between this method and snapshot(), causing one drop recorded but may not
-      // be included in any snapshot. This is acceptable and the race window is extremely small.
-      AtomicLong counter = categorizedDrops.putIfAbsent(category, new AtomicLong(1L));
-      if (counter != null) {
-        counter.getAndIncrement();
+      LongCounter counter = categorizedDrops.get(category);
+      if (counter == null) {
+        counter = LongCounterFactory.create();
+        LongCounter existing = categorizedDrops.putIfAbsent(category, counter);
+        if (existing != null) {
+          counter = existing;
+        }
       }
+      counter.add(1);
     }
 
     /**
      * Records a dropped request without category.
      */
     void recordDroppedRequest() {
-      uncategorizedDrops.getAndIncrement();
+      uncategorizedDrops.add(1);
     }
 
     /**
@@ -284,13 +289,17 @@ final class LoadStatsManager2 {
 
     private ClusterDropStatsSnapshot snapshot() {
       Map<String, Long> drops = new HashMap<>();
-      for (Map.Entry<String, AtomicLong> entry : categorizedDrops.entrySet()) {
-        drops.put(entry.getKey(), entry.getValue().get());
+      for (Map.Entry<String, LongCounter> entry : categorizedDrops.entrySet()) {
+        // Categories are kept across snapshots, so that no drop is lost, but only reported
+        // with drops since the previous snapshot.
+        long count = entry.getValue().sumThenReset();
+        if (count != 0L) {
+          drops.put(entry.getKey(), count);
+        }
       }
-      categorizedDrops.clear();
       long duration = stopwatch.elapsed(TimeUnit.NANOSECONDS);
       stopwatch.reset().start();
-      return new ClusterDropStatsSnapshot(drops, uncategorizedDrops.getAndSet(0), duration);
+      return new ClusterDropStatsSnapshot(drops, uncategorizedDrops.sumThenReset(), duration);
     }
   }
 
@@ -318,10 +327,11 @@ final class LoadStatsManager2 {
     private final String edsServiceName;
     private final Locality locality;
     private final Stopwatch stopwatch;
-    private final AtomicLong callsInProgress = new AtomicLong();
-    private final AtomicLong callsSucceeded = new AtomicLong();
-    private final AtomicLong callsFailed = new AtomicLong();
-    private final AtomicLong callsIssued = new AtomicLong();
+    // Striped, as calls to the same locality are recorded concurrently by many threads.
+    private final LongCounter callsInProgress = LongCounterFactory.create();
+    private final LongCounter callsSucceeded = LongCounterFactory.create();
+    private final LongCounter callsFailed = LongCounterFactory.create();
+    private final LongCounter callsIssued = LongCounterFactory.create();
 
     private ClusterLocalityStats(
         String clusterName, @Nullable String edsServiceName, Locality locality,
@@ -337,19 +347,19 @@ final class LoadStatsManager2 {
      * Records a request being issued.
      */
     void recordCallStarted() {
-      callsIssued.getAndIncrement();
-      callsInProgress.getAndIncrement();
+      callsIssued.add(1);
+      callsInProgress.add(1);
     }
 
     /**
      * Records a request finished with the given status.
      */
     void recordCallFinished(Status status) {
-      callsInProgress.getAndDecrement();
+      callsInProgress.add(-1);
       if (status.isOk()) {
-        callsSucceeded.getAndIncrement();
+        callsSucceeded.add(1);
       } else {
-        callsFailed.getAndIncrement();
+        callsFailed.add(1);
       }
     }
 
@@ -367,8 +377,8 @@ final class LoadStatsManager2 {
     private ClusterLocalityStatsSnapshot snapshot() {
       long duration = stopwatch.elapsed(TimeUnit.NANOSECONDS);
       stopwatch.reset().start();
-      return new ClusterLocalityStatsSnapshot(callsSucceeded.getAndSet(0), callsInProgress.get(),
-          callsFailed.getAndSet(0), callsIssued.getAndSet(0), duration);
+      return new ClusterLocalityStatsSnapshot(callsSucceeded.sumThenReset(),
+          callsInProgress.value(), callsFailed.sumThenReset(), callsIssued.sumThenReset(), duration);
     }
   }
 
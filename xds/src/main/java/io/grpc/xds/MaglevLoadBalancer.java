@@ -0,0 +1,531 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static io.grpc.ConnectivityState.CONNECTING;
+import static io.grpc.ConnectivityState.IDLE;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.SHUTDOWN;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Sets;
+import io.grpc.Attributes;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.InternalLogId;
+import io.grpc.LoadBalancer;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import io.grpc.xds.XdsLogger.XdsLogLevel;
+import io.grpc.xds.XdsSubchannelPickers.ErrorPicker;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link LoadBalancer} that provides consistent hashing based load balancing to upstream hosts
+ * with Maglev hashing. Each host is assigned entries of a fixed-size lookup table (of prime size)
+ * by walking its own permutation of the table positions, which is derived from the hash of its
+ * addresses, with hosts taking turns in proportion to their weights. Each request is routed to
+ * the host owning the table entry at the request's hash modulo the table size.
+ *
+ * <p>Compared to ring hash, picks are a single array lookup, the table takes 4 bytes per entry
+ * and hosts get a share of entries very close to their weight even for small tables. The
+ * addition or removal of one host from a set of N hosts affects slightly more than 1/N requests.
+ */
+final class MaglevLoadBalancer extends LoadBalancer {
+  private static final Attributes.Key<Ref<ConnectivityStateInfo>> STATE_INFO =
+      Attributes.Key.create("state-info");
+  private static final Status RPC_HASH_NOT_FOUND =
+      Status.INTERNAL.withDescription("RPC hash not found");
+  // Same seeds as Envoy's Maglev implementation.
+  private static final XxHash64 offsetHashFunc = XxHash64.INSTANCE;
+  private static final XxHash64 skipHashFunc = new XxHash64(1);
+
+  private final XdsLogger logger;
+  private final SynchronizationContext syncContext;
+  private final Map<EquivalentAddressGroup, Subchannel> subchannels = new HashMap<>();
+  private final Helper helper;
+  // Permutations of the current addresses, kept across address updates so that only new
+  // addresses are hashed.
+  private final Map<EquivalentAddressGroup, Permutation> permutations = new HashMap<>();
+
+  private Map<EquivalentAddressGroup, Long> serverWeights = Collections.emptyMap();
+  private Table table;
+  private ConnectivityState currentState;
+
+  MaglevLoadBalancer(Helper helper) {
+    this.helper = checkNotNull(helper, "helper");
+    syncContext = checkNotNull(helper.getSynchronizationContext(), "syncContext");
+    logger = XdsLogger.withLogId(InternalLogId.allocate("maglev_lb", helper.getAuthority()));
+    logger.log(XdsLogLevel.INFO, "Created");
+  }
+
+  @Override
+  public void handleResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+    logger.log(XdsLogLevel.DEBUG, "Received resolution result: {0}", resolvedAddresses);
+    List<EquivalentAddressGroup> addrList = resolvedAddresses.getAddresses();
+    if (addrList.isEmpty()) {
+      handleNameResolutionError(Status.UNAVAILABLE.withDescription("No server addresses found"));
+      return;
+    }
+    Map<EquivalentAddressGroup, EquivalentAddressGroup> latestAddrs = stripAttrs(addrList);
+    Set<EquivalentAddressGroup> removedAddrs =
+        Sets.newHashSet(Sets.difference(subchannels.keySet(), latestAddrs.keySet()));
+
+    MaglevConfig config = (MaglevConfig) resolvedAddresses.getLoadBalancingPolicyConfig();
+    Map<EquivalentAddressGroup, Long> latestWeights = new HashMap<>();
+    for (EquivalentAddressGroup eag : addrList) {
+      Long weight = eag.getAttributes().get(InternalXdsAttributes.ATTR_SERVER_WEIGHT);
+      // Support two ways of server weighing: either multiple instances of the same address
+      // or each address contains a per-address weight attribute. If a weight is not provided,
+      // each occurrence of the address will be counted a weight value of one.
+      if (weight == null) {
+        weight = 1L;
+      }
+      EquivalentAddressGroup addrKey = stripAttrs(eag);
+      if (latestWeights.containsKey(addrKey)) {
+        latestWeights.put(addrKey, latestWeights.get(addrKey) + weight);
+      } else {
+        latestWeights.put(addrKey, weight);
+      }
+
+      Subchannel existingSubchannel = subchannels.get(addrKey);
+      if (existingSubchannel != null) {
+        existingSubchannel.updateAddresses(Collections.singletonList(eag));
+        continue;
+      }
+      Attributes attr = Attributes.newBuilder().set(
+          STATE_INFO, new Ref<>(ConnectivityStateInfo.forNonError(IDLE))).build();
+      final Subchannel subchannel = helper.createSubchannel(
+          CreateSubchannelArgs.newBuilder().setAddresses(eag).setAttributes(attr).build());
+      subchannel.start(new SubchannelStateListener() {
+        @Override
+        public void onSubchannelState(ConnectivityStateInfo newState) {
+          processSubchannelState(subchannel, newState);
+        }
+      });
+      subchannels.put(addrKey, subchannel);
+    }
+    // Updates that only change attributes other than weights keep the table.
+    if (table == null || table.entries.length != config.tableSize
+        || !latestWeights.equals(serverWeights)) {
+      permutations.keySet().retainAll(latestWeights.keySet());
+      table = buildTable(latestWeights, (int) config.tableSize, permutations);
+      serverWeights = latestWeights;
+    }
+
+    // Shut down subchannels for delisted addresses.
+    List<Subchannel> removedSubchannels = new ArrayList<>();
+    for (EquivalentAddressGroup addr : removedAddrs) {
+      removedSubchannels.add(subchannels.remove(addr));
+    }
+
+    // Update the picker before shutting down the subchannels, to reduce the chance of race
+    // between picking a subchannel and shutting it down.
+    updateBalancingState();
+    for (Subchannel subchann : removedSubchannels) {
+      shutdownSubchannel(subchann);
+    }
+  }
+
+  /**
+   * Builds the lookup table of {@code serverWeights}, reusing and adding to the cached
+   * {@code permutations} of the addresses.
+   *
+   * <p>Hosts are visited in the order of their hash keys, so that every client receiving the same
+   * hosts builds the same table. In each round, each host whose weight allows it takes the next
+   * free position of its permutation, until the table is full. A host with the maximum weight
+   * takes a position in every round, a host with a third of it in every third round.
+   */
+  @VisibleForTesting
+  static Table buildTable(Map<EquivalentAddressGroup, Long> serverWeights, int tableSize,
+      Map<EquivalentAddressGroup, Permutation> permutations) {
+    int count = serverWeights.size();
+    Permutation[] hosts = new Permutation[count];
+    int i = 0;
+    for (EquivalentAddressGroup addrKey : serverWeights.keySet()) {
+      Permutation permutation = permutations.get(addrKey);
+      if (permutation == null) {
+        permutation = new Permutation(addrKey);
+        permutations.put(addrKey, permutation);
+      }
+      hosts[i++] = permutation;
+    }
+    Arrays.sort(hosts, new Comparator<Permutation>() {
+      @Override
+      public int compare(Permutation a, Permutation b) {
+        return a.key.compareTo(b.key);
+      }
+    });
+
+    EquivalentAddressGroup[] addrKeys = new EquivalentAddressGroup[count];
+    double[] weights = new double[count];
+    double[] targetWeights = new double[count];
+    int[] positions = new int[count];
+    int[] skips = new int[count];
+    double maxWeight = 0;
+    for (i = 0; i < count; i++) {
+      addrKeys[i] = hosts[i].addrKey;
+      weights[i] = serverWeights.get(addrKeys[i]);
+      maxWeight = Math.max(maxWeight, weights[i]);
+      positions[i] = remainderUnsigned(hosts[i].offsetHash, tableSize);
+      skips[i] = remainderUnsigned(hosts[i].skipHash, tableSize - 1) + 1;
+    }
+    int[] entries = new int[tableSize];
+    Arrays.fill(entries, -1);
+    int filled = 0;
+    for (long round = 1; filled < tableSize; round++) {
+      for (i = 0; i < count && filled < tableSize; i++) {
+        if (round * weights[i] < targetWeights[i]) {
+          continue;
+        }
+        targetWeights[i] += maxWeight;
+        // The skip is coprime with the prime table size, so the permutation visits every
+        // position and there is always a free one.
+        int position = positions[i];
+        while (entries[position] != -1) {
+          position = nextPosition(position, skips[i], tableSize);
+        }
+        entries[position] = i;
+        positions[i] = nextPosition(position, skips[i], tableSize);
+        filled++;
+      }
+    }
+    return new Table(entries, addrKeys);
+  }
+
+  private static int nextPosition(int position, int skip, int tableSize) {
+    position += skip;
+    if (position >= tableSize) {
+      position -= tableSize;
+    }
+    return position;
+  }
+
+  /**
+   * Returns the remainder of dividing {@code dividend}, as an unsigned value, by the positive
+   * {@code divisor}.
+   */
+  private static int remainderUnsigned(long dividend, int divisor) {
+    if (dividend >= 0) {
+      return (int) (dividend % divisor);
+    }
+    // dividend = 2^63 + (dividend & Long.MAX_VALUE), and 2^63 = Long.MAX_VALUE + 1.
+    return (int) (((dividend & Long.MAX_VALUE) % divisor + Long.MAX_VALUE % divisor + 1)
+        % divisor);
+  }
+
+  static boolean isPrime(long n) {
+    if (n < 2) {
+      return false;
+    }
+    if (n % 2 == 0) {
+      return n == 2;
+    }
+    for (long d = 3; d * d <= n; d += 2) {
+      if (n % d == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void handleNameResolutionError(Status error) {
+    if (currentState != READY) {
+      helper.updateBalancingState(TRANSIENT_FAILURE, new ErrorPicker(error));
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    logger.log(XdsLogLevel.INFO, "Shutdown");
+    for (Subchannel subchannel : subchannels.values()) {
+      shutdownSubchannel(subchannel);
+    }
+    subchannels.clear();
+  }
+
+  /**
+   * Updates the overall balancing state by aggregating the connectivity states of all subchannels,
+   * with the same rules as {@link RingHashLoadBalancer}.
+   */
+  private void updateBalancingState() {
+    checkState(!subchannels.isEmpty(), "no subchannel has been created");
+    int failureCount = 0;
+    boolean hasConnecting = false;
+    Subchannel idleSubchannel = null;
+    ConnectivityState overallState = null;
+    for (Subchannel subchannel : subchannels.values()) {
+      ConnectivityState state = getSubchannelStateInfoRef(subchannel).value.getState();
+      if (state == READY) {
+        overallState = READY;
+        break;
+      }
+      if (state == TRANSIENT_FAILURE) {
+        failureCount++;
+      } else if (state == CONNECTING) {
+        hasConnecting = true;
+      } else if (state == IDLE) {
+        if (idleSubchannel == null) {
+          idleSubchannel = subchannel;
+        }
+      }
+    }
+    if (overallState == null) {
+      if (failureCount >= 2) {
+        // This load balancer may not get any pick requests from the upstream if it's reporting
+        // TRANSIENT_FAILURE. It needs to recover by itself by attempting to connect to at least
+        // one subchannel that has not failed at any given time.
+        if (!hasConnecting && idleSubchannel != null) {
+          idleSubchannel.requestConnection();
+        }
+        overallState = TRANSIENT_FAILURE;
+      } else if (hasConnecting) {
+        overallState = CONNECTING;
+      } else if (idleSubchannel != null) {
+        overallState = IDLE;
+      } else {
+        overallState = TRANSIENT_FAILURE;
+      }
+    }
+    MaglevPicker picker = new MaglevPicker(syncContext, table, subchannels);
+    helper.updateBalancingState(overallState, picker);
+    currentState = overallState;
+  }
+
+  private void processSubchannelState(Subchannel subchannel, ConnectivityStateInfo stateInfo) {
+    if (subchannels.get(stripAttrs(subchannel.getAddresses())) != subchannel) {
+      return;
+    }
+    if (stateInfo.getState() == TRANSIENT_FAILURE || stateInfo.getState() == IDLE) {
+      helper.refreshNameResolution();
+    }
+    Ref<ConnectivityStateInfo> subchannelStateRef = getSubchannelStateInfoRef(subchannel);
+
+    // Don't proactively reconnect if the subchannel enters IDLE, even if previously was connected.
+    // If the subchannel was previously in TRANSIENT_FAILURE, it is considered to stay in
+    // TRANSIENT_FAILURE until it becomes READY.
+    if (subchannelStateRef.value.getState() == TRANSIENT_FAILURE) {
+      if (stateInfo.getState() == CONNECTING || stateInfo.getState() == IDLE) {
+        return;
+      }
+    }
+    subchannelStateRef.value = stateInfo;
+    updateBalancingState();
+  }
+
+  private static void shutdownSubchannel(Subchannel subchannel) {
+    subchannel.shutdown();
+    getSubchannelStateInfoRef(subchannel).value = ConnectivityStateInfo.forNonError(SHUTDOWN);
+  }
+
+  private static Map<EquivalentAddressGroup, EquivalentAddressGroup> stripAttrs(
+      List<EquivalentAddressGroup> groupList) {
+    Map<EquivalentAddressGroup, EquivalentAddressGroup> addrs =
+        new HashMap<>(groupList.size() * 2);
+    for (EquivalentAddressGroup group : groupList) {
+      addrs.put(stripAttrs(group), group);
+    }
+    return addrs;
+  }
+
+  private static EquivalentAddressGroup stripAttrs(EquivalentAddressGroup eag) {
+    return new EquivalentAddressGroup(eag.getAddresses());
+  }
+
+  private static Ref<ConnectivityStateInfo> getSubchannelStateInfoRef(
+      Subchannel subchannel) {
+    return checkNotNull(subchannel.getAttributes().get(STATE_INFO), "STATE_INFO");
+  }
+
+  private static final class MaglevPicker extends SubchannelPicker {
+    private final SynchronizationContext syncContext;
+    private final Table table;
+    // Avoid synchronization between pickSubchannel and subchannel's connectivity state change,
+    // freeze picker's view of subchannel's connectivity state. Indexed the same as table.addrKeys.
+    private final SubchannelView[] pickableSubchannels;  // read-only
+
+    private MaglevPicker(
+        SynchronizationContext syncContext, Table table,
+        Map<EquivalentAddressGroup, Subchannel> subchannels) {
+      this.syncContext = syncContext;
+      this.table = table;
+      pickableSubchannels = new SubchannelView[table.addrKeys.length];
+      for (int i = 0; i < table.addrKeys.length; i++) {
+        Subchannel subchannel = subchannels.get(table.addrKeys[i]);
+        ConnectivityStateInfo stateInfo = subchannel.getAttributes().get(STATE_INFO).value;
+        pickableSubchannels[i] = new SubchannelView(subchannel, stateInfo);
+      }
+    }
+
+    @Override
+    public PickResult pickSubchannel(PickSubchannelArgs args) {
+      Long requestHash = args.getCallOptions().getOption(XdsNameResolver.RPC_HASH_KEY);
+      if (requestHash == null) {
+        return PickResult.withError(RPC_HASH_NOT_FOUND);
+      }
+      int[] entries = table.entries;
+      int start = table.indexOf(requestHash);
+
+      // Same fallback as ring hash, walking the table from the entry of the RPC's hash: use the
+      // first READY subchannel, queue the pick if one of the first two subchannels is pending,
+      // and trigger connection for the first IDLE subchannel if none before it is CONNECTING.
+      boolean hasPending = false;  // true if having subchannel(s) in CONNECTING or IDLE
+      boolean canBuffer = true;  // true if RPCs can be buffered with a pending subchannel
+      Subchannel firstSubchannel = null;
+      Subchannel secondSubchannel = null;
+      for (int i = 0; i < entries.length; i++) {
+        int index = (start + i) % entries.length;
+        SubchannelView subchannel = pickableSubchannels[entries[index]];
+        if (subchannel.stateInfo.getState() == READY) {
+          return PickResult.withSubchannel(subchannel.subchannel);
+        }
+        if (firstSubchannel == null) {
+          firstSubchannel = subchannel.subchannel;
+        } else if (subchannel.subchannel != firstSubchannel) {
+          if (secondSubchannel == null) {
+            secondSubchannel = subchannel.subchannel;
+          } else if (subchannel.subchannel != secondSubchannel) {
+            canBuffer = false;
+          }
+        }
+        if (subchannel.stateInfo.getState() == TRANSIENT_FAILURE) {
+          continue;
+        }
+        if (!hasPending) {  // first non-failing subchannel
+          if (subchannel.stateInfo.getState() == IDLE) {
+            final Subchannel finalSubchannel = subchannel.subchannel;
+            syncContext.execute(new Runnable() {
+              @Override
+              public void run() {
+                finalSubchannel.requestConnection();
+              }
+            });
+          }
+          if (canBuffer) {  // done if this is the first or second two subchannel
+            return PickResult.withNoResult();  // queue the pick and re-process later
+          }
+          hasPending = true;
+        }
+      }
+      // Fail the pick with error status of the original subchannel hit by hash.
+      SubchannelView originalSubchannel = pickableSubchannels[entries[start]];
+      return PickResult.withError(originalSubchannel.stateInfo.getStatus());
+    }
+  }
+
+  /**
+   * An unmodifiable view of a subchannel with state not subject to its real connectivity
+   * state changes.
+   */
+  private static final class SubchannelView {
+    private final Subchannel subchannel;
+    private final ConnectivityStateInfo stateInfo;
+
+    private SubchannelView(Subchannel subchannel, ConnectivityStateInfo stateInfo) {
+      this.subchannel = subchannel;
+      this.stateInfo = stateInfo;
+    }
+  }
+
+  /**
+   * The permutation of table positions preferred by an address, given by the offset of its first
+   * position and the skip to the next one, which are the hash of its addresses modulo the table
+   * size and one plus the hash with another seed modulo the table size minus one.
+   */
+  @VisibleForTesting
+  static final class Permutation {
+    final EquivalentAddressGroup addrKey;
+    // Same hash key as ring hash.
+    final String key;
+    final long offsetHash;
+    final long skipHash;
+
+    Permutation(EquivalentAddressGroup addrKey) {
+      this.addrKey = addrKey;
+      key = addrKey.getAddresses().toString();
+      offsetHash = offsetHashFunc.hashAsciiString(key);
+      skipHash = skipHashFunc.hashAsciiString(key);
+    }
+  }
+
+  /**
+   * The lookup table, holding for each entry the index into addrKeys of the address owning it.
+   * The table is immutable and shared by all pickers created until the next address update.
+   */
+  @VisibleForTesting
+  static final class Table {
+    final int[] entries;
+    final EquivalentAddressGroup[] addrKeys;
+
+    private Table(int[] entries, EquivalentAddressGroup[] addrKeys) {
+      this.entries = entries;
+      this.addrKeys = addrKeys;
+    }
+
+    /**
+     * Returns the index of the entry for {@code hash}.
+     */
+    int indexOf(long hash) {
+      return remainderUnsigned(hash, entries.length);
+    }
+  }
+
+  /**
+   * A lighter weight Reference than AtomicReference.
+   */
+  private static final class Ref<T> {
+    T value;
+
+    Ref(T value) {
+      this.value = value;
+    }
+  }
+
+  /**
+   * Configures the size of the lookup table, which must be a prime number. The larger the table
+   * is the less requests move between hosts when the set of hosts changes.
+   */
+  static final class MaglevConfig {
+    final long tableSize;
+
+    MaglevConfig(long tableSize) {
+      checkArgument(isPrime(tableSize), "tableSize is not a prime number");
+      this.tableSize = tableSize;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("tableSize", tableSize)
+          .toString();
+    }
+  }
+}
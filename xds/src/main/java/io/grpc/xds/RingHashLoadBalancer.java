@@ -25,6 +25,7 @@ import static io.grpc.ConnectivityState.READY;
 import static io.grpc.ConnectivityState.SHUTDOWN;
 import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.Sets;
 import io.grpc.Attributes;
@@ -38,6 +39,7 @@ import io.grpc.SynchronizationContext;
 import io.grpc.xds.XdsLogger.XdsLogLevel;
 import io.grpc.xds.XdsSubchannelPickers.ErrorPicker;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -64,7 +66,7 @@ final class RingHashLoadBalancer extends LoadBalancer {
   private final Map<EquivalentAddressGroup, Subchannel> subchannels = new HashMap<>();
   private final Helper helper;
 
-  private List<RingEntry> ring;
+  private Ring ring;
   private ConnectivityState currentState;
 
   RingHashLoadBalancer(Helper helper) {
@@ -149,30 +151,132 @@ final class RingHashLoadBalancer extends LoadBalancer {
     }
   }
 
-  private static List<RingEntry> buildRing(
+  @VisibleForTesting
+  static Ring buildRing(
       Map<EquivalentAddressGroup, Long> serverWeights, long totalWeight, double scale) {
-    List<RingEntry> ring = new ArrayList<>();
+    // The ring ends up with ceil(scale) entries, give or take floating point errors.
+    int capacity = (int) Math.ceil(scale) + 1;
+    long[] hashes = new long[capacity];
+    int[] addrIndices = new int[capacity];
+    EquivalentAddressGroup[] addrKeys = new EquivalentAddressGroup[serverWeights.size()];
+    int size = 0;
+    int addrIndex = 0;
     double currentHashes = 0.0;
     double targetHashes = 0.0;
+    byte[] buffer = new byte[64];
     for (Map.Entry<EquivalentAddressGroup, Long> entry : serverWeights.entrySet()) {
       EquivalentAddressGroup addrKey = entry.getKey();
+      addrKeys[addrIndex] = addrKey;
       double normalizedWeight = (double) entry.getValue() / totalWeight;
+      // Each ring entry hashes "<addresses>_<i>" as ASCII. The prefix is encoded once and the
+      // decimal digits of i are written after it, rather than building a string per entry.
       // TODO(chengyuanzhang): is using the list of socket address correct?
-      StringBuilder sb = new StringBuilder(addrKey.getAddresses().toString());
-      sb.append('_');
+      String prefix = addrKey.getAddresses().toString() + '_';
+      if (buffer.length < prefix.length() + 20) {
+        buffer = new byte[prefix.length() + 20];
+      }
+      for (int j = 0; j < prefix.length(); j++) {
+        buffer[j] = (byte) prefix.charAt(j);
+      }
       targetHashes += scale * normalizedWeight;
       long i = 0L;
       while (currentHashes < targetHashes) {
-        sb.append(i);
-        long hash = hashFunc.hashAsciiString(sb.toString());
-        ring.add(new RingEntry(hash, addrKey));
+        int length = writeDecimal(i, buffer, prefix.length());
+        if (size == hashes.length) {
+          hashes = Arrays.copyOf(hashes, size * 2);
+          addrIndices = Arrays.copyOf(addrIndices, size * 2);
+        }
+        hashes[size] = hashFunc.hashBytes(buffer, 0, length);
+        addrIndices[size] = addrIndex;
+        size++;
         i++;
         currentHashes++;
-        sb.setLength(sb.length() - 1);
       }
+      addrIndex++;
+    }
+    if (size != hashes.length) {
+      hashes = Arrays.copyOf(hashes, size);
+      addrIndices = Arrays.copyOf(addrIndices, size);
+    }
+    sort(hashes, addrIndices, 0, size - 1);
+    return new Ring(hashes, addrIndices, addrKeys);
+  }
+
+  /**
+   * Writes the decimal representation of the non-negative {@code value} to {@code buffer} at
+   * {@code offset}, returning the offset past the last digit.
+   */
+  private static int writeDecimal(long value, byte[] buffer, int offset) {
+    int digits = 1;
+    for (long v = value / 10; v != 0; v /= 10) {
+      digits++;
+    }
+    int end = offset + digits;
+    for (int pos = end - 1; pos >= offset; pos--) {
+      buffer[pos] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    return end;
+  }
+
+  /**
+   * Sorts {@code hashes[low..high]} in ascending order, applying the same permutation to
+   * {@code addrIndices}. Ring hashes are uniformly distributed, so a plain quicksort performs
+   * well.
+   */
+  private static void sort(long[] hashes, int[] addrIndices, int low, int high) {
+    while (high - low > 16) {
+      long pivot = medianOfThree(hashes[low], hashes[(low + high) >>> 1], hashes[high]);
+      int i = low;
+      int j = high;
+      while (i <= j) {
+        while (hashes[i] < pivot) {
+          i++;
+        }
+        while (hashes[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(hashes, addrIndices, i++, j--);
+        }
+      }
+      // Recurse into the smaller part to bound the stack depth.
+      if (j - low < high - i) {
+        sort(hashes, addrIndices, low, j);
+        low = i;
+      } else {
+        sort(hashes, addrIndices, i, high);
+        high = j;
+      }
+    }
+    for (int i = low + 1; i <= high; i++) {
+      long hash = hashes[i];
+      int addrIndex = addrIndices[i];
+      int j = i - 1;
+      while (j >= low && hashes[j] > hash) {
+        hashes[j + 1] = hashes[j];
+        addrIndices[j + 1] = addrIndices[j];
+        j--;
+      }
+      hashes[j + 1] = hash;
+      addrIndices[j + 1] = addrIndex;
     }
-    Collections.sort(ring);
-    return Collections.unmodifiableList(ring);
+  }
+
+  private static long medianOfThree(long a, long b, long c) {
+    if (a < b) {
+      return b < c ? b : (a < c ? c : a);
+    }
+    return a < c ? a : (b < c ? c : b);
+  }
+
+  private static void swap(long[] hashes, int[] addrIndices, int i, int j) {
+    long hash = hashes[i];
+    hashes[i] = hashes[j];
+    hashes[j] = hash;
+    int addrIndex = addrIndices[i];
+    addrIndices[i] = addrIndices[j];
+    addrIndices[j] = addrIndex;
   }
 
   @Override
@@ -301,23 +405,21 @@ final class RingHashLoadBalancer extends LoadBalancer {
 
   private static final class RingHashPicker extends SubchannelPicker {
     private final SynchronizationContext syncContext;
-    private final List<RingEntry> ring;
+    private final Ring ring;
     // Avoid synchronization between pickSubchannel and subchannel's connectivity state change,
-    // freeze picker's view of subchannel's connectivity state.
-    // TODO(chengyuanzhang): can be more performance-friendly with
-    //  IdentityHashMap<Subchannel, ConnectivityStateInfo> and RingEntry contains Subchannel.
-    private final Map<EquivalentAddressGroup, SubchannelView> pickableSubchannels;  // read-only
+    // freeze picker's view of subchannel's connectivity state. Indexed the same as ring.addrKeys.
+    private final SubchannelView[] pickableSubchannels;  // read-only
 
     private RingHashPicker(
-        SynchronizationContext syncContext, List<RingEntry> ring,
+        SynchronizationContext syncContext, Ring ring,
         Map<EquivalentAddressGroup, Subchannel> subchannels) {
       this.syncContext = syncContext;
       this.ring = ring;
-      pickableSubchannels = new HashMap<>(subchannels.size());
-      for (Map.Entry<EquivalentAddressGroup, Subchannel> entry : subchannels.entrySet()) {
-        Subchannel subchannel = entry.getValue();
+      pickableSubchannels = new SubchannelView[ring.addrKeys.length];
+      for (int i = 0; i < ring.addrKeys.length; i++) {
+        Subchannel subchannel = subchannels.get(ring.addrKeys[i]);
         ConnectivityStateInfo stateInfo = subchannel.getAttributes().get(STATE_INFO).value;
-        pickableSubchannels.put(entry.getKey(), new SubchannelView(subchannel, stateInfo));
+        pickableSubchannels[i] = new SubchannelView(subchannel, stateInfo);
       }
     }
 
@@ -329,30 +431,8 @@ final class RingHashLoadBalancer extends LoadBalancer {
       }
 
       // Find the ring entry with hash next to (clockwise) the RPC's hash.
-      int low = 0;
-      int high = ring.size();
-      int mid;
-      while (true) {
-        mid = (low + high) / 2;
-        if (mid == ring.size()) {
-          mid = 0;
-          break;
-        }
-        long midVal = ring.get(mid).hash;
-        long midValL = mid == 0 ? 0 : ring.get(mid - 1).hash;
-        if (requestHash <= midVal && requestHash > midValL) {
-          break;
-        }
-        if (midVal < requestHash) {
-          low = mid + 1;
-        } else {
-          high =  mid - 1;
-        }
-        if (low > high) {
-          mid = 0;
-          break;
-        }
-      }
+      long[] hashes = ring.hashes;
+      int mid = ring.indexOf(requestHash);
 
       // Try finding a READY subchannel. Starting from the ring entry next to the RPC's hash.
       // If the one of the first two subchannels is not in TRANSIENT_FAILURE, return result
@@ -363,10 +443,9 @@ final class RingHashLoadBalancer extends LoadBalancer {
       boolean canBuffer = true;  // true if RPCs can be buffered with a pending subchannel
       Subchannel firstSubchannel = null;
       Subchannel secondSubchannel = null;
-      for (int i = 0; i < ring.size(); i++) {
-        int index = (mid + i) % ring.size();
-        EquivalentAddressGroup addrKey = ring.get(index).addrKey;
-        SubchannelView subchannel = pickableSubchannels.get(addrKey);
+      for (int i = 0; i < hashes.length; i++) {
+        int index = (mid + i) % hashes.length;
+        SubchannelView subchannel = pickableSubchannels[ring.addrIndices[index]];
         if (subchannel.stateInfo.getState() == READY) {
           return PickResult.withSubchannel(subchannel.subchannel);
         }
@@ -402,7 +481,7 @@ final class RingHashLoadBalancer extends LoadBalancer {
         }
       }
       // Fail the pick with error status of the original subchannel hit by hash.
-      SubchannelView originalSubchannel = pickableSubchannels.get(ring.get(mid).addrKey);
+      SubchannelView originalSubchannel = pickableSubchannels[ring.addrIndices[mid]];
       return PickResult.withError(originalSubchannel.stateInfo.getStatus());
     }
   }
@@ -421,18 +500,40 @@ final class RingHashLoadBalancer extends LoadBalancer {
     }
   }
 
-  private static final class RingEntry implements Comparable<RingEntry> {
-    private final long hash;
-    private final EquivalentAddressGroup addrKey;
-
-    private RingEntry(long hash, EquivalentAddressGroup addrKey) {
-      this.hash = hash;
-      this.addrKey = addrKey;
+  /**
+   * The hash ring, stored as parallel primitive arrays sorted by hash, so that a ring of millions
+   * of entries costs 12 bytes per entry and no per-entry objects. The ring is immutable and shared
+   * by all pickers created until the next address update.
+   */
+  @VisibleForTesting
+  static final class Ring {
+    // Sorted in ascending (signed) order.
+    final long[] hashes;
+    // Index into addrKeys of the address of each entry.
+    final int[] addrIndices;
+    final EquivalentAddressGroup[] addrKeys;
+
+    private Ring(long[] hashes, int[] addrIndices, EquivalentAddressGroup[] addrKeys) {
+      this.hashes = hashes;
+      this.addrIndices = addrIndices;
+      this.addrKeys = addrKeys;
     }
 
-    @Override
-    public int compareTo(RingEntry entry) {
-      return Long.compare(hash, entry.hash);
+    /**
+     * Returns the index of the entry with hash next to (clockwise) {@code hash}.
+     */
+    int indexOf(long hash) {
+      int low = 0;
+      int high = hashes.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (hashes[mid] < hash) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low == hashes.length ? 0 : low;
     }
   }
 
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import io.grpc.xds.VirtualHost.Route.RouteMatch.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * An index over the {@link PathMatcher}s of an ordered list of routes. It finds the routes whose
+ * path matcher matches a method without evaluating the matcher of every route.
+ *
+ * <p>Exact and prefix path matchers are stored in a character trie, one for case-sensitive
+ * matchers and one for case-insensitive matchers, so a lookup walks the path once. Regular
+ * expression matchers are evaluated one by one. Since the path of a call only depends on its
+ * method, the result of a lookup is memoized by the full method name.
+ *
+ * <p>The routes a lookup returns are candidates: their header and fraction matchers still need
+ * to be evaluated, in the returned order, to find the first route matching a call.
+ */
+final class RoutePathIndex {
+  // Upper bound of memoized methods, so that a client making calls to arbitrarily many methods
+  // does not grow the cache without bound.
+  static final int MAX_CACHED_METHODS = 1000;
+  private static final int[] NO_ROUTES = new int[0];
+
+  private final TrieNode caseSensitiveRoot = new TrieNode();
+  private final TrieNode caseInsensitiveRoot = new TrieNode();
+  private final int[] regExRoutes;
+  private final List<PathMatcher> pathMatchers;
+  private final ConcurrentMap<String, int[]> candidatesByMethod = new ConcurrentHashMap<>();
+
+  /**
+   * Creates an index of the given path matchers, which are identified by their position in the
+   * list.
+   */
+  RoutePathIndex(List<PathMatcher> pathMatchers) {
+    this.pathMatchers = pathMatchers;
+    List<Integer> regExRoutes = new ArrayList<>();
+    for (int i = 0; i < pathMatchers.size(); i++) {
+      PathMatcher pathMatcher = pathMatchers.get(i);
+      if (pathMatcher.path() != null) {
+        insert(pathMatcher.path(), pathMatcher.caseSensitive()).exactRoutes.add(i);
+      } else if (pathMatcher.prefix() != null) {
+        insert(pathMatcher.prefix(), pathMatcher.caseSensitive()).prefixRoutes.add(i);
+      } else {
+        regExRoutes.add(i);
+      }
+    }
+    this.regExRoutes = toArray(regExRoutes);
+  }
+
+  /**
+   * Returns the positions, in increasing order, of the path matchers that match the path of the
+   * given method, which is {@code "/" + fullMethodName}.
+   */
+  int[] getCandidates(String fullMethodName) {
+    int[] candidates = candidatesByMethod.get(fullMethodName);
+    if (candidates == null) {
+      candidates = findCandidates(fullMethodName);
+      if (candidatesByMethod.size() < MAX_CACHED_METHODS) {
+        candidatesByMethod.putIfAbsent(fullMethodName, candidates);
+      }
+    }
+    return candidates;
+  }
+
+  private int[] findCandidates(String fullMethodName) {
+    List<Integer> candidates = new ArrayList<>();
+    collect(caseSensitiveRoot, fullMethodName, false, candidates);
+    collect(caseInsensitiveRoot, fullMethodName, true, candidates);
+    if (regExRoutes.length != 0) {
+      String path = "/" + fullMethodName;
+      for (int i : regExRoutes) {
+        if (pathMatchers.get(i).regEx().matches(path)) {
+          candidates.add(i);
+        }
+      }
+    }
+    if (candidates.isEmpty()) {
+      return NO_ROUTES;
+    }
+    int[] result = toArray(candidates);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Walks the trie along the path, collecting the prefix matchers of every visited node and the
+   * exact matchers of the node of the whole path.
+   */
+  private static void collect(
+      TrieNode root, String fullMethodName, boolean ignoreCase, List<Integer> candidates) {
+    candidates.addAll(root.prefixRoutes);
+    TrieNode node = root.child('/', ignoreCase);
+    for (int i = 0; node != null; i++) {
+      candidates.addAll(node.prefixRoutes);
+      if (i == fullMethodName.length()) {
+        candidates.addAll(node.exactRoutes);
+        break;
+      }
+      node = node.child(fullMethodName.charAt(i), ignoreCase);
+    }
+  }
+
+  private TrieNode insert(String path, boolean caseSensitive) {
+    TrieNode node = caseSensitive ? caseSensitiveRoot : caseInsensitiveRoot;
+    for (int i = 0; i < path.length(); i++) {
+      char c = caseSensitive ? path.charAt(i) : Character.toLowerCase(path.charAt(i));
+      TrieNode child = node.children.get(c);
+      if (child == null) {
+        child = new TrieNode();
+        node.children.put(c, child);
+      }
+      node = child;
+    }
+    return node;
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
+  private static final class TrieNode {
+    final Map<Character, TrieNode> children = new HashMap<>();
+    // Routes whose prefix or exact path ends at this node.
+    final List<Integer> prefixRoutes = new ArrayList<>();
+    final List<Integer> exactRoutes = new ArrayList<>();
+
+    @Nullable
+    TrieNode child(char c, boolean ignoreCase) {
+      return children.get(ignoreCase ? Character.toLowerCase(c) : c);
+    }
+  }
+}
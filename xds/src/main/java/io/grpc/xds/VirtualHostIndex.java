@@ -0,0 +1,168 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * An index of the domains of a list of {@link VirtualHost}s for finding the virtual host serving
+ * a host name.
+ *
+ * <p>Domains are matched case-insensitively in the following order:
+ * <ol>
+ * <li>Exact domain names: {@code www.foo.com}. The first virtual host with the domain wins.</li>
+ * <li>Suffix domain wildcards: {@code *.foo.com} or {@code *-bar.foo.com}.</li>
+ * <li>Prefix domain wildcards: {@code foo.*} or {@code foo-*}.</li>
+ * <li>Special wildcard {@code *} matching any domain.</li>
+ * </ol>
+ * The longest wildcard wins, and a suffix wildcard wins over a prefix wildcard of the same
+ * length. The asterisk of a wildcard matches one or more characters. Patterns with an asterisk
+ * anywhere else, or with more than one asterisk, never match.
+ *
+ * <p>Exact domains are kept in a hash map, suffix wildcards in a trie of their reversed suffix and
+ * prefix wildcards in a trie of their prefix, so that a lookup is linear in the length of the
+ * host name rather than in the number of domains.
+ */
+final class VirtualHostIndex {
+  private final Map<String, VirtualHost> exactMatches = new HashMap<>();
+  private final TrieNode suffixRoot = new TrieNode();
+  private final TrieNode prefixRoot = new TrieNode();
+
+  VirtualHostIndex(List<VirtualHost> virtualHosts) {
+    for (VirtualHost virtualHost : virtualHosts) {
+      for (String domain : virtualHost.domains()) {
+        add(domain.toLowerCase(Locale.US), virtualHost);
+      }
+    }
+  }
+
+  private void add(String pattern, VirtualHost virtualHost) {
+    if (pattern.isEmpty() || pattern.startsWith(".") || pattern.endsWith(".")) {
+      return;
+    }
+    int index = pattern.indexOf('*');
+    if (index == -1) {
+      if (!exactMatches.containsKey(pattern)) {
+        exactMatches.put(pattern, virtualHost);
+      }
+      return;
+    }
+    if (pattern.indexOf('*', index + 1) != -1) {
+      return;
+    }
+    if (index == 0) {
+      TrieNode node = suffixRoot;
+      for (int i = pattern.length() - 1; i > 0; i--) {
+        node = node.getOrAddChild(pattern.charAt(i));
+      }
+      // A later suffix wildcard wins over an equal one.
+      node.virtualHost = virtualHost;
+    } else if (index == pattern.length() - 1) {
+      TrieNode node = prefixRoot;
+      for (int i = 0; i < index; i++) {
+        node = node.getOrAddChild(pattern.charAt(i));
+      }
+      // An earlier prefix wildcard wins over an equal one.
+      if (node.virtualHost == null) {
+        node.virtualHost = virtualHost;
+      }
+    }
+  }
+
+  /**
+   * Returns the virtual host serving {@code hostName}, or {@code null} if none does.
+   */
+  @Nullable
+  VirtualHost find(String hostName) {
+    checkArgument(hostName.length() != 0 && !hostName.startsWith(".") && !hostName.endsWith("."),
+        "Invalid host name");
+    hostName = hostName.toLowerCase(Locale.US);
+    VirtualHost exactMatch = exactMatches.get(hostName);
+    if (exactMatch != null) {
+      return exactMatch;
+    }
+    int length = hostName.length();
+    // The asterisk must match at least one character, so the wildcard may cover at most all but
+    // one character of the host name.
+    VirtualHost suffixMatch = null;
+    int suffixMatchLength = 0;
+    TrieNode node = suffixRoot;
+    for (int i = length; node != null && i > 0; i--) {
+      if (node.virtualHost != null) {
+        suffixMatch = node.virtualHost;
+        suffixMatchLength = length - i;
+      }
+      node = node.child(hostName.charAt(i - 1));
+    }
+    VirtualHost prefixMatch = null;
+    int prefixMatchLength = 0;
+    node = prefixRoot;
+    for (int i = 0; node != null && i < length; i++) {
+      if (node.virtualHost != null) {
+        prefixMatch = node.virtualHost;
+        prefixMatchLength = i;
+      }
+      node = node.child(hostName.charAt(i));
+    }
+    if (prefixMatch != null && (suffixMatch == null || prefixMatchLength > suffixMatchLength)) {
+      return prefixMatch;
+    }
+    return suffixMatch;
+  }
+
+  private static final class TrieNode {
+    // Sorted labels of the children.
+    private char[] labels = new char[0];
+    private TrieNode[] children = new TrieNode[0];
+    // Virtual host of the wildcard ending at this node.
+    @Nullable
+    VirtualHost virtualHost;
+
+    @Nullable
+    TrieNode child(char label) {
+      int index = Arrays.binarySearch(labels, label);
+      return index < 0 ? null : children[index];
+    }
+
+    TrieNode getOrAddChild(char label) {
+      int index = Arrays.binarySearch(labels, label);
+      if (index >= 0) {
+        return children[index];
+      }
+      index = -index - 1;
+      char[] newLabels = new char[labels.length + 1];
+      TrieNode[] newChildren = new TrieNode[children.length + 1];
+      System.arraycopy(labels, 0, newLabels, 0, index);
+      System.arraycopy(children, 0, newChildren, 0, index);
+      System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+      System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+      TrieNode child = new TrieNode();
+      newLabels[index] = label;
+      newChildren[index] = child;
+      labels = newLabels;
+      children = newChildren;
+      return child;
+    }
+  }
+}
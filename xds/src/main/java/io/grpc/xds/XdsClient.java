@@ -117,6 +117,9 @@ abstract class XdsClient {
     // Only valid if lbPolicy is "ring_hash".
     abstract long maxRingSize();
 
+    // Only valid if lbPolicy is "maglev".
+    abstract long maglevTableSize();
+
     // Alternative resource name to be used in EDS requests.
     /// Only valid for EDS cluster.
     @Nullable
@@ -155,6 +158,7 @@ abstract class XdsClient {
           .clusterType(ClusterType.AGGREGATE)
           .minRingSize(0)
           .maxRingSize(0)
+          .maglevTableSize(0)
           .prioritizedClusterNames(ImmutableList.copyOf(prioritizedClusterNames));
     }
 
@@ -166,6 +170,7 @@ abstract class XdsClient {
           .clusterType(ClusterType.EDS)
           .minRingSize(0)
           .maxRingSize(0)
+          .maglevTableSize(0)
           .edsServiceName(edsServiceName)
           .lrsServerName(lrsServerName)
           .maxConcurrentRequests(maxConcurrentRequests)
@@ -180,6 +185,7 @@ abstract class XdsClient {
           .clusterType(ClusterType.LOGICAL_DNS)
           .minRingSize(0)
           .maxRingSize(0)
+          .maglevTableSize(0)
           .dnsHostName(dnsHostName)
           .lrsServerName(lrsServerName)
           .maxConcurrentRequests(maxConcurrentRequests)
@@ -191,7 +197,7 @@ abstract class XdsClient {
     }
 
     enum LbPolicy {
-      ROUND_ROBIN, RING_HASH
+      ROUND_ROBIN, RING_HASH, MAGLEV
     }
 
     // FIXME(chengyuanzhang): delete this after UpstreamTlsContext's toString() is fixed.
@@ -203,6 +209,7 @@ abstract class XdsClient {
           .add("lbPolicy", lbPolicy())
           .add("minRingSize", minRingSize())
           .add("maxRingSize", maxRingSize())
+          .add("maglevTableSize", maglevTableSize())
           .add("edsServiceName", edsServiceName())
           .add("dnsHostName", dnsHostName())
           .add("lrsServerName", lrsServerName())
@@ -220,7 +227,7 @@ abstract class XdsClient {
       // Private, use one of the static factory methods instead.
       protected abstract Builder clusterType(ClusterType clusterType);
 
-      // Private, use roundRobinLbPolicy() or ringHashLbPolicy(long, long).
+      // Private, use roundRobinLbPolicy(), ringHashLbPolicy(long, long) or maglevLbPolicy(long).
       protected abstract Builder lbPolicy(LbPolicy lbPolicy);
 
       Builder roundRobinLbPolicy() {
@@ -231,12 +238,19 @@ abstract class XdsClient {
         return this.lbPolicy(LbPolicy.RING_HASH).minRingSize(minRingSize).maxRingSize(maxRingSize);
       }
 
+      Builder maglevLbPolicy(long tableSize) {
+        return this.lbPolicy(LbPolicy.MAGLEV).maglevTableSize(tableSize);
+      }
+
       // Private, use ringHashLbPolicy(long, long).
       protected abstract Builder minRingSize(long minRingSize);
 
       // Private, use ringHashLbPolicy(long, long).
       protected abstract Builder maxRingSize(long maxRingSize);
 
+      // Private, use maglevLbPolicy(long).
+      protected abstract Builder maglevTableSize(long maglevTableSize);
+
       // Private, use CdsUpdate.forEds() instead.
       protected abstract Builder edsServiceName(String edsServiceName);
 
@@ -20,23 +20,15 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
-import com.google.protobuf.UInt32Value;
 import io.grpc.Internal;
 import io.grpc.Status;
 import io.grpc.internal.ObjectPool;
-import io.grpc.xds.EnvoyServerProtoData.CidrRange;
 import io.grpc.xds.EnvoyServerProtoData.FilterChain;
-import io.grpc.xds.EnvoyServerProtoData.FilterChainMatch;
-import io.grpc.xds.internal.Matchers.CidrMatcher;
 import io.grpc.xds.internal.sds.SslContextProviderSupplier;
 import io.netty.channel.Channel;
-import java.net.Inet6Address;
-import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -54,7 +46,8 @@ public final class XdsClientWrapperForServerSds {
   private static final Logger logger =
       Logger.getLogger(XdsClientWrapperForServerSds.class.getName());
 
-  private AtomicReference<EnvoyServerProtoData.Listener> curListener = new AtomicReference<>();
+  // Index of the filter chains of the current listener.
+  private AtomicReference<FilterChainMatchingIndex> curListener = new AtomicReference<>();
   private ObjectPool<XdsClient> xdsClientPool;
   private final XdsNameResolverProvider.XdsClientPoolFactory xdsClientPoolFactory;
   @Nullable private XdsClient xdsClient;
@@ -102,7 +95,8 @@ public final class XdsClientWrapperForServerSds {
         new XdsClient.LdsResourceWatcher() {
           @Override
           public void onChanged(XdsClient.LdsUpdate update) {
-            releaseOldSuppliers(curListener.getAndSet(update.listener()));
+            releaseOldSuppliers(
+                curListener.getAndSet(FilterChainMatchingIndex.create(update.listener())));
             reportSuccess();
           }
 
@@ -139,8 +133,9 @@ public final class XdsClientWrapperForServerSds {
   }
 
   // go thru the old listener and release all the old SslContextProviderSupplier
-  private void releaseOldSuppliers(EnvoyServerProtoData.Listener oldListener) {
-    if (oldListener != null) {
+  private void releaseOldSuppliers(@Nullable FilterChainMatchingIndex oldIndex) {
+    if (oldIndex != null) {
+      EnvoyServerProtoData.Listener oldListener = oldIndex.getListener();
       List<FilterChain> filterChains = oldListener.getFilterChains();
       for (FilterChain filterChain : filterChains) {
         releaseSupplier(filterChain);
@@ -180,7 +175,7 @@ public final class XdsClientWrapperForServerSds {
    */
   @Nullable
   public SslContextProviderSupplier getSslContextProviderSupplier(Channel channel) {
-    EnvoyServerProtoData.Listener copyListener = curListener.get();
+    FilterChainMatchingIndex copyListener = curListener.get();
     if (copyListener != null && channel != null) {
       SocketAddress localAddress = channel.localAddress();
       SocketAddress remoteAddress = channel.remoteAddress();
@@ -207,25 +202,12 @@ public final class XdsClientWrapperForServerSds {
    */
   private static SslContextProviderSupplier getSslContextProviderSupplier(
       InetSocketAddress localInetAddr, InetSocketAddress remoteInetAddr,
-      EnvoyServerProtoData.Listener listener) {
-    List<FilterChain> filterChains = listener.getFilterChains();
-
-    filterChains = filterOnDestinationPort(filterChains);
-    filterChains = filterOnIpAddress(filterChains, localInetAddr.getAddress(), true);
-    filterChains = filterOnServerNames(filterChains);
-    filterChains = filterOnTransportProtocol(filterChains);
-    filterChains = filterOnApplicationProtocols(filterChains);
-    filterChains =
-        filterOnSourceType(filterChains, remoteInetAddr.getAddress(), localInetAddr.getAddress());
-    filterChains = filterOnIpAddress(filterChains, remoteInetAddr.getAddress(), false);
-    filterChains = filterOnSourcePort(filterChains, remoteInetAddr.getPort());
-
-    if (filterChains.size() > 1) {
-      // close the connection
-      throw new IllegalStateException("Found 2 matching filter-chains");
-    } else if (filterChains.size() == 1) {
-      return filterChains.get(0).getSslContextProviderSupplier();
+      FilterChainMatchingIndex index) {
+    FilterChain filterChain = index.findMatchingFilterChain(localInetAddr, remoteInetAddr);
+    if (filterChain != null) {
+      return filterChain.getSslContextProviderSupplier();
     }
+    EnvoyServerProtoData.Listener listener = index.getListener();
     if (listener.getDefaultFilterChain() == null) {
       // close the connection
       throw new RuntimeException(
@@ -234,161 +216,13 @@ public final class XdsClientWrapperForServerSds {
     return listener.getDefaultFilterChain().getSslContextProviderSupplier();
   }
 
-  // reject if filer-chain-match has non-empty application_protocols
-  private static List<FilterChain> filterOnApplicationProtocols(List<FilterChain> filterChains) {
-    ArrayList<FilterChain> filtered = new ArrayList<>(filterChains.size());
-    for (FilterChain filterChain : filterChains) {
-      FilterChainMatch filterChainMatch = filterChain.getFilterChainMatch();
-
-      if (filterChainMatch.getApplicationProtocols().isEmpty()) {
-        filtered.add(filterChain);
-      }
-    }
-    return filtered;
-  }
-
-  // reject if filer-chain-match has non-empty transport protocol other than "raw_buffer"
-  private static List<FilterChain> filterOnTransportProtocol(List<FilterChain> filterChains) {
-    ArrayList<FilterChain> filtered = new ArrayList<>(filterChains.size());
-    for (FilterChain filterChain : filterChains) {
-      FilterChainMatch filterChainMatch = filterChain.getFilterChainMatch();
-
-      String transportProtocol = filterChainMatch.getTransportProtocol();
-      if ( Strings.isNullOrEmpty(transportProtocol) || "raw_buffer".equals(transportProtocol)) {
-        filtered.add(filterChain);
-      }
-    }
-    return filtered;
-  }
-
-  // reject if filer-chain-match has server_name(s)
-  private static List<FilterChain> filterOnServerNames(List<FilterChain> filterChains) {
-    ArrayList<FilterChain> filtered = new ArrayList<>(filterChains.size());
-    for (FilterChain filterChain : filterChains) {
-      FilterChainMatch filterChainMatch = filterChain.getFilterChainMatch();
-
-      if (filterChainMatch.getServerNames().isEmpty()) {
-        filtered.add(filterChain);
-      }
-    }
-    return filtered;
-  }
-
-  // destination_port present => Always fail match
-  private static List<FilterChain> filterOnDestinationPort(List<FilterChain> filterChains) {
-    ArrayList<FilterChain> filtered = new ArrayList<>(filterChains.size());
-    for (FilterChain filterChain : filterChains) {
-      FilterChainMatch filterChainMatch = filterChain.getFilterChainMatch();
-
-      if (filterChainMatch.getDestinationPort() == UInt32Value.getDefaultInstance().getValue()) {
-        filtered.add(filterChain);
-      }
-    }
-    return filtered;
-  }
-
-  private static List<FilterChain> filterOnSourcePort(
-      List<FilterChain> filterChains, int sourcePort) {
-    ArrayList<FilterChain> filteredOnMatch = new ArrayList<>(filterChains.size());
-    ArrayList<FilterChain> filteredOnEmpty = new ArrayList<>(filterChains.size());
-    for (FilterChain filterChain : filterChains) {
-      FilterChainMatch filterChainMatch = filterChain.getFilterChainMatch();
-
-      List<Integer> sourcePortsToMatch = filterChainMatch.getSourcePorts();
-      if (sourcePortsToMatch.isEmpty()) {
-        filteredOnEmpty.add(filterChain);
-      } else if (sourcePortsToMatch.contains(sourcePort)) {
-        filteredOnMatch.add(filterChain);
-      }
-    }
-    // match against source port is more specific than match against empty list
-    return filteredOnMatch.isEmpty() ? filteredOnEmpty : filteredOnMatch;
-  }
-
-  private static List<FilterChain> filterOnSourceType(
-      List<FilterChain> filterChains, InetAddress sourceAddress, InetAddress destAddress) {
-    ArrayList<FilterChain> filtered = new ArrayList<>(filterChains.size());
-    for (FilterChain filterChain : filterChains) {
-      FilterChainMatch filterChainMatch = filterChain.getFilterChainMatch();
-      EnvoyServerProtoData.ConnectionSourceType sourceType =
-          filterChainMatch.getConnectionSourceType();
-
-      boolean matching = false;
-      if (sourceType == EnvoyServerProtoData.ConnectionSourceType.SAME_IP_OR_LOOPBACK) {
-        matching =
-            sourceAddress.isLoopbackAddress()
-                || sourceAddress.isAnyLocalAddress()
-                || sourceAddress.equals(destAddress);
-      } else if (sourceType == EnvoyServerProtoData.ConnectionSourceType.EXTERNAL) {
-        matching = !sourceAddress.isLoopbackAddress() && !sourceAddress.isAnyLocalAddress();
-      } else { // ANY or null
-        matching = true;
-      }
-      if (matching) {
-        filtered.add(filterChain);
-      }
-    }
-    return filtered;
-  }
-
-  private static int getMatchingPrefixLength(
-      FilterChainMatch filterChainMatch, InetAddress address, boolean forDestination) {
-    boolean isIPv6 = address instanceof Inet6Address;
-    List<CidrRange> cidrRanges =
-        forDestination
-            ? filterChainMatch.getPrefixRanges()
-            : filterChainMatch.getSourcePrefixRanges();
-    int matchingPrefixLength;
-    if (cidrRanges.isEmpty()) { // if there is no CidrRange assume 0-length match
-      matchingPrefixLength = 0;
-    } else {
-      matchingPrefixLength = -1;
-      for (CidrRange cidrRange : cidrRanges) {
-        InetAddress cidrAddr = cidrRange.getAddressPrefix();
-        boolean cidrIsIpv6 = cidrAddr instanceof Inet6Address;
-        if (isIPv6 == cidrIsIpv6) {
-          int prefixLen = cidrRange.getPrefixLen();
-          CidrMatcher matcher = CidrMatcher.create(cidrAddr, prefixLen);
-          if (matcher.matches(address) && prefixLen > matchingPrefixLength) {
-            matchingPrefixLength = prefixLen;
-          }
-        }
-      }
-    }
-    return matchingPrefixLength;
-  }
-
-  // use prefix_ranges (CIDR) and get the most specific matches
-  private static List<FilterChain> filterOnIpAddress(
-      List<FilterChain> filterChains, InetAddress address, boolean forDestination) {
-    // curent list of top ones
-    ArrayList<FilterChain> topOnes = new ArrayList<>(filterChains.size());
-    int topMatchingPrefixLen = -1;
-    for (FilterChain filterChain : filterChains) {
-      int currentMatchingPrefixLen =
-          getMatchingPrefixLength(filterChain.getFilterChainMatch(), address, forDestination);
-
-      if (currentMatchingPrefixLen >= 0) {
-        if (currentMatchingPrefixLen < topMatchingPrefixLen) {
-          continue;
-        }
-        if (currentMatchingPrefixLen > topMatchingPrefixLen) {
-          topMatchingPrefixLen = currentMatchingPrefixLen;
-          topOnes.clear();
-        }
-        topOnes.add(filterChain);
-      }
-    }
-    return topOnes;
-  }
-
   /** Adds a {@link ServerWatcher} to the list. */
   public void addServerWatcher(ServerWatcher serverWatcher) {
     checkNotNull(serverWatcher, "serverWatcher");
     synchronized (serverWatchers) {
       serverWatchers.add(serverWatcher);
     }
-    EnvoyServerProtoData.Listener copyListener = curListener.get();
+    FilterChainMatchingIndex copyListener = curListener.get();
     if (copyListener != null) {
       serverWatcher.onListenerUpdate();
     }
@@ -22,7 +22,6 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import io.grpc.Attributes;
@@ -68,7 +67,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -233,125 +231,32 @@ final class XdsNameResolver extends NameResolver {
   @VisibleForTesting
   @Nullable
   static VirtualHost findVirtualHostForHostName(List<VirtualHost> virtualHosts, String hostName) {
-    // Domain search order:
-    //  1. Exact domain names: ``www.foo.com``.
-    //  2. Suffix domain wildcards: ``*.foo.com`` or ``*-bar.foo.com``.
-    //  3. Prefix domain wildcards: ``foo.*`` or ``foo-*``.
-    //  4. Special wildcard ``*`` matching any domain.
-    //
-    //  The longest wildcards match first.
-    //  Assuming only a single virtual host in the entire route configuration can match
-    //  on ``*`` and a domain must be unique across all virtual hosts.
-    int matchingLen = -1; // longest length of wildcard pattern that matches host name
-    boolean exactMatchFound = false;  // true if a virtual host with exactly matched domain found
-    VirtualHost targetVirtualHost = null;  // target VirtualHost with longest matched domain
-    for (VirtualHost vHost : virtualHosts) {
-      for (String domain : vHost.domains()) {
-        boolean selected = false;
-        if (matchHostName(hostName, domain)) { // matching
-          if (!domain.contains("*")) { // exact matching
-            exactMatchFound = true;
-            targetVirtualHost = vHost;
-            break;
-          } else if (domain.length() > matchingLen) { // longer matching pattern
-            selected = true;
-          } else if (domain.length() == matchingLen && domain.startsWith("*")) { // suffix matching
-            selected = true;
-          }
-        }
-        if (selected) {
-          matchingLen = domain.length();
-          targetVirtualHost = vHost;
-        }
-      }
-      if (exactMatchFound) {
-        break;
-      }
-    }
-    return targetVirtualHost;
-  }
-
-  /**
-   * Returns {@code true} iff {@code hostName} matches the domain name {@code pattern} with
-   * case-insensitive.
-   *
-   * <p>Wildcard pattern rules:
-   * <ol>
-   * <li>A single asterisk (*) matches any domain.</li>
-   * <li>Asterisk (*) is only permitted in the left-most or the right-most part of the pattern,
-   *     but not both.</li>
-   * </ol>
-   */
-  @VisibleForTesting
-  static boolean matchHostName(String hostName, String pattern) {
-    checkArgument(hostName.length() != 0 && !hostName.startsWith(".") && !hostName.endsWith("."),
-        "Invalid host name");
-    checkArgument(pattern.length() != 0 && !pattern.startsWith(".") && !pattern.endsWith("."),
-        "Invalid pattern/domain name");
-
-    hostName = hostName.toLowerCase(Locale.US);
-    pattern = pattern.toLowerCase(Locale.US);
-    // hostName and pattern are now in lower case -- domain names are case-insensitive.
-
-    if (!pattern.contains("*")) {
-      // Not a wildcard pattern -- hostName and pattern must match exactly.
-      return hostName.equals(pattern);
-    }
-    // Wildcard pattern
-
-    if (pattern.length() == 1) {
-      return true;
-    }
-
-    int index = pattern.indexOf('*');
-
-    // At most one asterisk (*) is allowed.
-    if (pattern.indexOf('*', index + 1) != -1) {
-      return false;
-    }
-
-    // Asterisk can only match prefix or suffix.
-    if (index != 0 && index != pattern.length() - 1) {
-      return false;
-    }
-
-    // HostName must be at least as long as the pattern because asterisk has to
-    // match one or more characters.
-    if (hostName.length() < pattern.length()) {
-      return false;
-    }
-
-    if (index == 0 && hostName.endsWith(pattern.substring(1))) {
-      // Prefix matching fails.
-      return true;
-    }
-
-    // Pattern matches hostname if suffix matching succeeds.
-    return index == pattern.length() - 1
-        && hostName.startsWith(pattern.substring(0, pattern.length() - 1));
+    return new VirtualHostIndex(virtualHosts).find(hostName);
   }
 
   private final class ConfigSelector extends InternalConfigSelector {
     @Override
     public Result selectConfig(PickSubchannelArgs args) {
       String cluster = null;
-      Route selectedRoute = null;
+      CompiledRoute selectedRoute = null;
       RoutingConfig routingCfg;
-      Map<String, FilterConfig> selectedOverrideConfigs;
-      List<ClientInterceptor> filterInterceptors = new ArrayList<>();
+      FilterConfig[] selectedOverrideConfigs;
       Metadata headers = args.getHeaders();
       do {
         routingCfg = routingConfig;
-        selectedOverrideConfigs = new HashMap<>(routingCfg.virtualHostOverrideConfig);
-        if (routingCfg.filterChain != null
-            && Iterables.getLast(routingCfg.filterChain).equals(LAME_FILTER)) {
+        selectedRoute = null;
+        selectedOverrideConfigs = routingCfg.virtualHostOverrideConfigs;
+        if (routingCfg.lame) {
           break;
         }
-        for (Route route : routingCfg.routes) {
-          if (matchRoute(route.routeMatch(), "/" + args.getMethodDescriptor().getFullMethodName(),
-              headers, random)) {
+        // Only routes whose path matches need their header and fraction matchers evaluated.
+        int[] candidates =
+            routingCfg.pathIndex.getCandidates(args.getMethodDescriptor().getFullMethodName());
+        for (int index : candidates) {
+          CompiledRoute route = routingCfg.routes.get(index);
+          if (matchHeadersAndFraction(route.route.routeMatch(), headers, random)) {
             selectedRoute = route;
-            selectedOverrideConfigs.putAll(route.filterConfigOverrides());
+            selectedOverrideConfigs = route.overrideConfigs;
             break;
           }
         }
@@ -359,45 +264,30 @@ final class XdsNameResolver extends NameResolver {
           return Result.forError(
               Status.UNAVAILABLE.withDescription("Could not find xDS route matching RPC"));
         }
-        if (selectedRoute.routeAction() == null) {
+        RouteAction action = selectedRoute.route.routeAction();
+        if (action == null) {
           return Result.forError(Status.UNAVAILABLE.withDescription(
               "Could not route RPC to Route with non-forwarding action"));
         }
-        RouteAction action = selectedRoute.routeAction();
         if (action.cluster() != null) {
           cluster = action.cluster();
         } else if (action.weightedClusters() != null) {
-          int totalWeight = 0;
-          for (ClusterWeight weightedCluster : action.weightedClusters()) {
-            totalWeight += weightedCluster.weight();
-          }
-          int select = random.nextInt(totalWeight);
+          int select = random.nextInt(selectedRoute.totalWeight);
           int accumulator = 0;
-          for (ClusterWeight weightedCluster : action.weightedClusters()) {
+          List<ClusterWeight> weightedClusters = action.weightedClusters();
+          for (int i = 0; i < weightedClusters.size(); i++) {
+            ClusterWeight weightedCluster = weightedClusters.get(i);
             accumulator += weightedCluster.weight();
             if (select < accumulator) {
               cluster = weightedCluster.name();
-              selectedOverrideConfigs.putAll(weightedCluster.filterConfigOverrides());
+              selectedOverrideConfigs = selectedRoute.weightedClusterOverrideConfigs.get(i);
               break;
             }
           }
         }
       } while (!retainCluster(cluster));
-      // TODO(chengyuanzhang): avoid service config generation and parsing for each call.
-      Map<String, ?> rawServiceConfig = Collections.emptyMap();
-      if (enableTimeout) {
-        Long timeoutNanos = null;
-        if (selectedRoute != null) {
-          timeoutNanos = selectedRoute.routeAction().timeoutNano();
-        }
-        if (timeoutNanos == null) {
-          timeoutNanos = routingCfg.fallbackTimeoutNano;
-        }
-        if (timeoutNanos > 0) {
-          rawServiceConfig = generateServiceConfigWithMethodTimeoutConfig(timeoutNanos);
-        }
-      }
-      ConfigOrError parsedServiceConfig = serviceConfigParser.parseServiceConfig(rawServiceConfig);
+      ConfigOrError parsedServiceConfig =
+          selectedRoute != null ? selectedRoute.methodConfig : routingCfg.fallbackMethodConfig;
       Object config = parsedServiceConfig.getConfig();
       if (config == null) {
         releaseCluster(cluster);
@@ -405,34 +295,23 @@ final class XdsNameResolver extends NameResolver {
             parsedServiceConfig.getError().augmentDescription(
                 "Failed to parse service config (method config)"));
       }
-      if (routingCfg.filterChain != null) {
-        for (NamedFilterConfig namedFilter : routingCfg.filterChain) {
-          FilterConfig filterConfig = namedFilter.filterConfig;
-          Filter filter;
-          if (namedFilter.equals(LAME_FILTER)) {
-            filter = LameFilter.INSTANCE;
-          } else {
-            filter = filterRegistry.get(filterConfig.typeUrl());
-          }
-          if (filter instanceof ClientInterceptorBuilder) {
-            ClientInterceptor interceptor = ((ClientInterceptorBuilder) filter)
-                .buildClientInterceptor(
-                    filterConfig, selectedOverrideConfigs.get(namedFilter.name),
-                    args, scheduler);
-            if (interceptor != null) {
-              filterInterceptors.add(interceptor);
-            }
-          }
-        }
-        if (Iterables.getLast(routingCfg.filterChain).equals(LAME_FILTER)) {
-          return Result.newBuilder()
-              .setConfig(config)
-              .setInterceptor(combineInterceptors(filterInterceptors))
-              .build();
+      List<ClientInterceptor> filterInterceptors = new ArrayList<>(routingCfg.filters.size() + 1);
+      for (int i = 0; i < routingCfg.filters.size(); i++) {
+        ClientFilter filter = routingCfg.filters.get(i);
+        ClientInterceptor interceptor = filter.builder.buildClientInterceptor(
+            filter.config, selectedOverrideConfigs[i], args, scheduler);
+        if (interceptor != null) {
+          filterInterceptors.add(interceptor);
         }
       }
+      if (routingCfg.lame) {
+        return Result.newBuilder()
+            .setConfig(config)
+            .setInterceptor(combineInterceptors(filterInterceptors))
+            .build();
+      }
       final String finalCluster = cluster;
-      final long hash = generateHash(selectedRoute.routeAction().hashPolicies(), headers);
+      final long hash = generateHash(selectedRoute.route.routeAction().hashPolicies(), headers);
       class ClusterSelectionInterceptor implements ClientInterceptor {
         @Override
         public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
@@ -556,9 +435,12 @@ final class XdsNameResolver extends NameResolver {
   @VisibleForTesting
   static boolean matchRoute(RouteMatch routeMatch, String fullMethodName,
       Metadata headers, ThreadSafeRandom random) {
-    if (!matchPath(routeMatch.pathMatcher(), fullMethodName)) {
-      return false;
-    }
+    return matchPath(routeMatch.pathMatcher(), fullMethodName)
+        && matchHeadersAndFraction(routeMatch, headers, random);
+  }
+
+  static boolean matchHeadersAndFraction(
+      RouteMatch routeMatch, Metadata headers, ThreadSafeRandom random) {
     for (HeaderMatcher headerMatcher : routeMatch.headerMatchers()) {
       if (!matchHeader(headerMatcher, getHeaderValue(headers, headerMatcher.name()))) {
         return false;
@@ -780,7 +662,7 @@ final class XdsNameResolver extends NameResolver {
       // Make newly added clusters selectable by config selector and deleted clusters no longer
       // selectable.
       routingConfig =
-          new RoutingConfig(
+          compileRoutingConfig(
               httpMaxStreamDurationNano, routes, filterChain,
               virtualHost.filterConfigOverrides());
       shouldUpdateResult = false;
@@ -880,26 +762,178 @@ final class XdsNameResolver extends NameResolver {
   }
 
   /**
-   * VirtualHost-level configuration for request routing.
+   * Precompiles everything {@link ConfigSelector} needs for routing a call, so that per-call work
+   * is limited to route matching and cluster selection: an index of the route paths, the parsed
+   * method config of each route, the filters of the chain looked up in the registry and their
+   * override configs merged across the virtual host, route and weighted cluster levels.
+   */
+  private RoutingConfig compileRoutingConfig(
+      long fallbackTimeoutNano, List<Route> routes, @Nullable List<NamedFilterConfig> filterChain,
+      Map<String, FilterConfig> virtualHostOverrideConfig) {
+    checkArgument(filterChain == null || !filterChain.isEmpty(), "filterChain is empty");
+    boolean lame = false;
+    List<String> filterNames = new ArrayList<>();
+    List<ClientFilter> filters = new ArrayList<>();
+    if (filterChain != null) {
+      for (NamedFilterConfig namedFilter : filterChain) {
+        Filter filter;
+        if (namedFilter.equals(LAME_FILTER)) {
+          filter = LameFilter.INSTANCE;
+          lame = true;
+        } else {
+          filter = filterRegistry.get(namedFilter.filterConfig.typeUrl());
+        }
+        // The router filter never intercepts calls.
+        if (filter instanceof ClientInterceptorBuilder && filter != RouterFilter.INSTANCE) {
+          filterNames.add(namedFilter.name);
+          filters.add(
+              new ClientFilter((ClientInterceptorBuilder) filter, namedFilter.filterConfig));
+        }
+      }
+    }
+    // Routes commonly share the same timeout, parse the method config only once for each.
+    Map<Long, ConfigOrError> methodConfigs = new HashMap<>();
+    ConfigOrError fallbackMethodConfig = parseMethodConfig(fallbackTimeoutNano, methodConfigs);
+    FilterConfig[] virtualHostOverrideConfigs =
+        mergeOverrideConfigs(filterNames, virtualHostOverrideConfig, null, null);
+    List<CompiledRoute> compiledRoutes = new ArrayList<>(routes.size());
+    for (Route route : routes) {
+      RouteAction action = route.routeAction();
+      ConfigOrError methodConfig = fallbackMethodConfig;
+      int totalWeight = 0;
+      List<FilterConfig[]> weightedClusterOverrideConfigs = Collections.emptyList();
+      if (action != null) {
+        if (action.timeoutNano() != null) {
+          methodConfig = parseMethodConfig(action.timeoutNano(), methodConfigs);
+        }
+        if (action.weightedClusters() != null) {
+          weightedClusterOverrideConfigs = new ArrayList<>(action.weightedClusters().size());
+          for (ClusterWeight weightedCluster : action.weightedClusters()) {
+            totalWeight += weightedCluster.weight();
+            weightedClusterOverrideConfigs.add(
+                mergeOverrideConfigs(
+                    filterNames, virtualHostOverrideConfig, route.filterConfigOverrides(),
+                    weightedCluster.filterConfigOverrides()));
+          }
+        }
+      }
+      compiledRoutes.add(
+          new CompiledRoute(
+              route, methodConfig,
+              mergeOverrideConfigs(
+                  filterNames, virtualHostOverrideConfig, route.filterConfigOverrides(), null),
+              totalWeight, weightedClusterOverrideConfigs));
+    }
+    return new RoutingConfig(
+        compiledRoutes, filters, lame, fallbackMethodConfig, virtualHostOverrideConfigs);
+  }
+
+  private ConfigOrError parseMethodConfig(long timeoutNano, Map<Long, ConfigOrError> cache) {
+    if (!enableTimeout || timeoutNano <= 0) {
+      timeoutNano = 0;
+    }
+    ConfigOrError methodConfig = cache.get(timeoutNano);
+    if (methodConfig == null) {
+      Map<String, ?> rawServiceConfig = timeoutNano > 0
+          ? generateServiceConfigWithMethodTimeoutConfig(timeoutNano)
+          : Collections.<String, Object>emptyMap();
+      methodConfig = serviceConfigParser.parseServiceConfig(rawServiceConfig);
+      cache.put(timeoutNano, methodConfig);
+    }
+    return methodConfig;
+  }
+
+  /**
+   * Returns the override config of each named filter, with the most specific level winning.
+   */
+  private static FilterConfig[] mergeOverrideConfigs(
+      List<String> filterNames, Map<String, FilterConfig> virtualHostOverrideConfig,
+      @Nullable Map<String, FilterConfig> routeOverrideConfig,
+      @Nullable Map<String, FilterConfig> weightedClusterOverrideConfig) {
+    FilterConfig[] overrideConfigs = new FilterConfig[filterNames.size()];
+    for (int i = 0; i < overrideConfigs.length; i++) {
+      String name = filterNames.get(i);
+      FilterConfig config = null;
+      if (weightedClusterOverrideConfig != null) {
+        config = weightedClusterOverrideConfig.get(name);
+      }
+      if (config == null && routeOverrideConfig != null) {
+        config = routeOverrideConfig.get(name);
+      }
+      if (config == null) {
+        config = virtualHostOverrideConfig.get(name);
+      }
+      overrideConfigs[i] = config;
+    }
+    return overrideConfigs;
+  }
+
+  /**
+   * VirtualHost-level configuration for request routing, precompiled by {@link
+   * #compileRoutingConfig}.
    */
   private static class RoutingConfig {
-    private final long fallbackTimeoutNano;
-    final List<Route> routes;
-    // Null if HttpFilter is not supported.
-    @Nullable final List<NamedFilterConfig> filterChain;
-    final Map<String, FilterConfig> virtualHostOverrideConfig;
+    final List<CompiledRoute> routes;
+    final RoutePathIndex pathIndex;
+    // Filters of the chain that may intercept calls, empty if HttpFilter is not supported.
+    final List<ClientFilter> filters;
+    // Whether all RPCs fail because the filter chain has no router.
+    final boolean lame;
+    // Method config for calls not selecting a route or selecting one without timeout.
+    @Nullable final ConfigOrError fallbackMethodConfig;
+    // Indexed the same as filters.
+    final FilterConfig[] virtualHostOverrideConfigs;
 
     private static RoutingConfig empty = new RoutingConfig(
-        0L, Collections.<Route>emptyList(), null, Collections.<String, FilterConfig>emptyMap());
+        Collections.<CompiledRoute>emptyList(), Collections.<ClientFilter>emptyList(), false, null,
+        new FilterConfig[0]);
 
     private RoutingConfig(
-        long fallbackTimeoutNano, List<Route> routes, @Nullable List<NamedFilterConfig> filterChain,
-        Map<String, FilterConfig> virtualHostOverrideConfig) {
-      this.fallbackTimeoutNano = fallbackTimeoutNano;
-      this.routes = routes;
-      checkArgument(filterChain == null || !filterChain.isEmpty(), "filterChain is empty");
-      this.filterChain = filterChain == null ? null : Collections.unmodifiableList(filterChain);
-      this.virtualHostOverrideConfig = Collections.unmodifiableMap(virtualHostOverrideConfig);
+        List<CompiledRoute> routes, List<ClientFilter> filters, boolean lame,
+        @Nullable ConfigOrError fallbackMethodConfig, FilterConfig[] virtualHostOverrideConfigs) {
+      this.routes = Collections.unmodifiableList(routes);
+      List<PathMatcher> pathMatchers = new ArrayList<>(routes.size());
+      for (CompiledRoute route : routes) {
+        pathMatchers.add(route.route.routeMatch().pathMatcher());
+      }
+      this.pathIndex = new RoutePathIndex(pathMatchers);
+      this.filters = Collections.unmodifiableList(filters);
+      this.lame = lame;
+      this.fallbackMethodConfig = fallbackMethodConfig;
+      this.virtualHostOverrideConfigs = virtualHostOverrideConfigs;
+    }
+  }
+
+  /**
+   * A {@link Route} along with its parsed method config and filter override configs.
+   */
+  private static final class CompiledRoute {
+    final Route route;
+    final ConfigOrError methodConfig;
+    // Indexed the same as RoutingConfig.filters.
+    final FilterConfig[] overrideConfigs;
+    final int totalWeight;
+    // Indexed the same as the weighted clusters of the route action.
+    final List<FilterConfig[]> weightedClusterOverrideConfigs;
+
+    private CompiledRoute(
+        Route route, ConfigOrError methodConfig, FilterConfig[] overrideConfigs, int totalWeight,
+        List<FilterConfig[]> weightedClusterOverrideConfigs) {
+      this.route = route;
+      this.methodConfig = methodConfig;
+      this.overrideConfigs = overrideConfigs;
+      this.totalWeight = totalWeight;
+      this.weightedClusterOverrideConfigs = weightedClusterOverrideConfigs;
+    }
+  }
+
+  private static final class ClientFilter {
+    final ClientInterceptorBuilder builder;
+    final FilterConfig config;
+
+    private ClientFilter(ClientInterceptorBuilder builder, FilterConfig config) {
+      this.builder = builder;
+      this.config = config;
     }
   }
 }
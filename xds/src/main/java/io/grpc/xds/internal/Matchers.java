@@ -175,8 +175,9 @@ public final class Matchers {
   /** Represents various ways to match a string .*/
   @AutoValue
   public abstract static class StringMatcher {
+    // The input string is this string.
     @Nullable
-    abstract String exact();
+    public abstract String exact();
 
     // The input string has this prefix.
     @Nullable
@@ -195,7 +196,7 @@ public final class Matchers {
     abstract String contains();
 
     // If true, exact/prefix/suffix matching should be case insensitive.
-    abstract boolean ignoreCase();
+    public abstract boolean ignoreCase();
 
     /** The input string should exactly matches the specified string. */
     public static StringMatcher forExact(String exact, boolean ignoreCase) {
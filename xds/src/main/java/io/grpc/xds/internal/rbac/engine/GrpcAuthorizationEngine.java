@@ -20,6 +20,10 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.auto.value.AutoValue;
 import com.google.common.base.Joiner;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import io.grpc.Attributes;
 import io.grpc.Grpc;
 import io.grpc.Metadata;
 import io.grpc.ServerCall;
@@ -34,7 +38,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
@@ -48,26 +60,102 @@ import javax.net.ssl.SSLSession;
  * <p>One GrpcAuthorizationEngine is initialized with one action type and a list of policies.
  * Policies are examined sequentially in order in an any match fashion, and the first matched policy
  * will be returned. If not matched at all, the opposite action type is returned as a result.
+ *
+ * <p>The policies are compiled when the engine is created: the matcher trees of each policy are
+ * flattened, and policies are indexed by the methods their path matchers match exactly, so that
+ * only the policies that may match a call are examined. The connection attributes a call is
+ * evaluated against (addresses and peer principal names) are extracted once per connection, and
+ * decisions not depending on request headers are cached per connection and method.
  */
 public final class GrpcAuthorizationEngine {
   private static final Logger log = Logger.getLogger(GrpcAuthorizationEngine.class.getName());
+  // Bounds the decisions cached per connection, for servers accepting calls of any method.
+  private static final int MAX_CACHED_DECISIONS_PER_CONNECTION = 1000;
 
   private final AuthConfig authConfig;
+  // The name and flattened matcher of each policy.
+  private final String[] policyNames;
+  private final Matcher[] policyMatchers;
+  // Policies that may match calls of methods matched exactly by path matchers of some policies,
+  // by full method name.
+  private final Map<String, Candidates> candidatesByMethod = new HashMap<>();
+  // Policies that may match calls of any other method.
+  private final Candidates defaultCandidates;
+  // Keyed by the identity of transport attributes, which are shared by calls on a connection.
+  private final LoadingCache<Attributes, ConnectionArgs> connections =
+      CacheBuilder.newBuilder().weakKeys().build(new CacheLoader<Attributes, ConnectionArgs>() {
+        @Override
+        public ConnectionArgs load(Attributes attributes) {
+          return new ConnectionArgs(attributes);
+        }
+      });
 
   /** Instantiated with envoy policyMatcher configuration. */
   public GrpcAuthorizationEngine(AuthConfig authConfig) {
     this.authConfig = authConfig;
+    int policyCount = authConfig.policies.size();
+    policyNames = new String[policyCount];
+    policyMatchers = new Matcher[policyCount];
+    List<Integer> anyMethodPolicies = new ArrayList<>();
+    Map<String, Set<Integer>> methodPolicies = new LinkedHashMap<>();
+    for (int i = 0; i < policyCount; i++) {
+      PolicyMatcher policyMatcher = authConfig.policies.get(i);
+      policyNames[i] = policyMatcher.name;
+      policyMatchers[i] = flatten(policyMatcher);
+      Set<String> methods = getMatchedMethods(policyMatchers[i]);
+      if (methods == null) {
+        anyMethodPolicies.add(i);
+        continue;
+      }
+      for (String method : methods) {
+        Set<Integer> policies = methodPolicies.get(method);
+        if (policies == null) {
+          policies = new TreeSet<>();
+          methodPolicies.put(method, policies);
+        }
+        policies.add(i);
+      }
+    }
+    defaultCandidates = createCandidates(anyMethodPolicies);
+    for (Map.Entry<String, Set<Integer>> entry : methodPolicies.entrySet()) {
+      // Examined in configuration order.
+      Set<Integer> policies = entry.getValue();
+      policies.addAll(anyMethodPolicies);
+      candidatesByMethod.put(entry.getKey(), createCandidates(policies));
+    }
   }
 
   /** Return the auth decision for the request argument against the policies. */
   public AuthDecision evaluate(Metadata metadata, ServerCall<?,?> serverCall) {
     checkNotNull(metadata, "metadata");
     checkNotNull(serverCall, "serverCall");
+    String fullMethodName = serverCall.getMethodDescriptor().getFullMethodName();
+    Candidates candidates = candidatesByMethod.get(fullMethodName);
+    if (candidates == null) {
+      candidates = defaultCandidates;
+    }
+    ConnectionArgs connectionArgs = getConnectionArgs(serverCall.getAttributes());
+    AuthDecision decision =
+        candidates.cacheable ? connectionArgs.decisions.get(fullMethodName) : null;
+    if (decision == null) {
+      decision = evaluate(candidates, new EvaluateArgs(metadata, serverCall, connectionArgs));
+      if (candidates.cacheable
+          && connectionArgs.decisions.size() < MAX_CACHED_DECISIONS_PER_CONNECTION) {
+        connectionArgs.decisions.put(fullMethodName, decision);
+      }
+    }
+    if (log.isLoggable(Level.FINER)) {
+      log.log(Level.FINER, "RBAC decision: {0}, policy match: {1}.",
+          new Object[]{decision.decision(), decision.matchingPolicyName()});
+    }
+    return decision;
+  }
+
+  private AuthDecision evaluate(Candidates candidates, EvaluateArgs args) {
     String firstMatch = null;
-    EvaluateArgs args = new EvaluateArgs(metadata, serverCall);
-    for (PolicyMatcher policyMatcher : authConfig.policies) {
-      if (policyMatcher.matches(args)) {
-        firstMatch = policyMatcher.name;
+    for (int policy : candidates.policies) {
+      if (policyMatchers[policy].matches(args)) {
+        firstMatch = policyNames[policy];
         break;
       }
     }
@@ -75,11 +163,165 @@ public final class GrpcAuthorizationEngine {
     if (Action.DENY.equals(authConfig.action) == (firstMatch == null)) {
       decisionType = Action.ALLOW;
     }
-    log.log(Level.FINER, "RBAC decision: {0}, policy match: {1}.",
-            new Object[]{decisionType, firstMatch});
     return AuthDecision.create(decisionType, firstMatch);
   }
 
+  private ConnectionArgs getConnectionArgs(@Nullable Attributes attributes) {
+    if (attributes == null) {
+      return new ConnectionArgs(Attributes.EMPTY);
+    }
+    return connections.getUnchecked(attributes);
+  }
+
+  private Candidates createCandidates(Collection<Integer> policies) {
+    int[] candidatePolicies = new int[policies.size()];
+    boolean cacheable = true;
+    int i = 0;
+    for (int policy : policies) {
+      candidatePolicies[i++] = policy;
+      cacheable &= !usesHeaders(policyMatchers[policy]);
+    }
+    return new Candidates(candidatePolicies, cacheable);
+  }
+
+  /**
+   * Returns an equivalent matcher without nested matchers of the same kind, matchers of a single
+   * matcher, always true matchers in and matchers, and double inversions.
+   */
+  private static Matcher flatten(Matcher matcher) {
+    if (matcher instanceof PolicyMatcher) {
+      PolicyMatcher policyMatcher = (PolicyMatcher) matcher;
+      return flatten(AndMatcher.create(policyMatcher.permissions, policyMatcher.principals));
+    }
+    if (matcher instanceof OrMatcher) {
+      List<Matcher> anyMatch = new ArrayList<>();
+      for (Matcher m : ((OrMatcher) matcher).anyMatch) {
+        Matcher flattened = flatten(m);
+        if (flattened instanceof AlwaysTrueMatcher) {
+          return flattened;
+        } else if (flattened instanceof OrMatcher) {
+          anyMatch.addAll(((OrMatcher) flattened).anyMatch);
+        } else {
+          anyMatch.add(flattened);
+        }
+      }
+      return anyMatch.size() == 1 ? anyMatch.get(0) : new OrMatcher(anyMatch);
+    }
+    if (matcher instanceof AndMatcher) {
+      List<Matcher> allMatch = new ArrayList<>();
+      for (Matcher m : ((AndMatcher) matcher).allMatch) {
+        Matcher flattened = flatten(m);
+        if (flattened instanceof AlwaysTrueMatcher) {
+          continue;
+        } else if (flattened instanceof AndMatcher) {
+          allMatch.addAll(((AndMatcher) flattened).allMatch);
+        } else {
+          allMatch.add(flattened);
+        }
+      }
+      if (allMatch.isEmpty()) {
+        return AlwaysTrueMatcher.INSTANCE;
+      }
+      return allMatch.size() == 1 ? allMatch.get(0) : new AndMatcher(allMatch);
+    }
+    if (matcher instanceof InvertMatcher) {
+      Matcher flattened = flatten(((InvertMatcher) matcher).toInvertMatcher);
+      if (flattened instanceof InvertMatcher) {
+        return ((InvertMatcher) flattened).toInvertMatcher;
+      }
+      return new InvertMatcher(flattened);
+    }
+    return matcher;
+  }
+
+  /**
+   * Returns the full names of the methods whose calls may be matched by the matcher, or {@code
+   * null} if calls of any method may be matched.
+   */
+  @Nullable
+  private static Set<String> getMatchedMethods(Matcher matcher) {
+    if (matcher instanceof PathMatcher) {
+      Matchers.StringMatcher pathMatcher = ((PathMatcher) matcher).delegate;
+      String path = pathMatcher.exact();
+      if (path == null || pathMatcher.ignoreCase()) {
+        return null;
+      }
+      // The path of a call is "/" followed by the full method name.
+      return path.startsWith("/")
+          ? Collections.singleton(path.substring(1)) : Collections.<String>emptySet();
+    }
+    if (matcher instanceof OrMatcher) {
+      Set<String> methods = new HashSet<>();
+      for (Matcher m : ((OrMatcher) matcher).anyMatch) {
+        Set<String> matchedMethods = getMatchedMethods(m);
+        if (matchedMethods == null) {
+          return null;
+        }
+        methods.addAll(matchedMethods);
+      }
+      return methods;
+    }
+    if (matcher instanceof AndMatcher) {
+      Set<String> methods = null;
+      for (Matcher m : ((AndMatcher) matcher).allMatch) {
+        Set<String> matchedMethods = getMatchedMethods(m);
+        if (matchedMethods == null) {
+          continue;
+        }
+        if (methods == null) {
+          methods = new HashSet<>(matchedMethods);
+        } else {
+          methods.retainAll(matchedMethods);
+        }
+      }
+      return methods;
+    }
+    return null;
+  }
+
+  /** Returns whether the result of the matcher may depend on request headers. */
+  private static boolean usesHeaders(Matcher matcher) {
+    if (matcher instanceof OrMatcher) {
+      for (Matcher m : ((OrMatcher) matcher).anyMatch) {
+        if (usesHeaders(m)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (matcher instanceof AndMatcher) {
+      for (Matcher m : ((AndMatcher) matcher).allMatch) {
+        if (usesHeaders(m)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (matcher instanceof InvertMatcher) {
+      return usesHeaders(((InvertMatcher) matcher).toInvertMatcher);
+    }
+    // Unknown matchers may use anything.
+    return !(matcher instanceof AuthenticatedMatcher
+        || matcher instanceof DestinationIpMatcher
+        || matcher instanceof SourceIpMatcher
+        || matcher instanceof PathMatcher
+        || matcher instanceof DestinationPortMatcher
+        || matcher instanceof RequestedServerNameMatcher
+        || matcher instanceof AlwaysTrueMatcher);
+  }
+
+  /** Policies that may match calls of some methods, in configuration order. */
+  private static final class Candidates {
+    private final int[] policies;
+    // Whether decisions do not depend on request headers.
+    private final boolean cacheable;
+
+    private Candidates(int[] policies, boolean cacheable) {
+      this.policies = policies;
+      this.cacheable = cacheable;
+    }
+  }
+
   public enum Action {
     ALLOW,
     DENY,
@@ -250,19 +492,99 @@ public final class GrpcAuthorizationEngine {
   private static final class EvaluateArgs {
     private final Metadata metadata;
     private final ServerCall<?,?> serverCall;
-    // https://github.com/envoyproxy/envoy/blob/63619d578e1abe0c1725ea28ba02f361466662e1/api/envoy/config/rbac/v3/rbac.proto#L238-L240
-    private static final int URI_SAN = 6;
-    private static final int DNS_SAN = 2;
+    private final ConnectionArgs connectionArgs;
 
-    private EvaluateArgs(Metadata metadata, ServerCall<?,?> serverCall) {
+    private EvaluateArgs(
+        Metadata metadata, ServerCall<?,?> serverCall, ConnectionArgs connectionArgs) {
       this.metadata = metadata;
       this.serverCall = serverCall;
+      this.connectionArgs = connectionArgs;
     }
 
     private String getPath() {
       return "/" + serverCall.getMethodDescriptor().getFullMethodName();
     }
 
+    @Nullable
+    private Collection<String> getPrincipalNames() {
+      return connectionArgs.getPrincipalNames();
+    }
+
+    @Nullable
+    private String getHeader(String headerName) {
+      if (headerName.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+        return null;
+      }
+      Metadata.Key<String> key;
+      try {
+        key = Metadata.Key.of(headerName, Metadata.ASCII_STRING_MARSHALLER);
+      } catch (IllegalArgumentException e) {
+        return null;
+      }
+      Iterable<String> values = metadata.getAll(key);
+      return values == null ? null : Joiner.on(",").join(values);
+    }
+
+    private InetAddress getDestinationIp() {
+      return connectionArgs.destinationIp;
+    }
+
+    private InetAddress getSourceIp() {
+      return connectionArgs.sourceIp;
+    }
+
+    private int getDestinationPort() {
+      return connectionArgs.destinationPort;
+    }
+
+    private String getRequestedServerName() {
+      return "";
+    }
+  }
+
+  /**
+   * The attributes of a connection calls are evaluated against, extracted from the transport
+   * attributes once per connection, and the decisions cached for the connection.
+   */
+  private static final class ConnectionArgs {
+    // https://github.com/envoyproxy/envoy/blob/63619d578e1abe0c1725ea28ba02f361466662e1/api/envoy/config/rbac/v3/rbac.proto#L238-L240
+    private static final int URI_SAN = 6;
+    private static final int DNS_SAN = 2;
+
+    private final Attributes attributes;
+    @Nullable
+    private final InetAddress destinationIp;
+    @Nullable
+    private final InetAddress sourceIp;
+    private final int destinationPort;
+    // By full method name.
+    private final ConcurrentMap<String, AuthDecision> decisions = new ConcurrentHashMap<>();
+    // Computed when first needed, as parsing the peer certificate is expensive.
+    @Nullable
+    private volatile Collection<String> principalNames;
+    private volatile boolean principalNamesComputed;
+
+    private ConnectionArgs(Attributes attributes) {
+      this.attributes = attributes;
+      SocketAddress localAddr = attributes.get(Grpc.TRANSPORT_ATTR_LOCAL_ADDR);
+      SocketAddress remoteAddr = attributes.get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+      destinationIp = localAddr instanceof InetSocketAddress
+          ? ((InetSocketAddress) localAddr).getAddress() : null;
+      sourceIp = remoteAddr instanceof InetSocketAddress
+          ? ((InetSocketAddress) remoteAddr).getAddress() : null;
+      destinationPort = localAddr instanceof InetSocketAddress
+          ? ((InetSocketAddress) localAddr).getPort() : -1;
+    }
+
+    @Nullable
+    private Collection<String> getPrincipalNames() {
+      if (!principalNamesComputed) {
+        principalNames = computePrincipalNames();
+        principalNamesComputed = true;
+      }
+      return principalNames;
+    }
+
     /**
      * Returns null for unauthenticated connection.
      * Returns empty string collection if no valid certificate and no
@@ -270,8 +592,8 @@ public final class GrpcAuthorizationEngine {
      * https://github.com/envoyproxy/envoy/blob/0fae6970ddaf93f024908ba304bbd2b34e997a51/envoy/ssl/connection.h#L70
      */
     @Nullable
-    private Collection<String> getPrincipalNames() {
-      SSLSession sslSession = serverCall.getAttributes().get(Grpc.TRANSPORT_ATTR_SSL_SESSION);
+    private Collection<String> computePrincipalNames() {
+      SSLSession sslSession = attributes.get(Grpc.TRANSPORT_ATTR_SSL_SESSION);
       if (sslSession == null) {
         return null;
       }
@@ -313,40 +635,6 @@ public final class GrpcAuthorizationEngine {
         return Collections.singleton("");
       }
     }
-
-    @Nullable
-    private String getHeader(String headerName) {
-      if (headerName.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
-        return null;
-      }
-      Metadata.Key<String> key;
-      try {
-        key = Metadata.Key.of(headerName, Metadata.ASCII_STRING_MARSHALLER);
-      } catch (IllegalArgumentException e) {
-        return null;
-      }
-      Iterable<String> values = metadata.getAll(key);
-      return values == null ? null : Joiner.on(",").join(values);
-    }
-
-    private InetAddress getDestinationIp() {
-      SocketAddress addr = serverCall.getAttributes().get(Grpc.TRANSPORT_ATTR_LOCAL_ADDR);
-      return addr == null ? null : ((InetSocketAddress) addr).getAddress();
-    }
-
-    private InetAddress getSourceIp() {
-      SocketAddress addr = serverCall.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
-      return addr == null ? null : ((InetSocketAddress) addr).getAddress();
-    }
-
-    private int getDestinationPort() {
-      SocketAddress addr = serverCall.getAttributes().get(Grpc.TRANSPORT_ATTR_LOCAL_ADDR);
-      return addr == null ? -1 : ((InetSocketAddress) addr).getPort();
-    }
-
-    private String getRequestedServerName() {
-      return "";
-    }
   }
 
   public interface Matcher {
@@ -597,6 +597,49 @@ public class BootstrapperImplTest {
     assertThat(serverInfo.getTarget()).isEqualTo(SERVER_URI);
     assertThat(serverInfo.getChannelCredentials()).isInstanceOf(InsecureChannelCredentials.class);
     assertThat(serverInfo.isUseProtocolV3()).isTrue();
+    assertThat(serverInfo.isUseDeltaProtocol()).isFalse();
+  }
+
+  @Test
+  public void useDeltaProtocolIfDeltaFeaturePresent() throws XdsInitializationException {
+    String rawData = "{\n"
+        + "  \"xds_servers\": [\n"
+        + "    {\n"
+        + "      \"server_uri\": \"" + SERVER_URI + "\",\n"
+        + "      \"channel_creds\": [\n"
+        + "        {\"type\": \"insecure\"}\n"
+        + "      ],\n"
+        + "      \"server_features\": [\"xds_v3\", \"xds_delta\"]\n"
+        + "    }\n"
+        + "  ]\n"
+        + "}";
+
+    bootstrapper.setFileReader(createFileReader(BOOTSTRAP_FILE_PATH, rawData));
+    BootstrapInfo info = bootstrapper.bootstrap();
+    ServerInfo serverInfo = Iterables.getOnlyElement(info.getServers());
+    assertThat(serverInfo.isUseProtocolV3()).isTrue();
+    assertThat(serverInfo.isUseDeltaProtocol()).isTrue();
+  }
+
+  @Test
+  public void ignoreDeltaFeatureWithoutV3Feature() throws XdsInitializationException {
+    String rawData = "{\n"
+        + "  \"xds_servers\": [\n"
+        + "    {\n"
+        + "      \"server_uri\": \"" + SERVER_URI + "\",\n"
+        + "      \"channel_creds\": [\n"
+        + "        {\"type\": \"insecure\"}\n"
+        + "      ],\n"
+        + "      \"server_features\": [\"xds_delta\"]\n"
+        + "    }\n"
+        + "  ]\n"
+        + "}";
+
+    bootstrapper.setFileReader(createFileReader(BOOTSTRAP_FILE_PATH, rawData));
+    BootstrapInfo info = bootstrapper.bootstrap();
+    ServerInfo serverInfo = Iterables.getOnlyElement(info.getServers());
+    assertThat(serverInfo.isUseProtocolV3()).isFalse();
+    assertThat(serverInfo.isUseDeltaProtocol()).isFalse();
   }
 
   @Test
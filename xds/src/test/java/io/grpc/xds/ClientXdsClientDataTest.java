@@ -30,6 +30,7 @@ import io.envoyproxy.envoy.config.cluster.v3.Cluster;
 import io.envoyproxy.envoy.config.cluster.v3.Cluster.DiscoveryType;
 import io.envoyproxy.envoy.config.cluster.v3.Cluster.EdsClusterConfig;
 import io.envoyproxy.envoy.config.cluster.v3.Cluster.LbPolicy;
+import io.envoyproxy.envoy.config.cluster.v3.Cluster.MaglevLbConfig;
 import io.envoyproxy.envoy.config.cluster.v3.Cluster.RingHashLbConfig;
 import io.envoyproxy.envoy.config.cluster.v3.Cluster.RingHashLbConfig.HashFunction;
 import io.envoyproxy.envoy.config.core.v3.Address;
@@ -997,6 +998,90 @@ public class ClientXdsClientDataTest {
     ClientXdsClient.parseCluster(cluster, new HashSet<String>());
   }
 
+  @Test
+  public void parseCluster_maglevLbPolicy() throws ResourceInvalidException {
+    boolean originalEnableMaglev = ClientXdsClient.enableMaglev;
+    ClientXdsClient.enableMaglev = true;
+    try {
+      Cluster cluster = Cluster.newBuilder()
+          .setName("cluster-foo.googleapis.com")
+          .setType(DiscoveryType.EDS)
+          .setEdsClusterConfig(
+              EdsClusterConfig.newBuilder()
+                  .setEdsConfig(
+                      ConfigSource.newBuilder()
+                          .setAds(AggregatedConfigSource.getDefaultInstance()))
+                  .setServiceName("service-foo.googleapis.com"))
+          .setLbPolicy(LbPolicy.MAGLEV)
+          .setMaglevLbConfig(
+              MaglevLbConfig.newBuilder().setTableSize(UInt64Value.newBuilder().setValue(101L)))
+          .build();
+
+      CdsUpdate update = ClientXdsClient.parseCluster(cluster, new HashSet<String>());
+      assertThat(update.lbPolicy()).isEqualTo(CdsUpdate.LbPolicy.MAGLEV);
+      assertThat(update.maglevTableSize()).isEqualTo(101L);
+
+      update = ClientXdsClient.parseCluster(
+          cluster.toBuilder().clearMaglevLbConfig().build(), new HashSet<String>());
+      assertThat(update.maglevTableSize())
+          .isEqualTo(ClientXdsClient.DEFAULT_MAGLEV_LB_POLICY_TABLE_SIZE);
+    } finally {
+      ClientXdsClient.enableMaglev = originalEnableMaglev;
+    }
+  }
+
+  @Test
+  public void parseCluster_maglevLbPolicy_invalidTableSize() throws ResourceInvalidException {
+    boolean originalEnableMaglev = ClientXdsClient.enableMaglev;
+    ClientXdsClient.enableMaglev = true;
+    try {
+      Cluster cluster = Cluster.newBuilder()
+          .setName("cluster-foo.googleapis.com")
+          .setType(DiscoveryType.EDS)
+          .setEdsClusterConfig(
+              EdsClusterConfig.newBuilder()
+                  .setEdsConfig(
+                      ConfigSource.newBuilder()
+                          .setAds(AggregatedConfigSource.getDefaultInstance()))
+                  .setServiceName("service-foo.googleapis.com"))
+          .setLbPolicy(LbPolicy.MAGLEV)
+          .setMaglevLbConfig(
+              MaglevLbConfig.newBuilder().setTableSize(UInt64Value.newBuilder().setValue(100L)))
+          .build();
+
+      thrown.expect(ResourceInvalidException.class);
+      thrown.expectMessage("Cluster cluster-foo.googleapis.com: invalid maglev_lb_config");
+      ClientXdsClient.parseCluster(cluster, new HashSet<String>());
+    } finally {
+      ClientXdsClient.enableMaglev = originalEnableMaglev;
+    }
+  }
+
+  @Test
+  public void parseCluster_maglevLbPolicy_notEnabled() throws ResourceInvalidException {
+    boolean originalEnableMaglev = ClientXdsClient.enableMaglev;
+    ClientXdsClient.enableMaglev = false;
+    try {
+      Cluster cluster = Cluster.newBuilder()
+          .setName("cluster-foo.googleapis.com")
+          .setType(DiscoveryType.EDS)
+          .setEdsClusterConfig(
+              EdsClusterConfig.newBuilder()
+                  .setEdsConfig(
+                      ConfigSource.newBuilder()
+                          .setAds(AggregatedConfigSource.getDefaultInstance()))
+                  .setServiceName("service-foo.googleapis.com"))
+          .setLbPolicy(LbPolicy.MAGLEV)
+          .build();
+
+      thrown.expect(ResourceInvalidException.class);
+      thrown.expectMessage("Cluster cluster-foo.googleapis.com: unsupported lb policy: MAGLEV");
+      ClientXdsClient.parseCluster(cluster, new HashSet<String>());
+    } finally {
+      ClientXdsClient.enableMaglev = originalEnableMaglev;
+    }
+  }
+
   @Test
   public void parseServerSideListener_invalidTrafficDirection() throws ResourceInvalidException {
     Listener listener =
@@ -0,0 +1,417 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.grpc.xds.AbstractXdsClient.ResourceType.CDS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.Any;
+import io.envoyproxy.envoy.config.cluster.v3.Cluster;
+import io.envoyproxy.envoy.config.cluster.v3.Cluster.DiscoveryType;
+import io.envoyproxy.envoy.config.cluster.v3.Cluster.EdsClusterConfig;
+import io.envoyproxy.envoy.config.cluster.v3.Cluster.LbPolicy;
+import io.envoyproxy.envoy.config.core.v3.AggregatedConfigSource;
+import io.envoyproxy.envoy.config.core.v3.ConfigSource;
+import io.envoyproxy.envoy.service.discovery.v3.AggregatedDiscoveryServiceGrpc.AggregatedDiscoveryServiceImplBase;
+import io.envoyproxy.envoy.service.discovery.v3.DeltaDiscoveryRequest;
+import io.envoyproxy.envoy.service.discovery.v3.DeltaDiscoveryResponse;
+import io.envoyproxy.envoy.service.discovery.v3.Resource;
+import io.grpc.Context;
+import io.grpc.Context.CancellationListener;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.internal.BackoffPolicy;
+import io.grpc.internal.FakeClock;
+import io.grpc.internal.TimeProvider;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import io.grpc.xds.AbstractXdsClient.ResourceType;
+import io.grpc.xds.XdsClient.CdsResourceWatcher;
+import io.grpc.xds.XdsClient.CdsUpdate;
+import io.grpc.xds.XdsClient.ResourceMetadata;
+import io.grpc.xds.XdsClient.ResourceMetadata.ResourceMetadataStatus;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/**
+ * Tests for {@link ClientXdsClient} with the incremental (delta) variant of the xDS protocol.
+ */
+@RunWith(JUnit4.class)
+public class ClientXdsClientDeltaTest {
+  private static final String SERVER_URI = "trafficdirector.googleapis.com";
+  private static final String CLUSTER_A = "cluster-a.googleapis.com";
+  private static final String CLUSTER_B = "cluster-b.googleapis.com";
+
+  private static final FakeClock.TaskFilter CDS_RESOURCE_FETCH_TIMEOUT_TASK_FILTER =
+      new FakeClock.TaskFilter() {
+        @Override
+        public boolean shouldAccept(Runnable command) {
+          return command.toString().contains(CDS.toString());
+        }
+      };
+
+  @Rule
+  public final MockitoRule mocks = MockitoJUnit.rule();
+  @Rule
+  public final GrpcCleanupRule cleanupRule = new GrpcCleanupRule();
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final Queue<DeltaRpcCall> deltaCalls = new ArrayDeque<>();
+  private final AtomicBoolean adsEnded = new AtomicBoolean(true);
+
+  @Captor
+  private ArgumentCaptor<CdsUpdate> cdsUpdateCaptor;
+  @Mock
+  private BackoffPolicy.Provider backoffPolicyProvider;
+  @Mock
+  private BackoffPolicy backoffPolicy;
+  @Mock
+  private CdsResourceWatcher watcherA;
+  @Mock
+  private CdsResourceWatcher watcherB;
+  @Mock
+  private TlsContextManager tlsContextManager;
+
+  private ManagedChannel channel;
+  private ClientXdsClient xdsClient;
+
+  @Before
+  public void setUp() throws IOException {
+    when(backoffPolicyProvider.get()).thenReturn(backoffPolicy);
+    when(backoffPolicy.nextBackoffNanos()).thenReturn(10L);
+
+    String serverName = InProcessServerBuilder.generateName();
+    cleanupRule.register(
+        InProcessServerBuilder
+            .forName(serverName)
+            .addService(new AggregatedDiscoveryServiceImplBase() {
+              @Override
+              public StreamObserver<DeltaDiscoveryRequest> deltaAggregatedResources(
+                  StreamObserver<DeltaDiscoveryResponse> responseObserver) {
+                assertThat(adsEnded.get()).isTrue();  // ensure previous call was ended
+                adsEnded.set(false);
+                DeltaRpcCall call = new DeltaRpcCall(responseObserver);
+                deltaCalls.offer(call);
+                Context.current().addListener(
+                    new CancellationListener() {
+                      @Override
+                      public void cancelled(Context context) {
+                        adsEnded.set(true);
+                      }
+                    }, MoreExecutors.directExecutor());
+                return call;
+              }
+            })
+            .directExecutor()
+            .build()
+            .start());
+    channel =
+        cleanupRule.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+
+    Bootstrapper.BootstrapInfo bootstrapInfo =
+        new Bootstrapper.BootstrapInfo(
+            Arrays.asList(
+                new Bootstrapper.ServerInfo(
+                    SERVER_URI, InsecureChannelCredentials.create(), true, true)),
+            EnvoyProtoData.Node.newBuilder().build(),
+            null,
+            null);
+    xdsClient =
+        new ClientXdsClient(
+            channel,
+            bootstrapInfo,
+            Context.ROOT,
+            fakeClock.getScheduledExecutorService(),
+            backoffPolicyProvider,
+            fakeClock.getStopwatchSupplier(),
+            TimeProvider.SYSTEM_TIME_PROVIDER,
+            tlsContextManager);
+  }
+
+  @After
+  public void tearDown() {
+    xdsClient.shutdown();
+    channel.shutdown();  // channel not owned by XdsClient
+    assertThat(adsEnded.get()).isTrue();
+    assertThat(fakeClock.getPendingTasks()).isEmpty();
+  }
+
+  @Test
+  public void subscribeAndAck() {
+    xdsClient.watchCdsResource(CLUSTER_A, watcherA);
+    DeltaRpcCall call = deltaCalls.poll();
+    DeltaDiscoveryRequest request = call.requests.poll();
+    assertThat(request.getTypeUrl()).isEqualTo(CDS.typeUrl());
+    assertThat(request.hasNode()).isTrue();
+    assertThat(request.getResourceNamesSubscribeList()).containsExactly(CLUSTER_A);
+    assertThat(request.getResourceNamesUnsubscribeList()).isEmpty();
+    assertThat(request.getInitialResourceVersionsMap()).isEmpty();
+    assertThat(request.getResponseNonce()).isEmpty();
+
+    call.sendResponse(CDS, "0000", Arrays.asList(buildCluster(CLUSTER_A, "1", "eds-a")),
+        Collections.<String>emptyList());
+    verify(watcherA).onChanged(cdsUpdateCaptor.capture());
+    assertThat(cdsUpdateCaptor.getValue().edsServiceName()).isEqualTo("eds-a");
+
+    // The ACK only echoes the nonce, the subscription is unchanged.
+    DeltaDiscoveryRequest ack = call.requests.poll();
+    assertThat(ack.getResponseNonce()).isEqualTo("0000");
+    assertThat(ack.hasNode()).isFalse();
+    assertThat(ack.getResourceNamesSubscribeList()).isEmpty();
+    assertThat(ack.getResourceNamesUnsubscribeList()).isEmpty();
+    assertThat(ack.hasErrorDetail()).isFalse();
+    assertThat(call.requests).isEmpty();
+
+    ResourceMetadata metadata = xdsClient.getSubscribedResourcesMetadata(CDS).get(CLUSTER_A);
+    assertThat(metadata.getStatus()).isEqualTo(ResourceMetadataStatus.ACKED);
+    assertThat(metadata.getVersion()).isEqualTo("1");
+  }
+
+  @Test
+  public void onlyResourcesInResponseUpdated() {
+    xdsClient.watchCdsResource(CLUSTER_A, watcherA);
+    xdsClient.watchCdsResource(CLUSTER_B, watcherB);
+    DeltaRpcCall call = deltaCalls.poll();
+    assertThat(call.requests.poll().getResourceNamesSubscribeList()).containsExactly(CLUSTER_A);
+    assertThat(call.requests.poll().getResourceNamesSubscribeList()).containsExactly(CLUSTER_B);
+
+    call.sendResponse(CDS, "0000",
+        Arrays.asList(buildCluster(CLUSTER_A, "1", "eds-a"), buildCluster(CLUSTER_B, "1", "eds-b")),
+        Collections.<String>emptyList());
+    verify(watcherA).onChanged(any(CdsUpdate.class));
+    verify(watcherB).onChanged(any(CdsUpdate.class));
+
+    call.sendResponse(CDS, "0001", Arrays.asList(buildCluster(CLUSTER_B, "2", "eds-b2")),
+        Collections.<String>emptyList());
+    verify(watcherB, times(2)).onChanged(cdsUpdateCaptor.capture());
+    assertThat(cdsUpdateCaptor.getValue().edsServiceName()).isEqualTo("eds-b2");
+    verify(watcherA).onChanged(any(CdsUpdate.class));
+    verify(watcherA, never()).onResourceDoesNotExist(CLUSTER_A);
+    assertThat(xdsClient.getSubscribedResourcesMetadata(CDS).get(CLUSTER_A).getVersion())
+        .isEqualTo("1");
+    assertThat(xdsClient.getSubscribedResourcesMetadata(CDS).get(CLUSTER_B).getVersion())
+        .isEqualTo("2");
+  }
+
+  @Test
+  public void resourceMissingFromResponse_notConcludedAbsent() {
+    xdsClient.watchCdsResource(CLUSTER_A, watcherA);
+    xdsClient.watchCdsResource(CLUSTER_B, watcherB);
+    DeltaRpcCall call = deltaCalls.poll();
+
+    call.sendResponse(CDS, "0000", Arrays.asList(buildCluster(CLUSTER_A, "1", "eds-a")),
+        Collections.<String>emptyList());
+    verify(watcherA).onChanged(any(CdsUpdate.class));
+    verify(watcherB, never()).onResourceDoesNotExist(CLUSTER_B);
+    assertThat(fakeClock.getPendingTasks(CDS_RESOURCE_FETCH_TIMEOUT_TASK_FILTER)).hasSize(1);
+
+    fakeClock.forwardTime(ClientXdsClient.INITIAL_RESOURCE_FETCH_TIMEOUT_SEC, TimeUnit.SECONDS);
+    verify(watcherB).onResourceDoesNotExist(CLUSTER_B);
+  }
+
+  @Test
+  public void removedResource_notifyDoesNotExist() {
+    xdsClient.watchCdsResource(CLUSTER_A, watcherA);
+    DeltaRpcCall call = deltaCalls.poll();
+    call.sendResponse(CDS, "0000", Arrays.asList(buildCluster(CLUSTER_A, "1", "eds-a")),
+        Collections.<String>emptyList());
+    verify(watcherA).onChanged(any(CdsUpdate.class));
+
+    call.sendResponse(CDS, "0001", Collections.<Resource>emptyList(),
+        Collections.singletonList(CLUSTER_A));
+    verify(watcherA).onResourceDoesNotExist(CLUSTER_A);
+    assertThat(xdsClient.getSubscribedResourcesMetadata(CDS).get(CLUSTER_A).getStatus())
+        .isEqualTo(ResourceMetadataStatus.DOES_NOT_EXIST);
+  }
+
+  @Test
+  public void removedResourceNeverReceived_notifyDoesNotExistBeforeTimeout() {
+    xdsClient.watchCdsResource(CLUSTER_A, watcherA);
+    DeltaRpcCall call = deltaCalls.poll();
+    call.sendResponse(CDS, "0000", Collections.<Resource>emptyList(),
+        Collections.singletonList(CLUSTER_A));
+    verify(watcherA).onResourceDoesNotExist(CLUSTER_A);
+    assertThat(fakeClock.getPendingTasks(CDS_RESOURCE_FETCH_TIMEOUT_TASK_FILTER)).isEmpty();
+  }
+
+  @Test
+  public void nack_removalNotApplied() {
+    xdsClient.watchCdsResource(CLUSTER_A, watcherA);
+    DeltaRpcCall call = deltaCalls.poll();
+    call.requests.clear();
+    call.sendResponse(CDS, "0000", Arrays.asList(buildCluster(CLUSTER_A, "1", "eds-a")),
+        Collections.<String>emptyList());
+    call.requests.clear();
+
+    Resource invalid = Resource.newBuilder()
+        .setName(CLUSTER_B)
+        .setVersion("2")
+        .setResource(Any.newBuilder().setTypeUrl("fake"))
+        .build();
+    call.sendResponse(CDS, "0001", Arrays.asList(invalid), Collections.singletonList(CLUSTER_A));
+    DeltaDiscoveryRequest nack = call.requests.poll();
+    assertThat(nack.getResponseNonce()).isEqualTo("0001");
+    assertThat(nack.hasErrorDetail()).isTrue();
+    assertThat(nack.getResourceNamesSubscribeList()).isEmpty();
+    verify(watcherA, never()).onResourceDoesNotExist(CLUSTER_A);
+    assertThat(xdsClient.getSubscribedResourcesMetadata(CDS).get(CLUSTER_A).getVersion())
+        .isEqualTo("1");
+  }
+
+  @Test
+  public void cancelWatch_unsubscribe() {
+    xdsClient.watchCdsResource(CLUSTER_A, watcherA);
+    xdsClient.watchCdsResource(CLUSTER_B, watcherB);
+    DeltaRpcCall call = deltaCalls.poll();
+    call.requests.clear();
+
+    xdsClient.cancelCdsResourceWatch(CLUSTER_A, watcherA);
+    DeltaDiscoveryRequest request = call.requests.poll();
+    assertThat(request.getResourceNamesSubscribeList()).isEmpty();
+    assertThat(request.getResourceNamesUnsubscribeList()).containsExactly(CLUSTER_A);
+    assertThat(request.getResponseNonce()).isEmpty();
+
+    xdsClient.cancelCdsResourceWatch(CLUSTER_B, watcherB);
+    request = call.requests.poll();
+    assertThat(request.getResourceNamesUnsubscribeList()).containsExactly(CLUSTER_B);
+    assertThat(call.requests).isEmpty();
+  }
+
+  @Test
+  public void streamRecreated_sendInitialResourceVersions() {
+    xdsClient.watchCdsResource(CLUSTER_A, watcherA);
+    xdsClient.watchCdsResource(CLUSTER_B, watcherB);
+    DeltaRpcCall call = deltaCalls.poll();
+    call.sendResponse(CDS, "0000", Arrays.asList(buildCluster(CLUSTER_A, "1", "eds-a")),
+        Collections.<String>emptyList());
+
+    call.sendError(Status.UNAVAILABLE.asException());
+    verify(watcherA).onError(any(Status.class));
+    fakeClock.runDueTasks();  // retries right away as a response was received
+
+    call = deltaCalls.poll();
+    DeltaDiscoveryRequest request = call.requests.poll();
+    assertThat(request.hasNode()).isTrue();
+    assertThat(request.getResourceNamesSubscribeList()).containsExactly(CLUSTER_A, CLUSTER_B);
+    assertThat(request.getInitialResourceVersionsMap()).containsExactly(CLUSTER_A, "1");
+    assertThat(request.getResponseNonce()).isEmpty();
+  }
+
+  @Test
+  public void resubscribe_noInitialResourceVersion() {
+    xdsClient.watchCdsResource(CLUSTER_A, watcherA);
+    DeltaRpcCall call = deltaCalls.poll();
+    call.sendResponse(CDS, "0000", Arrays.asList(buildCluster(CLUSTER_A, "1", "eds-a")),
+        Collections.<String>emptyList());
+    call.sendError(Status.UNAVAILABLE.asException());
+
+    // Unsubscribed and subscribed again while there is no stream.
+    xdsClient.cancelCdsResourceWatch(CLUSTER_A, watcherA);
+    xdsClient.watchCdsResource(CLUSTER_A, watcherB);
+    fakeClock.runDueTasks();
+
+    call = deltaCalls.poll();
+    DeltaDiscoveryRequest request = call.requests.poll();
+    assertThat(request.getResourceNamesSubscribeList()).containsExactly(CLUSTER_A);
+    assertThat(request.getInitialResourceVersionsMap()).isEmpty();
+  }
+
+  private static Resource buildCluster(String name, String version, String edsServiceName) {
+    Cluster cluster = Cluster.newBuilder()
+        .setName(name)
+        .setType(DiscoveryType.EDS)
+        .setEdsClusterConfig(
+            EdsClusterConfig.newBuilder()
+                .setEdsConfig(
+                    ConfigSource.newBuilder().setAds(AggregatedConfigSource.getDefaultInstance()))
+                .setServiceName(edsServiceName))
+        .setLbPolicy(LbPolicy.ROUND_ROBIN)
+        .build();
+    return Resource.newBuilder()
+        .setName(name)
+        .setVersion(version)
+        .setResource(Any.pack(cluster))
+        .build();
+  }
+
+  /**
+   * The server side of a delta ADS stream, recording the requests it receives.
+   */
+  private static final class DeltaRpcCall implements StreamObserver<DeltaDiscoveryRequest> {
+    private final Queue<DeltaDiscoveryRequest> requests = new ArrayDeque<>();
+    private final StreamObserver<DeltaDiscoveryResponse> responseObserver;
+
+    private DeltaRpcCall(StreamObserver<DeltaDiscoveryResponse> responseObserver) {
+      this.responseObserver = responseObserver;
+    }
+
+    private void sendResponse(
+        ResourceType type, String nonce, List<Resource> resources, List<String> removed) {
+      responseObserver.onNext(
+          DeltaDiscoveryResponse.newBuilder()
+              .setTypeUrl(type.typeUrl())
+              .setSystemVersionInfo(nonce)
+              .addAllResources(resources)
+              .addAllRemovedResources(removed)
+              .setNonce(nonce)
+              .build());
+    }
+
+    private void sendError(Throwable t) {
+      responseObserver.onError(t);
+    }
+
+    @Override
+    public void onNext(DeltaDiscoveryRequest request) {
+      requests.offer(request);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+    }
+
+    @Override
+    public void onCompleted() {
+    }
+  }
+}
@@ -80,6 +80,7 @@ import io.grpc.xds.XdsClient.ResourceWatcher;
 import io.grpc.xds.internal.sds.CommonTlsContextTestsUtil;
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -978,6 +979,25 @@ public abstract class ClientXdsClientTestBase {
     verifySubscribedResourcesMetadataSizes(1, 0, 1, 0);
   }
 
+  @Test
+  public void ldsResourceUnchanged_rdsResourceRetained() {
+    xdsClient.watchLdsResource(LDS_RESOURCE, ldsResourceWatcher);
+    xdsClient.watchRdsResource(RDS_RESOURCE, rdsResourceWatcher);
+    DiscoveryRpcCall call = resourceDiscoveryCalls.poll();
+    call.sendResponse(LDS, testListenerRds, VERSION_1, "0000");
+    call.sendResponse(RDS, testRouteConfig, VERSION_1, "0000");
+    verify(ldsResourceWatcher).onChanged(any(LdsUpdate.class));
+    verify(rdsResourceWatcher).onChanged(any(RdsUpdate.class));
+
+    // The unchanged Listener still refers to the RouteConfiguration.
+    call.sendResponse(LDS, testListenerRds, VERSION_2, "0001");
+    verify(ldsResourceWatcher).onChanged(any(LdsUpdate.class));
+    verify(rdsResourceWatcher, never()).onResourceDoesNotExist(RDS_RESOURCE);
+    assertThat(xdsClient.getUnchangedResourceCount()).isEqualTo(1);
+    verifyResourceMetadataAcked(LDS, LDS_RESOURCE, testListenerRds, VERSION_2, TIME_INCREMENT * 3);
+    verifyResourceMetadataAcked(RDS, RDS_RESOURCE, testRouteConfig, VERSION_1, TIME_INCREMENT * 2);
+  }
+
   @Test
   public void rdsResourcesDeletedByLdsTcpListener() {
     Assume.assumeTrue(useProtocolV3());
@@ -1144,6 +1164,48 @@ public abstract class ClientXdsClientTestBase {
     verifyNoInteractions(cdsResourceWatcher);
   }
 
+  @Test
+  public void cdsResponseErrorHandling_largeResponseFailedUnpack() {
+    DiscoveryRpcCall call = startResourceWatcher(CDS, CDS_RESOURCE, cdsResourceWatcher);
+    List<Any> resources = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      resources.add(Any.pack(mf.buildEdsCluster(
+          "cluster-" + i + ".googleapis.com", null, "round_robin", null, false, null, null)));
+    }
+    resources.set(150, testClusterRoundRobin);
+    resources.set(299, FAILING_ANY);
+    call.sendResponse(CDS, resources, VERSION_1, "0000");
+
+    // Resources decoded in parallel are reported with their index in the response.
+    List<String> errors =
+        ImmutableList.of("CDS response Resource index 299 - can't decode Cluster: ");
+    verifyResourceMetadataNacked(CDS, CDS_RESOURCE, null, "", 0, VERSION_1, TIME_INCREMENT, errors);
+    call.verifyRequestNack(CDS, CDS_RESOURCE, "", "0000", NODE, errors);
+    verifyNoInteractions(cdsResourceWatcher);
+
+    resources.remove(299);
+    call.sendResponse(CDS, resources, VERSION_2, "0001");
+    call.verifyRequest(CDS, CDS_RESOURCE, VERSION_2, "0001", NODE);
+    verify(cdsResourceWatcher).onChanged(cdsUpdateCaptor.capture());
+    assertThat(cdsUpdateCaptor.getValue().clusterName()).isEqualTo(CDS_RESOURCE);
+  }
+
+  @Test
+  public void decodeLargeResponse_resourcesInResponseOrder() {
+    List<Any> resources = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      resources.add(Any.pack(mf.buildEdsCluster(
+          "cluster-" + i + ".googleapis.com", null, "round_robin", null, false, null, null)));
+    }
+    List<ClientXdsClient.DecodedResource> decodedResources =
+        xdsClient.decodeResources(CDS, resources, 8);
+    assertThat(decodedResources).hasSize(1000);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(decodedResources.get(i).name).isEqualTo("cluster-" + i + ".googleapis.com");
+      assertThat(decodedResources.get(i).errorDetail).isNull();
+    }
+  }
+
   /**
    * Tests a subscribed CDS resource transitioned to and from the invalid state.
    *
@@ -1448,6 +1510,43 @@ public abstract class ClientXdsClientTestBase {
     verifySubscribedResourcesMetadataSizes(0, 1, 0, 0);
   }
 
+  @Test
+  public void cdsResourceUnchanged_notParsedAgain() {
+    DiscoveryRpcCall call = startResourceWatcher(CDS, CDS_RESOURCE, cdsResourceWatcher);
+    call.sendResponse(CDS, testClusterRoundRobin, VERSION_1, "0000");
+    verify(cdsResourceWatcher).onChanged(any(CdsUpdate.class));
+    assertThat(xdsClient.getParsedResourceCount()).isEqualTo(1);
+    assertThat(xdsClient.getUnchangedResourceCount()).isEqualTo(0);
+
+    // An equal cluster in a new response is neither parsed again nor notified.
+    Any sameCluster =
+        Any.pack(mf.buildEdsCluster(CDS_RESOURCE, null, "round_robin", null, false, null, null));
+    String otherCluster = "cluster-bar.googleapis.com";
+    Any unsubscribedCluster =
+        Any.pack(mf.buildEdsCluster(otherCluster, null, "round_robin", null, false, null, null));
+    call.sendResponse(CDS, Arrays.asList(sameCluster, unsubscribedCluster), VERSION_2, "0001");
+    call.verifyRequest(CDS, CDS_RESOURCE, VERSION_2, "0001", NODE);
+    verify(cdsResourceWatcher).onChanged(any(CdsUpdate.class));
+    assertThat(xdsClient.getParsedResourceCount()).isEqualTo(2);
+    assertThat(xdsClient.getUnchangedResourceCount()).isEqualTo(1);
+    verifyResourceMetadataAcked(CDS, CDS_RESOURCE, sameCluster, VERSION_2, TIME_INCREMENT * 2);
+  }
+
+  @Test
+  public void cdsResourceDeletedAndAddedBack_parsedAgain() {
+    DiscoveryRpcCall call = startResourceWatcher(CDS, CDS_RESOURCE, cdsResourceWatcher);
+    call.sendResponse(CDS, testClusterRoundRobin, VERSION_1, "0000");
+    call.sendResponse(CDS, Collections.<Any>emptyList(), VERSION_2, "0001");
+    verify(cdsResourceWatcher).onResourceDoesNotExist(CDS_RESOURCE);
+
+    call.sendResponse(CDS, testClusterRoundRobin, VERSION_3, "0002");
+    verify(cdsResourceWatcher, times(2)).onChanged(any(CdsUpdate.class));
+    assertThat(xdsClient.getParsedResourceCount()).isEqualTo(2);
+    assertThat(xdsClient.getUnchangedResourceCount()).isEqualTo(0);
+    verifyResourceMetadataAcked(
+        CDS, CDS_RESOURCE, testClusterRoundRobin, VERSION_3, TIME_INCREMENT * 3);
+  }
+
   @Test
   public void multipleCdsWatchers() {
     String cdsResourceTwo = "cluster-bar.googleapis.com";
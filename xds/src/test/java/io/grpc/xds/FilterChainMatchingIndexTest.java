@@ -0,0 +1,161 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import io.grpc.xds.EnvoyServerProtoData.CidrRange;
+import io.grpc.xds.EnvoyServerProtoData.ConnectionSourceType;
+import io.grpc.xds.EnvoyServerProtoData.FilterChain;
+import io.grpc.xds.EnvoyServerProtoData.FilterChainMatch;
+import io.grpc.xds.EnvoyServerProtoData.Listener;
+import io.grpc.xds.Filter.NamedFilterConfig;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Unit tests for {@link FilterChainMatchingIndex}.
+ */
+@RunWith(JUnit4.class)
+public class FilterChainMatchingIndexTest {
+  private static final HttpConnectionManager HTTP_CONNECTION_MANAGER =
+      HttpConnectionManager.forRdsName(
+          10L, "route-config", Collections.<NamedFilterConfig>emptyList());
+  private static final InetSocketAddress LOCAL_ADDRESS =
+      new InetSocketAddress("10.1.2.3", 8000);
+  private static final InetSocketAddress REMOTE_ADDRESS =
+      new InetSocketAddress("192.168.10.2", 15000);
+
+  @Test
+  public void mostSpecificDestinationPrefixMatches() throws UnknownHostException {
+    FilterChain filterChain8 = filterChain("8", Arrays.asList(new CidrRange("10.0.0.0", 8)),
+        Collections.<CidrRange>emptyList(), Collections.<Integer>emptyList());
+    FilterChain filterChain24 = filterChain("24", Arrays.asList(new CidrRange("10.1.2.0", 24)),
+        Collections.<CidrRange>emptyList(), Collections.<Integer>emptyList());
+    FilterChain filterChainOther = filterChain("other",
+        Arrays.asList(new CidrRange("10.1.3.0", 24), new CidrRange("10.1.2.3", 32)),
+        Collections.<CidrRange>emptyList(), Arrays.asList(1));
+    FilterChainMatchingIndex index = createIndex(filterChain8, filterChain24, filterChainOther);
+
+    // The most specific prefix of filterChainOther is excluded by its source ports.
+    assertThat(index.findMatchingFilterChain(LOCAL_ADDRESS, REMOTE_ADDRESS)).isNull();
+    assertThat(index.findMatchingFilterChain(
+        new InetSocketAddress("10.1.2.4", 8000), REMOTE_ADDRESS)).isSameInstanceAs(filterChain24);
+    assertThat(index.findMatchingFilterChain(
+        new InetSocketAddress("10.9.2.4", 8000), REMOTE_ADDRESS)).isSameInstanceAs(filterChain8);
+    assertThat(index.findMatchingFilterChain(
+        new InetSocketAddress("11.1.2.3", 8000), REMOTE_ADDRESS)).isNull();
+  }
+
+  @Test
+  public void zeroLengthPrefixMatchesAllAddressesOfFamily() throws UnknownHostException {
+    FilterChain filterChain = filterChain("zero", Arrays.asList(new CidrRange("0.0.0.0", 0)),
+        Arrays.asList(new CidrRange("128.0.0.0", 0)), Collections.<Integer>emptyList());
+    FilterChainMatchingIndex index = createIndex(filterChain);
+
+    assertThat(index.findMatchingFilterChain(
+        new InetSocketAddress("200.1.2.3", 8000), REMOTE_ADDRESS)).isSameInstanceAs(filterChain);
+    assertThat(index.findMatchingFilterChain(LOCAL_ADDRESS, new InetSocketAddress("10.1.1.1", 1)))
+        .isSameInstanceAs(filterChain);
+    assertThat(index.findMatchingFilterChain(
+        new InetSocketAddress("2001:db8::1", 8000), REMOTE_ADDRESS)).isNull();
+  }
+
+  @Test
+  public void sourcePortMatchWinsOverEmptyList() throws UnknownHostException {
+    FilterChain filterChainEmptyPorts = filterChain("empty", Collections.<CidrRange>emptyList(),
+        Arrays.asList(new CidrRange("192.168.10.0", 24)), Collections.<Integer>emptyList());
+    FilterChain filterChainPorts = filterChain("ports", Collections.<CidrRange>emptyList(),
+        Arrays.asList(new CidrRange("192.168.10.0", 24)), Arrays.asList(15000, 15001));
+    FilterChainMatchingIndex index = createIndex(filterChainEmptyPorts, filterChainPorts);
+
+    assertThat(index.findMatchingFilterChain(LOCAL_ADDRESS, REMOTE_ADDRESS))
+        .isSameInstanceAs(filterChainPorts);
+    assertThat(index.findMatchingFilterChain(
+        LOCAL_ADDRESS, new InetSocketAddress("192.168.10.2", 15002)))
+        .isSameInstanceAs(filterChainEmptyPorts);
+  }
+
+  @Test
+  public void sourceTypeFilteredBeforeSourcePrefix() throws UnknownHostException {
+    FilterChain filterChainSameIp = new FilterChain("same-ip",
+        new FilterChainMatch(0, Collections.<CidrRange>emptyList(),
+            Collections.<String>emptyList(), Arrays.asList(new CidrRange("192.168.10.2", 32)),
+            ConnectionSourceType.SAME_IP_OR_LOOPBACK, Collections.<Integer>emptyList(),
+            Collections.<String>emptyList(), null),
+        HTTP_CONNECTION_MANAGER, null, null);
+    FilterChain filterChainAny = filterChain("any", Collections.<CidrRange>emptyList(),
+        Arrays.asList(new CidrRange("192.168.0.0", 16)), Collections.<Integer>emptyList());
+    FilterChainMatchingIndex index = createIndex(filterChainSameIp, filterChainAny);
+
+    assertThat(index.findMatchingFilterChain(LOCAL_ADDRESS, REMOTE_ADDRESS))
+        .isSameInstanceAs(filterChainAny);
+  }
+
+  @Test
+  public void unsupportedMatchersFilteredAfterDestinationPrefix() throws UnknownHostException {
+    FilterChain filterChainServerNames = new FilterChain("server-names",
+        new FilterChainMatch(0, Arrays.asList(new CidrRange("10.1.0.0", 16)),
+            Collections.<String>emptyList(), Collections.<CidrRange>emptyList(),
+            ConnectionSourceType.ANY, Collections.<Integer>emptyList(),
+            Arrays.asList("server1"), null),
+        HTTP_CONNECTION_MANAGER, null, null);
+    FilterChain filterChain8 = filterChain("8", Arrays.asList(new CidrRange("10.0.0.0", 8)),
+        Collections.<CidrRange>emptyList(), Collections.<Integer>emptyList());
+    FilterChainMatchingIndex index = createIndex(filterChainServerNames, filterChain8);
+
+    // The most specific filter chain never matches, so the default filter chain is used.
+    assertThat(index.findMatchingFilterChain(LOCAL_ADDRESS, REMOTE_ADDRESS)).isNull();
+    assertThat(index.findMatchingFilterChain(
+        new InetSocketAddress("10.9.2.4", 8000), REMOTE_ADDRESS)).isSameInstanceAs(filterChain8);
+  }
+
+  @Test
+  public void twoMatchingFilterChains() throws UnknownHostException {
+    FilterChainMatchingIndex index = createIndex(
+        filterChain("foo", Arrays.asList(new CidrRange("10.1.2.0", 24)),
+            Collections.<CidrRange>emptyList(), Collections.<Integer>emptyList()),
+        filterChain("bar", Arrays.asList(new CidrRange("10.1.2.0", 24)),
+            Collections.<CidrRange>emptyList(), Collections.<Integer>emptyList()));
+    try {
+      index.findMatchingFilterChain(LOCAL_ADDRESS, REMOTE_ADDRESS);
+      fail("expect exception!");
+    } catch (IllegalStateException ise) {
+      assertThat(ise).hasMessageThat().isEqualTo("Found 2 matching filter-chains");
+    }
+  }
+
+  private static FilterChainMatchingIndex createIndex(FilterChain... filterChains) {
+    return FilterChainMatchingIndex.create(
+        new Listener("listener", "10.1.2.3:8000", Arrays.asList(filterChains), null));
+  }
+
+  private static FilterChain filterChain(String name, List<CidrRange> prefixRanges,
+      List<CidrRange> sourcePrefixRanges, List<Integer> sourcePorts) {
+    FilterChainMatch filterChainMatch = new FilterChainMatch(
+        0, prefixRanges, Collections.<String>emptyList(), sourcePrefixRanges,
+        ConnectionSourceType.ANY, sourcePorts, Collections.<String>emptyList(), null);
+    return new FilterChain(name, filterChainMatch, HTTP_CONNECTION_MANAGER, null, null);
+  }
+}
@@ -26,8 +26,10 @@ import io.grpc.xds.LoadStatsManager2.ClusterLocalityStats;
 import io.grpc.xds.Stats.ClusterStats;
 import io.grpc.xds.Stats.DroppedRequests;
 import io.grpc.xds.Stats.UpstreamLocalityStats;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.junit.Test;
@@ -247,6 +249,62 @@ public class LoadStatsManager2Test {
     assertThat(loadStatsManager.getClusterStatsReports(CLUSTER_NAME1)).isEmpty();
   }
 
+  @Test
+  public void concurrentRecordingIncludedInReports() throws Exception {
+    final ClusterLocalityStats localityStats = loadStatsManager.getClusterLocalityStats(
+        CLUSTER_NAME1, EDS_SERVICE_NAME1, LOCALITY1);
+    final ClusterDropStats dropStats = loadStatsManager.getClusterDropStats(
+        CLUSTER_NAME1, EDS_SERVICE_NAME1);
+    final int threads = 8;
+    final int iterations = 10000;
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      Thread worker = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+          for (int i = 0; i < iterations; i++) {
+            localityStats.recordCallStarted();
+            localityStats.recordCallFinished(i % 2 == 0 ? Status.OK : Status.UNAVAILABLE);
+            dropStats.recordDroppedRequest("lb");
+          }
+        }
+      });
+      worker.start();
+      workers.add(worker);
+    }
+    start.countDown();
+    // Reports taken while recording, every recorded call is included in exactly one of them.
+    long issued = 0L;
+    long succeeded = 0L;
+    long failed = 0L;
+    long dropped = 0L;
+    boolean recording = true;
+    while (recording) {
+      recording = false;
+      for (Thread worker : workers) {
+        recording |= worker.isAlive();
+      }
+      ClusterStats stats = Iterables.getOnlyElement(
+          loadStatsManager.getClusterStatsReports(CLUSTER_NAME1));
+      UpstreamLocalityStats upstreamLocalityStats =
+          Iterables.getOnlyElement(stats.upstreamLocalityStatsList());
+      issued += upstreamLocalityStats.totalIssuedRequests();
+      succeeded += upstreamLocalityStats.totalSuccessfulRequests();
+      failed += upstreamLocalityStats.totalErrorRequests();
+      dropped += stats.totalDroppedRequests();
+    }
+    assertThat(issued).isEqualTo((long) threads * iterations);
+    assertThat(succeeded).isEqualTo((long) threads * iterations / 2);
+    assertThat(failed).isEqualTo((long) threads * iterations / 2);
+    assertThat(dropped).isEqualTo((long) threads * iterations);
+  }
+
   @Nullable
   private static ClusterStats findClusterStats(
       List<ClusterStats> statsList, String cluster, @Nullable String edsServiceName) {
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.grpc.ConnectivityState.CONNECTING;
+import static io.grpc.ConnectivityState.IDLE;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Iterables;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer.CreateSubchannelArgs;
+import io.grpc.LoadBalancer.Helper;
+import io.grpc.LoadBalancer.PickResult;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.LoadBalancer.ResolvedAddresses;
+import io.grpc.LoadBalancer.Subchannel;
+import io.grpc.LoadBalancer.SubchannelPicker;
+import io.grpc.LoadBalancer.SubchannelStateListener;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.Status.Code;
+import io.grpc.SynchronizationContext;
+import io.grpc.internal.PickSubchannelArgsImpl;
+import io.grpc.testing.TestMethodDescriptors;
+import io.grpc.xds.MaglevLoadBalancer.MaglevConfig;
+import io.grpc.xds.MaglevLoadBalancer.Permutation;
+import io.grpc.xds.MaglevLoadBalancer.Table;
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.mockito.stubbing.Answer;
+
+/** Unit test for {@link MaglevLoadBalancer}. */
+@RunWith(JUnit4.class)
+public class MaglevLoadBalancerTest {
+  private static final String AUTHORITY = "foo.googleapis.com";
+  private static final int TABLE_SIZE = 101;
+
+  @Rule
+  public final MockitoRule mocks = MockitoJUnit.rule();
+  private final SynchronizationContext syncContext = new SynchronizationContext(
+      new UncaughtExceptionHandler() {
+        @Override
+        public void uncaughtException(Thread t, Throwable e) {
+          throw new AssertionError(e);
+        }
+      });
+  private final Map<List<EquivalentAddressGroup>, Subchannel> subchannels = new HashMap<>();
+  private final Map<Subchannel, SubchannelStateListener> subchannelStateListeners =
+      new HashMap<>();
+  private final MaglevConfig config = new MaglevConfig(TABLE_SIZE);
+  @Mock
+  private Helper helper;
+  @Captor
+  private ArgumentCaptor<SubchannelPicker> pickerCaptor;
+  private MaglevLoadBalancer loadBalancer;
+
+  @Before
+  public void setUp() {
+    when(helper.getAuthority()).thenReturn(AUTHORITY);
+    when(helper.getSynchronizationContext()).thenReturn(syncContext);
+    when(helper.createSubchannel(any(CreateSubchannelArgs.class))).thenAnswer(
+        new Answer<Subchannel>() {
+          @Override
+          public Subchannel answer(InvocationOnMock invocation) throws Throwable {
+            CreateSubchannelArgs args = (CreateSubchannelArgs) invocation.getArguments()[0];
+            final Subchannel subchannel = mock(Subchannel.class);
+            when(subchannel.getAllAddresses()).thenReturn(args.getAddresses());
+            when(subchannel.getAttributes()).thenReturn(args.getAttributes());
+            subchannels.put(args.getAddresses(), subchannel);
+            doAnswer(new Answer<Void>() {
+              @Override
+              public Void answer(InvocationOnMock invocation) throws Throwable {
+                subchannelStateListeners.put(
+                    subchannel, (SubchannelStateListener) invocation.getArguments()[0]);
+                return null;
+              }
+            }).when(subchannel).start(any(SubchannelStateListener.class));
+            return subchannel;
+          }
+        });
+    loadBalancer = new MaglevLoadBalancer(helper);
+    // Skip uninterested interactions.
+    verify(helper).getAuthority();
+    verify(helper).getSynchronizationContext();
+  }
+
+  @After
+  public void tearDown() {
+    loadBalancer.shutdown();
+    for (Subchannel subchannel : subchannels.values()) {
+      verify(subchannel).shutdown();
+    }
+  }
+
+  @Test
+  public void buildTable_entriesProportionalToWeights() {
+    Map<EquivalentAddressGroup, Long> serverWeights = new LinkedHashMap<>();
+    serverWeights.put(addrKey("server0"), 1L);
+    serverWeights.put(addrKey("server1"), 2L);
+    serverWeights.put(addrKey("server2"), 3L);
+    Table table = MaglevLoadBalancer.buildTable(
+        serverWeights, 65537, new HashMap<EquivalentAddressGroup, Permutation>());
+
+    assertThat(table.addrKeys).asList()
+        .containsExactly(addrKey("server0"), addrKey("server1"), addrKey("server2")).inOrder();
+    int[] counts = new int[3];
+    for (int entry : table.entries) {
+      counts[entry]++;
+    }
+    assertThat(counts).asList().containsExactly(10923, 21846, 32768).inOrder();
+  }
+
+  @Test
+  public void buildTable_independentOfAddressOrder() {
+    Map<EquivalentAddressGroup, Long> serverWeights = new LinkedHashMap<>();
+    Map<EquivalentAddressGroup, Long> reversedServerWeights = new LinkedHashMap<>();
+    for (int i = 0; i < 10; i++) {
+      serverWeights.put(addrKey("server" + i), 1L);
+      reversedServerWeights.put(addrKey("server" + (9 - i)), 1L);
+    }
+    Table table = MaglevLoadBalancer.buildTable(
+        serverWeights, TABLE_SIZE, new HashMap<EquivalentAddressGroup, Permutation>());
+    Table reversedTable = MaglevLoadBalancer.buildTable(
+        reversedServerWeights, TABLE_SIZE, new HashMap<EquivalentAddressGroup, Permutation>());
+    assertThat(reversedTable.entries).isEqualTo(table.entries);
+    assertThat(reversedTable.addrKeys).isEqualTo(table.addrKeys);
+  }
+
+  @Test
+  public void buildTable_fewEntriesMoveWhenHostRemoved() {
+    Map<EquivalentAddressGroup, Long> serverWeights = new LinkedHashMap<>();
+    for (int i = 0; i < 10; i++) {
+      serverWeights.put(addrKey("server" + i), 1L);
+    }
+    Map<EquivalentAddressGroup, Permutation> permutations = new HashMap<>();
+    Table table = MaglevLoadBalancer.buildTable(serverWeights, 65537, permutations);
+    serverWeights.remove(addrKey("server0"));
+    permutations.keySet().retainAll(serverWeights.keySet());
+    Table newTable = MaglevLoadBalancer.buildTable(serverWeights, 65537, permutations);
+
+    int remaining = 0;
+    int moved = 0;
+    for (int i = 0; i < table.entries.length; i++) {
+      EquivalentAddressGroup addrKey = table.addrKeys[table.entries[i]];
+      if (!addrKey.equals(addrKey("server0"))) {
+        remaining++;
+        if (!addrKey.equals(newTable.addrKeys[newTable.entries[i]])) {
+          moved++;
+        }
+      }
+    }
+    assertThat((double) moved / remaining).isLessThan(0.02);
+  }
+
+  @Test
+  public void subchannelLazyConnectUntilPicked() {
+    List<EquivalentAddressGroup> servers = createWeightedServerAddrs(1);  // one server
+    loadBalancer.handleResolvedAddresses(
+        ResolvedAddresses.newBuilder()
+            .setAddresses(servers).setLoadBalancingPolicyConfig(config).build());
+    verify(helper).createSubchannel(any(CreateSubchannelArgs.class));
+    Subchannel subchannel = Iterables.getOnlyElement(subchannels.values());
+    verify(subchannel, never()).requestConnection();
+    verify(helper).updateBalancingState(eq(IDLE), pickerCaptor.capture());
+
+    // Picking subchannel triggers connection.
+    PickResult result = pickerCaptor.getValue().pickSubchannel(pickArgs(0L));
+    assertThat(result.getStatus().isOk()).isTrue();
+    assertThat(result.getSubchannel()).isNull();
+    verify(subchannel).requestConnection();
+    deliverSubchannelState(subchannel, ConnectivityStateInfo.forNonError(CONNECTING));
+    verify(helper).updateBalancingState(eq(CONNECTING), any(SubchannelPicker.class));
+
+    // Subchannel becomes ready, triggers pick again.
+    deliverSubchannelState(subchannel, ConnectivityStateInfo.forNonError(READY));
+    verify(helper).updateBalancingState(eq(READY), pickerCaptor.capture());
+    result = pickerCaptor.getValue().pickSubchannel(pickArgs(0L));
+    assertThat(result.getSubchannel()).isSameInstanceAs(subchannel);
+    verifyNoMoreInteractions(helper);
+  }
+
+  @Test
+  public void pickSubchannelOwningTableEntryOfHash() {
+    List<EquivalentAddressGroup> servers = createWeightedServerAddrs(1, 1, 1);
+    loadBalancer.handleResolvedAddresses(
+        ResolvedAddresses.newBuilder()
+            .setAddresses(servers).setLoadBalancingPolicyConfig(config).build());
+    for (Subchannel subchannel : subchannels.values()) {
+      deliverSubchannelState(subchannel, ConnectivityStateInfo.forNonError(READY));
+    }
+    verify(helper, times(3)).updateBalancingState(eq(READY), pickerCaptor.capture());
+    SubchannelPicker picker = pickerCaptor.getValue();
+
+    Table table = buildTable(3);
+    for (int i = 0; i < TABLE_SIZE; i++) {
+      EquivalentAddressGroup addrKey = table.addrKeys[table.entries[i]];
+      // Request hashes are unsigned, and wrap around the table.
+      assertThat(picker.pickSubchannel(pickArgs(i)).getSubchannel())
+          .isSameInstanceAs(getSubchannel(addrKey));
+      assertThat(picker.pickSubchannel(pickArgs(i + 3L * TABLE_SIZE)).getSubchannel())
+          .isSameInstanceAs(getSubchannel(addrKey));
+    }
+  }
+
+  @Test
+  public void skipFailingHosts_pickNextReadyHostInTable() {
+    List<EquivalentAddressGroup> servers = createWeightedServerAddrs(1, 1, 1);
+    loadBalancer.handleResolvedAddresses(
+        ResolvedAddresses.newBuilder()
+            .setAddresses(servers).setLoadBalancingPolicyConfig(config).build());
+    Table table = buildTable(3);
+    EquivalentAddressGroup failing = table.addrKeys[table.entries[0]];
+    EquivalentAddressGroup next = null;
+    for (int i = 1; next == null; i++) {
+      if (!table.addrKeys[table.entries[i]].equals(failing)) {
+        next = table.addrKeys[table.entries[i]];
+      }
+    }
+    for (Subchannel subchannel : subchannels.values()) {
+      if (subchannel == getSubchannel(failing)) {
+        deliverSubchannelState(subchannel, ConnectivityStateInfo.forTransientFailure(
+            Status.UNAVAILABLE.withDescription("unreachable")));
+      } else {
+        deliverSubchannelState(subchannel, ConnectivityStateInfo.forNonError(READY));
+      }
+    }
+    verify(helper, atLeastOnce()).updateBalancingState(eq(READY), pickerCaptor.capture());
+
+    PickResult result = pickerCaptor.getValue().pickSubchannel(pickArgs(0L));
+    assertThat(result.getSubchannel()).isSameInstanceAs(getSubchannel(next));
+  }
+
+  @Test
+  public void allSubchannelsInTransientFailure() {
+    List<EquivalentAddressGroup> servers = createWeightedServerAddrs(1, 1, 1);
+    loadBalancer.handleResolvedAddresses(
+        ResolvedAddresses.newBuilder()
+            .setAddresses(servers).setLoadBalancingPolicyConfig(config).build());
+    for (Subchannel subchannel : subchannels.values()) {
+      deliverSubchannelState(subchannel, ConnectivityStateInfo.forTransientFailure(
+          Status.UNAVAILABLE.withDescription("unreachable")));
+    }
+    verify(helper, times(2)).updateBalancingState(eq(TRANSIENT_FAILURE), pickerCaptor.capture());
+
+    PickResult result = pickerCaptor.getValue().pickSubchannel(pickArgs(0L));
+    assertThat(result.getStatus().getCode()).isEqualTo(Code.UNAVAILABLE);
+    assertThat(result.getStatus().getDescription()).isEqualTo("unreachable");
+  }
+
+  @Test
+  public void hostSelectionProportionalToWeights() {
+    List<EquivalentAddressGroup> servers = createWeightedServerAddrs(1, 10, 100); // 1:10:100
+    loadBalancer.handleResolvedAddresses(
+        ResolvedAddresses.newBuilder()
+            .setAddresses(servers)
+            .setLoadBalancingPolicyConfig(new MaglevConfig(65537))
+            .build());
+    Map<EquivalentAddressGroup, Integer> pickCounts = new HashMap<>();
+    for (Subchannel subchannel : subchannels.values()) {
+      deliverSubchannelState(subchannel, ConnectivityStateInfo.forNonError(READY));
+      pickCounts.put(subchannel.getAddresses(), 0);
+    }
+    verify(helper, times(3)).updateBalancingState(eq(READY), pickerCaptor.capture());
+    SubchannelPicker picker = pickerCaptor.getValue();
+
+    XxHash64 hashFunc = XxHash64.INSTANCE;
+    for (int i = 0; i < 10000; i++) {
+      Subchannel pickedSubchannel = picker.pickSubchannel(pickArgs(hashFunc.hashInt(i)))
+          .getSubchannel();
+      EquivalentAddressGroup addr = pickedSubchannel.getAddresses();
+      pickCounts.put(addr, pickCounts.get(addr) + 1);
+    }
+
+    double ratio01 = (double) pickCounts.get(servers.get(0)) / pickCounts.get(servers.get(1));
+    double ratio12 = (double) pickCounts.get(servers.get(1)) / pickCounts.get(servers.get(2));
+    assertThat(ratio01).isWithin(0.03).of((double) 1 / 10);
+    assertThat(ratio12).isWithin(0.03).of((double) 10 / 100);
+  }
+
+  @Test
+  public void nameResolutionErrorWithNoActiveSubchannels() {
+    loadBalancer.handleNameResolutionError(Status.UNAVAILABLE.withDescription("not reachable"));
+    verify(helper).updateBalancingState(eq(TRANSIENT_FAILURE), pickerCaptor.capture());
+    PickResult result = pickerCaptor.getValue().pickSubchannel(mock(PickSubchannelArgs.class));
+    assertThat(result.getStatus().getCode()).isEqualTo(Code.UNAVAILABLE);
+    assertThat(result.getStatus().getDescription()).isEqualTo("not reachable");
+    assertThat(result.getSubchannel()).isNull();
+    verifyNoMoreInteractions(helper);
+  }
+
+  private Subchannel getSubchannel(EquivalentAddressGroup addrKey) {
+    for (Subchannel subchannel : subchannels.values()) {
+      if (subchannel.getAddresses().getAddresses().equals(addrKey.getAddresses())) {
+        return subchannel;
+      }
+    }
+    throw new AssertionError("No subchannel for " + addrKey);
+  }
+
+  private void deliverSubchannelState(Subchannel subchannel, ConnectivityStateInfo state) {
+    subchannelStateListeners.get(subchannel).onSubchannelState(state);
+  }
+
+  private static PickSubchannelArgs pickArgs(long requestHash) {
+    return new PickSubchannelArgsImpl(
+        TestMethodDescriptors.voidMethod(), new Metadata(),
+        CallOptions.DEFAULT.withOption(XdsNameResolver.RPC_HASH_KEY, requestHash));
+  }
+
+  /**
+   * Builds the table the load balancer builds for servers created with
+   * {@link #createWeightedServerAddrs} with a weight of one each.
+   */
+  private static Table buildTable(int serverCount) {
+    Map<EquivalentAddressGroup, Long> serverWeights = new HashMap<>();
+    for (int i = 0; i < serverCount; i++) {
+      serverWeights.put(addrKey("server" + i), 1L);
+    }
+    return MaglevLoadBalancer.buildTable(
+        serverWeights, TABLE_SIZE, new HashMap<EquivalentAddressGroup, Permutation>());
+  }
+
+  private static EquivalentAddressGroup addrKey(String name) {
+    return new EquivalentAddressGroup(new FakeSocketAddress(name));
+  }
+
+  private static List<EquivalentAddressGroup> createWeightedServerAddrs(long... weights) {
+    List<EquivalentAddressGroup> addrs = new ArrayList<>();
+    for (int i = 0; i < weights.length; i++) {
+      SocketAddress addr = new FakeSocketAddress("server" + i);
+      Attributes attr = Attributes.newBuilder().set(
+          InternalXdsAttributes.ATTR_SERVER_WEIGHT, weights[i]).build();
+      EquivalentAddressGroup eag = new EquivalentAddressGroup(addr, attr);
+      addrs.add(eag);
+    }
+    return addrs;
+  }
+
+  private static class FakeSocketAddress extends SocketAddress {
+    private final String name;
+
+    FakeSocketAddress(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public int hashCode() {
+      return name.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof FakeSocketAddress)) {
+        return false;
+      }
+      return name.equals(((FakeSocketAddress) other).name);
+    }
+
+    @Override
+    public String toString() {
+      return "FakeSocketAddress-" +  name;
+    }
+  }
+}
@@ -53,12 +53,14 @@ import io.grpc.Status.Code;
 import io.grpc.SynchronizationContext;
 import io.grpc.internal.PickSubchannelArgsImpl;
 import io.grpc.testing.TestMethodDescriptors;
+import io.grpc.xds.RingHashLoadBalancer.Ring;
 import io.grpc.xds.RingHashLoadBalancer.RingHashConfig;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.junit.After;
@@ -591,6 +593,34 @@ public class RingHashLoadBalancerTest {
         .isEqualTo("[FakeSocketAddress-server0] unreachable");
   }
 
+  @Test
+  public void buildRing_sortedHashesOfIndexedAddresses() {
+    Map<EquivalentAddressGroup, Long> serverWeights = new LinkedHashMap<>();
+    EquivalentAddressGroup server0 = new EquivalentAddressGroup(new FakeSocketAddress("server0"));
+    EquivalentAddressGroup server1 = new EquivalentAddressGroup(new FakeSocketAddress("server1"));
+    serverWeights.put(server0, 1L);
+    serverWeights.put(server1, 3L);
+    Ring ring = RingHashLoadBalancer.buildRing(serverWeights, 4, 40);
+
+    assertThat(ring.hashes).hasLength(40);
+    assertThat(ring.addrKeys).asList().containsExactly(server0, server1).inOrder();
+    for (int i = 1; i < ring.hashes.length; i++) {
+      assertThat(ring.hashes[i - 1]).isAtMost(ring.hashes[i]);
+    }
+    Map<Long, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 10; i++) {
+      expected.put(hashFunc.hashAsciiString("[FakeSocketAddress-server0]_" + i), 0);
+    }
+    for (int i = 0; i < 30; i++) {
+      expected.put(hashFunc.hashAsciiString("[FakeSocketAddress-server1]_" + i), 1);
+    }
+    Map<Long, Integer> actual = new HashMap<>();
+    for (int i = 0; i < ring.hashes.length; i++) {
+      actual.put(ring.hashes[i], ring.addrIndices[i]);
+    }
+    assertThat(actual).isEqualTo(expected);
+  }
+
   @Test
   public void hostSelectionProportionalToWeights() {
     RingHashConfig config = new RingHashConfig(10000, 100000);  // large ring
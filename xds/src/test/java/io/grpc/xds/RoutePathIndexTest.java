@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.re2j.Pattern;
+import io.grpc.xds.VirtualHost.Route.RouteMatch.PathMatcher;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link RoutePathIndex}.
+ */
+@RunWith(JUnit4.class)
+public class RoutePathIndexTest {
+  private final RoutePathIndex index = new RoutePathIndex(Arrays.asList(
+      PathMatcher.fromPath("/FooService/barMethod", true),      // 0
+      PathMatcher.fromPrefix("/FooService/", true),              // 1
+      PathMatcher.fromPrefix("/fooservice/", false),             // 2
+      PathMatcher.fromRegEx(Pattern.compile("/Foo.*/.*Method")), // 3
+      PathMatcher.fromPath("/fooservice/BARMETHOD", false),      // 4
+      PathMatcher.fromPrefix("/FooService/barMethodX", true),    // 5
+      PathMatcher.fromPrefix("", true),                          // 6
+      PathMatcher.fromPrefix("/", true)));                       // 7
+
+  @Test
+  public void exactAndPrefixMatchers() {
+    assertThat(index.getCandidates("FooService/barMethod"))
+        .asList().containsExactly(0, 1, 2, 3, 4, 6, 7).inOrder();
+    assertThat(index.getCandidates("FooService/barMethodXY"))
+        .asList().containsExactly(1, 2, 5, 6, 7).inOrder();
+    assertThat(index.getCandidates("FooService/bazMethod"))
+        .asList().containsExactly(1, 2, 3, 6, 7).inOrder();
+  }
+
+  @Test
+  public void caseInsensitiveMatchers() {
+    assertThat(index.getCandidates("FOOSERVICE/barmethod"))
+        .asList().containsExactly(2, 4, 6, 7).inOrder();
+  }
+
+  @Test
+  public void noPathMatching() {
+    RoutePathIndex index = new RoutePathIndex(Arrays.asList(
+        PathMatcher.fromPath("/FooService/barMethod", true),
+        PathMatcher.fromPrefix("/BarService/", true)));
+    assertThat(index.getCandidates("FooService/bazMethod")).isEmpty();
+    assertThat(index.getCandidates("FooService/barMethod/")).isEmpty();
+    assertThat(index.getCandidates("FooService")).isEmpty();
+    assertThat(index.getCandidates("")).isEmpty();
+  }
+
+  @Test
+  public void noRoutes() {
+    RoutePathIndex index = new RoutePathIndex(Collections.<PathMatcher>emptyList());
+    assertThat(index.getCandidates("FooService/barMethod")).isEmpty();
+  }
+
+  @Test
+  public void memoizesCandidatesOfMethod() {
+    int[] candidates = index.getCandidates("FooService/barMethod");
+    assertThat(index.getCandidates("FooService/barMethod")).isSameInstanceAs(candidates);
+  }
+
+  @Test
+  public void stopsMemoizingWhenFull() {
+    for (int i = 0; i < RoutePathIndex.MAX_CACHED_METHODS; i++) {
+      index.getCandidates("FooService/method" + i);
+    }
+    int[] candidates = index.getCandidates("FooService/barMethod");
+    assertThat(candidates).asList().containsExactly(0, 1, 2, 3, 4, 6, 7).inOrder();
+    assertThat(index.getCandidates("FooService/barMethod")).isNotSameInstanceAs(candidates);
+  }
+}
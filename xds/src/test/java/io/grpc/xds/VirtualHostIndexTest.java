@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import io.grpc.xds.Filter.FilterConfig;
+import io.grpc.xds.VirtualHost.Route;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link VirtualHostIndex}.
+ */
+@RunWith(JUnit4.class)
+public class VirtualHostIndexTest {
+
+  @Test
+  public void exactMatchWinsOverWildcards() {
+    VirtualHost wildcard = virtualHost("wildcard", "*.googleapis.com", "foo.*", "*");
+    VirtualHost exact = virtualHost("exact", "foo.googleapis.com");
+    VirtualHostIndex index = new VirtualHostIndex(Arrays.asList(wildcard, exact));
+    assertThat(index.find("foo.googleapis.com")).isSameInstanceAs(exact);
+    assertThat(index.find("FOO.googleapis.COM")).isSameInstanceAs(exact);
+  }
+
+  @Test
+  public void firstExactMatchWins() {
+    VirtualHost first = virtualHost("first", "foo.googleapis.com");
+    VirtualHost second = virtualHost("second", "FOO.googleapis.com");
+    VirtualHostIndex index = new VirtualHostIndex(Arrays.asList(first, second));
+    assertThat(index.find("foo.googleapis.com")).isSameInstanceAs(first);
+  }
+
+  @Test
+  public void longestWildcardWins() {
+    VirtualHost shortSuffix = virtualHost("short-suffix", "*.com");
+    VirtualHost longSuffix = virtualHost("long-suffix", "*.googleapis.com");
+    VirtualHost longPrefix = virtualHost("long-prefix", "foo.googleapis.c*");
+    VirtualHost any = virtualHost("any", "*");
+    VirtualHostIndex index = new VirtualHostIndex(
+        Arrays.asList(any, shortSuffix, longSuffix, longPrefix));
+    assertThat(index.find("foo.googleapis.com")).isSameInstanceAs(longPrefix);
+    assertThat(index.find("bar.googleapis.com")).isSameInstanceAs(longSuffix);
+    assertThat(index.find("bar.example.com")).isSameInstanceAs(shortSuffix);
+    assertThat(index.find("bar.example.org")).isSameInstanceAs(any);
+  }
+
+  @Test
+  public void suffixWildcardWinsOverPrefixWildcardOfSameLength() {
+    VirtualHost suffix = virtualHost("suffix", "*.googleapis.com");
+    VirtualHost prefix = virtualHost("prefix", "foo.googleapis.*");
+    assertThat(new VirtualHostIndex(Arrays.asList(suffix, prefix)).find("foo.googleapis.com"))
+        .isSameInstanceAs(suffix);
+    assertThat(new VirtualHostIndex(Arrays.asList(prefix, suffix)).find("foo.googleapis.com"))
+        .isSameInstanceAs(suffix);
+  }
+
+  @Test
+  public void wildcardMatchesAtLeastOneCharacter() {
+    VirtualHost suffix = virtualHost("suffix", "*-bar.com");
+    VirtualHost prefix = virtualHost("prefix", "foo-*");
+    VirtualHostIndex index = new VirtualHostIndex(Arrays.asList(suffix, prefix));
+    assertThat(index.find("-bar.com")).isNull();
+    assertThat(index.find("foo-")).isNull();
+    assertThat(index.find("a-bar.com")).isSameInstanceAs(suffix);
+    assertThat(index.find("foo-a")).isSameInstanceAs(prefix);
+  }
+
+  @Test
+  public void invalidPatternsNeverMatch() {
+    VirtualHost invalid = virtualHost("invalid", "foo.*.com", "*foo*", "**", ".foo.com", "");
+    VirtualHostIndex index = new VirtualHostIndex(Collections.singletonList(invalid));
+    assertThat(index.find("foo.bar.com")).isNull();
+    assertThat(index.find("afoob")).isNull();
+    assertThat(index.find("a.foo.com")).isNull();
+  }
+
+  @Test
+  public void matchesExactDomain() {
+    String pattern = "foo.googleapis.com";
+    assertThat(matches("bar.googleapis.com", pattern)).isFalse();
+    assertThat(matches("fo.googleapis.com", pattern)).isFalse();
+    assertThat(matches("oo.googleapis.com", pattern)).isFalse();
+    assertThat(matches("googleapis.com", pattern)).isFalse();
+    assertThat(matches("foo.googleapis", pattern)).isFalse();
+    assertThat(matches("foo.googleapis.com", pattern)).isTrue();
+  }
+
+  @Test
+  public void matchesSuffixWildcard() {
+    String pattern = "*.foo.googleapis.com";
+    assertThat(matches("foo.googleapis.com", pattern)).isFalse();
+    assertThat(matches("bar-baz.foo.googleapis", pattern)).isFalse();
+    assertThat(matches("bar.foo.googleapis.com", pattern)).isTrue();
+    pattern = "*-bar.foo.googleapis.com";
+    assertThat(matches("bar.foo.googleapis.com", pattern)).isFalse();
+    assertThat(matches("baz-bar.foo.googleapis", pattern)).isFalse();
+    assertThat(matches("-bar.foo.googleapis.com", pattern)).isFalse();
+    assertThat(matches("baz-bar.foo.googleapis.com", pattern)).isTrue();
+  }
+
+  @Test
+  public void matchesPrefixWildcard() {
+    String pattern = "foo.*";
+    assertThat(matches("bar.googleapis.com", pattern)).isFalse();
+    assertThat(matches("bar.foo.googleapis.com", pattern)).isFalse();
+    assertThat(matches("foo.googleapis.com", pattern)).isTrue();
+    assertThat(matches("foo.com", pattern)).isTrue();
+    pattern = "foo-*";
+    assertThat(matches("bar-.googleapis.com", pattern)).isFalse();
+    assertThat(matches("foo.googleapis.com", pattern)).isFalse();
+    assertThat(matches("foo.googleapis.com", pattern)).isFalse();
+    assertThat(matches("foo-", pattern)).isFalse();
+    assertThat(matches("foo-bar.com", pattern)).isTrue();
+    assertThat(matches("foo-.com", pattern)).isTrue();
+    assertThat(matches("foo-bar", pattern)).isTrue();
+  }
+
+  private static VirtualHost virtualHost(String name, String... domains) {
+    return VirtualHost.create(name, Arrays.asList(domains), Collections.<Route>emptyList(),
+        ImmutableMap.<String, FilterConfig>of());
+  }
+
+  private static boolean matches(String hostName, String pattern) {
+    return new VirtualHostIndex(Collections.singletonList(virtualHost("virtual-host", pattern)))
+        .find(hostName) != null;
+  }
+}
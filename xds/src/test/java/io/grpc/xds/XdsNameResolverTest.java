@@ -82,6 +82,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 import org.junit.After;
@@ -427,6 +428,30 @@ public class XdsNameResolverTest {
     assertCallSelectResult(call1, configSelector, cluster1, 5.0);
   }
 
+  @Test
+  public void resolved_methodConfigParsedOncePerRoutingUpdate() {
+    final AtomicInteger parseCount = new AtomicInteger();
+    ServiceConfigParser countingParser = new ServiceConfigParser() {
+      @Override
+      public ConfigOrError parseServiceConfig(Map<String, ?> rawServiceConfig) {
+        parseCount.incrementAndGet();
+        return serviceConfigParser.parseServiceConfig(rawServiceConfig);
+      }
+    };
+    FilterRegistry filterRegistry = FilterRegistry.newRegistry().register(
+        new FaultFilter(mockRandom, new AtomicLong()),
+        RouterFilter.INSTANCE);
+    resolver = new XdsNameResolver(AUTHORITY, countingParser, syncContext, scheduler,
+        xdsClientPoolFactory, mockRandom, filterRegistry);
+    InternalConfigSelector configSelector = resolveToClusters();
+    int parseCountAfterUpdate = parseCount.get();
+    for (int i = 0; i < 3; i++) {
+      assertCallSelectResult(call1, configSelector, cluster1, 15.0);
+      assertCallSelectResult(call2, configSelector, cluster2, 15.0);
+    }
+    assertThat(parseCount.get()).isEqualTo(parseCountAfterUpdate);
+  }
+
   @Test
   public void resolved_simpleCallSucceeds() {
     InternalConfigSelector configSelector = resolveToClusters();
@@ -926,48 +951,6 @@ public class XdsNameResolverTest {
         .isEqualTo(expectedServiceConfig);
   }
 
-  @Test
-  public void matchHostName_exactlyMatch() {
-    String pattern = "foo.googleapis.com";
-    assertThat(XdsNameResolver.matchHostName("bar.googleapis.com", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("fo.googleapis.com", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("oo.googleapis.com", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("googleapis.com", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("foo.googleapis", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("foo.googleapis.com", pattern)).isTrue();
-  }
-
-  @Test
-  public void matchHostName_prefixWildcard() {
-    String pattern = "*.foo.googleapis.com";
-    assertThat(XdsNameResolver.matchHostName("foo.googleapis.com", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("bar-baz.foo.googleapis", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("bar.foo.googleapis.com", pattern)).isTrue();
-    pattern = "*-bar.foo.googleapis.com";
-    assertThat(XdsNameResolver.matchHostName("bar.foo.googleapis.com", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("baz-bar.foo.googleapis", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("-bar.foo.googleapis.com", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("baz-bar.foo.googleapis.com", pattern))
-        .isTrue();
-  }
-
-  @Test
-  public void matchHostName_postfixWildCard() {
-    String pattern = "foo.*";
-    assertThat(XdsNameResolver.matchHostName("bar.googleapis.com", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("bar.foo.googleapis.com", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("foo.googleapis.com", pattern)).isTrue();
-    assertThat(XdsNameResolver.matchHostName("foo.com", pattern)).isTrue();
-    pattern = "foo-*";
-    assertThat(XdsNameResolver.matchHostName("bar-.googleapis.com", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("foo.googleapis.com", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("foo.googleapis.com", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("foo-", pattern)).isFalse();
-    assertThat(XdsNameResolver.matchHostName("foo-bar.com", pattern)).isTrue();
-    assertThat(XdsNameResolver.matchHostName("foo-.com", pattern)).isTrue();
-    assertThat(XdsNameResolver.matchHostName("foo-bar", pattern)).isTrue();
-  }
-
   @Test
   public void findVirtualHostForHostName_exactMatchFirst() {
     String hostname = "a.googleapis.com";
@@ -19,6 +19,8 @@ package io.grpc.xds.internal.rbac.engine;
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableList;
@@ -204,38 +206,49 @@ public class GrpcAuthorizationEngineTest {
     assertThat(decision.decision()).isEqualTo(Action.ALLOW);
     assertThat(decision.matchingPolicyName()).isEqualTo(POLICY_NAME);
 
+    // Principal names are extracted once per connection.
     X509Certificate[] certs = {TestUtils.loadX509Cert("badserver.pem")};
     when(sslSession.getPeerCertificates()).thenReturn(certs);
+    newConnection();
     decision = engine.evaluate(HEADER, serverCall);
     assertThat(decision.decision()).isEqualTo(Action.DENY);
     assertThat(decision.matchingPolicyName()).isEqualTo(null);
 
     X509Certificate mockCert = mock(X509Certificate.class);
     when(sslSession.getPeerCertificates()).thenReturn(new X509Certificate[]{mockCert});
+    newConnection();
     assertThat(engine.evaluate(HEADER, serverCall).decision()).isEqualTo(Action.DENY);
     when(mockCert.getSubjectDN()).thenReturn(mock(Principal.class));
+    newConnection();
     assertThat(engine.evaluate(HEADER, serverCall).decision()).isEqualTo(Action.DENY);
     when(mockCert.getSubjectAlternativeNames()).thenReturn(Arrays.<List<?>>asList(
         Arrays.asList(2, "*.test.google.fr")));
+    newConnection();
     assertThat(engine.evaluate(HEADER, serverCall).decision()).isEqualTo(Action.ALLOW);
     when(mockCert.getSubjectAlternativeNames()).thenReturn(Arrays.<List<?>>asList(
         Arrays.asList(6, "*.test.google.fr")));
+    newConnection();
     assertThat(engine.evaluate(HEADER, serverCall).decision()).isEqualTo(Action.ALLOW);
     when(mockCert.getSubjectAlternativeNames()).thenReturn(Arrays.<List<?>>asList(
         Arrays.asList(10, "*.test.google.fr")));
+    newConnection();
     assertThat(engine.evaluate(HEADER, serverCall).decision()).isEqualTo(Action.DENY);
     when(mockCert.getSubjectAlternativeNames()).thenReturn(Arrays.<List<?>>asList(
         Arrays.asList(2, "google.com"), Arrays.asList(6, "*.test.google.fr")));
+    newConnection();
     assertThat(engine.evaluate(HEADER, serverCall).decision()).isEqualTo(Action.ALLOW);
     when(mockCert.getSubjectAlternativeNames()).thenReturn(Arrays.<List<?>>asList(
         Arrays.asList(6, "*.test.google.fr"), Arrays.asList(2, "google.com")));
+    newConnection();
     assertThat(engine.evaluate(HEADER, serverCall).decision()).isEqualTo(Action.ALLOW);
     when(mockCert.getSubjectAlternativeNames()).thenReturn(Arrays.<List<?>>asList(
         Arrays.asList(2, "*.test.google.fr"), Arrays.asList(6, "google.com")));
+    newConnection();
     assertThat(engine.evaluate(HEADER, serverCall).decision()).isEqualTo(Action.DENY);
     when(mockCert.getSubjectAlternativeNames()).thenReturn(Arrays.<List<?>>asList(
         Arrays.asList(2, "*.test.google.fr"), Arrays.asList(6, "google.com"),
         Arrays.asList(6, "*.test.google.fr")));
+    newConnection();
     assertThat(engine.evaluate(HEADER, serverCall).decision()).isEqualTo(Action.ALLOW);
 
     // match any authenticated connection if StringMatcher not set in AuthenticatedMatcher
@@ -245,6 +258,7 @@ public class GrpcAuthorizationEngineTest {
             Arrays.<List<?>>asList(Arrays.asList(6, "random")));
     engine = new GrpcAuthorizationEngine(new AuthConfig(Collections.singletonList(policyMatcher),
             Action.ALLOW));
+    newConnection();
     assertThat(engine.evaluate(HEADER, serverCall).decision()).isEqualTo(Action.ALLOW);
 
     // not match any unauthenticated connection
@@ -288,6 +302,59 @@ public class GrpcAuthorizationEngineTest {
     assertThat(decision.matchingPolicyName()).isEqualTo(POLICY_NAME);
   }
 
+  @Test
+  public void decisionCachedPerConnection() throws Exception {
+    AuthenticatedMatcher authMatcher = new AuthenticatedMatcher(
+        StringMatcher.forExact("*.test.google.fr", false));
+    PolicyMatcher policyMatcher = new PolicyMatcher(POLICY_NAME,
+        OrMatcher.create(new PathMatcher(STRING_MATCHER)), OrMatcher.create(authMatcher));
+    GrpcAuthorizationEngine engine = new GrpcAuthorizationEngine(
+        new AuthConfig(Collections.singletonList(policyMatcher), Action.ALLOW));
+    assertThat(engine.evaluate(HEADER, serverCall).decision()).isEqualTo(Action.ALLOW);
+    assertThat(engine.evaluate(new Metadata(), serverCall).decision()).isEqualTo(Action.ALLOW);
+    verify(sslSession).getPeerCertificates();
+
+    when(serverCall.getMethodDescriptor())
+        .thenReturn(method().setFullMethodName("auth/other").build());
+    AuthDecision decision = engine.evaluate(HEADER, serverCall);
+    assertThat(decision.decision()).isEqualTo(Action.DENY);
+    assertThat(decision.matchingPolicyName()).isEqualTo(null);
+
+    newConnection();
+    when(serverCall.getMethodDescriptor()).thenReturn(method().build());
+    assertThat(engine.evaluate(HEADER, serverCall).decision()).isEqualTo(Action.ALLOW);
+    verify(sslSession, times(2)).getPeerCertificates();
+  }
+
+  @Test
+  public void headerDependentDecisionNotCached() {
+    AuthHeaderMatcher headerMatcher = new AuthHeaderMatcher(Matchers.HeaderMatcher
+        .forExactValue(HEADER_KEY, HEADER_VALUE, false));
+    PolicyMatcher pathPolicy = new PolicyMatcher(POLICY_NAME,
+        OrMatcher.create(new PathMatcher(STRING_MATCHER)), OrMatcher.create(headerMatcher));
+    PolicyMatcher portPolicy = new PolicyMatcher(POLICY_NAME + "-2",
+        OrMatcher.create(new DestinationPortMatcher(PORT)),
+        OrMatcher.create(AlwaysTrueMatcher.INSTANCE));
+    GrpcAuthorizationEngine engine = new GrpcAuthorizationEngine(
+        new AuthConfig(ImmutableList.of(pathPolicy, portPolicy), Action.DENY));
+    AuthDecision decision = engine.evaluate(metadata(HEADER_KEY, HEADER_VALUE), serverCall);
+    assertThat(decision.decision()).isEqualTo(Action.DENY);
+    assertThat(decision.matchingPolicyName()).isEqualTo(POLICY_NAME);
+
+    decision = engine.evaluate(new Metadata(), serverCall);
+    assertThat(decision.decision()).isEqualTo(Action.DENY);
+    assertThat(decision.matchingPolicyName()).isEqualTo(POLICY_NAME + "-2");
+  }
+
+  private void newConnection() {
+    Attributes attributes = Attributes.newBuilder()
+        .set(Grpc.TRANSPORT_ATTR_REMOTE_ADDR, new InetSocketAddress(IP_ADDR2, PORT))
+        .set(Grpc.TRANSPORT_ATTR_LOCAL_ADDR, new InetSocketAddress(IP_ADDR1, PORT))
+        .set(Grpc.TRANSPORT_ATTR_SSL_SESSION, sslSession)
+        .build();
+    when(serverCall.getAttributes()).thenReturn(attributes);
+  }
+
   private MethodDescriptor.Builder<Void, Void> method() {
     return MethodDescriptor.<Void,Void>newBuilder()
             .setType(MethodType.BIDI_STREAMING)